@@ -0,0 +1,68 @@
+package canfield.bia.hockey.scoreboard.io;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One scoreboard tick worth of serial frames: clock and score, the under-a-minute clock and the penalty frame.
+ * {@code encoder} should report gc.alloc.rate.norm of ~0 B/op; {@code arrays} is the old new-byte[]-per-frame
+ * encoding for comparison.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=FrameEncoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameEncoderBenchmark {
+
+    private final FrameEncoder encoder = new FrameEncoder();
+    private int tick;
+
+    @Benchmark
+    public void encoder(Blackhole bh) {
+        int t = tick++;
+        int seconds = t % 60;
+        bh.consume(encoder.clockAndScore(t % 12, 3, 19 - t % 20, seconds, 2, false));
+        bh.consume(encoder.buffer());
+        bh.consume(encoder.fastClock(seconds, t % 10));
+        bh.consume(encoder.buffer());
+        encoder.clearPenalties();
+        encoder.penalty(0, 1, seconds, 17);
+        encoder.penalty(2, 4, seconds, 8);
+        bh.consume(encoder.buffer());
+    }
+
+    @Benchmark
+    public void arrays(Blackhole bh) {
+        int t = tick++;
+        int seconds = t % 60;
+        int minutes = 19 - t % 20;
+        bh.consume(new byte[] {
+            0x2e, 0x78, digit(10, t % 12, FrameEncoder.BLANK), digit(1, t % 12), digit(10, 3, FrameEncoder.BLANK), digit(1, 3),
+            digit(10, minutes, FrameEncoder.BLANK), digit(1, minutes), digit(10, seconds), digit(1, seconds), digit(1, 2), 0, 0
+        });
+        bh.consume(new byte[] {0x2E, 0x79, digit(10, seconds, FrameEncoder.BLANK), digit(1, seconds), digit(1, t % 10), FrameEncoder.BLANK});
+        byte[] b = new byte[FrameEncoder.PENALTY_LENGTH];
+        b[2] = digit(1, 1);
+        b[3] = digit(10, seconds);
+        b[4] = digit(1, seconds);
+        b[19] = digit(10, 17, FrameEncoder.BLANK);
+        b[20] = digit(1, 17);
+        bh.consume(b);
+    }
+
+    // The division-based packing this replaced
+    private static byte digit(int place, int i, byte zeroValue) {
+        int value = (i / place) % 10;
+        return value == 0 ? zeroValue : (byte) (value | value << 4);
+    }
+
+    private static byte digit(int place, int i) {
+        return digit(place, i, (byte) 0);
+    }
+}
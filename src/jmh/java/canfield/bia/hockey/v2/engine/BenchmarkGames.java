@@ -0,0 +1,54 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.spec.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic engine fixtures for the benchmarks: a game in play with goals spread over both teams and
+ * several penalties running, the way the state looks late in a high-scoring adult league game.
+ */
+public final class BenchmarkGames {
+
+    public static final long START_MILLIS = 1_000_000L;
+
+    private BenchmarkGames() {
+    }
+
+    /** An engine with no hardware, a no-op timer and no state change consumer. */
+    public static GameEngine newEngine() {
+        return new GameEngine(new JsonTemplateRepository(), state -> {}, new GameTimer() {
+            @Override
+            public void start(Runnable tickCallback) {}
+
+            @Override
+            public void stop() {}
+        }, (oldState, newState) -> {});
+    }
+
+    /**
+     * Creates a game and plays it to a running clock with {@code goals} goals (alternating teams, two
+     * assists each), 30 shots a side and {@code penaltiesPerTeam} running penalties on each team.
+     */
+    public static GameEngine inPlay(int goals, int penaltiesPerTeam) {
+        GameEngine engine = newEngine();
+        long now = START_MILLIS;
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now);
+        engine.processCommand(new SetPeriodCommand(2), now);
+        for (int i = 0; i < goals; i++) {
+            String team = i % 2 == 0 ? "home" : "away";
+            engine.processCommand(new AddGoalCommand(team, 2 + i % 30, List.of(3 + i % 20, 5 + i % 17), i % 11 == 0), now);
+        }
+        for (int i = 0; i < 30; i++) {
+            engine.processCommand(new AddShotCommand("home"), now);
+            engine.processCommand(new AddShotCommand("away"), now);
+        }
+        engine.processCommand(new StartClockCommand(), now);
+        for (int i = 0; i < penaltiesPerTeam; i++) {
+            engine.processCommand(new AddPenaltyCommand("home", 10 + i, 10 + i, 2 + 2 * (i % 2)), now);
+            engine.processCommand(new AddPenaltyCommand("away", 20 + i, 20 + i, 2 + 3 * (i % 2)), now);
+        }
+        return engine;
+    }
+}
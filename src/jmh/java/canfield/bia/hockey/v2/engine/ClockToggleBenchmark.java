@@ -0,0 +1,73 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.TimingWheel;
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * START_CLOCK followed by PAUSE_CLOCK on a real {@link ScheduledGameTimer}, paced at 1000 toggles a second,
+ * far beyond what a stop-time game does, to show what arming and disarming the timer costs under stress.
+ * <p>
+ * {@code toggle} runs the pair through the engine, where the timer only adds and cancels a timeout on the
+ * shared {@link TimingWheel}. {@code executorPerToggle} is what the timer used to do for each pair: create a
+ * single-thread scheduled executor, schedule the 100ms tick and shut the executor down again. The pacing
+ * wait is in an invocation-level setup, so it is not part of the sampled time.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=ClockToggleBenchmark}; compare the p0.99 and p0.999 sample times.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClockToggleBenchmark {
+
+    private static final long TOGGLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 1000;
+
+    private final Command start = new StartClockCommand();
+    private final Command pause = new PauseClockCommand();
+    private GameEngine engine;
+    private long nextToggleNanos;
+
+    @Setup
+    public void setUp() {
+        engine = new GameEngine(new JsonTemplateRepository(), state -> {}, new ScheduledGameTimer(), (oldState, newState) -> {});
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), BenchmarkGames.START_MILLIS);
+        engine.processCommand(new SetPeriodCommand(1), BenchmarkGames.START_MILLIS);
+        nextToggleNanos = System.nanoTime();
+    }
+
+    @Setup(Level.Invocation)
+    public void pace() {
+        nextToggleNanos += TOGGLE_INTERVAL_NANOS;
+        long wait = nextToggleNanos - System.nanoTime();
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        } else {
+            nextToggleNanos = System.nanoTime(); // Fell behind; do not make up the backlog in a burst
+        }
+    }
+
+    @Benchmark
+    public GameState toggle() {
+        long now = engine.getTimeSource().currentTimeMillis();
+        engine.processCommand(start, now);
+        return engine.processCommand(pause, now);
+    }
+
+    @Benchmark
+    public boolean executorPerToggle() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(() -> {}, 0, 100, TimeUnit.MILLISECONDS);
+        scheduler.shutdownNow();
+        return scheduler.isShutdown();
+    }
+}
@@ -0,0 +1,73 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GameEngine#processCommand} on a game in play.
+ * <p>
+ * {@code tick} is what the timer does on every displayed second. Its timestamp steps forward 1 ms per call
+ * and wraps every 1000 calls, so the clock and penalties oscillate around the same values instead of
+ * running out mid-measurement. {@code goalAddRemove} adds a goal and removes it again, so the list
+ * keeps its size.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=GameEngineBenchmark}; allocation per op is in gc.alloc.rate.norm.
+ * {@code tick} with 2 penalties a team is the 4-running-penalty case: it allocates the clock,
+ * the game state, both teams, the changed penalties and one array per team, and shares the goals and history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameEngineBenchmark {
+
+    @Param({"4", "36"})
+    public int goals;
+
+    @Param({"0", "2", "3"})
+    public int penaltiesPerTeam;
+
+    private final Command tick = new TickCommand();
+    private final Command shot = new AddShotCommand("home");
+    private final Command undoShot = new UndoLastShotCommand("home");
+    private final Command goal = new AddGoalCommand("away", 91, List.of(8, 44), false);
+    private GameEngine engine;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        engine = BenchmarkGames.inPlay(goals, penaltiesPerTeam);
+    }
+
+    private long now() {
+        step = (step + 1) % 1000;
+        return BenchmarkGames.START_MILLIS + step;
+    }
+
+    @Benchmark
+    public GameState tick() {
+        return engine.processCommand(tick, now());
+    }
+
+    @Benchmark
+    public GameState shotAndUndo() {
+        long now = now();
+        engine.processCommand(shot, now);
+        return engine.processCommand(undoShot, now);
+    }
+
+    @Benchmark
+    public GameState goalAddRemove() {
+        long now = now();
+        GameState state = engine.processCommand(goal, now);
+        List<?> awayGoals = state.away().goals();
+        String goalId = state.away().goals().get(awayGoals.size() - 1).goalId();
+        return engine.processCommand(new RemoveGoalCommand(goalId), now);
+    }
+}
@@ -0,0 +1,45 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.scoreboard.ScoreBoardImpl;
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.TickCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LegacyScoreboardHardwareAdapter#update} on every tick: copying the v2 state into the legacy
+ * scoreboard model the serial frames are built from. The frame encoding itself is in
+ * {@code FrameEncoderBenchmark}.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=HardwareOutput}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HardwareOutputBenchmark {
+
+    @Param({"0", "3"})
+    public int penaltiesPerTeam;
+
+    private final LegacyScoreboardHardwareAdapter adapter = new LegacyScoreboardHardwareAdapter(new ScoreBoardImpl());
+    private final GameState[] states = new GameState[2];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        GameEngine engine = BenchmarkGames.inPlay(36, penaltiesPerTeam);
+        // Two consecutive ticks, alternated so every update changes the clock
+        states[0] = engine.processCommand(new TickCommand(), BenchmarkGames.START_MILLIS + 100);
+        states[1] = engine.processCommand(new TickCommand(), BenchmarkGames.START_MILLIS + 1_100);
+    }
+
+    @Benchmark
+    public void update() {
+        adapter.update(states[next]);
+        next ^= 1;
+    }
+}
@@ -0,0 +1,66 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.spec.AddShotCommand;
+import canfield.bia.hockey.v2.spec.Command;
+import canfield.bia.hockey.v2.spec.TickCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable commands per second through {@link CommandJournal} under each fsync policy.
+ * {@code commitEach} commits after every command, like a lone operator click; {@code groupCommit}
+ * appends a batch of 16 and commits once, like the engine loop draining a burst. Scores are per command.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=Journal}. ALWAYS numbers depend entirely on the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int BATCH = 16;
+
+    @Param({"ALWAYS", "INTERVAL", "NEVER"})
+    public CommandJournal.FsyncPolicy fsync;
+
+    private final Command tick = new TickCommand();
+    private final Command shot = new AddShotCommand("home");
+    private Path file;
+    private CommandJournal journal;
+    private long now = 1_000_000L;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        file = Files.createTempFile("journal-bench", ".bin");
+        journal = CommandJournal.open(file, fsync, 200);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        journal.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void commitEach() throws IOException {
+        journal.append(tick, now++, List.of());
+        journal.commit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void groupCommit() throws IOException {
+        for (int i = 0; i < BATCH; i++) {
+            journal.append((i & 3) == 0 ? shot : tick, now++, List.of());
+        }
+        journal.commit();
+    }
+}
@@ -0,0 +1,68 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.AddGoalCommand;
+import canfield.bia.hockey.v2.spec.AddPenaltyCommand;
+import canfield.bia.hockey.v2.spec.TickCommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StateDiffer#diff} for the transitions clients see most: a clock tick (with penalties
+ * counting down), a goal, a new penalty, and no change at all.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=StateDiffer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateDifferBenchmark {
+
+    @Param({"4", "36"})
+    public int goals;
+
+    @Param({"0", "3"})
+    public int penaltiesPerTeam;
+
+    private final StateDiffer differ = new StateDiffer();
+    private GameState before;
+    private GameState afterTick;
+    private GameState afterGoal;
+    private GameState afterPenalty;
+
+    @Setup
+    public void setUp() {
+        GameEngine engine = BenchmarkGames.inPlay(goals, penaltiesPerTeam);
+        long now = BenchmarkGames.START_MILLIS + 100;
+        before = engine.processCommand(new TickCommand(), now);
+        afterTick = engine.processCommand(new TickCommand(), now + 100);
+        afterGoal = engine.processCommand(new AddGoalCommand("home", 19, List.of(7), false), now + 100);
+        afterPenalty = engine.processCommand(new AddPenaltyCommand("away", 4, 4, 2), now + 100);
+    }
+
+    @Benchmark
+    public Map<String, Object> tick() {
+        return differ.diff(before, afterTick);
+    }
+
+    @Benchmark
+    public Map<String, Object> goal() {
+        return differ.diff(afterTick, afterGoal);
+    }
+
+    @Benchmark
+    public Map<String, Object> penalty() {
+        return differ.diff(afterGoal, afterPenalty);
+    }
+
+    @Benchmark
+    public Map<String, Object> unchanged() {
+        return differ.diff(afterTick, afterTick);
+    }
+}
@@ -0,0 +1,100 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.engine.GameEngine;
+import canfield.bia.hockey.v2.engine.GameTimer;
+import canfield.bia.hockey.v2.engine.JsonTemplateRepository;
+import canfield.bia.hockey.v2.engine.StateDiffer;
+import canfield.bia.hockey.v2.spec.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of fanning one STATE_PATCH out to N clients.
+ * {@code perClientSend} mirrors {@code WebSocket.send(String)} per client (UTF-8 encode and frame every time);
+ * {@code sharedPayload} is what GameWebSocketV2 does now: serialize once and wrap the same bytes in each client's frame.
+ * {@code binaryPayload} is the same for clients on the binary subprotocol, with a {@link StatePatchCodec} patch.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=Broadcast}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    public int clients;
+
+    /** clock: a running-clock tick; penalty: a tick plus a new penalty list. */
+    @Param({"clock", "penalty"})
+    public String patchKind;
+
+    private final Draft_6455 draft = new Draft_6455();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private GameWebSocketV2 server;
+    private final StatePatchCodec patchCodec = new StatePatchCodec();
+    private Map<String, Object> patch;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), state -> {}, new GameTimer() {
+            @Override
+            public void start(Runnable tickCallback) {}
+
+            @Override
+            public void stop() {}
+        }, (oldState, newState) -> {});
+        long now = 1_000_000L;
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now);
+        engine.processCommand(new AddGoalCommand("home", 9, List.of(12, 4), false), now);
+        engine.processCommand(new AddPenaltyCommand("away", 17, 17, 2), now);
+        engine.processCommand(new StartClockCommand(), now);
+        GameState before = engine.getCurrentState();
+        if ("penalty".equals(patchKind)) {
+            engine.processCommand(new AddPenaltyCommand("home", 22, 22, 2), now + 100);
+        }
+        GameState after = engine.processCommand(new TickCommand(), now + 100);
+        patch = new StateDiffer().diff(before, after);
+        server = new GameWebSocketV2(0, new StateDiffer());
+    }
+
+    @Benchmark
+    public void perClientSend(Blackhole bh) throws Exception {
+        String json = objectMapper.writeValueAsString(Map.of("type", "STATE_PATCH", "data", patch));
+        for (int i = 0; i < clients; i++) {
+            for (Framedata frame : draft.createFrames(json, false)) {
+                bh.consume(draft.createBinaryFrame(frame));
+            }
+        }
+    }
+
+    @Benchmark
+    public void sharedPayload(Blackhole bh) throws Exception {
+        byte[] payload = server.encode("STATE_PATCH", patch);
+        for (int i = 0; i < clients; i++) {
+            ByteBuffer wire = draft.createBinaryFrame(GameWebSocketV2.textFrame(payload));
+            bh.consume(wire);
+        }
+    }
+
+    @Benchmark
+    public void binaryPayload(Blackhole bh) {
+        byte[] payload = patchCodec.encode(++sequence, patch);
+        for (int i = 0; i < clients; i++) {
+            ByteBuffer wire = draft.createBinaryFrame(GameWebSocketV2.binaryFrame(payload));
+            bh.consume(wire);
+        }
+    }
+}
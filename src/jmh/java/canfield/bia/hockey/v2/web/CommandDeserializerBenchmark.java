@@ -0,0 +1,100 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.spec.*;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing an operator command the way {@link GameWebSocketV2#onMessage} does:
+ * {@code objectMapper.readValue(message, Command.class)}. {@code streaming} goes through
+ * {@link CommandDeserializer}; {@code tree} is the readTree + treeToValue deserializer it replaced,
+ * which parses the payload twice and allocates a full JsonNode tree. {@code binary} is the same command
+ * arriving as a {@link CommandCodec} frame on the binary subprotocol.
+ * <p>
+ * Run with {@code ./gradlew jmh -PjmhIncludes=CommandDeserializer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDeserializerBenchmark {
+
+    @Param({"ADD_GOAL", "ADD_PENALTY", "START_CLOCK", "CREATE_GAME"})
+    public String command;
+
+    private ObjectMapper streamingMapper;
+    private ObjectMapper treeMapper;
+    private String message;
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        streamingMapper = mapperWith(new CommandDeserializer());
+        treeMapper = mapperWith(new TreeCommandDeserializer());
+        message = switch (command) {
+            case "ADD_GOAL" -> "{\"type\":\"COMMAND\",\"command\":\"ADD_GOAL\",\"payload\":"
+                + "{\"teamId\":\"home\",\"scorerNumber\":17,\"assistNumbers\":[9,22],\"isEmptyNet\":false}}";
+            case "ADD_PENALTY" -> "{\"type\":\"COMMAND\",\"command\":\"ADD_PENALTY\",\"payload\":"
+                + "{\"teamId\":\"away\",\"playerNumber\":4,\"servingPlayerNumber\":4,\"durationMinutes\":2}}";
+            case "START_CLOCK" -> "{\"type\":\"COMMAND\",\"command\":\"START_CLOCK\",\"payload\":{}}";
+            case "CREATE_GAME" -> "{\"type\":\"COMMAND\",\"command\":\"CREATE_GAME\",\"payload\":"
+                + "{\"templateId\":\"USAH_ADULT_20\",\"overrides\":{\"periodLengthMinutes\":15,\"shiftLengthSeconds\":90}}}";
+            default -> throw new IllegalArgumentException(command);
+        };
+        ByteBuffer encoded = ByteBuffer.allocate(256);
+        CommandCodec.encode(streamingMapper.readValue(message, Command.class), encoded);
+        frame = encoded.flip().asReadOnlyBuffer();
+    }
+
+    private static ObjectMapper mapperWith(JsonDeserializer<Command> deserializer) {
+        ObjectMapper mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(Command.class, deserializer);
+        mapper.registerModule(module);
+        return mapper;
+    }
+
+    @Benchmark
+    public Command streaming() throws IOException {
+        return streamingMapper.readValue(message, Command.class);
+    }
+
+    @Benchmark
+    public Command tree() throws IOException {
+        return treeMapper.readValue(message, Command.class);
+    }
+
+    @Benchmark
+    public Command binary() {
+        return CommandCodec.decode(frame.duplicate());
+    }
+
+    /** The tree-based deserializer, kept as the baseline. */
+    static class TreeCommandDeserializer extends JsonDeserializer<Command> {
+        @Override
+        public Command deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            ObjectMapper mapper = (ObjectMapper) p.getCodec();
+            JsonNode node = mapper.readTree(p);
+            String commandType = node.get("command").asText();
+            JsonNode payloadNode = node.get("payload");
+            return switch (commandType) {
+                case "CREATE_GAME" -> mapper.treeToValue(payloadNode, CreateGameCommand.class);
+                case "START_CLOCK" -> mapper.treeToValue(payloadNode, StartClockCommand.class);
+                case "ADD_PENALTY" -> mapper.treeToValue(payloadNode, AddPenaltyCommand.class);
+                case "ADD_GOAL" -> mapper.treeToValue(payloadNode, AddGoalCommand.class);
+                default -> throw new IllegalArgumentException("Not benchmarked: " + commandType);
+            };
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.HockeyGameServer;
+import canfield.bia.hockey.v2.engine.*;
+import canfield.bia.hockey.v2.spec.CreateGameCommand;
+import canfield.bia.hockey.v2.spec.SetPeriodCommand;
+import canfield.bia.hockey.v2.spec.StartClockCommand;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Platform threads and resident memory of the server with each WebSocket transport, while 50 clients watch a
+ * running clock: {@code java-websocket}, GameWebSocketV2 on its own port next to the Jetty file server, or
+ * {@code jetty}, both on one Jetty server with virtual threads. Not a JMH benchmark; it lives here with the
+ * other measurements.
+ * <p>
+ * Run with {@code ./gradlew transportFootprint -Ptransport=jetty} (ports 8080 and 8082 must be free). The
+ * clients run in a child JVM so their threads are not counted. RSS is read from /proc and is only reported on Linux.
+ */
+public class TransportFootprint {
+
+    private static final int CLIENTS = 50;
+    private static final long SETTLE_SECONDS = 15;
+    private static final int SAMPLES = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("clients")) {
+            runClients(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        String transport = args.length > 0 ? args[0] : "java-websocket";
+        boolean jetty = transport.equals("jetty");
+
+        GameWebSocketV2 webSocket = new GameWebSocketV2(8082, new StateDiffer());
+        GameRegistry registry = new GameRegistry();
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), state -> {}, new ScheduledGameTimer(),
+            (oldState, newState) -> webSocket.broadcastStateChange(GameRegistry.DEFAULT_RINK_ID, oldState, newState));
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), engine.getTimeSource().currentTimeMillis());
+        engine.processCommand(new SetPeriodCommand(1), engine.getTimeSource().currentTimeMillis());
+        registry.register(GameRegistry.DEFAULT_RINK_ID, engine);
+        webSocket.setGameRegistry(registry);
+        registry.start();
+
+        HockeyGameServer http;
+        if (jetty) {
+            http = new HockeyGameServer(webSocket, 8082);
+        } else {
+            webSocket.setReuseAddr(true); // Back-to-back runs would otherwise find 8082 in TIME_WAIT
+            webSocket.start();
+            http = new HockeyGameServer();
+        }
+        http.start();
+        report(transport, "idle");
+
+        Process clients = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Xmx64m", "-cp", System.getProperty("java.class.path"), TransportFootprint.class.getName(),
+            "clients", "8082", Integer.toString(CLIENTS))
+            .inheritIO()
+            .start();
+        engine.submit(new StartClockCommand());
+        try {
+            TimeUnit.SECONDS.sleep(SETTLE_SECONDS);
+            for (int i = 0; i < SAMPLES; i++) {
+                report(transport, CLIENTS + " clients");
+                TimeUnit.SECONDS.sleep(2);
+            }
+        } finally {
+            clients.destroy();
+            http.stop();
+            webSocket.stop();
+            registry.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void report(String transport, String load) throws IOException {
+        Map<String, Integer> byName = new TreeMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            byName.merge(thread.getName().replaceAll("[-_]?\\d+$", ""), 1, Integer::sum);
+        }
+        System.out.printf("%s, %s: %d platform threads (peak %d), RSS %s%n  %s%n", transport, load,
+            ManagementFactory.getThreadMXBean().getThreadCount(), ManagementFactory.getThreadMXBean().getPeakThreadCount(),
+            rss(), byName);
+    }
+
+    private static String rss() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) {
+            return "n/a";
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return line.substring("VmRSS:".length()).trim();
+            }
+        }
+        return "n/a";
+    }
+
+    private static void runClients(int port, int count) throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        AtomicLong messages = new AtomicLong();
+        WebSocket.Listener listener = new WebSocket.Listener() {
+            @Override
+            public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                messages.incrementAndGet();
+                return WebSocket.Listener.super.onText(webSocket, data, last);
+            }
+        };
+        List<WebSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            sockets.add(http.newWebSocketBuilder().buildAsync(URI.create("ws://localhost:" + port + "/"), listener).join());
+        }
+        System.out.printf("%d clients connected%n", sockets.size());
+        while (true) {
+            TimeUnit.SECONDS.sleep(5);
+            System.out.printf("clients received %d messages%n", messages.get());
+        }
+    }
+}
@@ -1,23 +1,52 @@
 package canfield.bia;
 
+import canfield.bia.hockey.v2.web.GameWebSocketV2;
+import canfield.bia.hockey.v2.web.JettyWebSocketTransport;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.DefaultHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executors;
+
 /**
  * Jetty server that serves static files for the scoreboard UI.
  * The v2 architecture uses GameWebSocketV2 for all game state communication.
+ * <p>
+ * Given the game's WebSocket server, it also carries the WebSocket clients, on 8080 and on 8082 where they
+ * connect today, and GameWebSocketV2 opens no port of its own. Requests are then handled on virtual threads;
+ * only Jetty's acceptors and selectors, one of each per port, stay on a small pool of platform threads.
  */
 public class HockeyGameServer {
     private static final Logger log = LoggerFactory.getLogger(HockeyGameServer.class);
 
+    private static final int HTTP_PORT = 8080;
+    private static final int MAX_PLATFORM_THREADS = 8;
+    private static final int MIN_PLATFORM_THREADS = 4;
+
+    private final GameWebSocketV2 webSocket;
+    private final int webSocketPort;
     private Server server = null;
 
     public HockeyGameServer() {
+        this(null, 0);
+    }
+
+    /**
+     * @param webSocket the game's WebSocket server, served through Jetty rather than on its own
+     * @param webSocketPort the port WebSocket clients connect to besides 8080
+     */
+    public HockeyGameServer(GameWebSocketV2 webSocket, int webSocketPort) {
+        this.webSocket = webSocket;
+        this.webSocketPort = webSocketPort;
     }
 
     public void start() {
@@ -39,7 +68,11 @@ public class HockeyGameServer {
     }
 
     private void startServer() {
-        server = new Server(8080);
+        if (webSocket != null) {
+            startCombinedServer();
+            return;
+        }
+        server = new Server(HTTP_PORT);
 
         final ResourceHandler fileHandler = new ResourceHandler();
         fileHandler.setDirectoriesListed(true);
@@ -60,4 +93,38 @@ public class HockeyGameServer {
             throw new RuntimeException("Failed to start service.", e);
         }
     }
+
+    private void startCombinedServer() {
+        QueuedThreadPool threads = new QueuedThreadPool(MAX_PLATFORM_THREADS, MIN_PLATFORM_THREADS);
+        threads.setName("jetty");
+        threads.setReservedThreads(0);
+        threads.setVirtualThreadsExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jetty-vt-", 0).factory()));
+        server = new Server(threads);
+        for (int port : new int[]{HTTP_PORT, webSocketPort}) {
+            ServerConnector connector = new ServerConnector(server, 1, 1);
+            connector.setPort(port);
+            server.addConnector(connector);
+        }
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath("/");
+        // Serve from web-generated (TypeScript build output) by default
+        context.setResourceBase(System.getProperty("RESOURCE_BASE", "web-generated"));
+        context.setWelcomeFiles(new String[]{"index.html"});
+        ServletHolder files = new ServletHolder("default", DefaultServlet.class);
+        files.setInitParameter("dirAllowed", "true");
+        context.addServlet(files, "/");
+        JettyWebSocketTransport.install(context, webSocket);
+        server.setHandler(context);
+
+        try {
+            server.setStopAtShutdown(true);
+            server.start();
+            webSocket.startFlushing();
+            log.info("Server waiting for requests on http://localhost:{}/ and WebSocket clients on ports {} and {}",
+                    HTTP_PORT, HTTP_PORT, webSocketPort);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to start service.", e);
+        }
+    }
 }
@@ -13,7 +13,11 @@ import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *
@@ -21,6 +25,7 @@ import java.util.Collections;
 public class ServiceMain {
     private static HockeyGameServer hockeyGameServer;
     private static GameWebSocketV2 gameWebSocketV2; // New WebSocket server
+    private static GameRegistry gameRegistry; // The rinks, each with its own engine loop, journal and snapshots
     private static final Logger log = LoggerFactory.getLogger(ServiceMain.class);
     private static volatile JFrame startupFrame;
 
@@ -36,32 +41,31 @@ public class ServiceMain {
                 // --- New Architecture Components Initialization ---
                 JsonTemplateRepository templateRepository = new JsonTemplateRepository();
                 
-                // Legacy ScoreBoard and Adapter
-                ScoreBoardImpl legacyScoreBoard = new ScoreBoardImpl();
-                ScoreboardAdapterImpl legacyScoreboardAdapter = new ScoreboardAdapterImpl(legacyScoreBoard, "COM1"); // Default port, can be configured
-                legacyScoreboardAdapter.start(); // Start the legacy adapter
-
-                LegacyScoreboardHardwareAdapter hardwareOutputAdapter = new LegacyScoreboardHardwareAdapter(legacyScoreBoard);
-                ScheduledGameTimer gameTimer = new ScheduledGameTimer();
                 StateDiffer stateDiffer = new StateDiffer();
 
-                // Initialize GameWebSocketV2 first, so we can pass its broadcast method to GameEngine
+                // Initialize GameWebSocketV2 first, so we can pass its broadcast method to each GameEngine
                 gameWebSocketV2 = new GameWebSocketV2(8082, stateDiffer); // Port 8082 for new WebSocket
-                
-                // GameEngine now takes a consumer for state changes
-                GameEngine gameEngine = new GameEngine(templateRepository, hardwareOutputAdapter, gameTimer, (oldState, newState) -> gameWebSocketV2.broadcastStateChange(oldState, newState));
-                gameWebSocketV2.setGameEngine(gameEngine); // Set GameEngine in GameWebSocketV2 after it's fully constructed
+                // Clients that interpolate the clock get an anchor this often instead of every tick
+                gameWebSocketV2.setClockCorrectionMillis(
+                        Long.getLong("scoreboard.ws.clockCorrectionMillis", GameWebSocketV2.DEFAULT_CLOCK_CORRECTION_MILLIS));
 
-                try {
-                    gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", Collections.emptyMap()), System.currentTimeMillis());
-                } catch (Exception e) {
-                    log.warn("Failed to initialize default game state", e);
+                gameRegistry = new GameRegistry();
+                for (Map.Entry<String, String> rink : rinkPorts().entrySet()) {
+                    addRink(rink.getKey(), rink.getValue(), templateRepository);
                 }
+                gameWebSocketV2.setGameRegistry(gameRegistry);
 
-                gameWebSocketV2.start();
+                // From here on every command (WebSocket, timer ticks, buzzer reset) is applied on its rink's loop thread
+                gameRegistry.start();
+
+                // -Dscoreboard.transport=jetty carries the WebSocket clients on the HTTP server, on virtual threads
+                boolean jettyTransport = "jetty".equalsIgnoreCase(System.getProperty("scoreboard.transport"));
+                if (!jettyTransport) {
+                    gameWebSocketV2.start();
+                }
                 // --- End New Architecture Components Initialization ---
 
-                hockeyGameServer = new HockeyGameServer();
+                hockeyGameServer = jettyTransport ? new HockeyGameServer(gameWebSocketV2, 8082) : new HockeyGameServer();
                 addShutdownHook();
                 try {
                     hockeyGameServer.start();
@@ -87,6 +91,7 @@ public class ServiceMain {
                 if (gameWebSocketV2 != null) { // Stop new WebSocket server
                     try { gameWebSocketV2.stop(); } catch (InterruptedException e) { log.error("Error stopping new WebSocket server", e); }
                 }
+                stopRinks();
                 if (startupFrame != null) {
                     try { startupFrame.dispose(); } catch (Exception ignored) {}
                     startupFrame = null;
@@ -204,6 +209,140 @@ public class ServiceMain {
         }
     }
 
+    /**
+     * The rinks to run and the serial port of each: -Dscoreboard.rinks=1=COM1,2=COM4 (default 1=COM1).
+     * Clients watch rink 2 at ws://host:8082/rink/2; the first rink is also served on every other path.
+     */
+    private static Map<String, String> rinkPorts() {
+        Map<String, String> ports = new LinkedHashMap<>();
+        for (String rink : System.getProperty("scoreboard.rinks", GameRegistry.DEFAULT_RINK_ID + "=COM1").split(",")) {
+            String[] idAndPort = rink.trim().split("=", 2);
+            if (idAndPort.length != 2 || idAndPort[0].isBlank() || idAndPort[1].isBlank()) {
+                log.error("Ignoring rink '{}'; expected <id>=<serial port>", rink);
+                continue;
+            }
+            ports.put(idAndPort[0].trim(), idAndPort[1].trim());
+        }
+        return ports;
+    }
+
+    /**
+     * Builds one rink: its legacy scoreboard on {@code port}, timer and engine, recovered from its own journal
+     * and snapshots, and registers it; a rink that fails to start is logged and left out.
+     */
+    private static void addRink(String rinkId, String port, JsonTemplateRepository templateRepository) {
+        GameRegistry.Rink rink;
+        GameEngine gameEngine;
+        try {
+            // Legacy ScoreBoard and Adapter
+            ScoreBoardImpl legacyScoreBoard = new ScoreBoardImpl();
+            ScoreboardAdapterImpl legacyScoreboardAdapter = new ScoreboardAdapterImpl(legacyScoreBoard, port);
+            // Serial frames follow engine updates; -Dscoreboard.output=POLLING restores the 60 Hz polling
+            legacyScoreboardAdapter.setOutputMode(ScoreboardAdapterImpl.OutputMode.valueOf(
+                    System.getProperty("scoreboard.output", ScoreboardAdapterImpl.OutputMode.ON_CHANGE.name())));
+            legacyScoreboardAdapter.setKeepAliveMillis(
+                    Long.getLong("scoreboard.keepAliveMillis", ScoreboardAdapterImpl.DEFAULT_KEEP_ALIVE_MILLIS));
+
+            LegacyScoreboardHardwareAdapter hardwareOutputAdapter = new LegacyScoreboardHardwareAdapter(legacyScoreBoard, legacyScoreboardAdapter);
+            ScheduledGameTimer gameTimer = new ScheduledGameTimer();
+            // Each engine's changes go to the clients watching its rink
+            gameEngine = new GameEngine(templateRepository, hardwareOutputAdapter, gameTimer,
+                    (oldState, newState) -> gameWebSocketV2.broadcastStateChange(rinkId, oldState, newState));
+            rink = gameRegistry.register(rinkId, gameEngine);
+            legacyScoreboardAdapter.start(); // Start the legacy adapter
+            rink.closeOnStop(legacyScoreboardAdapter::stop);
+        } catch (Exception e) {
+            log.error("Failed to set up rink {} on {}", rinkId, port, e);
+            return;
+        }
+
+        CommandJournal commandJournal = openJournal(rinkId);
+        SnapshotStore snapshotStore = openSnapshotStore(rinkId);
+        if (commandJournal != null) rink.closeOnStop(commandJournal);
+        if (snapshotStore != null) rink.closeOnStop(snapshotStore);
+        // Set up on this thread; the rink's timers are held until gameRegistry.start() hands it to its loop
+        try {
+            gameEngine.recover(snapshotStore != null ? snapshotStore.loadLatest() : null, commandJournal);
+        } catch (Exception e) {
+            log.error("Failed to recover the previous game of rink {}", rinkId, e);
+            gameEngine.setJournal(commandJournal);
+        }
+        if (snapshotStore != null) {
+            gameEngine.setSnapshotStore(snapshotStore, Long.getLong("scoreboard.snapshot.intervalMillis", 5000));
+        }
+
+        if (gameEngine.getCurrentState().gameId() == null) {
+            try {
+                gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", Collections.emptyMap()), gameEngine.getTimeSource().currentTimeMillis());
+            } catch (Exception e) {
+                log.warn("Failed to initialize default game state of rink {}", rinkId, e);
+            }
+        }
+    }
+
+    private static Path dataDir() {
+        return Paths.get(System.getProperty("scoreboard.dataDir",
+                Paths.get(System.getProperty("user.dir"), "data").toString()));
+    }
+
+    /**
+     * Where a rink keeps its journal and snapshots: -Dscoreboard.dataDir for the default rink, a rink-<id>
+     * directory in it for the others.
+     */
+    private static Path rinkDir(String rinkId) {
+        return GameRegistry.DEFAULT_RINK_ID.equals(rinkId) ? dataDir() : dataDir().resolve("rink-" + rinkId);
+    }
+
+    /**
+     * Opens a rink's command journal: -Dscoreboard.journal (default game-journal.bin in -Dscoreboard.dataDir,
+     * only for the default rink), -Dscoreboard.journal.fsync=ALWAYS|INTERVAL|NEVER and
+     * -Dscoreboard.journal.fsyncMillis. Set -Dscoreboard.journal=off to run without one.
+     */
+    private static CommandJournal openJournal(String rinkId) {
+        String location = System.getProperty("scoreboard.journal");
+        if ("off".equalsIgnoreCase(location)) {
+            return null;
+        }
+        if (location == null || !GameRegistry.DEFAULT_RINK_ID.equals(rinkId)) {
+            location = rinkDir(rinkId).resolve("game-journal.bin").toString();
+        }
+        Path path = Paths.get(location);
+        try {
+            CommandJournal.FsyncPolicy fsync = CommandJournal.FsyncPolicy.valueOf(
+                    System.getProperty("scoreboard.journal.fsync", CommandJournal.FsyncPolicy.INTERVAL.name()));
+            return CommandJournal.open(path, fsync, Long.getLong("scoreboard.journal.fsyncMillis", 200));
+        } catch (Exception e) {
+            log.error("Unable to open command journal {}; games of rink {} will not survive a restart", path, rinkId, e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens a rink's snapshot store in its directory; -Dscoreboard.snapshot.intervalMillis sets how
+     * often a changing state is snapshotted. Set -Dscoreboard.snapshots=off to run without one.
+     */
+    private static SnapshotStore openSnapshotStore(String rinkId) {
+        if ("off".equalsIgnoreCase(System.getProperty("scoreboard.snapshots"))) {
+            return null;
+        }
+        Path dir = rinkDir(rinkId);
+        try {
+            return new SnapshotStore(dir);
+        } catch (Exception e) {
+            log.error("Unable to open snapshot store in {}", dir, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops every rink's engine loop, then closes its journal, snapshots and serial port.
+     */
+    private static synchronized void stopRinks() {
+        if (gameRegistry != null) {
+            gameRegistry.stop();
+        }
+    }
+
     private static void addShutdownHook() {
         try {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -213,6 +352,9 @@ public class ServiceMain {
                 try {
                     if (gameWebSocketV2 != null) gameWebSocketV2.stop(); // Stop new WebSocket server in shutdown hook
                 } catch (Exception ignored) {}
+                try {
+                    stopRinks();
+                } catch (Exception ignored) {}
                 try {
                     if (startupFrame != null) startupFrame.dispose();
                 } catch (Exception ignored) {}
@@ -0,0 +1,44 @@
+package canfield.bia.hockey;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link TimeSource} that counts with {@link System#nanoTime()} from a wall-clock reading taken once,
+ * when it is created. Readings look like epoch milliseconds, so they can still be logged, journaled and
+ * sent to clients as server time, but a later step of the wall clock does not move them.
+ * <p>
+ * Over a long uptime the readings drift from the wall clock by however much the wall clock was
+ * corrected in the meantime. Each process starts a fresh timeline, so readings from before a restart
+ * are only as comparable as the wall clock was.
+ */
+public final class MonotonicTimeSource implements TimeSource {
+
+    private static final MonotonicTimeSource SYSTEM = new MonotonicTimeSource(System::currentTimeMillis, System::nanoTime);
+
+    private final LongSupplier nanoTime;
+    private final long originNanos;
+    private final long originMillis;
+
+    /**
+     * @param wallClockMillis read once, for the starting point
+     * @param nanoTime monotonic nanoseconds, read on every call
+     */
+    public MonotonicTimeSource(LongSupplier wallClockMillis, LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        this.originNanos = nanoTime.getAsLong();
+        this.originMillis = wallClockMillis.getAsLong();
+    }
+
+    /**
+     * The process-wide source, started from the wall clock when this class was loaded.
+     */
+    public static MonotonicTimeSource system() {
+        return SYSTEM;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        // nanoTime may wrap, so only the difference is used
+        return originMillis + (nanoTime.getAsLong() - originNanos) / 1_000_000L;
+    }
+}
@@ -0,0 +1,19 @@
+package canfield.bia.hockey;
+
+/**
+ * Where the game clocks read the time.
+ * <p>
+ * A running clock's elapsed time is the difference between two readings, so the source must only move
+ * forward at a steady rate. {@link System#currentTimeMillis()} does not: it steps whenever NTP or a
+ * Windows time resync corrects the PC's clock, and a running game clock would step with it. Use
+ * {@link MonotonicTimeSource#system()} in production and a fake in tests; keep the wall clock for
+ * display and logging.
+ */
+@FunctionalInterface
+public interface TimeSource {
+
+    /**
+     * @return the current time in milliseconds; only differences between readings are meaningful
+     */
+    long currentTimeMillis();
+}
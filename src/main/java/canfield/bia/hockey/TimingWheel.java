@@ -0,0 +1,277 @@
+package canfield.bia.hockey;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel holding the scoreboard's deadlines: the game clock's next tick, which is due at the
+ * next penalty second or expiry, shift horn or period end, the buzzer turning off, and the legacy
+ * scoreboard loop. One long-lived thread serves them all, so arming and disarming a deadline never
+ * creates or stops a thread.
+ * <p>
+ * A deadline goes in the slot for its tick, modulo the wheel size, and stays there across rounds until
+ * it is due, so {@link #schedule} and {@link Timeout#cancel} are O(1) from any thread: they only queue
+ * the timeout for the worker thread, which links it into or out of its slot. The worker sleeps until
+ * the next occupied slot rather than waking every tick, and parks when the wheel is empty. Tasks run on
+ * the worker thread and should only hand work off, such as submitting a command or queueing a serial frame.
+ */
+public final class TimingWheel implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private static final class Shared {
+        static final TimingWheel INSTANCE = new TimingWheel("game-deadlines", 1, 1024);
+    }
+
+    private final long tickNanos;
+    private final Slot[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean closed;
+    private long tick; // Next tick to expire; worker thread only
+    private int size; // Timeouts linked into slots; worker thread only
+
+    /**
+     * @param tickMillis resolution; a deadline fires up to this late
+     * @param wheelSize slots, rounded up to a power of two; deadlines further out than one round wait in their slot
+     */
+    public TimingWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int slots = 1;
+        while (slots < wheelSize) {
+            slots <<= 1;
+        }
+        this.wheel = new Slot[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new Slot();
+        }
+        this.mask = slots - 1;
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * The wheel the engine, its timer and the scoreboard loop share: 1ms ticks, 1024 slots, one daemon thread.
+     */
+    public static TimingWheel shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Runs {@code task} on the wheel's thread once {@code delayMillis} have passed (at once if not positive).
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return add(task, delayMillis, 0);
+    }
+
+    /**
+     * Runs {@code task} on the wheel's thread every {@code periodMillis}, starting {@code initialDelayMillis}
+     * from now, until the returned timeout is cancelled. As with a fixed-rate executor, runs are due at whole
+     * periods from the first, and a late run does not push the later ones back.
+     */
+    public Timeout scheduleAtFixedRate(Runnable task, long initialDelayMillis, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis must be positive");
+        }
+        return add(task, initialDelayMillis, TimeUnit.MILLISECONDS.toNanos(periodMillis));
+    }
+
+    private Timeout add(Runnable task, long delayMillis, long periodNanos) {
+        if (closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task, System.nanoTime() - startNanos + delayNanos, periodNanos);
+        pending.add(timeout);
+        LockSupport.unpark(worker);
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    private void run() {
+        while (!closed) {
+            long now = (System.nanoTime() - startNanos) / tickNanos;
+            unlinkCancelled();
+            linkPending();
+            expire(now);
+            unlinkCancelled(); // Tasks may have cancelled timeouts still in the wheel
+            if (!pending.isEmpty()) {
+                continue;
+            }
+            long next = nextOccupiedTick();
+            if (next < 0) {
+                LockSupport.park(this);
+            } else {
+                long sleep = startNanos + next * tickNanos - System.nanoTime();
+                if (sleep > 0) {
+                    LockSupport.parkNanos(this, sleep);
+                }
+            }
+        }
+    }
+
+    private void linkPending() {
+        for (Timeout timeout; (timeout = pending.poll()) != null; ) {
+            if (timeout.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            // Ceiling, so a deadline never fires before its time; late ones go in the next slot to expire
+            long due = Math.max(tick, (timeout.deadlineNanos + tickNanos - 1) / tickNanos);
+            timeout.dueTick = due;
+            wheel[(int) (due & mask)].add(timeout);
+            size++;
+        }
+    }
+
+    private void unlinkCancelled() {
+        for (Timeout timeout; (timeout = cancelled.poll()) != null; ) {
+            if (timeout.slot != null) {
+                timeout.slot.remove(timeout);
+                size--;
+            }
+        }
+    }
+
+    /** Fires everything due by {@code now}, visiting each slot at most once. */
+    private void expire(long now) {
+        if (size == 0) {
+            tick = Math.max(tick, now + 1);
+            return;
+        }
+        long slots = Math.min(now - tick + 1, wheel.length);
+        for (long i = 0; i < slots; i++) {
+            Slot slot = wheel[(int) ((tick + i) & mask)];
+            for (Timeout timeout = slot.head; timeout != null; ) {
+                Timeout next = timeout.next;
+                if (timeout.dueTick <= now) {
+                    slot.remove(timeout);
+                    size--;
+                    timeout.expire();
+                }
+                timeout = next;
+            }
+        }
+        tick = Math.max(tick, now + 1);
+    }
+
+    /** The tick of the first occupied slot from {@link #tick}, or -1 if the wheel is empty. */
+    private long nextOccupiedTick() {
+        if (size == 0) {
+            return -1;
+        }
+        for (int i = 0; i < wheel.length; i++) {
+            if (wheel[(int) ((tick + i) & mask)].head != null) {
+                return tick + i;
+            }
+        }
+        return -1;
+    }
+
+    /** Doubly linked, so a cancelled timeout comes out in O(1). Worker thread only. */
+    private static final class Slot {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling a one-shot task after it has started has no effect; cancelling a
+     * repeating one stops the runs after the current one.
+     */
+    public final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long periodNanos; // 0 for a one-shot task
+        private long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long dueTick;
+        private Slot slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineNanos, long periodNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * @return true if the task will not run because of this call
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            LockSupport.unpark(worker);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private void expire() {
+            boolean repeating = periodNanos > 0;
+            if (repeating ? state.get() != WAITING : !state.compareAndSet(WAITING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Timing wheel task failed", e);
+            }
+            if (repeating && state.get() == WAITING) {
+                deadlineNanos += periodNanos;
+                pending.add(this); // Linked into its next slot before the worker sleeps
+            }
+        }
+    }
+}
@@ -25,10 +25,20 @@ public interface Clock {
 
   ClockTime getTime();
 
+  /**
+   * Exact time left in milliseconds; unlike {@link #getTime()} this does not allocate.
+   */
+  int getRemainingMillis();
+
   boolean hasExpired();
 
   void setTime(int minutes, int seconds);
 
+  /**
+   * Sets the time left to the millisecond, for callers that track sub-second time themselves.
+   */
+  void setRemainingMillis(int millis);
+
   class ClockTime {
     int minutes;
     int seconds;
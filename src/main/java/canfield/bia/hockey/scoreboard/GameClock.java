@@ -1,7 +1,11 @@
 package canfield.bia.hockey.scoreboard;
 
+import canfield.bia.hockey.MonotonicTimeSource;
+import canfield.bia.hockey.TimeSource;
+
 /**
  * A count-down clock that holds the time remaining and supports pause/resume without losing time fidelity.
+ * Elapsed time comes from a monotonic {@link TimeSource}, so setting the PC's clock does not move it.
  */
 public class GameClock implements Clock {
   /**
@@ -19,7 +23,14 @@ public class GameClock implements Clock {
    */
   private long clockStartMillis;
 
+  private final TimeSource timeSource;
+
   public GameClock(int minutes, int seconds) {
+    this(minutes, seconds, MonotonicTimeSource.system());
+  }
+
+  public GameClock(int minutes, int seconds, TimeSource timeSource) {
+    this.timeSource = timeSource;
     setTime(minutes, seconds);
   }
 
@@ -43,10 +54,11 @@ public class GameClock implements Clock {
     );
   }
 
-  private int getRemainingMillis() {
+  @Override
+  public int getRemainingMillis() {
     if (isRunning) {
       // Calculate based on time elapsed since last clock start
-      long now = System.currentTimeMillis();
+      long now = timeSource.currentTimeMillis();
       int elapsed = (int) (now - clockStartMillis);
       final int actualRemaining = timeRemainingMillis - elapsed;
       return Math.max(actualRemaining, 0);
@@ -62,13 +74,19 @@ public class GameClock implements Clock {
   @Override
   public void setTime(int minutes, int seconds) {
     timeRemainingMillis = minutes * 60 * 1000 + seconds * 1000;
-    clockStartMillis = System.currentTimeMillis();
+    clockStartMillis = timeSource.currentTimeMillis();
+  }
+
+  @Override
+  public void setRemainingMillis(int millis) {
+    timeRemainingMillis = Math.max(millis, 0);
+    clockStartMillis = timeSource.currentTimeMillis();
   }
 
 
   @Override
   public void start() {
-    clockStartMillis = System.currentTimeMillis();
+    clockStartMillis = timeSource.currentTimeMillis();
     isRunning = true;
   }
 
@@ -83,7 +101,7 @@ public class GameClock implements Clock {
 
     isRunning = false;
 
-    long now = System.currentTimeMillis();
+    long now = timeSource.currentTimeMillis();
     long elapsed = now - clockStartMillis;
     clockStartMillis = 0;
     // TODO fix this potential overflow
@@ -48,6 +48,12 @@ public interface ScoreBoard {
 
     void addListener(EventListener listener);
 
+    /**
+     * Starts or stops the 60 Hz loop that fires tick events and ends the period when the clock expires.
+     * Output that follows the engine's updates stops it, since the engine ends the periods.
+     */
+    void setTicking(boolean ticking);
+
     GameState getGameState();
 
     void setGameState(GameState state);
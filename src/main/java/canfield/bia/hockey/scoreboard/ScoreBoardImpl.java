@@ -1,14 +1,11 @@
 package canfield.bia.hockey.scoreboard;
 
 import canfield.bia.hockey.Penalty;
+import canfield.bia.hockey.TimingWheel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Scoreboard owns the state of the scoreboard.
@@ -37,15 +34,20 @@ public class ScoreBoardImpl implements ScoreBoard {
 
     private final List<EventListener> listeners = new ArrayList<>();
 
+    private final TimingWheel wheel;
+    private final Runnable gameLoop;
+    private TimingWheel.Timeout loop;
+
     public ScoreBoardImpl() {
-        ThreadFactory tf = r -> {
-            Thread t = new Thread(r, "scoreboard-loop");
-            t.setDaemon(true); // do not keep JVM alive on close
-            return t;
-        };
-        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(tf);
+        this(TimingWheel.shared());
+    }
 
-        final Runnable gameLoop = () -> {
+    /**
+     * @param wheel runs the scoreboard loop; the shared wheel's thread is a daemon, so it does not keep the JVM alive
+     */
+    public ScoreBoardImpl(TimingWheel wheel) {
+        this.wheel = wheel;
+        this.gameLoop = () -> {
             fire(tickEvent); // this drives the scoreboard serial adapter.
 
             if (gameClock.isRunning() && gameClock.hasExpired()) {
@@ -54,10 +56,18 @@ public class ScoreBoardImpl implements ScoreBoard {
             }
         };
 
-        // Run the loop 60 x per second
-        executorService.scheduleAtFixedRate(
-                gameLoop, 1000, 1000 / 60, TimeUnit.MILLISECONDS
-        );
+        setTicking(true);
+    }
+
+    @Override
+    public synchronized void setTicking(boolean ticking) {
+        if (ticking && loop == null) {
+            // Run the loop 60 x per second
+            loop = wheel.scheduleAtFixedRate(gameLoop, 1000, 1000 / 60);
+        } else if (!ticking && loop != null) {
+            loop.cancel();
+            loop = null;
+        }
     }
 
     @Override
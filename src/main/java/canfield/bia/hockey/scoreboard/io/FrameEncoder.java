@@ -0,0 +1,148 @@
+package canfield.bia.hockey.scoreboard.io;
+
+/**
+ * Encodes scoreboard serial frames into one preallocated buffer.
+ * <p>
+ * Each digit is sent as a byte with the value repeated in both nibbles (7 -> 0x77). The packed
+ * bytes for 0-99 are precomputed, so encoding is table lookups and array stores only; nothing is
+ * allocated per frame. The buffer is overwritten by the next encode call, so callers must write
+ * it out before encoding again.
+ * <p>
+ * Not thread-safe; each adapter owns its encoder.
+ */
+final class FrameEncoder {
+  static final byte START = 0x2E;
+  static final byte CLOCK_AND_SCORE = 0x78;
+  static final byte FAST_CLOCK = 0x79;
+  static final byte PENALTY_CLOCK = 0x7A;
+  static final byte PENALTY_PLAYER = 0x7E;
+  static final byte BLANK = (byte) 0xFF;
+
+  static final int CLOCK_AND_SCORE_LENGTH = 13;
+  static final int FAST_CLOCK_LENGTH = 6;
+  static final int SCORE_LENGTH = 6;
+  static final int PENALTY_LENGTH = 26;
+  static final int PENALTY_SLOTS = 4;
+
+  private static final byte[] ONES = new byte[100];
+  private static final byte[] TENS = new byte[100];
+
+  static {
+    for (int i = 0; i < 100; i++) {
+      ONES[i] = pack(i % 10);
+      TENS[i] = pack(i / 10);
+    }
+  }
+
+  private final byte[] buffer = new byte[PENALTY_LENGTH];
+
+  private static byte pack(int digit) {
+    return (byte) (digit | digit << 4);
+  }
+
+  private static int index(int value) {
+    return value < 0 ? 0 : value % 100;
+  }
+
+  /** Packed ones digit of {@code value}. */
+  static byte ones(int value) {
+    return ONES[index(value)];
+  }
+
+  /** Packed tens digit of {@code value}, or {@code zeroValue} when the tens digit is 0. */
+  static byte tens(int value, byte zeroValue) {
+    byte packed = TENS[index(value)];
+    return packed == 0 ? zeroValue : packed;
+  }
+
+  /** The buffer the last frame was encoded into. */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * 0x78 - score, game clock minutes and seconds, period and horn.
+   * @return the frame length
+   */
+  int clockAndScore(int homeScore, int awayScore, int minutes, int seconds, int period, boolean buzzer) {
+    byte[] b = buffer;
+    b[0] = START;
+    b[1] = CLOCK_AND_SCORE;
+    b[2] = tens(homeScore, BLANK);
+    b[3] = ones(homeScore);
+    b[4] = tens(awayScore, BLANK);
+    b[5] = ones(awayScore);
+    b[6] = tens(minutes, BLANK);
+    b[7] = ones(minutes);
+    b[8] = tens(seconds, (byte) 0);
+    b[9] = ones(seconds);
+    b[10] = ones(period);
+    b[11] = buzzer ? ones(5) : 0;
+    b[12] = 0;
+    return CLOCK_AND_SCORE_LENGTH;
+  }
+
+  /**
+   * 0x79 - seconds and tenths, used under a minute.
+   * @return the frame length
+   */
+  int fastClock(int seconds, int tenths) {
+    byte[] b = buffer;
+    b[0] = START;
+    b[1] = FAST_CLOCK;
+    b[2] = tens(seconds, BLANK);
+    b[3] = ones(seconds);
+    b[4] = ones(tenths);
+    b[5] = BLANK;
+    return FAST_CLOCK_LENGTH;
+  }
+
+  /**
+   * Short 0x78 carrying only the score, sent alongside 0x79.
+   * @return the frame length
+   */
+  int score(int homeScore, int awayScore) {
+    byte[] b = buffer;
+    b[0] = START;
+    b[1] = CLOCK_AND_SCORE;
+    b[2] = tens(homeScore, BLANK);
+    b[3] = ones(homeScore);
+    b[4] = tens(awayScore, BLANK);
+    b[5] = ones(awayScore);
+    return SCORE_LENGTH;
+  }
+
+  /**
+   * Starts a combined 0x7A (penalty clocks) + 0x7E (penalty player numbers) frame with every slot blank.
+   * Fill slots with {@link #penalty} and send {@link #PENALTY_LENGTH} bytes.
+   */
+  void clearPenalties() {
+    byte[] b = buffer;
+    b[0] = START;
+    b[1] = PENALTY_CLOCK;
+    for (int i = 2; i < 14; i++) {
+      b[i] = BLANK;
+    }
+    b[14] = BLANK;
+    b[15] = START;
+    b[16] = PENALTY_PLAYER;
+    for (int i = 17; i < 25; i++) {
+      b[i] = BLANK;
+    }
+    b[25] = BLANK;
+  }
+
+  /**
+   * Writes one penalty slot: home top, home bottom, away top, away bottom.
+   */
+  void penalty(int slot, int minutes, int seconds, int playerNumber) {
+    byte[] b = buffer;
+    int clock = 2 + slot * 3;
+    b[clock] = ones(minutes);
+    b[clock + 1] = tens(seconds, (byte) 0);
+    b[clock + 2] = ones(seconds);
+    int player = 17 + slot * 2;
+    b[player] = tens(playerNumber, BLANK);
+    b[player + 1] = ones(playerNumber);
+  }
+}
@@ -19,4 +19,10 @@ public interface ScoreboardAdapter {
   boolean isBuzzerOn();
 
   List<String> possiblePorts();
+
+  /**
+   * Called after the board state changed; sends whatever the display no longer matches.
+   * Only used in change-driven output, otherwise the adapter polls the board itself.
+   */
+  void refresh();
 }
@@ -1,6 +1,7 @@
 package canfield.bia.hockey.scoreboard.io;
 
 import canfield.bia.hockey.Penalty;
+import canfield.bia.hockey.TimingWheel;
 import canfield.bia.hockey.scoreboard.Clock;
 import canfield.bia.hockey.scoreboard.ScoreBoard;
 import canfield.bia.hockey.scoreboard.ScoreBoardImpl;
@@ -14,28 +15,47 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 public class ScoreboardAdapterImpl implements ScoreboardAdapter {
-  private static final byte ZERO_VALUE_EMPTY = (byte) 0xFF;
   private static final Logger log = LoggerFactory.getLogger(ScoreboardAdapterImpl.class);
-  private final PenaltyClockCmd penaltyClockCmd = new PenaltyClockCmd();
-  private final ScoreboardAdapterImpl.ClockAndScoreCmd clockAndScoreCmd = new ClockAndScoreCmd();
+  public static final long DEFAULT_KEEP_ALIVE_MILLIS = 1000;
 
-  private String portName;
-  private SerialPort serialPort;
+  /**
+   * What triggers a serial frame.
+   */
+  public enum OutputMode {
+    /** Every scoreboard tick re-reads the board and sends, rate limited per frame type. */
+    POLLING,
+    /** Frames are sent when {@link #refresh()} finds different digits, plus a periodic keep-alive. */
+    ON_CHANGE
+  }
 
-  private long buzzer_stops = 0;
-  private boolean running = false;
-  private long lastOpenAttempt = 0;
+  private final PenaltyClockCmd penaltyClockCmd = new PenaltyClockCmd();
+  private final ScoreboardAdapterImpl.ClockAndScoreCmd clockAndScoreCmd = new ClockAndScoreCmd();
+  private final ChangeDrivenOutput changeDrivenOutput = new ChangeDrivenOutput();
+  // Frames are encoded on the timing wheel's thread only: by the scoreboard loop, or by the change-driven output
+  private final FrameEncoder encoder = new FrameEncoder();
+
+  // Owns the port; frames are written and the port reopened off the scoreboard loop
+  private final SerialFrameWriter writer;
+  private final TimingWheel wheel;
+
+  private volatile long buzzer_stops = 0;
+  private volatile boolean running = false;
+  private volatile OutputMode outputMode = OutputMode.POLLING;
+  // The mode start() ran with, null while stopped; only one of the tick and the change-driven output writes frames
+  private volatile OutputMode activeMode;
+  private volatile long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+  private TimingWheel.Timeout keepAlive;
 
   private long lastSend = 0;
 
   private final ScoreBoard scoreBoard;
 
   public ScoreboardAdapterImpl(ScoreBoard scoreBoard, String portName) {
-    this.scoreBoard = scoreBoard;
-    this.portName = portName;
+    this(scoreBoard, new SerialFrameWriter(portName), TimingWheel.shared());
 
     // WORKAROUND: jSerialComm extracts a native library to java.io.tmpdir.
     // If the default tmpdir has execution restrictions, the library will fail to load,
@@ -47,17 +67,29 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
     }
     System.setProperty("java.io.tmpdir", projectTempDir.getAbsolutePath());
     System.setProperty("fazecast.jSerialComm.appid", "Scoreboard");
-
-    initListener(scoreBoard);
   }
 
-  private static byte digit(int place, int i, byte zeroValue) {
-    int value = (i / place) % 10;
-    return value == 0 ? zeroValue : (byte) (value |= value << 4);
+  /**
+   * @param wheel runs the change-driven output; the same wheel as the board's loop, so frames are encoded on one thread
+   */
+  ScoreboardAdapterImpl(ScoreBoard scoreBoard, SerialFrameWriter writer, TimingWheel wheel) {
+    this.scoreBoard = scoreBoard;
+    this.writer = writer;
+    this.wheel = wheel;
+    initListener(scoreBoard);
   }
 
-  private static byte digit(int offset, int value) {
-    return digit(offset, value, (byte) 0);
+  static byte digit(int place, int i, byte zeroValue) {
+    byte packed;
+    if (place == 1) {
+      packed = FrameEncoder.ones(i);
+    } else if (place == 10) {
+      packed = FrameEncoder.tens(i, (byte) 0);
+    } else {
+      int value = (i / place) % 10;
+      packed = (byte) (value | value << 4);
+    }
+    return packed == 0 ? zeroValue : packed;
   }
 
   @Override
@@ -67,33 +99,72 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
 
   @Override
   public String getPortName() {
-    return portName;
+    return writer.getPortName();
   }
 
   @Override
   public void setPortName(String portName) {
-    this.portName = portName;
+    writer.setPortName(portName);
   }
 
   @Override
-  public void start() {
+  public synchronized void start() {
     running = true;
-    // Connect to serial port and start
-    openPort();
+    activeMode = outputMode;
+    // The writer connects to the serial port when the first frame arrives
+    writer.start();
+    // Change-driven frames follow refresh(), so the board's 60 Hz ticks would go unused
+    scoreBoard.setTicking(activeMode == OutputMode.POLLING);
+    if (activeMode == OutputMode.ON_CHANGE && keepAlive == null) {
+      long checkMillis = Math.max(50, keepAliveMillis / 2);
+      keepAlive = wheel.scheduleAtFixedRate(changeDrivenOutput::keepAlive, 0, checkMillis);
+    }
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
     running = false;
-    closePort();
+    activeMode = null;
+    if (keepAlive != null) {
+      keepAlive.cancel();
+      keepAlive = null;
+    }
+    writer.stop();
   }
 
-  private void closePort() {
-    if (serialPort == null) {
-      return;
+  public OutputMode getOutputMode() {
+    return outputMode;
+  }
+
+  /**
+   * Takes effect on the next {@link #start()}; a running adapter keeps the mode it was started with.
+   */
+  public void setOutputMode(OutputMode outputMode) {
+    this.outputMode = outputMode;
+  }
+
+  public long getKeepAliveMillis() {
+    return keepAliveMillis;
+  }
+
+  /**
+   * In {@link OutputMode#ON_CHANGE}, how long the line may stay quiet before every frame is resent
+   * for the controller's watchdog. Takes effect on the next {@link #start()}.
+   */
+  public void setKeepAliveMillis(long keepAliveMillis) {
+    this.keepAliveMillis = keepAliveMillis;
+  }
+
+  @Override
+  public void refresh() {
+    if (activeMode == OutputMode.ON_CHANGE && changeDrivenOutput.refreshQueued.compareAndSet(false, true)) {
+      wheel.schedule(changeDrivenOutput::refresh, 0);
     }
-    serialPort.closePort();
-    serialPort = null;
+  }
+
+  /** Frames written, dropped and write latency, for diagnostics. */
+  SerialFrameWriter getFrameWriter() {
+    return writer;
   }
 
   @Override
@@ -113,7 +184,7 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
       final long now = System.currentTimeMillis();
       switch (event.getType()) {
         case tick:
-          if (!running) {
+          if (activeMode != OutputMode.POLLING) {
             return;
           }
 
@@ -123,73 +194,118 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
           break;
         case end_of_period:
           buzzer_stops = now + 3000;
+          scheduleRefreshAt(3000);
           break;
         case buzzer:
           // Is the buzzer already ringing?
           int lengthMillis = ((ScoreBoardImpl.BuzzerEvent) event).getLengthMillis();
           buzzer_stops = Math.max(buzzer_stops, now + lengthMillis);
+          scheduleRefreshAt(buzzer_stops - now);
           break;
       }
     });
   }
 
-  private void openPort() {
-    if (serialPort != null) {
-      return;
-    }
-    long now = System.currentTimeMillis();
-    if (now - lastOpenAttempt < 2 * 1000) {
-      return;
-    }
-    lastOpenAttempt = now;
-    log.trace("Attempt to open port {}", portName);
-
-    try {
-      serialPort = SerialPort.getCommPort(portName);
-      serialPort.openPort();
-    } catch (Exception e) {
-      log.warn("Failed to open port: {}", portName, e);
-      if (serialPort != null) {
-        serialPort.closePort();
-        serialPort = null;
-      }
-      return;
+  // In ON_CHANGE mode the horn flag is part of the clock frame; resend it when the horn stops
+  private void scheduleRefreshAt(long delayMillis) {
+    if (activeMode == OutputMode.ON_CHANGE) {
+      wheel.schedule(this::refresh, delayMillis + 1);
     }
-
-    log.debug("Port {} opened", portName);
   }
 
-  private void send(byte[] msg) {
+  private void send(byte[] msg, int length) {
     if (!running) {
       return;
     }
-    log(msg);
-    openPort();
-
-    if (serialPort != null) {
-      try {
-        serialPort.writeBytes(msg, msg.length);
-      } catch (Exception e) {
-        log.warn("Failed to write to serial port! {} - try to reconnect", portName);
-        serialPort.closePort();
-        serialPort = null;
-      }
-    }
+    log(msg, length);
+    writer.offer(msg, length);
   }
 
-  private void log(byte[] msg) {
+  private void log(byte[] msg, int length) {
     if (log.isTraceEnabled()) {
       long now = System.currentTimeMillis();
       long elapsed = now - lastSend;
       lastSend = now;
       StringBuilder sb = new StringBuilder();
-      for (byte aMsg : msg) {
-        sb.append(String.format("%02x ", aMsg));
+      for (int i = 0; i < length; i++) {
+        sb.append(String.format("%02x ", msg[i]));
       }
       log.trace("{}: {}", elapsed, sb);
     }
   }
 
+  /**
+   * Sends frames only when the digits on the board would change.
+   * Each frame type is compared against the last bytes sent for it; everything is resent when the line
+   * has been quiet for the keep-alive interval. Runs on the timing wheel's thread only.
+   */
+  class ChangeDrivenOutput {
+    private static final int CLOCK = 0;
+    private static final int SCORE = 1;
+    private static final int PENALTY = 2;
+
+    final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final byte[][] lastSent = new byte[3][FrameEncoder.PENALTY_LENGTH];
+    private final int[] lastLength = new int[3];
+    private long lastSendMillis;
+
+    void refresh() {
+      refreshQueued.set(false);
+      sendChanges(false);
+    }
+
+    void keepAlive() {
+      if (System.currentTimeMillis() - lastSendMillis >= keepAliveMillis) {
+        sendChanges(true);
+      }
+    }
+
+    private void sendChanges(boolean force) {
+      if (!running) {
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      final int homeScore = scoreBoard.getHomeScore();
+      final int awayScore = scoreBoard.getAwayScore();
+      final int remainingMillis = scoreBoard.getGameClock().getRemainingMillis();
+      final int roundedMillis = remainingMillis + 999;
+      final int minutes = Clock.getMinutes(roundedMillis);
+      final int seconds = Clock.getSeconds(roundedMillis);
+
+      if (minutes > 0 || remainingMillis == 0) {
+        sendIfChanged(CLOCK, encoder.clockAndScore(homeScore, awayScore, minutes, seconds, scoreBoard.getPeriod(), buzzer_stops > now), force);
+      } else {
+        sendIfChanged(CLOCK, encoder.fastClock(seconds, Clock.getTenthsOfSecond(remainingMillis)), force);
+        sendIfChanged(SCORE, encoder.score(homeScore, awayScore), force);
+      }
+
+      encoder.clearPenalties();
+      for (int slot = 0; slot < FrameEncoder.PENALTY_SLOTS; slot++) {
+        Penalty penalty = slot < 2 ? scoreBoard.getHomePenalty(slot) : scoreBoard.getAwayPenalty(slot - 2);
+        if (penalty == null) {
+          continue;
+        }
+        int remaining = penalty.getTime() - penalty.getElapsed();
+        int serving = penalty.getServingPlayerNumber();
+        encoder.penalty(slot, Clock.getMinutes(remaining), Clock.getSeconds(remaining),
+            serving != 0 ? serving : penalty.getPlayerNumber());
+      }
+      sendIfChanged(PENALTY, FrameEncoder.PENALTY_LENGTH, force);
+    }
+
+    private void sendIfChanged(int kind, int length, boolean force) {
+      byte[] frame = encoder.buffer();
+      byte[] last = lastSent[kind];
+      if (!force && lastLength[kind] == length && Arrays.equals(frame, 0, length, last, 0, length)) {
+        return;
+      }
+      System.arraycopy(frame, 0, last, 0, length);
+      lastLength[kind] = length;
+      lastSendMillis = System.currentTimeMillis();
+      send(frame, length);
+    }
+  }
+
   /**
    * <pre>
    * 0x78 - GameClock and Score every 120 ms
@@ -223,51 +339,23 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
 
       final int homeScore = scoreBoard.getHomeScore();
       final int awayScore = scoreBoard.getAwayScore();
-      final Clock.ClockTime time = gameClock.getTime();
-
-      final int minutes = time.getMinutes();
-      final int seconds = time.getSeconds();
-
-      if (minutes > 0 || gameClock.hasExpired()) {
-        send(new byte[] {
-            0x2e,
-            0x78,
-            digit(10, homeScore, ZERO_VALUE_EMPTY),
-            digit(1, homeScore),
-            digit(10, awayScore, ZERO_VALUE_EMPTY),
-            digit(1, awayScore),
-            digit(10, minutes, ZERO_VALUE_EMPTY),
-            digit(1, minutes),
-            digit(10, seconds),
-            digit(1, seconds),
-            digit(1, scoreBoard.getPeriod()),
-            buzzer ? digit(1, 5) : 0,
-            0
-        });
-
+      final int remainingMillis = gameClock.getRemainingMillis();
+      // Round up to whole seconds, as Clock.getTime() does
+      final int roundedMillis = remainingMillis + 999;
+      final int minutes = Clock.getMinutes(roundedMillis);
+      final int seconds = Clock.getSeconds(roundedMillis);
+
+      if (minutes > 0 || remainingMillis == 0) {
+        send(encoder.buffer(), encoder.clockAndScore(homeScore, awayScore, minutes, seconds, scoreBoard.getPeriod(), buzzer));
       } else {
         // at less than a minute send seconds with 10th of second remaining
-        send(new byte[] {
-            0x2E,
-            0x79,
-            digit(10, seconds, ZERO_VALUE_EMPTY),
-            digit(1, seconds),
-            digit(1, (byte) time.getTenthsOfSeconds()),
-            (byte) 0xFF
-        });
+        send(encoder.buffer(), encoder.fastClock(seconds, Clock.getTenthsOfSecond(remainingMillis)));
 
         // in fast mode we only update the score when it's changed
         if (homeScore != lastHomeScore || awayScore != lastAwayScore) {
           lastHomeScore = homeScore;
           lastAwayScore = awayScore;
-          send(new byte[] {
-              0x2E,
-              0x78,
-              digit(10, scoreBoard.getHomeScore(), ZERO_VALUE_EMPTY),
-              digit(1, scoreBoard.getHomeScore()),
-              digit(10, scoreBoard.getAwayScore(), ZERO_VALUE_EMPTY),
-              digit(1, scoreBoard.getAwayScore()),
-          });
+          send(encoder.buffer(), encoder.score(homeScore, awayScore));
         }
       }
     }
@@ -300,15 +388,16 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
     boolean hadPenalty = true; // initialize true so we send the first message to the penalty clock
     long lastUpdateMillis = 0;
 
+    // Reused each tick: home top, home bottom, away top, away bottom
+    private final Penalty[] penalties = new Penalty[FrameEncoder.PENALTY_SLOTS];
+
     void sendPenaltyClock() {
       long now = System.currentTimeMillis();
 
-      Penalty[] penalties = new Penalty[] {
-          scoreBoard.getHomePenalty(0),
-          scoreBoard.getHomePenalty(1),
-          scoreBoard.getAwayPenalty(0),
-          scoreBoard.getAwayPenalty(1)
-      };
+      penalties[0] = scoreBoard.getHomePenalty(0);
+      penalties[1] = scoreBoard.getHomePenalty(1);
+      penalties[2] = scoreBoard.getAwayPenalty(0);
+      penalties[3] = scoreBoard.getAwayPenalty(1);
 
       boolean hasPenalty = false;
       for (Penalty penalty : penalties) {
@@ -327,43 +416,19 @@ public class ScoreboardAdapterImpl implements ScoreboardAdapter {
       hadPenalty = hasPenalty;
       lastUpdateMillis = now;
 
-      int index = 0;
-      byte[] b = new byte[26];
-      b[index++] = 0x2E;
-      b[index++] = 0x7A;
-      for (Penalty penalty : penalties) {
+      encoder.clearPenalties();
+      for (int slot = 0; slot < penalties.length; slot++) {
+        Penalty penalty = penalties[slot];
         if (penalty == null) {
-          b[index++] = (byte) 0xFF;
-          b[index++] = (byte) 0xFF;
-          b[index++] = (byte) 0xFF;
-        } else {
-          int remaining = penalty.getTime() - penalty.getElapsed();
-
-          byte minutes = (byte) (Clock.getMinutes(remaining) & 0xFF);
-          b[index++] = digit(1, minutes); // == 0 ? (byte) 0xFF : minutes;
-          int seconds = Clock.getSeconds(remaining);
-          b[index++] = digit(10, seconds);
-          b[index++] = digit(1, seconds);
+          continue;
         }
+        int remaining = penalty.getTime() - penalty.getElapsed();
+        int serving = penalty.getServingPlayerNumber();
+        int player = serving != 0 ? serving : penalty.getPlayerNumber();
+        encoder.penalty(slot, Clock.getMinutes(remaining), Clock.getSeconds(remaining), player);
       }
-      b[index++] = (byte) 0xFF;
-      b[index++] = 0x2E;
-      b[index++] = 0x7E;
-      for (Penalty penalty : penalties) {
-        if (penalty == null) {
-          b[index++] = (byte) 0xFF;
-          b[index++] = (byte) 0xFF;
-        } else {
-          int serving = penalty.getServingPlayerNumber();
-          int player = serving != 0 ? serving : penalty.getPlayerNumber();
-          b[index++] = digit(10, player, ZERO_VALUE_EMPTY);
-          b[index++] = digit(1, player);
-        }
-      }
-      b[index] = (byte) 0xFF;
-
-      send(b);
 
+      send(encoder.buffer(), FrameEncoder.PENALTY_LENGTH);
     }
   }
 }
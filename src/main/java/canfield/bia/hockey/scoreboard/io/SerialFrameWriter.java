@@ -0,0 +1,307 @@
+package canfield.bia.hockey.scoreboard.io;
+
+import canfield.bia.hockey.MonotonicTimeSource;
+import canfield.bia.hockey.TimeSource;
+import com.fazecast.jSerialComm.SerialPort;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes encoded frames to the serial port on its own thread.
+ * <p>
+ * The scoreboard loop copies each frame into a fixed ring of preallocated slots and returns
+ * immediately; the "serial-writer" thread drains the ring, owns the port and reopens it after
+ * failures. A hung or missing COM port therefore never blocks the tick. When the ring is full, or
+ * the port is down, frames are dropped: the next tick sends fresher ones anyway.
+ * <p>
+ * The ring is single-producer/single-consumer: only one thread may call {@link #offer}. Frames offered
+ * while the writer is stopped, and frames still queued when it stops, are dropped.
+ */
+class SerialFrameWriter {
+  private static final Logger log = LoggerFactory.getLogger(SerialFrameWriter.class);
+
+  static final int DEFAULT_CAPACITY = 16;
+  private static final long REOPEN_INTERVAL_MILLIS = 2 * 1000;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private final byte[][] slots;
+  private final int[] lengths;
+  private final long[] enqueuedNanos;
+  private final int mask;
+  // Next slot to write (producer) and next slot to drain (writer thread)
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+
+  private volatile String portName;
+  private volatile boolean running;
+  private volatile Thread thread;
+  private final PortOpener portOpener;
+  private final TimeSource timeSource;
+  private Port serialPort; // writer thread only
+  private long nextOpenMillis = Long.MIN_VALUE; // writer thread only
+
+  private final AtomicLong framesWritten = new AtomicLong();
+  private final AtomicLong framesDropped = new AtomicLong();
+  private final AtomicLong totalWriteNanos = new AtomicLong();
+  private volatile long lastWriteNanos;
+  private volatile long maxWriteNanos;
+
+  /**
+   * The writer's side of an open port.
+   */
+  interface Port {
+    /**
+     * @return the number of bytes written, negative on failure
+     */
+    int write(byte[] frame, int length);
+
+    void close();
+  }
+
+  /**
+   * Opens a port by name.
+   */
+  interface PortOpener {
+    /**
+     * @return the open port, or null if it did not open
+     */
+    Port open(String name);
+  }
+
+  /** Opens ports through jSerialComm. */
+  static final PortOpener SERIAL_PORTS = name -> {
+    SerialPort port = SerialPort.getCommPort(name);
+    if (!port.openPort()) {
+      return null;
+    }
+    return new Port() {
+      @Override
+      public int write(byte[] frame, int length) {
+        return port.writeBytes(frame, length);
+      }
+
+      @Override
+      public void close() {
+        port.closePort();
+      }
+    };
+  };
+
+  SerialFrameWriter(String portName) {
+    this(portName, DEFAULT_CAPACITY, FrameEncoder.PENALTY_LENGTH, SERIAL_PORTS, MonotonicTimeSource.system());
+  }
+
+  /**
+   * @param capacity number of frames the ring holds, rounded up to a power of two
+   * @param maxFrameLength the longest frame that will be offered
+   * @param timeSource paces the attempts to reopen a port
+   */
+  SerialFrameWriter(String portName, int capacity, int maxFrameLength, PortOpener portOpener, TimeSource timeSource) {
+    this.portName = portName;
+    this.portOpener = portOpener;
+    this.timeSource = timeSource;
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.slots = new byte[size][maxFrameLength];
+    this.lengths = new int[size];
+    this.enqueuedNanos = new long[size];
+    this.mask = size - 1;
+  }
+
+  synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    Thread t = new Thread(this::run, "serial-writer");
+    t.setDaemon(true);
+    thread = t;
+    t.start();
+  }
+
+  /**
+   * Stops the writer thread, which drops the frames still queued and closes the port on its way out.
+   */
+  synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    Thread t = thread;
+    thread = null;
+    if (t != null) {
+      LockSupport.unpark(t);
+      try {
+        t.join(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  String getPortName() {
+    return portName;
+  }
+
+  /**
+   * Switches ports; the writer closes the current one and opens the new one on its next frame.
+   */
+  void setPortName(String portName) {
+    this.portName = portName;
+  }
+
+  /**
+   * Copies a frame into the ring. Never blocks.
+   * @return false if the writer is stopped or the ring was full, and the frame was dropped
+   */
+  boolean offer(byte[] frame, int length) {
+    long t = tail.get();
+    if (!running || t - head.get() > mask) {
+      framesDropped.incrementAndGet();
+      return false;
+    }
+    int slot = (int) (t & mask);
+    System.arraycopy(frame, 0, slots[slot], 0, length);
+    lengths[slot] = length;
+    enqueuedNanos[slot] = System.nanoTime();
+    // Publishes the slot contents to the writer thread
+    tail.lazySet(t + 1);
+    Thread writer = thread;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+    }
+    return true;
+  }
+
+  int getPendingFrames() {
+    return (int) (tail.get() - head.get());
+  }
+
+  long getFramesWritten() {
+    return framesWritten.get();
+  }
+
+  long getFramesDropped() {
+    return framesDropped.get();
+  }
+
+  /** Enqueue-to-written latency of the most recent frame. */
+  long getLastWriteNanos() {
+    return lastWriteNanos;
+  }
+
+  long getMaxWriteNanos() {
+    return maxWriteNanos;
+  }
+
+  long getAverageWriteNanos() {
+    long written = framesWritten.get();
+    return written == 0 ? 0 : totalWriteNanos.get() / written;
+  }
+
+  private void run() {
+    long lastReport = System.nanoTime();
+    String openPortName = null;
+    while (running) {
+      long h = head.get();
+      if (h == tail.get()) {
+        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+      } else {
+        String wanted = portName;
+        if (serialPort != null && !wanted.equals(openPortName)) {
+          closePort();
+        }
+        if (serialPort == null) {
+          openPort(wanted);
+          openPortName = wanted;
+        }
+        int slot = (int) (h & mask);
+        if (serialPort == null || !write(slots[slot], lengths[slot])) {
+          framesDropped.incrementAndGet();
+        } else {
+          recordWrite(System.nanoTime() - enqueuedNanos[slot]);
+        }
+        // Frees the slot for the producer
+        head.lazySet(h + 1);
+      }
+
+      long now = System.nanoTime();
+      if (now - lastReport >= REPORT_INTERVAL_NANOS) {
+        lastReport = now;
+        if (log.isDebugEnabled()) {
+          log.debug("Serial writer: written={} dropped={} avgLatency={}us maxLatency={}us",
+              framesWritten.get(), framesDropped.get(), getAverageWriteNanos() / 1000, maxWriteNanos / 1000);
+        }
+      }
+    }
+    long queued = tail.get() - head.get();
+    if (queued > 0) {
+      framesDropped.addAndGet(queued);
+      head.lazySet(head.get() + queued);
+    }
+    closePort();
+    log.debug("Serial writer stopped");
+  }
+
+  private boolean write(byte[] frame, int length) {
+    try {
+      if (serialPort.write(frame, length) >= 0) {
+        return true;
+      }
+    } catch (Exception e) {
+      log.debug("Serial write failed", e);
+    }
+    log.warn("Failed to write to serial port! {} - try to reconnect", portName);
+    closePort();
+    nextOpenMillis = timeSource.currentTimeMillis() + REOPEN_INTERVAL_MILLIS;
+    return false;
+  }
+
+  private void recordWrite(long latency) {
+    framesWritten.incrementAndGet();
+    totalWriteNanos.addAndGet(latency);
+    lastWriteNanos = latency;
+    if (latency > maxWriteNanos) {
+      maxWriteNanos = latency;
+    }
+  }
+
+  private void openPort(String name) {
+    long now = timeSource.currentTimeMillis();
+    if (now < nextOpenMillis) {
+      return;
+    }
+    nextOpenMillis = now + REOPEN_INTERVAL_MILLIS;
+    log.trace("Attempt to open port {}", name);
+
+    try {
+      serialPort = portOpener.open(name);
+      if (serialPort == null) {
+        log.debug("Port {} did not open", name);
+        return;
+      }
+    } catch (Exception e) {
+      log.warn("Failed to open port: {}", name, e);
+      serialPort = null;
+      return;
+    }
+
+    log.debug("Port {} opened", name);
+  }
+
+  private void closePort() {
+    if (serialPort == null) {
+      return;
+    }
+    try {
+      serialPort.close();
+    } catch (Exception e) {
+      log.debug("Error closing port", e);
+    }
+    serialPort = null;
+  }
+}
@@ -6,5 +6,5 @@ package canfield.bia.hockey.v2.domain;
 public record ClockState(
     long timeRemainingMillis, // Frozen time when paused
     boolean isRunning,
-    long startTimeWallClock // System.currentTimeMillis() when started, 0 when paused
+    long startTimeWallClock // Engine time (TimeSource) timeRemainingMillis was counted from, 0 when paused
 ) {}
@@ -4,6 +4,8 @@ import java.util.List;
 
 /**
  * An immutable record representing the entire state of a hockey game at a single point in time.
+ * The {@code with*} methods return a copy with one part replaced, sharing every other part, or this
+ * state when the part is the same instance.
  */
 public record GameState(
     String gameId,
@@ -14,8 +16,12 @@ public record GameState(
     TeamState home,
     TeamState away,
     boolean buzzerOn,
-    List<String> eventHistory // A log of event IDs for the 'undo' functionality
+    List<String> eventHistory // Operator edits in effect, oldest first, by command name, the last 64 at most; UNDO takes back the last
 ) {
+    public GameState {
+        eventHistory = PersistentVector.copyOf(eventHistory);
+    }
+
     /**
      * Default constructor to represent the initial PRE_GAME state.
      */
@@ -26,10 +32,48 @@ public record GameState(
             GameStatus.PRE_GAME,
             0,
             new ClockState(0, false, 0L),
-            new TeamState(List.of(), 0, List.of()),
-            new TeamState(List.of(), 0, List.of()),
+            TeamState.EMPTY,
+            TeamState.EMPTY,
             false,
             List.of()
         );
     }
+
+    public GameState withStatus(GameStatus status) {
+        return status == this.status ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    public GameState withPeriod(int period) {
+        return period == this.period ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    public GameState withClock(ClockState clock) {
+        return clock == this.clock ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    public GameState withHome(TeamState home) {
+        return home == this.home ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    public GameState withAway(TeamState away) {
+        return away == this.away ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    /** Replaces the {@code "home"} team, or the away team for any other id, as the commands address them. */
+    public GameState withTeam(String teamId, TeamState team) {
+        return "home".equals(teamId) ? withHome(team) : withAway(team);
+    }
+
+    /** The {@code "home"} team, or the away team for any other id. */
+    public TeamState team(String teamId) {
+        return "home".equals(teamId) ? home : away;
+    }
+
+    public GameState withBuzzerOn(boolean buzzerOn) {
+        return buzzerOn == this.buzzerOn ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
+
+    public GameState withEventHistory(List<String> eventHistory) {
+        return eventHistory == this.eventHistory ? this : new GameState(gameId, config, status, period, clock, home, away, buzzerOn, eventHistory);
+    }
 }
@@ -10,6 +10,14 @@ public record Penalty(
     int servingPlayerNumber, // Can be the same as playerNumber
     long durationMillis,
     long timeRemainingMillis, // Frozen time when main clock is paused
-    long startTimeWallClock, // System.currentTimeMillis() when penalty starts counting down, 0 otherwise
+    long startTimeWallClock, // Engine time (TimeSource) the remaining time was last counted from, 0 when not running
     int period // Period when penalty was issued
-) {}
+) {
+    /** This penalty with its remaining time counted from {@code startTimeWallClock} (0 to freeze it). */
+    public Penalty withTimeRemaining(long timeRemainingMillis, long startTimeWallClock) {
+        if (timeRemainingMillis == this.timeRemainingMillis && startTimeWallClock == this.startTimeWallClock) {
+            return this;
+        }
+        return new Penalty(penaltyId, teamId, playerNumber, servingPlayerNumber, durationMillis, timeRemainingMillis, startTimeWallClock, period);
+    }
+}
@@ -0,0 +1,172 @@
+package canfield.bia.hockey.v2.domain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable list that shares its elements with the list it was built from.
+ * <p>
+ * A vector is a prefix of a backing array. {@link #append} writes into the next free slot of that array
+ * and returns a longer view of it, so appending is amortized O(1) and the old vector, which only sees
+ * its own prefix, is unchanged. Only the first append to a given vector can take the slot; appending
+ * to an older vector again, as after an undo, copies. Removing or replacing elements copies.
+ * <p>
+ * The lists in {@link GameState} and {@link TeamState} are always vectors, so a state update that does
+ * not touch a list hands the same instance on.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Store(new Object[0], 0), 0);
+
+    /** The backing array and how many of its slots some vector has claimed. */
+    private static final class Store {
+        final Object[] items;
+        final AtomicInteger claimed;
+
+        Store(Object[] items, int claimed) {
+            this.items = items;
+            this.claimed = new AtomicInteger(claimed);
+        }
+    }
+
+    private final Store store;
+    private final int size;
+
+    private PersistentVector(Store store, int size) {
+        this.store = store;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * @return {@code list} itself if it is already a vector, otherwise a vector of its elements; null for null
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> list) {
+        if (list == null) {
+            return null;
+        }
+        if (list instanceof PersistentVector<?> vector) {
+            return (PersistentVector<E>) vector;
+        }
+        if (list.isEmpty()) {
+            return empty();
+        }
+        Object[] items = list.toArray();
+        return new PersistentVector<>(new Store(items, items.length), items.length);
+    }
+
+    /**
+     * Returns this vector with {@code element} added at the end.
+     */
+    public PersistentVector<E> append(E element) {
+        Object[] items = store.items;
+        if (size < items.length && store.claimed.compareAndSet(size, size + 1)) {
+            items[size] = element; // Beyond every other vector's view of this store
+            return new PersistentVector<>(store, size + 1);
+        }
+        Object[] grown = Arrays.copyOf(items, Math.max(4, size + (size >> 1) + 1));
+        Arrays.fill(grown, size, grown.length, null); // Slots another vector claimed are not ours
+        grown[size] = element;
+        return new PersistentVector<>(new Store(grown, size + 1), size + 1);
+    }
+
+    /**
+     * Returns this vector with the element at {@code index} replaced, or this vector if it is the same element.
+     */
+    public PersistentVector<E> with(int index, E element) {
+        Objects.checkIndex(index, size);
+        if (store.items[index] == element) {
+            return this;
+        }
+        Object[] items = Arrays.copyOf(store.items, size);
+        items[index] = element;
+        return new PersistentVector<>(new Store(items, size), size);
+    }
+
+    /**
+     * Returns this vector without the elements matching {@code filter}, or this vector if none match.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentVector<E> without(Predicate<? super E> filter) {
+        Object[] kept = null;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            E element = (E) store.items[i];
+            if (filter.test(element)) {
+                if (kept == null) {
+                    kept = Arrays.copyOf(store.items, size);
+                    count = i;
+                }
+            } else if (kept != null) {
+                kept[count++] = element;
+            }
+        }
+        if (kept == null) {
+            return this;
+        }
+        if (count == 0) {
+            return empty();
+        }
+        Arrays.fill(kept, count, size, null);
+        return new PersistentVector<>(new Store(kept, count), count);
+    }
+
+    /**
+     * Returns this vector with each element replaced by {@code update}'s result, leaving out those it maps to
+     * null, in one copy at most; this vector if {@code update} returned every element unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentVector<E> updated(UnaryOperator<E> update) {
+        Object[] result = null;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            E element = (E) store.items[i];
+            E replacement = update.apply(element);
+            if (result == null && replacement != element) {
+                result = new Object[size];
+                System.arraycopy(store.items, 0, result, 0, i);
+                count = i;
+            }
+            if (result != null && replacement != null) {
+                result[count++] = replacement;
+            }
+        }
+        if (result == null) {
+            return this;
+        }
+        return count == 0 ? empty() : new PersistentVector<>(new Store(result, count), count);
+    }
+
+    /**
+     * Returns this vector without its last element; the slot stays with the longer vector.
+     */
+    public PersistentVector<E> withoutLast() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is empty");
+        }
+        return size == 1 ? empty() : new PersistentVector<>(store, size - 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) store.items[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
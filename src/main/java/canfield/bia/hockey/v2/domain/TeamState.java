@@ -4,12 +4,20 @@ import java.util.List;
 
 /**
  * Represents the complete state of one team in the game.
+ * The lists are {@link PersistentVector}s, so the withers share whatever they do not change.
  */
 public record TeamState(
     List<GoalEvent> goals,
     int shots,
     List<Penalty> penalties
 ) {
+    public static final TeamState EMPTY = new TeamState(List.of(), 0, List.of());
+
+    public TeamState {
+        goals = PersistentVector.copyOf(goals);
+        penalties = PersistentVector.copyOf(penalties);
+    }
+
     /**
      * The team's score is derived from the number of goal events.
      * @return The total number of goals scored by the team.
@@ -17,4 +25,26 @@ public record TeamState(
     public int getScore() {
         return goals.size();
     }
+
+    public TeamState withGoals(List<GoalEvent> goals) {
+        return goals == this.goals ? this : new TeamState(goals, shots, penalties);
+    }
+
+    /** Appends a goal in O(1), sharing the existing goals. */
+    public TeamState withGoal(GoalEvent goal) {
+        return new TeamState(PersistentVector.copyOf(goals).append(goal), shots, penalties);
+    }
+
+    public TeamState withShots(int shots) {
+        return shots == this.shots ? this : new TeamState(goals, shots, penalties);
+    }
+
+    public TeamState withPenalties(List<Penalty> penalties) {
+        return penalties == this.penalties ? this : new TeamState(goals, shots, penalties);
+    }
+
+    /** Appends a penalty in O(1), sharing the existing penalties. */
+    public TeamState withPenalty(Penalty penalty) {
+        return new TeamState(goals, shots, PersistentVector.copyOf(penalties).append(penalty));
+    }
 }
@@ -0,0 +1,364 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.spec.Command;
+import canfield.bia.hockey.v2.spec.CommandCodec;
+import canfield.bia.hockey.v2.spec.CreateGameCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of the commands the engine applied, used to rebuild the game after a crash.
+ * <p>
+ * Each record is {@code [int bodyLength][int crc32c][body]}, where the body holds a sequence number,
+ * the command's timestamp, the command in {@link CommandCodec} form and the ids the engine generated
+ * while applying it (goal, penalty and game ids), so a replay reproduces the same ids.
+ * <p>
+ * {@link #append} only encodes into memory; {@link #commit} writes everything appended since the last
+ * commit with one channel write and then forces it to disk according to the {@link FsyncPolicy}. The
+ * engine commits once per transition, so a batch of queued commands costs one write.
+ * <p>
+ * A {@link CreateGameCommand} starts a new game and drops everything before it. The commit that carries
+ * it writes the new game to a sibling file, forces it whatever the policy and renames it over the journal,
+ * so a crash leaves either the old game or the new one on disk, never neither.
+ * <p>
+ * Opening a journal validates it and cuts off a torn or corrupt tail left by a crash mid-write.
+ * Not thread-safe; the engine's single writer owns it.
+ */
+public class CommandJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandJournal.class);
+
+    public enum FsyncPolicy {
+        /** Force to disk on every commit. Survives power loss; slowest. */
+        ALWAYS,
+        /** Force at most once per interval. A power loss can lose the last interval; a JVM crash loses nothing. */
+        INTERVAL,
+        /** Leave flushing to the OS. Survives a JVM crash but not power loss. */
+        NEVER
+    }
+
+    /** One replayed record. */
+    public record Entry(long sequence, long timestampMillis, Command command, List<String> generatedIds) {
+    }
+
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final Path nextPath;
+    private FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(16 * 1024);
+    private final ByteBuffer body = ByteBuffer.allocate(MAX_BODY_BYTES);
+    private long nextSequence = 1;
+    private long validLength;
+    private boolean newGamePending; // pending starts with a CreateGame that replaces the file on commit
+    private boolean unforced;
+    private long lastForceMillis;
+
+    private long appendedCount;
+    private long commitCount;
+    private long forceCount;
+
+    private CommandJournal(Path path, FileChannel channel, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this.path = path;
+        this.nextPath = nextPath(path);
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    /**
+     * Opens (or creates) a journal, truncating any torn tail so new records follow the last valid one.
+     * @param fsyncIntervalMillis only used by {@link FsyncPolicy#INTERVAL}
+     */
+    public static CommandJournal open(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // Left by a crash before a new game replaced the journal, which still holds the previous game
+        Files.deleteIfExists(nextPath(path));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CommandJournal journal = new CommandJournal(path, channel, fsyncPolicy, fsyncIntervalMillis);
+        try {
+            journal.recoverTail();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    private static Path nextPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".next");
+    }
+
+    private void recoverTail() throws IOException {
+        long size = channel.size();
+        long[] lastSequence = {0};
+        validLength = scan(entry -> lastSequence[0] = entry.sequence());
+        nextSequence = lastSequence[0] + 1;
+        if (validLength < size) {
+            log.warn("Journal {} has {} bytes of torn or corrupt records after offset {}; truncating",
+                path, size - validLength, validLength);
+            channel.truncate(validLength);
+            channel.force(true);
+        }
+        channel.position(validLength);
+    }
+
+    /**
+     * Reads every valid record in order.
+     * @return the number of records replayed
+     */
+    public int replay(Consumer<Entry> consumer) throws IOException {
+        int[] count = {0};
+        scan(entry -> {
+            consumer.accept(entry);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Decodes records from the start of the file until the end or the first record that is incomplete,
+     * fails its checksum or does not decode.
+     * @return the length of the valid prefix
+     */
+    private long scan(Consumer<Entry> consumer) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal too large: " + size + " bytes");
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+        long position = 0;
+        while (data.hasRemaining()) {
+            int read = channel.read(data, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        data.flip();
+
+        CRC32C check = new CRC32C();
+        int valid = 0;
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int expectedCrc = data.getInt();
+            if (length <= 0 || length > MAX_BODY_BYTES || length > data.remaining()) {
+                break;
+            }
+            ByteBuffer record = data.slice(data.position(), length);
+            check.reset();
+            check.update(record.duplicate());
+            if ((int) check.getValue() != expectedCrc) {
+                break;
+            }
+            Entry entry;
+            try {
+                entry = decode(record);
+            } catch (RuntimeException e) {
+                log.warn("Undecodable journal record at offset {}", valid, e);
+                break;
+            }
+            data.position(data.position() + length);
+            valid = data.position();
+            consumer.accept(entry);
+        }
+        return valid;
+    }
+
+    private static Entry decode(ByteBuffer record) {
+        long sequence = record.getLong();
+        long timestamp = record.getLong();
+        Command command = CommandCodec.decode(record);
+        int idCount = record.get();
+        List<String> ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            ids.add(CommandCodec.getString(record));
+        }
+        return new Entry(sequence, timestamp, command, Collections.unmodifiableList(ids));
+    }
+
+    /**
+     * Encodes a record into the pending buffer. Nothing reaches the file until {@link #commit}.
+     * @param generatedIds ids created while applying the command, in creation order
+     */
+    public void append(Command command, long timestampMillis, List<String> generatedIds) throws IOException {
+        if (command instanceof CreateGameCommand) {
+            // A new game supersedes everything before it, including anything not yet committed.
+            // The file keeps the previous game until the commit has the new one on disk.
+            pending.clear();
+            newGamePending = true;
+        }
+
+        body.clear();
+        body.putLong(nextSequence);
+        body.putLong(timestampMillis);
+        try {
+            CommandCodec.encode(command, body);
+            body.put((byte) generatedIds.size());
+            for (String id : generatedIds) {
+                CommandCodec.putString(body, id);
+            }
+        } catch (BufferOverflowException e) {
+            throw new IOException("Journal record too large for " + command, e);
+        }
+        body.flip();
+        crc.reset();
+        crc.update(body.duplicate());
+
+        int recordLength = HEADER_BYTES + body.remaining();
+        if (pending.remaining() < recordLength) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordLength));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.putInt(body.remaining());
+        pending.putInt((int) crc.getValue());
+        pending.put(body);
+        nextSequence++;
+        appendedCount++;
+    }
+
+    /**
+     * Writes all appended records with a single channel write, then forces them according to the fsync policy.
+     */
+    public void commit() throws IOException {
+        if (newGamePending) {
+            startNewFile();
+            return;
+        }
+        if (pending.position() > 0) {
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            validLength = channel.position();
+            pending.clear();
+            commitCount++;
+            unforced = true;
+        }
+        if (unforced && shouldForce()) {
+            channel.force(false);
+            unforced = false;
+            lastForceMillis = System.currentTimeMillis();
+            forceCount++;
+        }
+    }
+
+    /**
+     * Writes the pending records, which start with a CreateGame, to a new file, forces it and renames it
+     * over the journal. The rename is the moment the previous game is gone.
+     */
+    private void startNewFile() throws IOException {
+        pending.flip();
+        try (FileChannel next = FileChannel.open(nextPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (pending.hasRemaining()) {
+                next.write(pending);
+            }
+            next.force(false);
+        } catch (IOException e) {
+            // Still pending; the next commit tries again
+            pending.position(pending.limit()).limit(pending.capacity());
+            throw e;
+        }
+        Files.move(nextPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        validLength = channel.size();
+        channel.position(validLength);
+        pending.clear();
+        newGamePending = false;
+        unforced = false;
+        lastForceMillis = System.currentTimeMillis();
+        commitCount++;
+        forceCount++;
+    }
+
+    private boolean shouldForce() {
+        return switch (fsyncPolicy) {
+            case ALWAYS -> true;
+            case INTERVAL -> System.currentTimeMillis() - lastForceMillis >= fsyncIntervalMillis;
+            case NEVER -> false;
+        };
+    }
+
+    /**
+     * Makes sure new records are numbered after {@code sequence}, e.g. after restoring a snapshot taken
+     * at that sequence from a journal that has since been lost or truncated.
+     */
+    public void advancePast(long sequence) {
+        nextSequence = Math.max(nextSequence, sequence + 1);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /** Sequence number the next appended record will get. */
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    /** Bytes of committed records in the file. */
+    public long getLength() {
+        return validLength;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount;
+    }
+
+    public long getCommitCount() {
+        return commitCount;
+    }
+
+    public long getForceCount() {
+        return forceCount;
+    }
+
+    /**
+     * Commits and forces anything outstanding, then closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            commit();
+            if (unforced) {
+                channel.force(false);
+                unforced = false;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
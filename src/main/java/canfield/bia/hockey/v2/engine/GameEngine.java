@@ -1,23 +1,29 @@
 package canfield.bia.hockey.v2.engine;
 
+import canfield.bia.hockey.MonotonicTimeSource;
+import canfield.bia.hockey.TimeSource;
+import canfield.bia.hockey.TimingWheel;
 import canfield.bia.hockey.v2.domain.*;
 import canfield.bia.hockey.v2.spec.*; // Import all new command types
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 /**
  * The heart of the new architecture.
  * Contains all business logic for processing game commands.
+ * <p>
+ * Every {@code currentTimeMillis} here, including the {@code startTimeWallClock} of the clock and of
+ * running penalties, is a reading of the engine's {@link TimeSource}. It is monotonic, so a correction of
+ * the PC's clock does not move a running game clock.
  */
 public class GameEngine {
 
@@ -26,25 +32,44 @@ public class GameEngine {
     private final TemplateRepository templateRepository;
     private final HardwareOutputAdapter hardwareOutputAdapter;
     private final GameTimer gameTimer;
+    private final TimeSource timeSource;
     private final BiConsumer<GameState, GameState> stateChangeConsumer; // Changed to BiConsumer
-    private final ScheduledExecutorService buzzerScheduler =
-        Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "buzzer-auto-reset");
-            t.setDaemon(true);
-            return t;
-        });
-    private ScheduledFuture<?> buzzerResetFuture;
+    private final TimingWheel deadlines = TimingWheel.shared(); // Buzzer auto-reset; ticks come from the GameTimer
+    private TimingWheel.Timeout buzzerReset;
     private volatile GameState currentState; // GameEngine now holds the current state (volatile for thread visibility)
     private volatile long buzzerOnSince = 0; // Track when buzzer was turned on (for simulated-time reset)
+    private volatile boolean buzzerResetDue = false; // Set by the real-time auto-reset, applied on the next tick
+    private volatile GameEngineLoop commandLoop; // When attached, all commands are applied on the loop thread
+    private volatile CommandJournal journal; // Records applied commands for crash recovery
+    private final List<String> generatedIds = new ArrayList<>(); // Ids created by the command being applied
+    private long unjournaledTickMillis; // Last countdown tick left out of the journal, written ahead of the next journaled command; 0 if none
+    private final ArrayDeque<String> replayIds = new ArrayDeque<>(); // Journaled ids handed out again during recovery
+    private boolean replaying; // Recovery in progress: timers and buzzer scheduling are deferred
+    private boolean timersHeld; // Set up for a loop that has not attached yet: timers and buzzer scheduling are deferred
+    private volatile boolean stopped; // Shut down with its rink: commands are dropped and timers are not armed again
+    private final UndoHistory undoHistory = new UndoHistory(); // Operator edits UNDO and REDO move across
+    private volatile SnapshotStore snapshotStore; // Receives periodic snapshots of the state
+    private volatile long snapshotIntervalMillis;
+    private long lastSnapshotMillis;
     private static final long BUZZER_AUTO_RESET_MILLIS = 3000;
+    private static final long CLOCK_TENTHS_BELOW_MILLIS = 59_000;
 
     // Shift timer tracking for drop-in games (based on game clock time)
     private volatile long shiftStartGameTimeMillis = -1; // Game clock time when current shift started (-1 = not initialized)
 
     public GameEngine(TemplateRepository templateRepository, HardwareOutputAdapter hardwareOutputAdapter, GameTimer gameTimer, BiConsumer<GameState, GameState> stateChangeConsumer) {
+        this(templateRepository, hardwareOutputAdapter, gameTimer, stateChangeConsumer, MonotonicTimeSource.system());
+    }
+
+    /**
+     * @param timeSource the time commands are applied at when the caller does not give one
+     */
+    public GameEngine(TemplateRepository templateRepository, HardwareOutputAdapter hardwareOutputAdapter, GameTimer gameTimer,
+                      BiConsumer<GameState, GameState> stateChangeConsumer, TimeSource timeSource) {
         this.templateRepository = templateRepository;
         this.hardwareOutputAdapter = hardwareOutputAdapter;
         this.gameTimer = gameTimer;
+        this.timeSource = timeSource;
         this.stateChangeConsumer = stateChangeConsumer; // Store the consumer
         this.currentState = new GameState(); // Initialize with a default empty state
     }
@@ -54,75 +79,548 @@ public class GameEngine {
         return currentState;
     }
 
+    /**
+     * The engine's clock; anything comparing times with the state's, such as a client's server-time estimate, reads this.
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * Submits a command from any thread. When a {@link GameEngineLoop} is attached the command is queued
+     * and applied on the loop thread; otherwise it is applied immediately on the caller's thread.
+     */
+    public void submit(Command command) {
+        if (stopped) {
+            log.debug("Engine stopped, dropping {}", command.getClass().getSimpleName());
+            return;
+        }
+        GameEngineLoop loop = this.commandLoop;
+        if (loop != null) {
+            loop.submit(command);
+        } else {
+            processCommand(command, timeSource.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Attaching a loop also arms what {@link #holdTimersUntilLoop} held back, on the caller's thread and
+     * before the loop thread starts.
+     */
+    void attachLoop(GameEngineLoop loop) {
+        this.commandLoop = loop;
+        if (loop != null && timersHeld) {
+            timersHeld = false;
+            armTimers(currentState);
+        }
+    }
+
+    /**
+     * Holds back the game timer and the buzzer auto-reset until a {@link GameEngineLoop} attaches. Their
+     * commands would otherwise be applied on the timer threads while the engine is still being set up
+     * (recovered, given its first game) on another, before there is a loop to serialize them.
+     */
+    void holdTimersUntilLoop() {
+        timersHeld = true;
+    }
+
+    /**
+     * Stops the game timer and the buzzer auto-reset for good and drops commands submitted from then on,
+     * such as a tick already due. Called before the loop stops and the journal closes, so no command is
+     * applied afterwards on a timer thread.
+     */
+    void stop() {
+        stopped = true;
+        gameTimer.stop();
+        cancelBuzzerAutoReset();
+    }
+
+    /**
+     * Starts the timer and the buzzer auto-reset a state needs, for a state that was reached without them.
+     */
+    private void armTimers(GameState state) {
+        if (state.clock() != null && state.clock().isRunning()) {
+            gameTimer.start(this::handleTick);
+            gameTimer.scheduleNextTick(nextTickMillis(state) - timeSource.currentTimeMillis());
+        }
+        if (state.buzzerOn()) {
+            scheduleBuzzerAutoReset();
+        }
+    }
+
+    /**
+     * Timers and the buzzer auto-reset are left alone while replaying, until an expected loop attaches, and
+     * for good once the engine stops.
+     */
+    private boolean timersDeferred() {
+        return replaying || timersHeld || stopped;
+    }
+
+    /**
+     * Journals every command that changes the state from now on, except ticks that only count the clock
+     * down. Call {@link #recover} first to rebuild the state the journal describes.
+     */
+    public void setJournal(CommandJournal journal) {
+        this.journal = journal;
+        unjournaledTickMillis = 0L;
+    }
+
+    /**
+     * Snapshots the state to {@code store} whenever it changes and {@code intervalMillis} have passed
+     * since the last snapshot, and at every game, period or status change. Snapshots are written off
+     * the engine thread.
+     */
+    public void setSnapshotStore(SnapshotStore store, long intervalMillis) {
+        this.snapshotIntervalMillis = intervalMillis;
+        this.snapshotStore = store;
+    }
+
+    /**
+     * Replays a journal into this engine and publishes the result as a single transition.
+     * @see #recover(SnapshotStore.GameSnapshot, CommandJournal)
+     */
+    public GameState recover(CommandJournal journal) throws IOException {
+        return recover(null, journal);
+    }
+
+    /**
+     * Rebuilds the game after a restart: starts from {@code snapshot} (if any), replays the journal
+     * entries recorded after it (if any) and publishes the result as a single transition. The journal
+     * is then attached so new commands are recorded.
+     * <p>
+     * Timers and the buzzer auto-reset are not touched while replaying. A clock that was running in
+     * play is paused where it stood at the last recorded moment, the later of the last journaled command
+     * and the snapshot (countdown ticks are not journaled), so the downtime is not taken off the
+     * period; the pause is journaled like any other command. An intermission clock keeps running and
+     * does count the downtime, since intermissions run on real time. A command that fails to replay is
+     * logged and skipped.
+     * <p>
+     * A snapshot holds no undo history, so an UNDO or REDO journaled after it could find nothing to take
+     * back. When there is one and the journal holds the whole game, the snapshot is set aside and the game
+     * is replayed from its {@link CreateGameCommand}, which rebuilds the history as it was.
+     * @return the recovered state
+     */
+    public GameState recover(SnapshotStore.GameSnapshot snapshot, CommandJournal journal) throws IOException {
+        GameState oldState = this.currentState;
+        long start = System.nanoTime();
+        if (snapshot != null && journal != null && undoesEditsBefore(snapshot, journal)) {
+            log.info("Journal has UNDO or REDO after snapshot {}; replaying the game from its start", snapshot.sequence());
+            snapshot = null;
+        }
+        long after = snapshot != null ? snapshot.sequence() : 0L;
+        GameState[] state = {snapshot != null ? snapshot.state() : oldState};
+        long[] lastKnownMillis = {snapshot != null ? snapshot.capturedAtMillis() : 0L};
+        int[] replayed = {0};
+        if (snapshot != null) {
+            shiftStartGameTimeMillis = snapshot.shiftStartGameTimeMillis();
+            undoHistory.clear(); // Edits before the snapshot are not in it; those replayed after it are recorded again
+        }
+        replaying = true;
+        try {
+            if (journal != null) {
+                journal.advancePast(after);
+                journal.replay(entry -> {
+                    if (entry.sequence() <= after) {
+                        return; // Already in the snapshot
+                    }
+                    replayIds.addAll(entry.generatedIds());
+                    try {
+                        state[0] = apply(state[0], entry.command(), entry.timestampMillis());
+                        replayed[0]++;
+                    } catch (RuntimeException e) {
+                        log.warn("Skipping journaled {} during recovery", entry.command(), e);
+                    } finally {
+                        replayIds.clear();
+                    }
+                    lastKnownMillis[0] = Math.max(lastKnownMillis[0], entry.timestampMillis());
+                });
+            }
+        } finally {
+            replaying = false;
+        }
+        this.journal = journal;
+        unjournaledTickMillis = 0L;
+        if (snapshot != null || replayed[0] > 0) {
+            log.info("Recovered game {} from {}{} journaled commands in {}ms",
+                state[0].gameId(),
+                snapshot != null ? "snapshot " + snapshot.sequence() + " and " : "",
+                replayed[0],
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        GameState recovered = state[0];
+        long now = timeSource.currentTimeMillis();
+        if (recovered.clock() != null && recovered.clock().isRunning() && recovered.status() == GameStatus.PLAYING) {
+            long stoppedAt = Math.max(lastKnownMillis[0], recovered.clock().startTimeWallClock());
+            recovered = applyAndJournal(recovered, new PauseClockCommand(), stoppedAt);
+            log.info("Clock was running when the scoreboard stopped; paused at {}ms ({}s of downtime not counted)",
+                recovered.clock().timeRemainingMillis(), Math.max(0, now - stoppedAt) / 1000);
+        }
+        if (recovered.clock() != null && recovered.clock().isRunning() && !timersDeferred()) {
+            gameTimer.start(this::handleTick);
+        }
+        if (recovered.buzzerOn()) {
+            scheduleBuzzerAutoReset();
+        }
+        return publish(oldState, recovered, now);
+    }
+
+    /**
+     * Whether the journal starts at the game's {@link CreateGameCommand} and has an UNDO or REDO after
+     * {@code snapshot}, which may reach back to an edit the snapshot's state already includes.
+     */
+    private static boolean undoesEditsBefore(SnapshotStore.GameSnapshot snapshot, CommandJournal journal) throws IOException {
+        boolean[] wholeGame = {false};
+        boolean[] undoAfter = {false};
+        int[] index = {0};
+        journal.replay(entry -> {
+            if (index[0]++ == 0) {
+                wholeGame[0] = entry.command() instanceof CreateGameCommand;
+            }
+            if (entry.sequence() > snapshot.sequence()
+                && (entry.command() instanceof UndoCommand || entry.command() instanceof RedoCommand)) {
+                undoAfter[0] = true;
+            }
+        });
+        if (undoAfter[0] && !wholeGame[0]) {
+            log.warn("Journal has UNDO or REDO after snapshot {} but not the start of the game; edits before the snapshot cannot be taken back",
+                snapshot.sequence());
+        }
+        return undoAfter[0] && wholeGame[0];
+    }
+
     // Internal method to handle tick commands from the GameTimer
     private void handleTick() {
-        processCommand(new TickCommand(), System.currentTimeMillis());
+        submit(new TickCommand());
     }
 
     public GameState processCommand(Command command, long currentTimeMillis) {
-        GameState oldState = this.currentState; // Capture old state for potential diffing later
+        GameState oldState = this.currentState; // Capture old state for diffing
+        return publish(oldState, applyAndJournal(oldState, command, currentTimeMillis), currentTimeMillis);
+    }
 
+    /**
+     * A command and the engine time it is applied at, such as the time it was submitted.
+     */
+    public record TimedCommand(Command command, long currentTimeMillis) {}
+
+    /**
+     * Applies a batch of commands, all at {@code currentTimeMillis}, as one transition.
+     * @see #processCommands(List)
+     */
+    public GameState processCommands(List<? extends Command> commands, long currentTimeMillis) {
+        List<TimedCommand> timed = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            timed.add(new TimedCommand(command, currentTimeMillis));
+        }
+        return processCommands(timed);
+    }
+
+    /**
+     * Applies a batch of commands as one transition: the hardware adapter and the state change consumer
+     * are notified once with the state before the first and after the last command, so clients receive
+     * a single patch for the whole batch. Each command is applied and journaled at its own time, which
+     * must not run backwards through the batch. A command that fails is logged and skipped; the rest still apply.
+     */
+    public GameState processCommands(List<TimedCommand> commands) {
+        GameState oldState = this.currentState;
+        GameState state = oldState;
+        long currentTimeMillis = commands.isEmpty() ? timeSource.currentTimeMillis() : commands.get(commands.size() - 1).currentTimeMillis();
+        for (TimedCommand timed : commands) {
+            try {
+                state = applyAndJournal(state, timed.command(), timed.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.error("Skipping {} in batch", timed.command(), e);
+            }
+        }
+        return publish(oldState, state, currentTimeMillis);
+    }
+
+    private GameState publish(GameState oldState, GameState newState, long currentTimeMillis) {
+        commitJournal(); // Durable before anyone sees the new state
+        this.currentState = newState;
+        if (!timersDeferred() && newState.clock() != null && newState.clock().isRunning()) {
+            gameTimer.scheduleNextTick(nextTickMillis(newState) - timeSource.currentTimeMillis());
+        }
+        // Only update hardware if the state actually changed; handlers return the same instance for a no-op
+        if (oldState != newState) {
+            hardwareOutputAdapter.update(newState);
+            stateChangeConsumer.accept(oldState, newState); // Notify consumer of state change with old and new state
+            maybeSnapshot(oldState, newState, currentTimeMillis);
+        }
+        return newState;
+    }
+
+    private void maybeSnapshot(GameState oldState, GameState newState, long currentTimeMillis) {
+        SnapshotStore store = this.snapshotStore;
+        if (store == null) {
+            return;
+        }
+        boolean boundary = !Objects.equals(oldState.gameId(), newState.gameId())
+            || oldState.period() != newState.period()
+            || oldState.status() != newState.status();
+        if (!boundary && currentTimeMillis - lastSnapshotMillis < snapshotIntervalMillis) {
+            return;
+        }
+        lastSnapshotMillis = currentTimeMillis;
+        CommandJournal journal = this.journal;
+        long sequence = journal != null ? journal.getNextSequence() - 1 : 0L;
+        // The state is immutable, so encoding and I/O happen on the store's thread
+        store.submit(new SnapshotStore.GameSnapshot(sequence, currentTimeMillis, newState, shiftStartGameTimeMillis));
+    }
+
+    /**
+     * Applies a command and journals it if it produced a new state. Commands that leave the state
+     * untouched (a tick while stopped, a pause outside play) are not recorded.
+     * <p>
+     * A tick that only counts the clock and penalties down is not recorded either: a later tick or pause
+     * counts from the clock's start just the same. Only the last one is kept and journaled ahead of the
+     * next recorded command, since a penalty starts and the clock is anchored at the last tick. Ticks that
+     * end a period, sound or silence the horn or start a new shift are recorded as they happen.
+     */
+    private GameState applyAndJournal(GameState state, Command command, long currentTimeMillis) {
+        generatedIds.clear();
+        long shiftStartBefore = shiftStartGameTimeMillis;
+        GameState newState = apply(state, command, currentTimeMillis);
+        CommandJournal journal = this.journal;
+        if (journal != null && newState != state) {
+            boolean tick = command instanceof TickCommand;
+            if (tick && countsDown(state, newState) && shiftStartGameTimeMillis == shiftStartBefore) {
+                unjournaledTickMillis = currentTimeMillis;
+                return newState;
+            }
+            try {
+                if (!tick && unjournaledTickMillis != 0L) {
+                    journal.append(new TickCommand(), unjournaledTickMillis, List.of());
+                }
+                unjournaledTickMillis = 0L;
+                journal.append(command, currentTimeMillis, generatedIds);
+            } catch (IOException e) {
+                log.error("Failed to journal {}", command, e);
+            }
+        }
+        return newState;
+    }
+
+    /**
+     * Whether a tick only counted the running clock down, leaving the status, period and horn as they were.
+     */
+    private static boolean countsDown(GameState before, GameState after) {
+        return after.clock().isRunning()
+            && after.status() == before.status()
+            && after.period() == before.period()
+            && after.buzzerOn() == before.buzzerOn();
+    }
+
+    private void commitJournal() {
+        CommandJournal journal = this.journal;
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            log.error("Failed to write journal {}", journal.getPath(), e);
+        }
+    }
+
+    /**
+     * New random id, recorded so the journal can hand the same id back during recovery.
+     */
+    private String nextId() {
+        String id = replayIds.poll();
+        if (id == null) {
+            id = java.util.UUID.randomUUID().toString();
+        }
+        generatedIds.add(id);
+        return id;
+    }
+
+    /**
+     * Applies a command and records it in the undo history if it is an operator edit that changed the state.
+     * Replaying the journal goes through here too, so UNDO and REDO find the same history after a restart.
+     */
+    private GameState apply(GameState state, Command command, long currentTimeMillis) {
+        if (command instanceof UndoCommand) {
+            UndoHistory.Entry edit = undoHistory.undo();
+            if (edit == null) {
+                return state;
+            }
+            revertShiftStart(edit.shiftStartAfter(), edit.shiftStartBefore());
+            return revert(state, edit.after(), edit.before(), edit.appliedAtMillis(), currentTimeMillis);
+        } else if (command instanceof RedoCommand) {
+            UndoHistory.Entry edit = undoHistory.redo();
+            if (edit == null) {
+                return state;
+            }
+            revertShiftStart(edit.shiftStartBefore(), edit.shiftStartAfter());
+            return revert(state, edit.before(), edit.after(), edit.appliedAtMillis(), currentTimeMillis);
+        }
+        long shiftStartBefore = shiftStartGameTimeMillis;
+        GameState newState = applyCommand(state, command, currentTimeMillis);
+        String edit = editName(command);
+        if (command instanceof CreateGameCommand) {
+            undoHistory.clear(); // Edits of the previous game
+        } else if (edit != null && newState != state) {
+            PersistentVector<String> history = PersistentVector.copyOf(newState.eventHistory());
+            if (history.size() >= undoHistory.depth()) {
+                // As many as UNDO can take back, so the state and its snapshots stay small over a long game
+                history = PersistentVector.copyOf(history.subList(history.size() - undoHistory.depth() + 1, history.size()));
+            }
+            newState = newState.withEventHistory(history.append(edit));
+            undoHistory.record(state, newState, currentTimeMillis, shiftStartBefore, shiftStartGameTimeMillis);
+        }
+        return newState;
+    }
+
+    private GameState applyCommand(GameState state, Command command, long currentTimeMillis) {
         if (command instanceof CreateGameCommand createGameCommand) {
-            this.currentState = createNewGame(createGameCommand);
+            return createNewGame(createGameCommand);
         } else if (command instanceof StartClockCommand) {
-            this.currentState = startClock(this.currentState, currentTimeMillis);
+            return startClock(state, currentTimeMillis);
         } else if (command instanceof PauseClockCommand) {
-            this.currentState = pauseClock(this.currentState, currentTimeMillis);
+            return pauseClock(state, currentTimeMillis);
         } else if (command instanceof AddPenaltyCommand addPenaltyCommand) {
-            this.currentState = addPenalty(this.currentState, addPenaltyCommand);
+            return addPenalty(state, addPenaltyCommand);
         } else if (command instanceof TickCommand) {
-            this.currentState = tick(this.currentState, currentTimeMillis);
-            // Check for simulated-time buzzer auto-reset
-            this.currentState = checkBuzzerAutoReset(this.currentState, currentTimeMillis);
+            // Check for simulated-time buzzer auto-reset after the clock has advanced
+            return checkBuzzerAutoReset(tick(state, currentTimeMillis), currentTimeMillis);
         } else if (command instanceof AddGoalCommand addGoalCommand) {
-            this.currentState = addGoal(this.currentState, addGoalCommand, currentTimeMillis);
+            return addGoal(state, addGoalCommand, currentTimeMillis);
         } else if (command instanceof RemoveGoalCommand removeGoalCommand) {
-            this.currentState = removeGoal(this.currentState, removeGoalCommand);
+            return removeGoal(state, removeGoalCommand);
         } else if (command instanceof AddShotCommand addShotCommand) {
-            this.currentState = addShot(this.currentState, addShotCommand);
+            return addShot(state, addShotCommand);
         } else if (command instanceof UndoLastShotCommand undoLastShotCommand) {
-            this.currentState = undoLastShot(this.currentState, undoLastShotCommand);
+            return undoLastShot(state, undoLastShotCommand);
         } else if (command instanceof EndGameCommand) {
-            this.currentState = endGame(this.currentState);
+            return endGame(state);
         } else if (command instanceof ResetGameCommand) {
-            this.currentState = resetGame(this.currentState);
+            return resetGame(state);
         } else if (command instanceof SetPeriodCommand setPeriodCommand) {
-            this.currentState = setPeriod(this.currentState, setPeriodCommand);
+            return setPeriod(state, setPeriodCommand);
         } else if (command instanceof SetClockCommand setClockCommand) {
-            this.currentState = setClockTime(this.currentState, setClockCommand);
+            return setClockTime(state, setClockCommand);
         } else if (command instanceof TriggerBuzzerCommand) {
-            this.currentState = toggleBuzzerAt(this.currentState, currentTimeMillis);
+            return toggleBuzzerAt(state, currentTimeMillis);
+        }
+        return state;
+    }
+
+    /**
+     * The name an operator edit is listed under in the state's event history, or null for a command UNDO
+     * does not take back: running the clock, the buzzer and creating a game.
+     */
+    private static String editName(Command command) {
+        if (command instanceof AddGoalCommand) {
+            return "ADD_GOAL";
+        } else if (command instanceof RemoveGoalCommand) {
+            return "REMOVE_GOAL";
+        } else if (command instanceof AddShotCommand) {
+            return "ADD_SHOT";
+        } else if (command instanceof UndoLastShotCommand) {
+            return "UNDO_LAST_SHOT";
+        } else if (command instanceof AddPenaltyCommand) {
+            return "ADD_PENALTY";
+        } else if (command instanceof SetClockCommand) {
+            return "SET_CLOCK";
+        } else if (command instanceof SetPeriodCommand) {
+            return "SET_PERIOD";
+        } else if (command instanceof EndGameCommand) {
+            return "END_GAME";
+        } else if (command instanceof ResetGameCommand) {
+            return "RESET_GAME";
         }
-        // Only update hardware if the state actually changed
-        if (!oldState.equals(this.currentState)) {
-            hardwareOutputAdapter.update(this.currentState);
-            stateChangeConsumer.accept(oldState, this.currentState); // Notify consumer of state change with old and new state
+        return null;
+    }
+
+    /**
+     * Moves the game across an edit, from its {@code from} side to its {@code to} side: for UNDO from the state
+     * after the edit to the one before it, for REDO the other way. Only the parts the edit changed are replaced,
+     * found by reference since an edit hands on the parts it leaves alone; what has run on since, such as the
+     * clock, penalty times and the buzzer, is kept.
+     * <p>
+     * Putting back an edit's clock pauses a running game first, and a clock that was running comes back
+     * paused where it stood when the edit was applied. A penalty comes back with the time it had then,
+     * counting again from now if the clock is running in play.
+     */
+    private GameState revert(GameState state, GameState from, GameState to, long editedAtMillis, long currentTimeMillis) {
+        GameState result = state;
+        if (from.clock() != to.clock() || from.status() != to.status() || from.period() != to.period()) {
+            if (result.clock().isRunning() && result.status() == GameStatus.PLAYING) {
+                result = pauseClock(result, currentTimeMillis); // Stops the timer and freezes the penalties
+            } else if (result.clock().isRunning()) {
+                stopTimer();
+            }
+            ClockState clock = to.clock();
+            GameStatus status = to.status();
+            if (clock.isRunning()) {
+                long elapsed = editedAtMillis - clock.startTimeWallClock();
+                clock = new ClockState(Math.max(0, clock.timeRemainingMillis() - elapsed), false, 0L);
+                status = status == GameStatus.PLAYING ? GameStatus.PAUSED : status;
+            }
+            result = result.withStatus(status).withPeriod(to.period()).withClock(clock);
         }
-        return this.currentState;
+        long penaltiesStartAt = result.clock().isRunning() && result.status() == GameStatus.PLAYING ? currentTimeMillis : 0L;
+        return result
+            .withHome(revertTeam(result.home(), from.home(), to.home(), editedAtMillis, penaltiesStartAt))
+            .withAway(revertTeam(result.away(), from.away(), to.away(), editedAtMillis, penaltiesStartAt))
+            .withEventHistory(to.eventHistory());
     }
 
-    private GameState toggleBuzzer(GameState state) {
-        return toggleBuzzerAt(state, System.currentTimeMillis());
+    /**
+     * Puts back the shift anchor an edit moved, such as a reset clearing it; otherwise the shift that has
+     * run on since is left alone.
+     */
+    private void revertShiftStart(long from, long to) {
+        if (from != to) {
+            shiftStartGameTimeMillis = to;
+        }
+    }
+
+    private static TeamState revertTeam(TeamState team, TeamState from, TeamState to, long editedAtMillis, long penaltiesStartAt) {
+        if (from == to) {
+            return team;
+        }
+        TeamState result = team.withShots(from.shots() != to.shots() ? to.shots() : team.shots());
+        if (from.goals() != to.goals()) {
+            result = result.withGoals(to.goals());
+        }
+        if (from.penalties() != to.penalties()) {
+            // Penalty times ran on since the edit, so penalties are matched by id instead of put back as a list
+            PersistentVector<Penalty> penalties = PersistentVector.copyOf(result.penalties())
+                .without(p -> containsPenalty(from.penalties(), p.penaltyId()) && !containsPenalty(to.penalties(), p.penaltyId()));
+            for (Penalty p : to.penalties()) {
+                if (!containsPenalty(from.penalties(), p.penaltyId()) && !containsPenalty(penalties, p.penaltyId())) {
+                    long remaining = p.startTimeWallClock() == 0L
+                        ? p.timeRemainingMillis()
+                        : Math.max(0, p.timeRemainingMillis() - (editedAtMillis - p.startTimeWallClock()));
+                    penalties = penalties.append(p.withTimeRemaining(remaining, penaltiesStartAt));
+                }
+            }
+            result = result.withPenalties(penalties);
+        }
+        return result;
+    }
+
+    private static boolean containsPenalty(List<Penalty> penalties, String penaltyId) {
+        for (Penalty p : penalties) {
+            if (p.penaltyId().equals(penaltyId)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private GameState toggleBuzzerAt(GameState state, long currentTimeMillis) {
         boolean turningOn = !state.buzzerOn();
-        GameState newState = new GameState(
-            state.gameId(),
-            state.config(),
-            state.status(),
-            state.period(),
-            state.clock(),
-            state.home(),
-            state.away(),
-            turningOn, // Toggle buzzer state
-            state.eventHistory()
-        );
+        GameState newState = state.withBuzzerOn(turningOn);
         if (turningOn) {
             buzzerOnSince = currentTimeMillis;
             scheduleBuzzerAutoReset();
         } else {
             buzzerOnSince = 0;
+            buzzerResetDue = false;
             cancelBuzzerAutoReset();
         }
         return newState;
@@ -130,29 +628,21 @@ public class GameEngine {
 
     private GameState checkBuzzerAutoReset(GameState state, long currentTimeMillis) {
         if (!state.buzzerOn() || buzzerOnSince == 0) {
+            buzzerResetDue = false;
             return state;
         }
-        if (currentTimeMillis - buzzerOnSince >= BUZZER_AUTO_RESET_MILLIS) {
-            log.info("Auto resetting buzzer after simulated-time timeout");
+        if (buzzerResetDue || currentTimeMillis - buzzerOnSince >= BUZZER_AUTO_RESET_MILLIS) {
+            log.info("Auto resetting buzzer after {} timeout", buzzerResetDue ? "real-time" : "simulated-time");
             buzzerOnSince = 0;
+            buzzerResetDue = false;
             cancelBuzzerAutoReset();
-            return new GameState(
-                state.gameId(),
-                state.config(),
-                state.status(),
-                state.period(),
-                state.clock(),
-                state.home(),
-                state.away(),
-                false, // Turn off buzzer
-                state.eventHistory()
-            );
+            return state.withBuzzerOn(false);
         }
         return state;
     }
 
     private GameState resetGame(GameState state) {
-        gameTimer.stop();
+        stopTimer();
         // Reset shift timer
         shiftStartGameTimeMillis = -1;
         long resetClockMillis = state.config() != null ? resolvePeriodDuration(state.config(), 0) : 0L;
@@ -162,118 +652,48 @@ public class GameEngine {
             GameStatus.PRE_GAME,
             0, // Reset period
             new ClockState(resetClockMillis, false, 0L), // Reset clock
-            new TeamState(List.of(), 0, List.of()), // Reset home team stats
-            new TeamState(List.of(), 0, List.of()), // Reset away team stats
+            TeamState.EMPTY, // Reset home team stats
+            TeamState.EMPTY, // Reset away team stats
             false, // Buzzer off
             List.of() // Clear event history
         );
     }
 
     private GameState endGame(GameState state) {
-        gameTimer.stop();
-        return new GameState(
-            state.gameId(),
-            state.config(),
-            GameStatus.GAME_OVER,
-            state.period(),
-            new ClockState(state.clock().timeRemainingMillis(), false, 0L),
-            state.home(),
-            state.away(),
-            state.buzzerOn(),
-            state.eventHistory()
-        );
+        stopTimer();
+        if (state.status() == GameStatus.GAME_OVER && !state.clock().isRunning()) {
+            return state;
+        }
+        return state.withStatus(GameStatus.GAME_OVER)
+            .withClock(new ClockState(state.clock().timeRemainingMillis(), false, 0L));
     }
 
     private GameState undoLastShot(GameState state, UndoLastShotCommand command) {
         String teamId = command.teamId();
-
-        TeamState newHomeState = state.home();
-        TeamState newAwayState = state.away();
-        boolean changed = false;
-
-        if ("home".equals(teamId)) {
-            if (state.home().shots() > 0) {
-                newHomeState = new TeamState(state.home().goals(), state.home().shots() - 1, state.home().penalties());
-                changed = true;
-            }
-        } else { // "away"
-            if (state.away().shots() > 0) {
-                newAwayState = new TeamState(state.away().goals(), state.away().shots() - 1, state.away().penalties());
-                changed = true;
-            }
-        }
-
-        if (!changed) {
+        TeamState team = state.team(teamId);
+        if (team.shots() <= 0) {
             return state; // No change if shots already 0
         }
-
-        return new GameState(
-            state.gameId(),
-            state.config(),
-            state.status(),
-            state.period(),
-            state.clock(),
-            newHomeState,
-            newAwayState,
-            state.buzzerOn(),
-            state.eventHistory()
-        );
+        return state.withTeam(teamId, team.withShots(team.shots() - 1));
     }
 
     private GameState addShot(GameState state, AddShotCommand command) {
         String teamId = command.teamId();
-
-        TeamState newHomeState = state.home();
-        TeamState newAwayState = state.away();
-
-        if ("home".equals(teamId)) {
-            newHomeState = new TeamState(state.home().goals(), state.home().shots() + 1, state.home().penalties());
-        } else {
-            newAwayState = new TeamState(state.away().goals(), state.away().shots() + 1, state.away().penalties());
-        }
-
-        return new GameState(
-            state.gameId(),
-            state.config(),
-            state.status(),
-            state.period(),
-            state.clock(),
-            newHomeState,
-            newAwayState,
-            state.buzzerOn(),
-            state.eventHistory()
-        );
+        TeamState team = state.team(teamId);
+        return state.withTeam(teamId, team.withShots(team.shots() + 1));
     }
 
     private GameState removeGoal(GameState state, RemoveGoalCommand command) {
         String goalIdToRemove = command.goalId();
 
-        // Check home team goals
-        List<GoalEvent> homeGoals = state.home().goals();
-        List<GoalEvent> newHomeGoals = homeGoals.stream()
-            .filter(goal -> !goal.goalId().equals(goalIdToRemove))
-            .collect(java.util.stream.Collectors.toUnmodifiableList());
-
-        if (newHomeGoals.size() < homeGoals.size()) {
-            // Goal found and removed from home team
-            TeamState newHomeState = new TeamState(newHomeGoals, state.home().shots(), state.home().penalties());
-            return new GameState(state.gameId(), state.config(), state.status(), state.period(), state.clock(), newHomeState, state.away(), state.buzzerOn(), state.eventHistory());
-        }
-
-        // Check away team goals if not found in home team
-        List<GoalEvent> awayGoals = state.away().goals();
-        List<GoalEvent> newAwayGoals = awayGoals.stream()
-            .filter(goal -> !goal.goalId().equals(goalIdToRemove))
-            .collect(java.util.stream.Collectors.toUnmodifiableList());
-
-        if (newAwayGoals.size() < awayGoals.size()) {
-            // Goal found and removed from away team
-            TeamState newAwayState = new TeamState(newAwayGoals, state.away().shots(), state.away().penalties());
-            return new GameState(state.gameId(), state.config(), state.status(), state.period(), state.clock(), state.home(), newAwayState, state.buzzerOn(), state.eventHistory());
+        // Check home team goals, then away; the same state comes back if the goal is in neither
+        GameState result = state.withHome(state.home().withGoals(
+            PersistentVector.copyOf(state.home().goals()).without(goal -> goal.goalId().equals(goalIdToRemove))));
+        if (result != state) {
+            return result;
         }
-
-        // Goal not found, return current state unchanged
-        return state;
+        return state.withAway(state.away().withGoals(
+            PersistentVector.copyOf(state.away().goals()).without(goal -> goal.goalId().equals(goalIdToRemove))));
     }
 
     private GameState addGoal(GameState state, AddGoalCommand command, long currentTimeMillis) {
@@ -291,7 +711,7 @@ public class GameEngine {
         }
 
         var newGoal = new GoalEvent(
-            java.util.UUID.randomUUID().toString(),
+            nextId(),
             teamId,
             state.period(),
             timeInPeriodMillis,
@@ -300,30 +720,7 @@ public class GameEngine {
             isEmptyNet
         );
 
-        TeamState newHomeState = state.home();
-        TeamState newAwayState = state.away();
-
-        if ("home".equals(teamId)) {
-            var currentGoals = new ArrayList<>(state.home().goals());
-            currentGoals.add(newGoal);
-            newHomeState = new TeamState(Collections.unmodifiableList(currentGoals), state.home().shots(), Collections.unmodifiableList(state.home().penalties()));
-        } else {
-            var currentGoals = new ArrayList<>(state.away().goals());
-            currentGoals.add(newGoal);
-            newAwayState = new TeamState(Collections.unmodifiableList(currentGoals), state.away().shots(), Collections.unmodifiableList(state.away().penalties()));
-        }
-
-        return new GameState(
-            state.gameId(),
-            state.config(),
-            state.status(),
-            state.period(),
-            state.clock(),
-            newHomeState,
-            newAwayState,
-            state.buzzerOn(),
-            state.eventHistory()
-        );
+        return state.withTeam(teamId, state.team(teamId).withGoal(newGoal));
     }
 
     private GameState addPenalty(GameState state, AddPenaltyCommand command) {
@@ -339,7 +736,7 @@ public class GameEngine {
         long penaltyStartTime = isPlayingTime ? state.clock().startTimeWallClock() : 0L;
 
         var newPenalty = new Penalty(
-            java.util.UUID.randomUUID().toString(),
+            nextId(),
             teamId,
             playerNumber,
             servingPlayerNumber,
@@ -349,19 +746,7 @@ public class GameEngine {
             state.period()
         );
 
-        TeamState newHomeState = state.home();
-        TeamState newAwayState = state.away();
-
-        if ("home".equals(teamId)) {
-            var currentPenalties = new ArrayList<>(state.home().penalties());
-            currentPenalties.add(newPenalty);
-            newHomeState = new TeamState(state.home().goals(), state.home().shots(), Collections.unmodifiableList(currentPenalties));
-        } else {
-            var currentPenalties = new ArrayList<>(state.away().penalties());
-            currentPenalties.add(newPenalty);
-            newAwayState = new TeamState(state.away().goals(), state.away().shots(), Collections.unmodifiableList(currentPenalties));
-        }
-        return new GameState(state.gameId(), state.config(), state.status(), state.period(), state.clock(), newHomeState, newAwayState, state.buzzerOn(), state.eventHistory());
+        return state.withTeam(teamId, state.team(teamId).withPenalty(newPenalty));
     }
 
     private GameState tick(GameState state, long currentTimeMillis) {
@@ -371,6 +756,9 @@ public class GameEngine {
 
         long elapsed = currentTimeMillis - state.clock().startTimeWallClock();
         long newTimeRemaining = state.clock().timeRemainingMillis() - elapsed;
+        if (elapsed == 0 && newTimeRemaining > 0) {
+            return state; // Already counted to this instant
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("TICK: elapsed={}ms, oldTime={}ms, newTime={}ms",
@@ -380,7 +768,7 @@ public class GameEngine {
         ClockState updatedClock = new ClockState(newTimeRemaining, true, currentTimeMillis);
 
         if (newTimeRemaining <= 0) {
-            gameTimer.stop();
+            stopTimer();
             buzzerOnSince = currentTimeMillis; // Track when buzzer was turned on
             if (state.period() == 0) {
                 // Warmup ended - go to period 1
@@ -479,35 +867,55 @@ public class GameEngine {
         return result;
     }
 
-    private TeamState updatePenaltyTimes(TeamState team, long currentTimeMillis) {
-        List<Penalty> updatedPenalties = new ArrayList<>();
-        for (Penalty p : team.penalties()) {
-            if (p.startTimeWallClock() == 0L) {
-                // Penalty not running, keep as is
-                updatedPenalties.add(p);
-            } else {
-                long elapsed = currentTimeMillis - p.startTimeWallClock();
-                long newRemaining = p.timeRemainingMillis() - elapsed;
-                if (newRemaining > 0) {
-                    // Update penalty with new remaining time and reset start time
-                    updatedPenalties.add(new Penalty(
-                        p.penaltyId(),
-                        p.teamId(),
-                        p.playerNumber(),
-                        p.servingPlayerNumber(),
-                        p.durationMillis(),
-                        newRemaining,
-                        currentTimeMillis,
-                        p.period()
-                    ));
+    /**
+     * Engine time of the next moment the running clock changes something anyone can see: the clock reaching
+     * its next whole second (or tenth, once the board shows tenths), a running penalty reaching its next
+     * whole second or expiring, the shift buzzer, or the end of the period. Each of these counts down at
+     * the clock's rate from its {@code startTimeWallClock}, so the deadline is exact and a tick in between
+     * would change nothing on a display.
+     */
+    long nextTickMillis(GameState state) {
+        ClockState clock = state.clock();
+        long remaining = clock.timeRemainingMillis();
+        // Like the board, which shows tenths once the time rounded up to the second is under a minute
+        long unit = remaining > CLOCK_TENTHS_BELOW_MILLIS ? 1000 : 100;
+        long deadline = clock.startTimeWallClock() + untilBoundary(remaining, unit);
+        if (state.status() != GameStatus.PLAYING) {
+            return deadline; // Penalties and shifts only run in play
+        }
+        for (TeamState team : List.of(state.home(), state.away())) {
+            for (Penalty p : team.penalties()) {
+                if (p.startTimeWallClock() != 0L) {
+                    deadline = Math.min(deadline, p.startTimeWallClock() + untilBoundary(p.timeRemainingMillis(), 1000));
                 }
-                // If newRemaining <= 0, penalty expired - don't add to list
             }
         }
-        if (updatedPenalties.size() == team.penalties().size() && updatedPenalties.equals(team.penalties())) {
-            return team; // No changes
+        Integer shiftLengthSeconds = state.config() != null ? state.config().shiftLengthSeconds() : null;
+        if (shiftLengthSeconds != null && shiftLengthSeconds > 0 && shiftStartGameTimeMillis >= 0) {
+            long shiftEndsAt = shiftStartGameTimeMillis - shiftLengthSeconds * 1000L;
+            deadline = Math.min(deadline, clock.startTimeWallClock() + Math.max(0, remaining - shiftEndsAt));
         }
-        return new TeamState(team.goals(), team.shots(), Collections.unmodifiableList(updatedPenalties));
+        return deadline;
+    }
+
+    /**
+     * Millis until {@code remaining} counts down to the next multiple of {@code unit}, where a time shown
+     * rounded up to the unit changes; zero once nothing is left.
+     */
+    private static long untilBoundary(long remaining, long unit) {
+        return remaining <= 0 ? 0 : remaining - (remaining - 1) / unit * unit;
+    }
+
+    private TeamState updatePenaltyTimes(TeamState team, long currentTimeMillis) {
+        // Copies the list once if any penalty is running; the same team comes back if none is
+        return team.withPenalties(PersistentVector.copyOf(team.penalties()).updated(p -> {
+            if (p.startTimeWallClock() == 0L) {
+                return p; // Penalty not running, keep as is
+            }
+            long newRemaining = p.timeRemainingMillis() - (currentTimeMillis - p.startTimeWallClock());
+            // Counted from now on; an expired penalty is dropped
+            return newRemaining > 0 ? p.withTimeRemaining(newRemaining, currentTimeMillis) : null;
+        }));
     }
 
     private GameState pauseClock(GameState state, long currentTimeMillis) {
@@ -515,7 +923,7 @@ public class GameEngine {
             return state;
         }
 
-        gameTimer.stop(); // Stop the game timer
+        stopTimer(); // Stop the game timer
 
         long elapsed = currentTimeMillis - state.clock().startTimeWallClock();
         long newTimeRemaining = state.clock().timeRemainingMillis() - elapsed;
@@ -541,45 +949,19 @@ public class GameEngine {
     }
 
     private TeamState freezePenaltyTimes(TeamState team, long currentTimeMillis) {
-        List<Penalty> frozenPenalties = new ArrayList<>();
-        for (Penalty p : team.penalties()) {
+        return team.withPenalties(PersistentVector.copyOf(team.penalties()).updated(p -> {
             if (p.startTimeWallClock() == 0L) {
-                frozenPenalties.add(p);
-            } else {
-                long elapsed = currentTimeMillis - p.startTimeWallClock();
-                long newRemaining = Math.max(0, p.timeRemainingMillis() - elapsed);
-                frozenPenalties.add(new Penalty(
-                    p.penaltyId(),
-                    p.teamId(),
-                    p.playerNumber(),
-                    p.servingPlayerNumber(),
-                    p.durationMillis(),
-                    newRemaining,
-                    0L, // Frozen
-                    p.period()
-                ));
+                return p;
             }
-        }
-        return new TeamState(team.goals(), team.shots(), Collections.unmodifiableList(frozenPenalties));
+            long elapsed = currentTimeMillis - p.startTimeWallClock();
+            return p.withTimeRemaining(Math.max(0, p.timeRemainingMillis() - elapsed), 0L); // Frozen
+        }));
     }
 
     private TeamState startPenaltyTimers(TeamState team, long currentTimeMillis) {
-        List<Penalty> startedPenalties = new ArrayList<>();
-        for (Penalty p : team.penalties()) {
-            if (p.timeRemainingMillis() > 0) {
-                startedPenalties.add(new Penalty(
-                    p.penaltyId(),
-                    p.teamId(),
-                    p.playerNumber(),
-                    p.servingPlayerNumber(),
-                    p.durationMillis(),
-                    p.timeRemainingMillis(),
-                    currentTimeMillis, // Start counting
-                    p.period()
-                ));
-            }
-        }
-        return new TeamState(team.goals(), team.shots(), Collections.unmodifiableList(startedPenalties));
+        // Start counting; penalties with no time left are dropped
+        return team.withPenalties(PersistentVector.copyOf(team.penalties()).updated(
+            p -> p.timeRemainingMillis() > 0 ? p.withTimeRemaining(p.timeRemainingMillis(), currentTimeMillis) : null));
     }
 
     private GameState startClock(GameState state, long currentTimeMillis) {
@@ -595,7 +977,9 @@ public class GameEngine {
             return state;
         }
         // Start the game timer to send TICK commands
-        gameTimer.start(this::handleTick); // Use method reference to call internal handleTick
+        if (!timersDeferred()) {
+            gameTimer.start(this::handleTick); // Use method reference to call internal handleTick
+        }
 
         GameStatus nextStatus = state.status() == GameStatus.INTERMISSION ? GameStatus.INTERMISSION : GameStatus.PLAYING;
 
@@ -646,13 +1030,13 @@ public class GameEngine {
         long initialClock = resolvePeriodDuration(config, initialPeriod);
 
         return new GameState(
-            java.util.UUID.randomUUID().toString(),
+            nextId(),
             config,
             GameStatus.READY_FOR_PERIOD,
             initialPeriod,
             new ClockState(initialClock, false, 0L),
-            new TeamState(List.of(), 0, List.of()),
-            new TeamState(List.of(), 0, List.of()),
+            TeamState.EMPTY,
+            TeamState.EMPTY,
             false,
             List.of()
         );
@@ -665,12 +1049,16 @@ public class GameEngine {
         int configuredPeriods = Math.max(0, state.config().periods());
         int requestedPeriod = Math.max(0, command.period());
         int clampedPeriod = Math.min(requestedPeriod, configuredPeriods);
+        ClockState resetClock = new ClockState(resolvePeriodDuration(state.config(), clampedPeriod), false, 0L);
+        if (state.status() == GameStatus.READY_FOR_PERIOD && state.period() == clampedPeriod && state.clock().equals(resetClock)) {
+            return state;
+        }
         return new GameState(
             state.gameId(),
             state.config(),
             GameStatus.READY_FOR_PERIOD, // Set status to READY_FOR_PERIOD when period changes
             clampedPeriod,
-            new ClockState(resolvePeriodDuration(state.config(), clampedPeriod), false, 0L), // Reset clock for new period
+            resetClock, // Reset clock for new period
             state.home(),
             state.away(),
             state.buzzerOn(),
@@ -682,17 +1070,21 @@ public class GameEngine {
         if (state.config() == null) {
             return state;
         }
-        gameTimer.stop();
+        stopTimer();
         long maxMillis = Math.max(0, resolvePeriodDuration(state.config(), state.period()));
         long requested = Math.max(0, command.timeMillis());
         long clamped = Math.min(requested, maxMillis);
         GameStatus nextStatus = state.status() == GameStatus.PLAYING ? GameStatus.PAUSED : state.status();
+        ClockState setClock = new ClockState(clamped, false, 0L);
+        if (nextStatus == state.status() && setClock.equals(state.clock())) {
+            return state;
+        }
         return new GameState(
             state.gameId(),
             state.config(),
             nextStatus,
             state.period(),
-            new ClockState(clamped, false, 0L),
+            setClock,
             state.home(),
             state.away(),
             state.buzzerOn(),
@@ -783,17 +1175,26 @@ public class GameEngine {
         return period <= 0 ? config.warmupLengthMillis() : config.periodLengthMillis();
     }
 
+    private void stopTimer() {
+        if (!timersDeferred()) {
+            gameTimer.stop();
+        }
+    }
+
     private void scheduleBuzzerAutoReset() {
-        if (buzzerResetFuture != null) {
-            buzzerResetFuture.cancel(false);
+        if (timersDeferred()) {
+            return;
+        }
+        if (buzzerReset != null) {
+            buzzerReset.cancel();
         }
-        buzzerResetFuture = buzzerScheduler.schedule(this::autoResetBuzzer, 3, TimeUnit.SECONDS);
+        buzzerReset = deadlines.schedule(this::autoResetBuzzer, BUZZER_AUTO_RESET_MILLIS);
     }
 
     private void cancelBuzzerAutoReset() {
-        if (buzzerResetFuture != null) {
-            buzzerResetFuture.cancel(false);
-            buzzerResetFuture = null;
+        if (buzzerReset != null) {
+            buzzerReset.cancel();
+            buzzerReset = null;
         }
     }
 
@@ -804,10 +1205,9 @@ public class GameEngine {
                 this.currentState != null ? this.currentState.buzzerOn() : "n/a");
             return;
         }
-        log.info("Auto resetting buzzer after real-time timeout");
-        GameState before = this.currentState;
-        processCommand(new TriggerBuzzerCommand(), System.currentTimeMillis());
-        log.debug("autoResetBuzzer: buzzerOn changed from {} to {}",
-            before.buzzerOn(), this.currentState.buzzerOn());
+        // Route the reset through a tick so it is applied by the single writer and stays idempotent:
+        // toggling here could turn the buzzer back on if a simulated-time reset got there first.
+        buzzerResetDue = true;
+        submit(new TickCommand());
     }
 }
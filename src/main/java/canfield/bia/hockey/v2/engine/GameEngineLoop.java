@@ -0,0 +1,266 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.spec.Command;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-writer command loop for the GameEngine.
+ * WebSocket workers, the game timer and the buzzer scheduler all enqueue commands here;
+ * one dedicated thread drains the queue and applies them, so every state transition is serialized.
+ * Readers keep using {@link GameEngine#getCurrentState()}, which is a plain volatile read.
+ * <p>
+ * In {@link Mode#BATCH} the loop drains everything that is queued and applies it with
+ * {@link GameEngine#processCommands}, so a burst of commands produces one patch and one hardware update.
+ * <p>
+ * A command is applied at the engine time it was submitted, not the time the loop got to it, so the
+ * queueing delay is not added to clock or goal times.
+ */
+public class GameEngineLoop {
+
+    private static final Logger log = LoggerFactory.getLogger(GameEngineLoop.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long SLOW_COMMAND_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final GameEngine gameEngine;
+    private final BlockingQueue<QueuedCommand> queue;
+    private final Mode mode;
+    private final String threadName;
+    private final List<QueuedCommand> drained = new ArrayList<>();
+    private final List<GameEngine.TimedCommand> batch = new ArrayList<>();
+    private long lastAppliedMillis; // Loop thread only
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    // Metrics, written by the loop thread (and by producers for rejections and queue depth)
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile int maxBatchSize;
+
+    private record QueuedCommand(Command command, long enqueuedNanos, long submittedMillis) {}
+
+    /**
+     * How queued commands are applied.
+     */
+    public enum Mode {
+        /** Each command is its own transition. */
+        SINGLE,
+        /** Everything queued is folded into one transition. */
+        BATCH
+    }
+
+    public GameEngineLoop(GameEngine gameEngine) {
+        this(gameEngine, DEFAULT_CAPACITY, Mode.BATCH);
+    }
+
+    public GameEngineLoop(GameEngine gameEngine, int capacity, Mode mode) {
+        this(gameEngine, capacity, mode, "game-engine-loop");
+    }
+
+    /**
+     * @param threadName name of the loop thread, to tell the loops apart when a server runs several engines
+     */
+    public GameEngineLoop(GameEngine gameEngine, int capacity, Mode mode, String threadName) {
+        this.gameEngine = gameEngine;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.mode = mode;
+        this.threadName = threadName;
+    }
+
+    /**
+     * Starts the loop thread and routes the engine's internal commands (ticks, buzzer reset) through it.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(this::run, threadName);
+        t.setDaemon(true);
+        thread = t;
+        gameEngine.attachLoop(this);
+        t.start();
+    }
+
+    /**
+     * Stops the loop thread. Commands still queued are discarded.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        gameEngine.attachLoop(null);
+        Thread t = thread;
+        thread = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    /**
+     * Enqueues a command to be applied on the loop thread.
+     * Never blocks; returns false if the queue is full and the command was dropped.
+     */
+    public boolean submit(Command command) {
+        // Depth including this command; sampled first since the loop may drain it straight away
+        int depth = queue.size() + 1;
+        if (!queue.offer(new QueuedCommand(command, System.nanoTime(), gameEngine.getTimeSource().currentTimeMillis()))) {
+            rejectedCount.incrementAndGet();
+            log.warn("Engine command queue full ({} pending), dropping {}", queue.size(), command.getClass().getSimpleName());
+            return false;
+        }
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /** Number of transitions applied; equals the applied count in {@link Mode#SINGLE}. */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Enqueue-to-apply latency of the most recently applied command. */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    public long getAverageLatencyNanos() {
+        long count = appliedCount.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / count;
+    }
+
+    private void run() {
+        long lastReport = System.nanoTime();
+        while (running) {
+            QueuedCommand queued;
+            try {
+                queued = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (queued != null) {
+                if (mode == Mode.BATCH) {
+                    applyBatch(queued);
+                } else {
+                    apply(queued);
+                }
+            }
+            long now = System.nanoTime();
+            if (now - lastReport >= REPORT_INTERVAL_NANOS) {
+                lastReport = now;
+                if (log.isDebugEnabled()) {
+                    log.debug("Engine loop: applied={} batches={} rejected={} depth={} maxDepth={} avgLatency={}us maxLatency={}us",
+                        appliedCount.get(), batchCount.get(), rejectedCount.get(), queue.size(), maxQueueDepth.get(),
+                        getAverageLatencyNanos() / 1000, maxLatencyNanos / 1000);
+                }
+            }
+        }
+        log.debug("Engine loop stopped");
+    }
+
+    private void apply(QueuedCommand queued) {
+        recordLatency(queued, System.nanoTime());
+        try {
+            gameEngine.processCommand(queued.command(), appliedMillis(queued));
+        } catch (Exception e) {
+            log.error("Failed to apply {}", queued.command(), e);
+        } finally {
+            appliedCount.incrementAndGet();
+            batchCount.incrementAndGet();
+        }
+    }
+
+    private void applyBatch(QueuedCommand first) {
+        drained.add(first);
+        queue.drainTo(drained, MAX_BATCH_SIZE - 1);
+        long now = System.nanoTime();
+        for (QueuedCommand queued : drained) {
+            recordLatency(queued, now);
+            batch.add(new GameEngine.TimedCommand(queued.command(), appliedMillis(queued)));
+        }
+        if (batch.size() > maxBatchSize) {
+            maxBatchSize = batch.size();
+        }
+        try {
+            gameEngine.processCommands(batch);
+        } catch (Exception e) {
+            log.error("Failed to apply batch of {} commands", batch.size(), e);
+        } finally {
+            appliedCount.addAndGet(batch.size());
+            batchCount.incrementAndGet();
+            drained.clear();
+            batch.clear();
+        }
+    }
+
+    /**
+     * The time a command is applied at: when it was submitted, but never before the command applied ahead of it,
+     * since two producers can read the time in one order and enqueue in the other.
+     */
+    private long appliedMillis(QueuedCommand queued) {
+        lastAppliedMillis = Math.max(lastAppliedMillis, queued.submittedMillis());
+        return lastAppliedMillis;
+    }
+
+    private void recordLatency(QueuedCommand queued, long nowNanos) {
+        long latency = nowNanos - queued.enqueuedNanos();
+        recordLatency(latency);
+        if (latency > SLOW_COMMAND_NANOS) {
+            log.warn("{} waited {}ms in the engine queue (depth={})",
+                queued.command().getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(latency), queue.size());
+        }
+    }
+
+    private void recordLatency(long latency) {
+        lastLatencyNanos = latency;
+        if (latency > maxLatencyNanos) {
+            maxLatencyNanos = latency;
+        }
+        totalLatencyNanos.addAndGet(latency);
+    }
+}
@@ -0,0 +1,145 @@
+package canfield.bia.hockey.v2.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The rinks one server runs, keyed by rink id. Each rink is an independent game: its own {@link GameEngine}
+ * with its own hardware adapter, journal and snapshots, and its own {@link GameEngineLoop} thread, so a rink
+ * whose scoreboard or disk stalls only holds up its own commands. The first rink registered is the default,
+ * used by clients that do not name one.
+ * <p>
+ * Rinks are registered at startup, before {@link #start}; lookups may come from any thread. Between the two
+ * the caller sets each engine up (recovery, a first game) on its own thread, and the engine holds back its
+ * timers, so nothing else applies commands until {@code start} hands the engine to its loop.
+ */
+public class GameRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(GameRegistry.class);
+
+    /** Id of the rink a single-rink server runs. */
+    public static final String DEFAULT_RINK_ID = "1";
+    private static final Pattern RINK_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Map<String, Rink> rinks = new LinkedHashMap<>();
+    private boolean started;
+
+    /**
+     * One rink's engine and command loop, and whatever else it owns that must be closed with it.
+     */
+    public static final class Rink {
+        private final String id;
+        private final GameEngine engine;
+        private final GameEngineLoop loop;
+        private final List<AutoCloseable> resources = new ArrayList<>();
+
+        private Rink(String id, GameEngine engine) {
+            this.id = id;
+            this.engine = engine;
+            this.loop = new GameEngineLoop(engine, GameEngineLoop.DEFAULT_CAPACITY, GameEngineLoop.Mode.BATCH, "game-engine-loop-" + id);
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public GameEngine engine() {
+            return engine;
+        }
+
+        public GameEngineLoop loop() {
+            return loop;
+        }
+
+        /**
+         * Closes {@code resource} when the registry stops, after the rink's loop; resources are closed in
+         * the reverse order they were added.
+         */
+        public synchronized Rink closeOnStop(AutoCloseable resource) {
+            resources.add(resource);
+            return this;
+        }
+
+        private synchronized void stop() {
+            // Disarm the timers first: a tick due once the loop has gone would be applied on the timer thread
+            engine.stop();
+            loop.stop();
+            for (int i = resources.size() - 1; i >= 0; i--) {
+                try {
+                    resources.get(i).close();
+                } catch (Exception e) {
+                    log.warn("Error closing {} of rink {}", resources.get(i), id, e);
+                }
+            }
+            resources.clear();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the id is not a plain path segment or is already registered
+     */
+    public synchronized Rink register(String rinkId, GameEngine engine) {
+        if (rinkId == null || !RINK_ID.matcher(rinkId).matches()) {
+            throw new IllegalArgumentException("Invalid rink id: " + rinkId);
+        }
+        if (rinks.containsKey(rinkId)) {
+            throw new IllegalArgumentException("Rink already registered: " + rinkId);
+        }
+        Rink rink = new Rink(rinkId, engine);
+        rinks.put(rinkId, rink);
+        if (started) {
+            rink.loop().start();
+        } else {
+            engine.holdTimersUntilLoop();
+        }
+        return rink;
+    }
+
+    /**
+     * @return the rink, or null if there is none by that id
+     */
+    public synchronized Rink get(String rinkId) {
+        return rinks.get(rinkId);
+    }
+
+    /**
+     * @return the first rink registered, or null if there is none yet
+     */
+    public synchronized Rink getDefault() {
+        return rinks.isEmpty() ? null : rinks.values().iterator().next();
+    }
+
+    /**
+     * @return the rinks in the order they were registered
+     */
+    public synchronized List<Rink> rinks() {
+        return Collections.unmodifiableList(new ArrayList<>(rinks.values()));
+    }
+
+    /**
+     * Starts every rink's command loop; from then on each engine applies its commands on its own thread.
+     */
+    public synchronized void start() {
+        started = true;
+        for (Rink rink : rinks.values()) {
+            rink.loop().start();
+        }
+    }
+
+    /**
+     * Stops every rink's timers and command loop and closes what the rinks own.
+     */
+    public synchronized void stop() {
+        started = false;
+        for (Rink rink : rinks.values()) {
+            rink.stop();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static canfield.bia.hockey.v2.spec.CommandCodec.getString;
+import static canfield.bia.hockey.v2.spec.CommandCodec.putString;
+
+/**
+ * Compact binary form of a {@link GameState}, used for snapshots.
+ * <p>
+ * Fields are written in record order with fixed-width big-endian numbers; strings and enums use the
+ * {@link canfield.bia.hockey.v2.spec.CommandCodec} string encoding (enums by name, so reordering
+ * constants does not corrupt old snapshots). Lists are a signed 16-bit count, -1 for null.
+ */
+public final class GameStateCodec {
+
+    private GameStateCodec() {
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(GameState state, ByteBuffer out) {
+        putString(out, state.gameId());
+        putConfig(out, state.config());
+        putString(out, name(state.status()));
+        out.putInt(state.period());
+        ClockState clock = state.clock();
+        out.putLong(clock.timeRemainingMillis());
+        out.put((byte) (clock.isRunning() ? 1 : 0));
+        out.putLong(clock.startTimeWallClock());
+        putTeam(out, state.home());
+        putTeam(out, state.away());
+        out.put((byte) (state.buzzerOn() ? 1 : 0));
+        List<String> history = state.eventHistory();
+        out.putShort((short) (history == null ? -1 : history.size()));
+        if (history != null) {
+            for (String event : history) {
+                putString(out, event);
+            }
+        }
+    }
+
+    /**
+     * @throws java.nio.BufferUnderflowException if the buffer ends mid-state
+     * @throws IllegalArgumentException for an unknown enum name
+     */
+    public static GameState decode(ByteBuffer in) {
+        String gameId = getString(in);
+        GameConfig config = getConfig(in);
+        GameStatus status = GameStatus.valueOf(getString(in));
+        int period = in.getInt();
+        ClockState clock = new ClockState(in.getLong(), in.get() != 0, in.getLong());
+        TeamState home = getTeam(in);
+        TeamState away = getTeam(in);
+        boolean buzzerOn = in.get() != 0;
+        short historyCount = in.getShort();
+        List<String> history = null;
+        if (historyCount >= 0) {
+            history = new ArrayList<>(historyCount);
+            for (int i = 0; i < historyCount; i++) {
+                history.add(getString(in));
+            }
+            history = Collections.unmodifiableList(history);
+        }
+        return new GameState(gameId, config, status, period, clock, home, away, buzzerOn, history);
+    }
+
+    private static void putConfig(ByteBuffer out, GameConfig config) {
+        out.put((byte) (config == null ? 0 : 1));
+        if (config == null) {
+            return;
+        }
+        putString(out, config.templateId());
+        out.putInt(config.warmupLengthMinutes());
+        out.putLong(config.warmupLengthMillis());
+        out.putInt(config.periodLengthMinutes());
+        out.putLong(config.periodLengthMillis());
+        out.putInt(config.intermissionLengthMinutes());
+        out.putLong(config.intermissionLengthMillis());
+        out.putInt(config.periods());
+        putString(out, name(config.clockType()));
+        Integer shiftLength = config.shiftLengthSeconds();
+        out.put((byte) (shiftLength == null ? 0 : 1));
+        out.putInt(shiftLength == null ? 0 : shiftLength);
+    }
+
+    private static GameConfig getConfig(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        String templateId = getString(in);
+        int warmupMinutes = in.getInt();
+        long warmupMillis = in.getLong();
+        int periodMinutes = in.getInt();
+        long periodMillis = in.getLong();
+        int intermissionMinutes = in.getInt();
+        long intermissionMillis = in.getLong();
+        int periods = in.getInt();
+        String clockType = getString(in);
+        boolean hasShiftLength = in.get() != 0;
+        int shiftLength = in.getInt();
+        return new GameConfig(
+            templateId,
+            warmupMinutes,
+            warmupMillis,
+            periodMinutes,
+            periodMillis,
+            intermissionMinutes,
+            intermissionMillis,
+            periods,
+            clockType == null ? null : ClockType.valueOf(clockType),
+            hasShiftLength ? shiftLength : null
+        );
+    }
+
+    private static void putTeam(ByteBuffer out, TeamState team) {
+        List<GoalEvent> goals = team.goals();
+        out.putShort((short) goals.size());
+        for (GoalEvent goal : goals) {
+            putString(out, goal.goalId());
+            putString(out, goal.teamId());
+            out.putInt(goal.period());
+            out.putLong(goal.timeInPeriodMillis());
+            out.putInt(goal.scorerNumber());
+            List<Integer> assists = goal.assistNumbers();
+            out.putShort((short) (assists == null ? -1 : assists.size()));
+            if (assists != null) {
+                for (Integer assist : assists) {
+                    out.putInt(assist == null ? 0 : assist);
+                }
+            }
+            out.put((byte) (goal.isEmptyNet() ? 1 : 0));
+        }
+        out.putInt(team.shots());
+        List<Penalty> penalties = team.penalties();
+        out.putShort((short) penalties.size());
+        for (Penalty penalty : penalties) {
+            putString(out, penalty.penaltyId());
+            putString(out, penalty.teamId());
+            out.putInt(penalty.playerNumber());
+            out.putInt(penalty.servingPlayerNumber());
+            out.putLong(penalty.durationMillis());
+            out.putLong(penalty.timeRemainingMillis());
+            out.putLong(penalty.startTimeWallClock());
+            out.putInt(penalty.period());
+        }
+    }
+
+    private static TeamState getTeam(ByteBuffer in) {
+        int goalCount = in.getShort();
+        List<GoalEvent> goals = new ArrayList<>(goalCount);
+        for (int i = 0; i < goalCount; i++) {
+            String goalId = getString(in);
+            String teamId = getString(in);
+            int period = in.getInt();
+            long timeInPeriod = in.getLong();
+            int scorer = in.getInt();
+            short assistCount = in.getShort();
+            List<Integer> assists = null;
+            if (assistCount >= 0) {
+                assists = new ArrayList<>(assistCount);
+                for (int a = 0; a < assistCount; a++) {
+                    assists.add(in.getInt());
+                }
+                assists = Collections.unmodifiableList(assists);
+            }
+            goals.add(new GoalEvent(goalId, teamId, period, timeInPeriod, scorer, assists, in.get() != 0));
+        }
+        int shots = in.getInt();
+        int penaltyCount = in.getShort();
+        List<Penalty> penalties = new ArrayList<>(penaltyCount);
+        for (int i = 0; i < penaltyCount; i++) {
+            penalties.add(new Penalty(
+                getString(in),
+                getString(in),
+                in.getInt(),
+                in.getInt(),
+                in.getLong(),
+                in.getLong(),
+                in.getLong(),
+                in.getInt()
+            ));
+        }
+        return new TeamState(Collections.unmodifiableList(goals), shots, Collections.unmodifiableList(penalties));
+    }
+
+    private static String name(Enum<?> value) {
+        return value == null ? null : value.name();
+    }
+}
@@ -14,4 +14,12 @@ public interface GameTimer {
      * Stops the timer.
      */
     void stop();
+
+    /**
+     * Asks for the next tick {@code delayMillis} from now, in place of any tick already scheduled. The engine
+     * calls this after every state change while the clock runs, with the time until the display next changes.
+     * Timers that tick at a fixed rate may ignore it.
+     */
+    default void scheduleNextTick(long delayMillis) {
+    }
 }
@@ -1,8 +1,12 @@
 package canfield.bia.hockey.v2.engine;
 
+import canfield.bia.hockey.MonotonicTimeSource;
 import canfield.bia.hockey.Penalty;
+import canfield.bia.hockey.TimeSource;
 import canfield.bia.hockey.scoreboard.Clock;
 import canfield.bia.hockey.scoreboard.ScoreBoard;
+import canfield.bia.hockey.scoreboard.io.ScoreboardAdapter;
+import canfield.bia.hockey.v2.domain.ClockState;
 import canfield.bia.hockey.v2.domain.GameState;
 import canfield.bia.hockey.v2.domain.GameStatus;
 import canfield.bia.hockey.v2.domain.TeamState;
@@ -15,9 +19,27 @@ import java.util.List;
 public class LegacyScoreboardHardwareAdapter implements HardwareOutputAdapter {
 
     private final ScoreBoard legacyScoreBoard;
+    private final ScoreboardAdapter serialOutput;
+    private final TimeSource timeSource;
 
     public LegacyScoreboardHardwareAdapter(ScoreBoard legacyScoreBoard) {
+        this(legacyScoreBoard, null);
+    }
+
+    /**
+     * @param serialOutput refreshed after every update, for change-driven serial output; may be null
+     */
+    public LegacyScoreboardHardwareAdapter(ScoreBoard legacyScoreBoard, ScoreboardAdapter serialOutput) {
+        this(legacyScoreBoard, serialOutput, MonotonicTimeSource.system());
+    }
+
+    /**
+     * @param timeSource the engine's, which the clock and penalty {@code startTimeWallClock} are readings of
+     */
+    public LegacyScoreboardHardwareAdapter(ScoreBoard legacyScoreBoard, ScoreboardAdapter serialOutput, TimeSource timeSource) {
         this.legacyScoreBoard = legacyScoreBoard;
+        this.serialOutput = serialOutput;
+        this.timeSource = timeSource;
     }
 
     @Override
@@ -30,21 +52,23 @@ public class LegacyScoreboardHardwareAdapter implements HardwareOutputAdapter {
         legacyScoreBoard.setPeriod(state.period());
 
         // Update game clock
+        long now = timeSource.currentTimeMillis();
+        ClockState clock = state.clock();
         Clock gameClock = legacyScoreBoard.getGameClock();
-        long timeRemainingMillis = state.clock().timeRemainingMillis();
-        int minutes = Clock.getMinutes((int) timeRemainingMillis);
-        int seconds = Clock.getSeconds((int) timeRemainingMillis);
-        gameClock.setTime(minutes, seconds);
+        // Exact millis, so the tenths and the whole-second rounding on the board match the engine. A running
+        // clock's remaining time is only written at its ticks, up to a second apart, so count it to now
+        gameClock.setRemainingMillis((int) remainingAt(clock.timeRemainingMillis(),
+                clock.isRunning() ? clock.startTimeWallClock() : 0L, now));
 
-        if (state.clock().isRunning()) {
+        if (clock.isRunning()) {
             gameClock.start();
         } else {
             gameClock.stop();
         }
 
         // Update penalties
-        updatePenalties(state.home().penalties(), true);
-        updatePenalties(state.away().penalties(), false);
+        updatePenalties(state.home().penalties(), true, now);
+        updatePenalties(state.away().penalties(), false, now);
 
         // Handle buzzer
         if (state.buzzerOn()) {
@@ -55,9 +79,21 @@ public class LegacyScoreboardHardwareAdapter implements HardwareOutputAdapter {
         if (state.status() == GameStatus.GAME_OVER) {
             // Potentially do something specific for game over on the legacy scoreboard
         }
+
+        if (serialOutput != null) {
+            serialOutput.refresh();
+        }
+    }
+
+    /** Time left at {@code now} of a countdown with {@code remainingMillis} left at {@code startTimeWallClock}, 0 if stopped. */
+    private static long remainingAt(long remainingMillis, long startTimeWallClock, long now) {
+        if (startTimeWallClock == 0L) {
+            return remainingMillis;
+        }
+        return Math.max(0, remainingMillis - Math.max(0, now - startTimeWallClock));
     }
 
-    private void updatePenalties(List<canfield.bia.hockey.v2.domain.Penalty> penalties, boolean isHomeTeam) {
+    private void updatePenalties(List<canfield.bia.hockey.v2.domain.Penalty> penalties, boolean isHomeTeam, long now) {
         // Clear existing penalties on the legacy scoreboard
         for (int i = 0; i < 2; i++) { // Assuming max 2 penalties per team for legacy
             if (isHomeTeam) {
@@ -73,10 +109,10 @@ public class LegacyScoreboardHardwareAdapter implements HardwareOutputAdapter {
             Penalty legacyPenalty = new Penalty();
             legacyPenalty.setPlayerNumber(newPenalty.playerNumber());
             legacyPenalty.setServingPlayerNumber(newPenalty.servingPlayerNumber());
-            legacyPenalty.setTime((int) (newPenalty.durationMillis() / 1000)); // Convert millis to seconds
-            // The legacy Penalty class doesn't seem to have a direct way to set elapsed time or start time
-            // For now, we'll just set the total duration.
-            // Further investigation might be needed if elapsed time needs to be reflected on the legacy scoreboard.
+            // The legacy penalty clock shows time - elapsed, both in millis
+            legacyPenalty.setTime((int) newPenalty.durationMillis());
+            long remaining = remainingAt(newPenalty.timeRemainingMillis(), newPenalty.startTimeWallClock(), now);
+            legacyPenalty.setElapsed((int) (newPenalty.durationMillis() - remaining));
             if (isHomeTeam) {
                 legacyScoreBoard.setHomePenalty(i, legacyPenalty);
             } else {
@@ -1,32 +1,77 @@
 package canfield.bia.hockey.v2.engine;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import canfield.bia.hockey.TimingWheel;
 
 /**
- * Implementation of GameTimer that uses a ScheduledExecutorService to trigger tick events.
+ * Implementation of GameTimer that triggers tick events from a {@link TimingWheel}.
+ * <p>
+ * Ticks are one-shot and land where the engine asks via {@link #scheduleNextTick}: on the next display
+ * boundary rather than every 100ms. After each tick a fallback tick is queued {@value #MAX_TICK_INTERVAL_MILLIS}ms
+ * out, so the clock keeps moving if the engine does not ask for one. Starting and stopping only adds and
+ * cancels timeouts on the wheel; no thread is created.
  */
 public class ScheduledGameTimer implements GameTimer {
 
-    private static final long TICK_INTERVAL_MILLIS = 100; // Tick every 100ms
-    private ScheduledExecutorService scheduler;
+    static final long MAX_TICK_INTERVAL_MILLIS = 1000;
+    private final TimingWheel wheel;
+    private TimingWheel.Timeout nextTick;
+    private Runnable tickCallback;
+    private long generation; // Bumped on every reschedule, so a tick that lost a race with cancel is dropped
+
+    public ScheduledGameTimer() {
+        this(TimingWheel.shared());
+    }
+
+    public ScheduledGameTimer(TimingWheel wheel) {
+        this.wheel = wheel;
+    }
 
     @Override
-    public void start(Runnable tickCallback) {
-        if (scheduler != null && !scheduler.isShutdown()) {
+    public synchronized void start(Runnable tickCallback) {
+        if (this.tickCallback != null) {
             // Already running
             return;
         }
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(tickCallback, 0, TICK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.tickCallback = tickCallback;
+        schedule(MAX_TICK_INTERVAL_MILLIS);
+    }
+
+    @Override
+    public synchronized void scheduleNextTick(long delayMillis) {
+        if (tickCallback == null) {
+            return;
+        }
+        schedule(Math.max(0, Math.min(delayMillis, MAX_TICK_INTERVAL_MILLIS)));
+    }
+
+    private void schedule(long delayMillis) {
+        if (nextTick != null) {
+            nextTick.cancel();
+        }
+        long scheduled = ++generation;
+        nextTick = wheel.schedule(() -> fire(scheduled), delayMillis);
+    }
+
+    private void fire(long scheduled) {
+        Runnable callback;
+        synchronized (this) {
+            if (tickCallback == null || scheduled != generation) {
+                return;
+            }
+            callback = tickCallback;
+            // Queued before the tick runs, so the engine's answer to this tick replaces it rather than the reverse
+            schedule(MAX_TICK_INTERVAL_MILLIS);
+        }
+        callback.run();
     }
 
     @Override
-    public void stop() {
-        if (scheduler != null) {
-            scheduler.shutdownNow();
-            scheduler = null;
+    public synchronized void stop() {
+        if (nextTick != null) {
+            nextTick.cancel();
+            nextTick = null;
         }
+        tickCallback = null;
+        generation++;
     }
 }
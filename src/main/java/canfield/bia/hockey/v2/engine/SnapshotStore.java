@@ -0,0 +1,256 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary {@link GameState} snapshots in two alternating files.
+ * <p>
+ * A snapshot is written to a temp file, forced, and atomically renamed over the older of the two
+ * slots, so the newer slot is never touched while writing and a crash mid-write leaves at least one
+ * complete snapshot. {@link #loadLatest} reads both slots and returns the newest one that passes
+ * its checksum.
+ * <p>
+ * {@link #submit} hands a snapshot to the "game-snapshot" thread and returns immediately; if the
+ * thread is still busy, only the most recent pending snapshot is written.
+ */
+public class SnapshotStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+
+    private static final int MAGIC = 0x47534E50; // "GSNP"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 4;
+
+    /**
+     * A state plus what recovery needs besides it.
+     * @param sequence the last journal sequence applied to {@code state}; recovery replays entries after it
+     * @param capturedAtMillis wall-clock time the state was current, used to correct a running clock for downtime
+     * @param shiftStartGameTimeMillis the engine's drop-in shift anchor, -1 when not started
+     */
+    public record GameSnapshot(long sequence, long capturedAtMillis, GameState state, long shiftStartGameTimeMillis) {
+    }
+
+    private final Path[] slots;
+    private final Path tempFile;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "game-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<GameSnapshot> pending = new AtomicReference<>();
+    private final CRC32C crc = new CRC32C(); // writer thread only
+    private ByteBuffer buffer = ByteBuffer.allocate(8 * 1024); // writer thread only
+    private int nextSlot; // writer thread only
+    private long lastWrittenSequence = -1;
+    private long lastWrittenCapturedAt = Long.MIN_VALUE;
+    private volatile long writtenCount;
+    private volatile long lastWriteNanos;
+
+    /**
+     * @param directory where the two snapshot files live; created if missing
+     */
+    public SnapshotStore(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.slots = new Path[] {
+            directory.resolve("game-snapshot-a.bin"),
+            directory.resolve("game-snapshot-b.bin")
+        };
+        this.tempFile = directory.resolve("game-snapshot.tmp");
+    }
+
+    /**
+     * Reads both slots and returns the newest valid snapshot, or null if there is none.
+     * Subsequent writes go to the other slot.
+     */
+    public synchronized GameSnapshot loadLatest() {
+        GameSnapshot latest = null;
+        int latestSlot = -1;
+        for (int i = 0; i < slots.length; i++) {
+            GameSnapshot snapshot = read(slots[i]);
+            if (snapshot != null && (latest == null || isNewer(snapshot, latest))) {
+                latest = snapshot;
+                latestSlot = i;
+            }
+        }
+        if (latest != null) {
+            nextSlot = (latestSlot + 1) % slots.length;
+            lastWrittenSequence = latest.sequence();
+            lastWrittenCapturedAt = latest.capturedAtMillis();
+        }
+        return latest;
+    }
+
+    private static boolean isNewer(GameSnapshot a, GameSnapshot b) {
+        if (a.sequence() != b.sequence()) {
+            return a.sequence() > b.sequence();
+        }
+        return a.capturedAtMillis() > b.capturedAtMillis();
+    }
+
+    private GameSnapshot read(Path slot) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(slot);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to read snapshot {}", slot, e);
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.getInt() != MAGIC) {
+                log.warn("Ignoring {}: not a snapshot", slot);
+                return null;
+            }
+            short version = in.getShort();
+            if (version != VERSION) {
+                log.warn("Ignoring {}: unsupported snapshot version {}", slot, version);
+                return null;
+            }
+            int length = in.getInt();
+            int expectedCrc = in.getInt();
+            if (length != in.remaining()) {
+                log.warn("Ignoring {}: truncated snapshot", slot);
+                return null;
+            }
+            CRC32C check = new CRC32C();
+            check.update(in.duplicate());
+            if ((int) check.getValue() != expectedCrc) {
+                log.warn("Ignoring {}: snapshot checksum mismatch", slot);
+                return null;
+            }
+            long sequence = in.getLong();
+            long capturedAt = in.getLong();
+            long shiftStart = in.getLong();
+            return new GameSnapshot(sequence, capturedAt, GameStateCodec.decode(in), shiftStart);
+        } catch (RuntimeException e) {
+            log.warn("Ignoring undecodable snapshot {}", slot, e);
+            return null;
+        }
+    }
+
+    /**
+     * Queues a snapshot for the writer thread. Never blocks.
+     */
+    public void submit(GameSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) == null) {
+            try {
+                writer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pending.set(null);
+                log.debug("Snapshot store closed; dropping snapshot {}", snapshot.sequence());
+            }
+        }
+    }
+
+    private void drain() {
+        GameSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            write(snapshot);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write game snapshot", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot on the calling thread: encode, write and force the temp file, then rename it over the older slot.
+     */
+    public synchronized void write(GameSnapshot snapshot) throws IOException {
+        if (snapshot.sequence() < lastWrittenSequence
+            || (snapshot.sequence() == lastWrittenSequence && snapshot.capturedAtMillis() <= lastWrittenCapturedAt)) {
+            return; // Superseded by a snapshot already on disk
+        }
+        long start = System.nanoTime();
+        ByteBuffer out = encode(snapshot);
+        try (FileChannel channel = FileChannel.open(tempFile,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Path slot = slots[nextSlot];
+        Files.move(tempFile, slot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        nextSlot = (nextSlot + 1) % slots.length;
+        lastWrittenSequence = snapshot.sequence();
+        lastWrittenCapturedAt = snapshot.capturedAtMillis();
+        writtenCount++;
+        lastWriteNanos = System.nanoTime() - start;
+        if (log.isDebugEnabled()) {
+            log.debug("Snapshot {} written to {} in {}us", snapshot.sequence(), slot.getFileName(), lastWriteNanos / 1000);
+        }
+    }
+
+    private ByteBuffer encode(GameSnapshot snapshot) {
+        while (true) {
+            buffer.clear();
+            try {
+                buffer.putInt(MAGIC);
+                buffer.putShort(VERSION);
+                buffer.position(HEADER_BYTES);
+                buffer.putLong(snapshot.sequence());
+                buffer.putLong(snapshot.capturedAtMillis());
+                buffer.putLong(snapshot.shiftStartGameTimeMillis());
+                GameStateCodec.encode(snapshot.state(), buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+        int end = buffer.position();
+        crc.reset();
+        crc.update(buffer.slice(HEADER_BYTES, end - HEADER_BYTES));
+        buffer.putInt(6, end - HEADER_BYTES);
+        buffer.putInt(10, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Writes any pending snapshot and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(2, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+}
@@ -6,21 +6,43 @@ import canfield.bia.hockey.v2.domain.TeamState;
 import canfield.bia.hockey.v2.domain.GoalEvent;
 import canfield.bia.hockey.v2.domain.Penalty;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Utility to compare two GameState objects and produce a StatePatch.
  * A StatePatch is a Map<String, Object> where keys are dot-separated paths
  * to changed fields and values are the new values of those fields.
+ * <p>
+ * Goal and penalty lists are diffed per element, keyed by id:
+ * <ul>
+ *   <li>{@code home.penalties[id]} with the element as value adds it at the end of the list, or replaces it;</li>
+ *   <li>{@code home.penalties[id]} with a null value removes it;</li>
+ *   <li>{@code home.penalties[id].timeRemainingMillis} updates just the remaining time of a running penalty.</li>
+ * </ul>
+ * On a plain clock tick, where the penalties are the same in the same order and only running ones moved,
+ * {@code home.penalties[*].timeRemainingMillis} carries every penalty's remaining time in list order
+ * instead, so the ids are not repeated ten times a second.
+ * The whole list is sent instead when either side is empty or the surviving elements changed order,
+ * which element operations cannot express.
+ * <p>
+ * The engine hands unchanged parts of the state on as the same instances, so each part is first compared
+ * by reference: an unchanged clock, team, list or element is skipped in O(1) without walking it. Parts
+ * that are different instances, such as a state read back from a snapshot, fall back to equality.
  */
 public class StateDiffer {
 
     public Map<String, Object> diff(GameState oldState, GameState newState) {
         Map<String, Object> patch = new HashMap<>();
+        if (oldState == newState) {
+            return patch;
+        }
 
         // Compare top-level fields
         if (!Objects.equals(oldState.gameId(), newState.gameId())) {
@@ -54,6 +76,9 @@ public class StateDiffer {
     }
 
     private void diffClockState(ClockState oldClock, ClockState newClock, Map<String, Object> patch) {
+        if (oldClock == newClock) {
+            return;
+        }
         if (oldClock.timeRemainingMillis() != newClock.timeRemainingMillis()) {
             patch.put("clock.timeRemainingMillis", newClock.timeRemainingMillis());
         }
@@ -64,19 +89,144 @@ public class StateDiffer {
     }
 
     private void diffTeamState(TeamState oldTeam, TeamState newTeam, String prefix, Map<String, Object> patch) {
+        if (oldTeam == newTeam) {
+            return;
+        }
         // Score is derived, so we only compare goals list
-        if (!Objects.equals(oldTeam.goals(), newTeam.goals())) {
-            // For lists, send the entire new list for simplicity and robustness
-            patch.put(prefix + ".goals", newTeam.goals());
+        if (oldTeam.goals() != newTeam.goals() && !Objects.equals(oldTeam.goals(), newTeam.goals())) {
+            diffList(prefix + ".goals", oldTeam.goals(), newTeam.goals(), GoalEvent::goalId, (oldGoal, newGoal, key, p) -> false, patch);
             // Also send derived score if goals changed
             patch.put(prefix + ".score", newTeam.getScore());
         }
         if (oldTeam.shots() != newTeam.shots()) {
             patch.put(prefix + ".shots", newTeam.shots());
         }
-        if (!Objects.equals(oldTeam.penalties(), newTeam.penalties())) {
-            // For lists, send the entire new list for simplicity and robustness
-            patch.put(prefix + ".penalties", newTeam.penalties());
+        if (oldTeam.penalties() != newTeam.penalties() && !Objects.equals(oldTeam.penalties(), newTeam.penalties())) {
+            if (onlyRemainingTimesMoved(oldTeam.penalties(), newTeam.penalties())) {
+                List<Long> remaining = new ArrayList<>(newTeam.penalties().size());
+                for (Penalty penalty : newTeam.penalties()) {
+                    remaining.add(penalty.timeRemainingMillis());
+                }
+                patch.put(prefix + ".penalties[*].timeRemainingMillis", remaining);
+            } else {
+                diffList(prefix + ".penalties", oldTeam.penalties(), newTeam.penalties(), Penalty::penaltyId, StateDiffer::diffPenalty, patch);
+            }
+        }
+    }
+
+    /** Field-level diff for one changed element; false if the whole element has to be sent instead. */
+    @FunctionalInterface
+    private interface FieldDiff<T> {
+        boolean diff(T oldElement, T newElement, String key, Map<String, Object> patch);
+    }
+
+    private static boolean onlyRemainingTimesMoved(List<Penalty> oldPenalties, List<Penalty> newPenalties) {
+        if (oldPenalties.size() != newPenalties.size()) {
+            return false;
+        }
+        for (int i = 0; i < newPenalties.size(); i++) {
+            Penalty oldPenalty = oldPenalties.get(i);
+            Penalty newPenalty = newPenalties.get(i);
+            if (!Objects.equals(oldPenalty.penaltyId(), newPenalty.penaltyId())) {
+                return false;
+            }
+            if (oldPenalty != newPenalty && !oldPenalty.equals(newPenalty) && !isRunningTimeUpdate(oldPenalty, newPenalty)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A running penalty changes every tick, but only its remaining time matters to clients; startTimeWallClock
+     * is the engine's bookkeeping for the next tick, like the clock's. Anything else sends the whole penalty.
+     */
+    private static boolean isRunningTimeUpdate(Penalty oldPenalty, Penalty newPenalty) {
+        return oldPenalty.startTimeWallClock() != 0L && newPenalty.startTimeWallClock() != 0L
+            && Objects.equals(oldPenalty.teamId(), newPenalty.teamId())
+            && oldPenalty.playerNumber() == newPenalty.playerNumber()
+            && oldPenalty.servingPlayerNumber() == newPenalty.servingPlayerNumber()
+            && oldPenalty.durationMillis() == newPenalty.durationMillis()
+            && oldPenalty.period() == newPenalty.period();
+    }
+
+    private static boolean diffPenalty(Penalty oldPenalty, Penalty newPenalty, String key, Map<String, Object> patch) {
+        if (!isRunningTimeUpdate(oldPenalty, newPenalty)) {
+            return false;
+        }
+        if (oldPenalty.timeRemainingMillis() != newPenalty.timeRemainingMillis()) {
+            patch.put(key + ".timeRemainingMillis", newPenalty.timeRemainingMillis());
+        }
+        return true;
+    }
+
+    private <T> void diffList(String listKey, List<T> oldList, List<T> newList, Function<T, String> id,
+                              FieldDiff<T> fieldDiff, Map<String, Object> patch) {
+        if (oldList.isEmpty() || newList.isEmpty() || !elementOpsApply(oldList, newList, id)) {
+            patch.put(listKey, newList);
+            return;
+        }
+        Map<String, T> oldById = new HashMap<>(oldList.size() * 2);
+        for (T element : oldList) {
+            oldById.put(id.apply(element), element);
+        }
+        Set<String> kept = new HashSet<>(newList.size() * 2);
+        for (T element : newList) {
+            String elementId = id.apply(element);
+            kept.add(elementId);
+            T previous = oldById.get(elementId);
+            if (previous == element || Objects.equals(previous, element)) {
+                continue;
+            }
+            String key = listKey + "[" + elementId + "]";
+            if (previous == null || !fieldDiff.diff(previous, element, key, patch)) {
+                patch.put(key, element);
+            }
+        }
+        for (String oldId : oldById.keySet()) {
+            if (!kept.contains(oldId)) {
+                patch.put(listKey + "[" + oldId + "]", null);
+            }
         }
     }
+
+    /**
+     * Element operations can only remove elements, change them in place or append new ones, so the new list
+     * must be the surviving old elements in their old order followed by the added ones. Ids must be unique
+     * and usable inside a key.
+     */
+    private static <T> boolean elementOpsApply(List<T> oldList, List<T> newList, Function<T, String> id) {
+        Set<String> newIds = new HashSet<>(newList.size() * 2);
+        for (T element : newList) {
+            String elementId = id.apply(element);
+            if (!isKeyableId(elementId) || !newIds.add(elementId)) {
+                return false;
+            }
+        }
+        Set<String> oldIds = new HashSet<>(oldList.size() * 2);
+        int position = 0;
+        for (T element : oldList) {
+            String elementId = id.apply(element);
+            if (!isKeyableId(elementId) || !oldIds.add(elementId)) {
+                return false;
+            }
+            if (newIds.contains(elementId)) {
+                if (!elementId.equals(id.apply(newList.get(position)))) {
+                    return false;
+                }
+                position++;
+            }
+        }
+        // Everything after the survivors must be new
+        for (int i = position; i < newList.size(); i++) {
+            if (oldIds.contains(id.apply(newList.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isKeyableId(String id) {
+        return id != null && !id.isEmpty() && id.indexOf('.') < 0 && id.indexOf('[') < 0 && id.indexOf(']') < 0;
+    }
 }
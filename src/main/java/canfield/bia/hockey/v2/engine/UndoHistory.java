@@ -0,0 +1,100 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+
+import java.util.Arrays;
+
+/**
+ * The operator's last edits to a game, for UNDO and REDO.
+ * <p>
+ * Each edit is kept as the state just before and just after it, in a ring of fixed size: once full,
+ * a new edit overwrites the oldest. Consecutive states share every part an edit left alone, so an
+ * entry costs little more than what the edit changed, and the memory a game holds for undo is capped
+ * by the depth. Undo and redo only move a cursor over the ring. A new edit drops the entries that
+ * were undone.
+ * <p>
+ * Not thread-safe; it is only used by the thread applying commands.
+ */
+final class UndoHistory {
+
+    static final int DEFAULT_DEPTH = 64;
+
+    /**
+     * One edit: the state before and after it, the engine time it was applied at, and the engine's drop-in
+     * shift anchor before and after it, which is not part of the state.
+     */
+    record Entry(GameState before, GameState after, long appliedAtMillis, long shiftStartBefore, long shiftStartAfter) {}
+
+    private final Entry[] entries;
+    private int oldest; // Slot of the oldest entry
+    private int undoable; // Entries before the cursor
+    private int redoable; // Undone entries after the cursor
+
+    UndoHistory() {
+        this(DEFAULT_DEPTH);
+    }
+
+    UndoHistory(int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Depth must be positive: " + depth);
+        }
+        this.entries = new Entry[depth];
+    }
+
+    void record(GameState before, GameState after, long appliedAtMillis, long shiftStartBefore, long shiftStartAfter) {
+        entries[slot(undoable)] = new Entry(before, after, appliedAtMillis, shiftStartBefore, shiftStartAfter);
+        if (undoable == entries.length) {
+            oldest = slot(1); // Overwrote the oldest
+        } else {
+            undoable++;
+        }
+        redoable = 0;
+    }
+
+    /**
+     * @return the entry to take back, or null if there is none
+     */
+    Entry undo() {
+        if (undoable == 0) {
+            return null;
+        }
+        undoable--;
+        redoable++;
+        return entries[slot(undoable)];
+    }
+
+    /**
+     * @return the entry to apply again, or null if nothing was undone since the last edit
+     */
+    Entry redo() {
+        if (redoable == 0) {
+            return null;
+        }
+        redoable--;
+        return entries[slot(undoable++)];
+    }
+
+    void clear() {
+        Arrays.fill(entries, null);
+        oldest = 0;
+        undoable = 0;
+        redoable = 0;
+    }
+
+    /** How many edits are kept. */
+    int depth() {
+        return entries.length;
+    }
+
+    int undoDepth() {
+        return undoable;
+    }
+
+    int redoDepth() {
+        return redoable;
+    }
+
+    private int slot(int offset) {
+        return (oldest + offset) % entries.length;
+    }
+}
@@ -18,5 +18,7 @@ public sealed interface Command permits
     ResetGameCommand,
     SetPeriodCommand,
     TriggerBuzzerCommand,
-    SetClockCommand
+    SetClockCommand,
+    UndoCommand,
+    RedoCommand
 {}
@@ -0,0 +1,192 @@
+package canfield.bia.hockey.v2.spec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a {@link Command}: a one-byte opcode followed by the command's fields.
+ * Integers are big-endian and fixed width; strings are a signed 16-bit byte length (-1 for null)
+ * followed by UTF-8. CreateGame overrides are carried as a JSON string since their values are free-form.
+ */
+public final class CommandCodec {
+
+    public static final byte CREATE_GAME = 1;
+    public static final byte START_CLOCK = 2;
+    public static final byte PAUSE_CLOCK = 3;
+    public static final byte ADD_PENALTY = 4;
+    public static final byte TICK = 5;
+    public static final byte ADD_GOAL = 6;
+    public static final byte REMOVE_GOAL = 7;
+    public static final byte ADD_SHOT = 8;
+    public static final byte UNDO_LAST_SHOT = 9;
+    public static final byte END_GAME = 10;
+    public static final byte RESET_GAME = 11;
+    public static final byte SET_PERIOD = 12;
+    public static final byte TRIGGER_BUZZER = 13;
+    public static final byte SET_CLOCK = 14;
+    public static final byte UNDO = 15;
+    public static final byte REDO = 16;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> OVERRIDES = new TypeReference<>() {};
+
+    private CommandCodec() {
+    }
+
+    /**
+     * Writes a command at the buffer's position.
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(Command command, ByteBuffer out) {
+        if (command instanceof CreateGameCommand c) {
+            out.put(CREATE_GAME);
+            putString(out, c.templateId());
+            putString(out, overridesToJson(c.overrides()));
+        } else if (command instanceof StartClockCommand) {
+            out.put(START_CLOCK);
+        } else if (command instanceof PauseClockCommand) {
+            out.put(PAUSE_CLOCK);
+        } else if (command instanceof AddPenaltyCommand c) {
+            out.put(ADD_PENALTY);
+            putString(out, c.teamId());
+            out.putInt(c.playerNumber());
+            out.putInt(c.servingPlayerNumber());
+            out.putInt(c.durationMinutes());
+        } else if (command instanceof TickCommand) {
+            out.put(TICK);
+        } else if (command instanceof AddGoalCommand c) {
+            out.put(ADD_GOAL);
+            putString(out, c.teamId());
+            out.putInt(c.scorerNumber());
+            List<Integer> assists = c.assistNumbers();
+            out.putShort((short) (assists == null ? -1 : assists.size()));
+            if (assists != null) {
+                for (Integer assist : assists) {
+                    out.putInt(assist == null ? 0 : assist);
+                }
+            }
+            out.put((byte) (c.isEmptyNet() ? 1 : 0));
+        } else if (command instanceof RemoveGoalCommand c) {
+            out.put(REMOVE_GOAL);
+            putString(out, c.goalId());
+        } else if (command instanceof AddShotCommand c) {
+            out.put(ADD_SHOT);
+            putString(out, c.teamId());
+        } else if (command instanceof UndoLastShotCommand c) {
+            out.put(UNDO_LAST_SHOT);
+            putString(out, c.teamId());
+        } else if (command instanceof EndGameCommand) {
+            out.put(END_GAME);
+        } else if (command instanceof ResetGameCommand) {
+            out.put(RESET_GAME);
+        } else if (command instanceof SetPeriodCommand c) {
+            out.put(SET_PERIOD);
+            out.putInt(c.period());
+        } else if (command instanceof TriggerBuzzerCommand) {
+            out.put(TRIGGER_BUZZER);
+        } else if (command instanceof SetClockCommand c) {
+            out.put(SET_CLOCK);
+            out.putLong(c.timeMillis());
+        } else if (command instanceof UndoCommand) {
+            out.put(UNDO);
+        } else if (command instanceof RedoCommand) {
+            out.put(REDO);
+        } else {
+            throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    /**
+     * Reads one command from the buffer's position.
+     * @throws java.nio.BufferUnderflowException if the buffer ends mid-command
+     * @throws IllegalArgumentException for an unknown opcode
+     */
+    public static Command decode(ByteBuffer in) {
+        byte opcode = in.get();
+        return switch (opcode) {
+            case CREATE_GAME -> new CreateGameCommand(getString(in), overridesFromJson(getString(in)));
+            case START_CLOCK -> new StartClockCommand();
+            case PAUSE_CLOCK -> new PauseClockCommand();
+            case ADD_PENALTY -> new AddPenaltyCommand(getString(in), in.getInt(), in.getInt(), in.getInt());
+            case TICK -> new TickCommand();
+            case ADD_GOAL -> {
+                String teamId = getString(in);
+                int scorer = in.getInt();
+                short count = in.getShort();
+                List<Integer> assists = null;
+                if (count >= 0) {
+                    assists = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        assists.add(in.getInt());
+                    }
+                    assists = Collections.unmodifiableList(assists);
+                }
+                yield new AddGoalCommand(teamId, scorer, assists, in.get() != 0);
+            }
+            case REMOVE_GOAL -> new RemoveGoalCommand(getString(in));
+            case ADD_SHOT -> new AddShotCommand(getString(in));
+            case UNDO_LAST_SHOT -> new UndoLastShotCommand(getString(in));
+            case END_GAME -> new EndGameCommand();
+            case RESET_GAME -> new ResetGameCommand();
+            case SET_PERIOD -> new SetPeriodCommand(in.getInt());
+            case TRIGGER_BUZZER -> new TriggerBuzzerCommand();
+            case SET_CLOCK -> new SetClockCommand(in.getLong());
+            case UNDO -> new UndoCommand();
+            case REDO -> new RedoCommand();
+            default -> throw new IllegalArgumentException("Unknown command opcode: " + opcode);
+        };
+    }
+
+    public static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long to encode: " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    public static String getString(ByteBuffer in) {
+        short length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String overridesToJson(Map<String, Object> overrides) {
+        if (overrides == null) {
+            return null;
+        }
+        try {
+            return JSON.writeValueAsString(overrides);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Overrides are not serializable", e);
+        }
+    }
+
+    private static Map<String, Object> overridesFromJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return JSON.readValue(json, OVERRIDES);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Corrupt overrides", e);
+        }
+    }
+}
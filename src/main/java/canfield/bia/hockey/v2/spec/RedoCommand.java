@@ -0,0 +1,8 @@
+package canfield.bia.hockey.v2.spec;
+
+/**
+ * Command to apply again the edit the last UNDO took back. Any new edit after an UNDO ends the redo chain.
+ * No payload.
+ */
+public record RedoCommand() implements Command {
+}
@@ -0,0 +1,9 @@
+package canfield.bia.hockey.v2.spec;
+
+/**
+ * Command to take back the operator's last edit to the game (a goal, shot, penalty, clock or period
+ * change, end or reset of the game). Repeating it steps further back.
+ * No payload.
+ */
+public record UndoCommand() implements Command {
+}
@@ -0,0 +1,213 @@
+package canfield.bia.hockey.v2.web;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Bounded outbound queue for one WebSocket client.
+ * <p>
+ * Messages go straight to the socket while it keeps up. Once the library still has bytes buffered for the
+ * client, messages wait here instead, and a pending clock-only patch is replaced by any newer patch that
+ * carries the clock. If more than {@code highWater} messages pile up, the backlog is dropped and the client
+ * gets a fresh INITIAL_STATE when it drains; a client that is still stalled {@code evictAfterMillis} later
+ * is closed.
+ * <p>
+ * A client that negotiated the binary subprotocol gets its patches as binary frames; INITIAL_STATE is
+ * always a JSON text frame. A client that interpolates the clock gets anchored patches instead of ticks;
+ * see {@link GameWebSocketV2}. A client that subscribed to some fields only gets patches cut down to them.
+ */
+class ClientOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientOutbox.class);
+
+    private final WebSocket conn;
+    private final int highWater;
+    private final long evictAfterMillis;
+    private final boolean binaryPatches;
+    private final boolean interpolatesClock;
+    private final PatchFilter patchFilter;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private boolean resyncDue;
+    private long stalledSince = -1;
+
+    private long coalescedCount;
+    private long resyncCount;
+
+    private record Pending(byte[] payload, String text, boolean binary, boolean clockOnly) {}
+
+    ClientOutbox(WebSocket conn, int highWater, long evictAfterMillis) {
+        this(conn, highWater, evictAfterMillis, false);
+    }
+
+    /**
+     * @param binaryPatches the client takes {@link StatePatchCodec} patches instead of JSON ones
+     */
+    ClientOutbox(WebSocket conn, int highWater, long evictAfterMillis, boolean binaryPatches) {
+        this(conn, highWater, evictAfterMillis, binaryPatches, false);
+    }
+
+    /**
+     * @param interpolatesClock the client runs the clock itself from anchors rather than taking every tick
+     */
+    ClientOutbox(WebSocket conn, int highWater, long evictAfterMillis, boolean binaryPatches, boolean interpolatesClock) {
+        this(conn, highWater, evictAfterMillis, binaryPatches, interpolatesClock, PatchFilter.ALL);
+    }
+
+    /**
+     * @param patchFilter the patch keys the client subscribed to
+     */
+    ClientOutbox(WebSocket conn, int highWater, long evictAfterMillis, boolean binaryPatches, boolean interpolatesClock,
+                 PatchFilter patchFilter) {
+        this.conn = conn;
+        this.highWater = highWater;
+        this.evictAfterMillis = evictAfterMillis;
+        this.binaryPatches = binaryPatches;
+        this.interpolatesClock = interpolatesClock;
+        this.patchFilter = patchFilter;
+    }
+
+    boolean wantsBinaryPatches() {
+        return binaryPatches;
+    }
+
+    boolean interpolatesClock() {
+        return interpolatesClock;
+    }
+
+    PatchFilter patchFilter() {
+        return patchFilter;
+    }
+
+    /**
+     * The connection sends text as a String, as Jetty does, so a message many clients get is best decoded once.
+     */
+    boolean wantsText() {
+        return conn instanceof JettyWebSocketConnection;
+    }
+
+    /**
+     * Queues a serialized JSON message, sending it immediately if nothing is backed up.
+     * @param clockOnly the message only updates the clock and may be superseded
+     * @param carriesClock the message sets {@code clock.timeRemainingMillis}, superseding a queued clock-only message
+     */
+    synchronized void offer(byte[] payload, boolean clockOnly, boolean carriesClock, long now) {
+        offer(payload, false, clockOnly, carriesClock, now);
+    }
+
+    /**
+     * Queues a serialized message, sending it immediately if nothing is backed up.
+     * @param binary send as a binary frame rather than a text frame
+     */
+    synchronized void offer(byte[] payload, boolean binary, boolean clockOnly, boolean carriesClock, long now) {
+        offer(payload, null, binary, clockOnly, carriesClock, now);
+    }
+
+    /**
+     * Queues a serialized message, sending it immediately if nothing is backed up.
+     * @param text the text message decoded, sent instead of the bytes when given; see {@link #wantsText}
+     */
+    synchronized void offer(byte[] payload, String text, boolean binary, boolean clockOnly, boolean carriesClock, long now) {
+        if (resyncDue) {
+            // Everything before the resync is moot; the snapshot is taken when it is finally sent
+            return;
+        }
+        if (pending.isEmpty() && !conn.hasBufferedData()) {
+            send(payload, text, binary);
+            return;
+        }
+        if (carriesClock) {
+            for (Iterator<Pending> it = pending.iterator(); it.hasNext(); ) {
+                if (it.next().clockOnly()) {
+                    it.remove();
+                    coalescedCount++;
+                }
+            }
+        }
+        pending.addLast(new Pending(payload, text, binary, clockOnly));
+        if (stalledSince < 0) {
+            stalledSince = now;
+        }
+        if (pending.size() > highWater) {
+            log.warn("Client {} is {} messages behind; dropping backlog and resyncing", conn.getRemoteSocketAddress(), pending.size());
+            pending.clear();
+            resyncDue = true;
+            resyncCount++;
+        }
+    }
+
+    /**
+     * Sends whatever the socket has room for.
+     * @param initialState builds a fresh INITIAL_STATE message for a pending resync
+     * @return false if the client has been stalled too long and was closed
+     */
+    synchronized boolean flush(Supplier<byte[]> initialState, long now) {
+        if (!conn.isOpen()) {
+            return false;
+        }
+        while ((resyncDue || !pending.isEmpty()) && !conn.hasBufferedData()) {
+            if (resyncDue) {
+                resyncDue = false;
+                byte[] snapshot = initialState.get();
+                if (snapshot != null) {
+                    send(snapshot, null, false);
+                }
+            } else {
+                Pending next = pending.pollFirst();
+                send(next.payload(), next.text(), next.binary());
+            }
+        }
+        if (!resyncDue && pending.isEmpty()) {
+            stalledSince = -1;
+            return true;
+        }
+        if (now - stalledSince > evictAfterMillis) {
+            log.warn("Closing client {} after {}ms without draining", conn.getRemoteSocketAddress(), now - stalledSince);
+            pending.clear();
+            conn.close(CloseFrame.GOING_AWAY, "Too slow");
+            return false;
+        }
+        return true;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    synchronized boolean isResyncDue() {
+        return resyncDue;
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized long getResyncCount() {
+        return resyncCount;
+    }
+
+    WebSocket connection() {
+        return conn;
+    }
+
+    private void send(byte[] payload, String text, boolean binary) {
+        try {
+            if (text != null) {
+                conn.send(text);
+                return;
+            }
+            // Frames are per send: the payload is shared, but a frame's buffer position is not thread-safe
+            conn.sendFrame(binary ? GameWebSocketV2.binaryFrame(payload) : GameWebSocketV2.textFrame(payload));
+        } catch (WebsocketNotConnectedException e) {
+            // Closed while we were sending; onClose removes the outbox
+            log.debug("Skipping closed client {}", conn.getRemoteSocketAddress());
+        }
+    }
+}
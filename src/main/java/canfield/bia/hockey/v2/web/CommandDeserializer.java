@@ -2,43 +2,231 @@ package canfield.bia.hockey.v2.web;
 
 import canfield.bia.hockey.v2.spec.*;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Custom JsonDeserializer for the Command interface to handle polymorphic deserialization.
- * It inspects the "type" field in the JSON to determine the concrete Command class to instantiate.
+ * The message looks like {@code {"type":"COMMAND","command":"ADD_GOAL","payload":{...}}}; the "command"
+ * field selects the concrete Command class.
+ * <p>
+ * Reads the message in a single pass over the parser's tokens and builds the Command record directly,
+ * without an intermediate JsonNode tree. If "payload" arrives before "command", its tokens are held in
+ * a {@link TokenBuffer} until the type is known. Unknown fields are skipped; missing fields take the
+ * record component's default (null, 0 or false).
  */
 public class CommandDeserializer extends JsonDeserializer<Command> {
 
     @Override
     public Command deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        ObjectMapper mapper = (ObjectMapper) p.getCodec();
-        JsonNode node = mapper.readTree(p);
-        // The top-level "type" is "COMMAND", the actual command type is in the "command" field
-        String commandType = node.get("command").asText();
-        JsonNode payloadNode = node.get("payload"); // Get the payload node
+        if (p.currentToken() == JsonToken.START_OBJECT) {
+            p.nextToken();
+        }
+        String commandType = null;
+        Command command = null;
+        TokenBuffer bufferedPayload = null;
+        boolean payloadSeen = false;
+        for (JsonToken t = p.currentToken(); t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("command".equals(field)) {
+                commandType = p.getValueAsString();
+                if (bufferedPayload != null) {
+                    try (JsonParser payload = bufferedPayload.asParser(p.getCodec())) {
+                        payload.nextToken();
+                        command = readCommand(commandType, payload, ctxt);
+                    }
+                    bufferedPayload = null;
+                }
+            } else if ("payload".equals(field)) {
+                payloadSeen = true;
+                if (commandType != null) {
+                    command = readCommand(commandType, p, ctxt);
+                } else {
+                    bufferedPayload = ctxt.bufferAsCopyOfValue(p);
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (commandType == null) {
+            throw new IllegalArgumentException("Missing command type");
+        }
+        if (!payloadSeen) {
+            command = readCommand(commandType, null, ctxt);
+        }
+        return command;
+    }
 
+    /**
+     * @param p positioned on the payload's first token (START_OBJECT or VALUE_NULL), or null when there is no payload
+     */
+    private Command readCommand(String commandType, JsonParser p, DeserializationContext ctxt) throws IOException {
         return switch (commandType) {
-            case "CREATE_GAME" -> mapper.treeToValue(payloadNode, CreateGameCommand.class);
-            case "START_CLOCK" -> mapper.treeToValue(payloadNode, StartClockCommand.class);
-            case "PAUSE_CLOCK" -> mapper.treeToValue(payloadNode, PauseClockCommand.class);
-            case "ADD_PENALTY" -> mapper.treeToValue(payloadNode, AddPenaltyCommand.class);
-            case "TICK" -> mapper.treeToValue(payloadNode, TickCommand.class);
-            case "ADD_GOAL" -> mapper.treeToValue(payloadNode, AddGoalCommand.class);
-            case "REMOVE_GOAL" -> mapper.treeToValue(payloadNode, RemoveGoalCommand.class);
-            case "ADD_SHOT" -> mapper.treeToValue(payloadNode, AddShotCommand.class);
-            case "UNDO_LAST_SHOT" -> mapper.treeToValue(payloadNode, UndoLastShotCommand.class);
-            case "END_GAME" -> mapper.treeToValue(payloadNode, EndGameCommand.class);
-            case "RESET_GAME" -> mapper.treeToValue(payloadNode, ResetGameCommand.class);
-            case "SET_PERIOD" -> mapper.treeToValue(payloadNode, SetPeriodCommand.class);
-            case "TRIGGER_BUZZER" -> mapper.treeToValue(payloadNode, TriggerBuzzerCommand.class);
-            case "SET_CLOCK" -> mapper.treeToValue(payloadNode, SetClockCommand.class);
+            case "CREATE_GAME" -> readCreateGame(p, ctxt);
+            case "START_CLOCK" -> skip(p, new StartClockCommand());
+            case "PAUSE_CLOCK" -> skip(p, new PauseClockCommand());
+            case "ADD_PENALTY" -> readAddPenalty(p);
+            case "TICK" -> skip(p, new TickCommand());
+            case "ADD_GOAL" -> readAddGoal(p);
+            case "REMOVE_GOAL" -> new RemoveGoalCommand(readSingleString(p, "goalId"));
+            case "ADD_SHOT" -> new AddShotCommand(readSingleString(p, "teamId"));
+            case "UNDO_LAST_SHOT" -> new UndoLastShotCommand(readSingleString(p, "teamId"));
+            case "END_GAME" -> skip(p, new EndGameCommand());
+            case "RESET_GAME" -> skip(p, new ResetGameCommand());
+            case "SET_PERIOD" -> readSetPeriod(p);
+            case "TRIGGER_BUZZER" -> skip(p, new TriggerBuzzerCommand());
+            case "SET_CLOCK" -> readSetClock(p);
+            case "UNDO" -> skip(p, new UndoCommand());
+            case "REDO" -> skip(p, new RedoCommand());
             default -> throw new IllegalArgumentException("Unknown command type: " + commandType);
         };
     }
+
+    /** Moves to the first field of the payload object; false if there are no fields to read. */
+    private static boolean enterObject(JsonParser p) throws IOException {
+        if (p == null || p.currentToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        return p.nextToken() == JsonToken.FIELD_NAME;
+    }
+
+    private static Command skip(JsonParser p, Command command) throws IOException {
+        if (p != null) {
+            p.skipChildren();
+        }
+        return command;
+    }
+
+    private static CreateGameCommand readCreateGame(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String templateId = null;
+        Map<String, Object> overrides = null;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "templateId" -> templateId = p.getValueAsString();
+                    case "overrides" -> overrides = p.currentToken() == JsonToken.VALUE_NULL ? null : ctxt.readValue(p, overridesType(ctxt));
+                    default -> p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return new CreateGameCommand(templateId, overrides);
+    }
+
+    private static JavaType overridesType(DeserializationContext ctxt) {
+        return ctxt.getTypeFactory().constructMapType(Map.class, String.class, Object.class);
+    }
+
+    private static AddPenaltyCommand readAddPenalty(JsonParser p) throws IOException {
+        String teamId = null;
+        int playerNumber = 0;
+        int servingPlayerNumber = 0;
+        int durationMinutes = 0;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "teamId" -> teamId = p.getValueAsString();
+                    case "playerNumber" -> playerNumber = p.getValueAsInt();
+                    case "servingPlayerNumber" -> servingPlayerNumber = p.getValueAsInt();
+                    case "durationMinutes" -> durationMinutes = p.getValueAsInt();
+                    default -> p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return new AddPenaltyCommand(teamId, playerNumber, servingPlayerNumber, durationMinutes);
+    }
+
+    private static AddGoalCommand readAddGoal(JsonParser p) throws IOException {
+        String teamId = null;
+        int scorerNumber = 0;
+        List<Integer> assistNumbers = null;
+        boolean isEmptyNet = false;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "teamId" -> teamId = p.getValueAsString();
+                    case "scorerNumber" -> scorerNumber = p.getValueAsInt();
+                    case "assistNumbers" -> assistNumbers = readIntList(p);
+                    case "isEmptyNet", "emptyNet" -> isEmptyNet = p.getValueAsBoolean();
+                    default -> p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return new AddGoalCommand(teamId, scorerNumber, assistNumbers, isEmptyNet);
+    }
+
+    private static List<Integer> readIntList(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        List<Integer> values = new ArrayList<>(2);
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            values.add(p.currentToken() == JsonToken.VALUE_NULL ? null : p.getValueAsInt());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private static String readSingleString(JsonParser p, String name) throws IOException {
+        String value = null;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                if (name.equals(field)) {
+                    value = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return value;
+    }
+
+    private static SetPeriodCommand readSetPeriod(JsonParser p) throws IOException {
+        int period = 0;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                if ("period".equals(field)) {
+                    period = p.getValueAsInt();
+                } else {
+                    p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return new SetPeriodCommand(period);
+    }
+
+    private static SetClockCommand readSetClock(JsonParser p) throws IOException {
+        long timeMillis = 0;
+        if (enterObject(p)) {
+            do {
+                String field = p.currentName();
+                p.nextToken();
+                if ("timeMillis".equals(field)) {
+                    timeMillis = p.getValueAsLong();
+                } else {
+                    p.skipChildren();
+                }
+            } while (p.nextToken() == JsonToken.FIELD_NAME);
+        }
+        return new SetClockCommand(timeMillis);
+    }
 }
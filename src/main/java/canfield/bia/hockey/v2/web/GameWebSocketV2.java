@@ -1,125 +1,452 @@
 package canfield.bia.hockey.v2.web;
 
+import canfield.bia.hockey.MonotonicTimeSource;
+import canfield.bia.hockey.TimeSource;
 import canfield.bia.hockey.v2.domain.GameState;
 import canfield.bia.hockey.v2.engine.GameEngine;
+import canfield.bia.hockey.v2.engine.GameRegistry;
 import canfield.bia.hockey.v2.engine.StateDiffer;
 import canfield.bia.hockey.v2.spec.Command;
+import canfield.bia.hockey.v2.spec.CommandCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.TextFrame;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocket server for the new GameEngine.
  * Handles incoming commands from UI clients and broadcasts state changes.
+ * <p>
+ * Clients that negotiate the {@value #BINARY_PROTOCOL} subprotocol may send commands as binary
+ * messages in {@link CommandCodec} form and receive STATE_PATCHes in {@link StatePatchCodec} form.
+ * Clients that offer no subprotocol get JSON only. INITIAL_STATE is JSON for everyone.
+ * <p>
+ * Clients that connect with {@code ?clock=interpolate} in the URL run the clock themselves. Plain ticks,
+ * which only move the clock and the running penalties, are not sent to them. Instead they get an anchor:
+ * {@code clock.timeRemainingMillis} and {@code clock.startTimeWallClock}, the server time at which that
+ * remaining time was exact, along with everything that changed since their last patch. Anchors go out on
+ * start, stop and any other change while the clock runs, and as a drift correction every
+ * {@link #setClockCorrectionMillis clock correction interval}. Such a client estimates the server's clock
+ * by sending {@code {"type":"PING","clientTime":...}}, answered with a PONG carrying {@code serverTime}.
+ * <p>
+ * A client that only shows some fields names them at connect time, {@code ?topics=clock,home.penalties}, and gets
+ * only those keys of each patch ({@link PatchFilter}); a patch with none of them is not sent. Clients with the same
+ * topics form a group whose patch is filtered and serialized once. INITIAL_STATE is the full state for everyone.
+ * <p>
+ * A server running several rinks ({@link #setGameRegistry}) serves them all on one port. A client picks its
+ * rink by path, {@code /rink/2}; any other path is the default rink. Each rink has its own clients, patch
+ * sequence and clock anchors, and its patches are sent from its own engine thread.
  */
 public class GameWebSocketV2 extends WebSocketServer {
 
     private static final Logger log = LoggerFactory.getLogger(GameWebSocketV2.class);
 
-    private GameEngine gameEngine; // Changed to non-final
+    /** Messages a client may fall behind before its backlog is replaced by an INITIAL_STATE resync. */
+    static final int OUTBOX_HIGH_WATER = 32;
+    /** How long a client may stay backed up before it is disconnected. */
+    static final long EVICT_AFTER_MILLIS = 15_000;
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+    private static final String CLOCK_KEY = "clock.timeRemainingMillis";
+    /** Subprotocol a client offers to send commands as binary {@link CommandCodec} frames. */
+    public static final String BINARY_PROTOCOL = "scoreboard.v2.binary";
+    /** URL query parameter by which a client asks for clock anchors instead of ticks. */
+    static final String INTERPOLATE_QUERY = "clock=interpolate";
+    /** URL query parameter listing the patch fields a client subscribes to. */
+    static final String TOPICS_PARAMETER = "topics";
+    public static final long DEFAULT_CLOCK_CORRECTION_MILLIS = 5000;
+    private static final String CLOCK_ANCHOR_KEY = "clock.startTimeWallClock";
+    private static final String PING = "\"PING\"";
+
+    private static final String RINK_PATH = "/rink/";
+
+    private final Map<String, Rink> rinks = new ConcurrentHashMap<>();
+    private volatile Rink defaultRink;
+    private final Map<WebSocket, Rink> clients = new ConcurrentHashMap<>(); // The rink each open connection watches
     private final StateDiffer stateDiffer;
     private final ObjectMapper objectMapper;
-    private final Set<WebSocket> connections;
+    private final ObjectWriter messageWriter;
+    private volatile long clockCorrectionMillis = DEFAULT_CLOCK_CORRECTION_MILLIS;
+    private ScheduledExecutorService flusher;
+    private volatile boolean listening; // Serving its own port rather than only connections Jetty hands over
+
+    /**
+     * Envelope for every server-to-client message.
+     */
+    record Message(String type, Object data) {}
+
+    /**
+     * One rink's engine and the clients watching it. The patch state is only touched on that engine's thread.
+     */
+    private final class Rink {
+        final GameEngine engine;
+        final TimeSource timeSource;
+        final Map<WebSocket, ClientOutbox> connections = new ConcurrentHashMap<>();
+        final StatePatchCodec patchCodec = new StatePatchCodec();
+        long patchSequence;
+        GameState anchorBaseline; // The state interpolating clients last got a patch up to
+        long lastAnchorMillis;
+
+        Rink(GameEngine engine) {
+            this.engine = engine;
+            this.timeSource = engine.getTimeSource();
+        }
+
+        byte[] initialState() {
+            try {
+                return encode("INITIAL_STATE", engine.getCurrentState());
+            } catch (Exception e) {
+                log.error("Error encoding initial state", e);
+                return null;
+            }
+        }
+    }
 
     public GameWebSocketV2(int port, StateDiffer stateDiffer) { // Removed GameEngine parameter
-        super(new InetSocketAddress(port));
+        super(new InetSocketAddress(port), List.of(commandDraft()));
         this.stateDiffer = stateDiffer;
         this.objectMapper = new ObjectMapper();
-        this.connections = Collections.synchronizedSet(new HashSet<>());
 
         SimpleModule module = new SimpleModule();
         module.addDeserializer(Command.class, new CommandDeserializer());
         objectMapper.registerModule(module);
+        this.messageWriter = objectMapper.writerFor(Message.class);
+    }
+
+    /**
+     * RFC 6455 draft that accepts the binary command subprotocol, or no subprotocol at all.
+     */
+    private static Draft commandDraft() {
+        return new Draft_6455(Collections.emptyList(), List.of(new Protocol(BINARY_PROTOCOL), new Protocol("")));
     }
 
+    /**
+     * Serves a single engine as the default rink.
+     */
     public void setGameEngine(GameEngine gameEngine) {
-        this.gameEngine = gameEngine;
+        addRink(GameRegistry.DEFAULT_RINK_ID, gameEngine);
+    }
+
+    /**
+     * Serves every rink of the registry; its default rink is the one clients get without a rink path.
+     * Each engine's state changes must reach {@link #broadcastStateChange(String, GameState, GameState)} with its rink id.
+     */
+    public void setGameRegistry(GameRegistry registry) {
+        for (GameRegistry.Rink rink : registry.rinks()) {
+            addRink(rink.id(), rink.engine());
+        }
+        defaultRink = rinks.get(registry.getDefault().id());
+    }
+
+    private void addRink(String rinkId, GameEngine engine) {
+        Rink rink = new Rink(engine);
+        rinks.put(rinkId, rink);
+        if (defaultRink == null) {
+            defaultRink = rink;
+        }
+    }
+
+    /**
+     * How often clients that interpolate the clock get a drift-correcting anchor while the clock runs.
+     */
+    public void setClockCorrectionMillis(long clockCorrectionMillis) {
+        this.clockCorrectionMillis = clockCorrectionMillis;
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        connections.add(conn);
-        log.info("WebSocket connection established: {}", conn.getRemoteSocketAddress());
-        try {
-            String initialStateJson = objectMapper.writeValueAsString(Map.of("type", "INITIAL_STATE", "data", gameEngine.getCurrentState()));
-            conn.send(initialStateJson);
-        } catch (Exception e) {
-            System.err.println("Error sending initial state: " + e.getMessage());
-            e.printStackTrace();
+        String rinkId = rinkId(conn.getResourceDescriptor());
+        Rink rink = rinkId == null ? defaultRink : rinks.get(rinkId);
+        if (rink == null) {
+            log.warn("WebSocket connection from {} for unknown rink {}", conn.getRemoteSocketAddress(), rinkId);
+            conn.close(CloseFrame.POLICY_VALIDATION, "Unknown rink " + rinkId);
+            return;
+        }
+        ClientOutbox outbox = new ClientOutbox(conn, OUTBOX_HIGH_WATER, EVICT_AFTER_MILLIS, isBinary(conn), interpolatesClock(conn),
+            PatchFilter.parse(queryParameter(conn.getResourceDescriptor(), TOPICS_PARAMETER)));
+        clients.put(conn, rink);
+        rink.connections.put(conn, outbox);
+        log.info("WebSocket connection established: {} rink={}", conn.getRemoteSocketAddress(), rinkId != null ? rinkId : "default");
+        byte[] initialState = rink.initialState();
+        if (initialState != null) {
+            outbox.offer(initialState, false, false, rink.timeSource.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The rink named by a {@code /rink/<id>} path, or null for any other path.
+     */
+    static String rinkId(String resourceDescriptor) {
+        if (resourceDescriptor == null || !resourceDescriptor.startsWith(RINK_PATH)) {
+            return null;
+        }
+        int end = resourceDescriptor.indexOf('?');
+        String id = resourceDescriptor.substring(RINK_PATH.length(), end < 0 ? resourceDescriptor.length() : end);
+        if (id.endsWith("/")) {
+            id = id.substring(0, id.length() - 1);
+        }
+        return id.isEmpty() ? null : id;
+    }
+
+    /**
+     * The rink of an open connection, or null for one that was refused or never opened; its messages are dropped.
+     */
+    private Rink rinkOf(WebSocket conn) {
+        Rink rink = clients.get(conn);
+        if (rink == null) {
+            log.debug("Dropping message from {}, which is not connected to a rink", conn.getRemoteSocketAddress());
+        }
+        return rink;
+    }
+
+    private static boolean isBinary(WebSocket conn) {
+        IProtocol protocol = conn.getProtocol();
+        return protocol != null && BINARY_PROTOCOL.equals(protocol.getProvidedProtocol());
+    }
+
+    private static boolean interpolatesClock(WebSocket conn) {
+        String resource = conn.getResourceDescriptor();
+        int query = resource == null ? -1 : resource.indexOf('?');
+        if (query < 0) {
+            return false;
+        }
+        for (String parameter : resource.substring(query + 1).split("&")) {
+            if (INTERPOLATE_QUERY.equals(parameter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The raw value of a URL query parameter, or null if the URL has none by that name.
+     */
+    static String queryParameter(String resource, String name) {
+        int query = resource == null ? -1 : resource.indexOf('?');
+        if (query < 0) {
+            return null;
+        }
+        for (String parameter : resource.substring(query + 1).split("&")) {
+            if (parameter.startsWith(name) && parameter.length() > name.length() && parameter.charAt(name.length()) == '=') {
+                return parameter.substring(name.length() + 1);
+            }
         }
+        return null;
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        connections.remove(conn);
+        Rink rink = clients.remove(conn);
+        if (rink != null) {
+            rink.connections.remove(conn);
+        }
         log.info("WebSocket closed: {} code={} reason={} remote={}", conn.getRemoteSocketAddress(), code, reason, remote);
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
+        Rink rink = rinkOf(conn);
+        if (rink == null) {
+            return;
+        }
+        if (message.contains(PING) && answerPing(rink, conn, message)) {
+            return;
+        }
         log.info("Received message from {}: {}", conn.getRemoteSocketAddress(), message);
         try {
             Command command = objectMapper.readValue(message, Command.class);
-            processAndBroadcast(command);
+            // Applied on the engine loop; the resulting patch reaches clients via broadcastStateChange
+            rink.engine.submit(command);
         } catch (Exception e) {
             System.err.println("Error processing message: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Replies to a clock-sync PING with the client's own timestamp and the server time, so the client can
+     * estimate its offset from the round trip. False if the message is not a PING after all.
+     */
+    private boolean answerPing(Rink rink, WebSocket conn, String message) {
+        try {
+            JsonNode ping = objectMapper.readTree(message);
+            if (!"PING".equals(ping.path("type").asText())) {
+                return false;
+            }
+            ClientOutbox outbox = rink.connections.get(conn);
+            if (outbox != null) {
+                // Same timeline as the clock anchors
+                long now = rink.timeSource.currentTimeMillis();
+                Map<String, Object> pong = Map.of("clientTime", ping.path("clientTime").asLong(), "serverTime", now);
+                outbox.offer(encode("PONG", pong), false, false, now);
+            }
+            return true;
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Binary commands: one or more {@link CommandCodec} commands back to back. A frame that does not
+     * decode is dropped from that point on; commands before it have already been submitted.
+     */
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        Rink rink = rinkOf(conn);
+        if (rink == null) {
+            return;
+        }
+        GameEngine engine = rink.engine;
+        int count = 0;
+        try {
+            while (message.hasRemaining()) {
+                engine.submit(CommandCodec.decode(message));
+                count++;
+            }
+            log.debug("Received {} binary command(s) from {}", count, conn.getRemoteSocketAddress());
+        } catch (RuntimeException e) {
+            log.warn("Dropping malformed binary command from {} after {} command(s)", conn.getRemoteSocketAddress(), count, e);
+        }
+    }
+
     @Override
     public void onError(WebSocket conn, Exception ex) {
         log.error("WebSocket error", ex);
     }
 
+    @Override
+    public void start() {
+        listening = true;
+        super.start();
+    }
+
     @Override
     public void onStart() {
         System.out.println("GameWebSocketV2 started on port " + getPort());
+        startFlushing();
+    }
+
+    /**
+     * Starts draining backed-up clients without serving a port of its own, for connections another
+     * transport hands over ({@link JettyWebSocketTransport}); {@link #start} does this itself.
+     */
+    public synchronized void startFlushing() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-outbox-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushOutboxes, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void stop() throws InterruptedException {
-        super.stop();
+        synchronized (this) {
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+        }
+        if (listening) {
+            super.stop();
+        }
     }
 
-    private void processAndBroadcast(Command command) {
-        GameState oldState = gameEngine.getCurrentState();
-        gameEngine.processCommand(command, System.currentTimeMillis());
-        GameState newState = gameEngine.getCurrentState();
-
-        // Broadcast state changes
-        Map<String, Object> patch = stateDiffer.diff(oldState, newState);
-        if (!patch.isEmpty()) {
-            try {
-                String patchJson = objectMapper.writeValueAsString(Map.of("type", "STATE_PATCH", "data", patch));
-                for (WebSocket client : connections) {
-                    client.send(patchJson);
+    /**
+     * Drains backed-up clients and drops the ones that stayed stalled too long.
+     */
+    void flushOutboxes() {
+        for (Rink rink : rinks.values()) {
+            long now = rink.timeSource.currentTimeMillis();
+            for (ClientOutbox outbox : rink.connections.values()) {
+                try {
+                    if (!outbox.flush(rink::initialState, now)) {
+                        rink.connections.remove(outbox.connection());
+                        clients.remove(outbox.connection());
+                    }
+                } catch (Exception e) {
+                    log.error("Error flushing client {}", outbox.connection().getRemoteSocketAddress(), e);
                 }
-            } catch (Exception e) {
-                System.err.println("Error broadcasting patch: " + e.getMessage());
-                e.printStackTrace();
             }
         }
     }
 
+    /**
+     * Sends the change to the default rink's clients.
+     */
     public void broadcastStateChange(GameState oldState, GameState newState) {
+        broadcastStateChange(defaultRink, oldState, newState, defaultRink.timeSource.currentTimeMillis());
+    }
+
+    /**
+     * Sends the change to the clients of {@code rinkId}; call it from that rink's engine thread.
+     */
+    public void broadcastStateChange(String rinkId, GameState oldState, GameState newState) {
+        Rink rink = rinks.get(rinkId);
+        if (rink != null) { // Nobody can be watching a rink that is not served yet
+            broadcastStateChange(rink, oldState, newState, rink.timeSource.currentTimeMillis());
+        }
+    }
+
+    void broadcastStateChange(GameState oldState, GameState newState, long now) {
+        broadcastStateChange(defaultRink, oldState, newState, now);
+    }
+
+    private void broadcastStateChange(Rink rink, GameState oldState, GameState newState, long now) {
         Map<String, Object> patch = stateDiffer.diff(oldState, newState);
         if (!patch.isEmpty()) {
             try {
-                String patchJson = objectMapper.writeValueAsString(Map.of("type", "STATE_PATCH", "data", patch));
-                log.debug("Broadcasting patch to {} clients: {}", connections.size(), patch.keySet());
-                for (WebSocket client : connections) {
-                    client.send(patchJson);
+                long sequence = ++rink.patchSequence;
+                boolean runningTimeOnly = isRunningTimeOnly(oldState, newState, patch);
+                Map<String, Object> anchored = anchoredPatch(rink, oldState, newState, patch, runningTimeOnly, now);
+                log.debug("Broadcasting patch {} to {} clients: {}", sequence, rink.connections.size(), patch.keySet());
+                PatchFrames ticking = new PatchFrames(rink.patchCodec, sequence, patch, false, false);
+                PatchFrames interpolating = anchored == patch ? ticking
+                    : anchored == null ? null : new PatchFrames(rink.patchCodec, sequence, anchored, true, runningTimeOnly);
+                Map<PatchFilter, PatchFrames[]> groups = null; // Ticking and interpolating frames per subscription
+                for (ClientOutbox outbox : rink.connections.values()) {
+                    PatchFrames[] group = null;
+                    if (!outbox.patchFilter().isAll()) {
+                        if (groups == null) {
+                            groups = new HashMap<>();
+                        }
+                        group = groups.computeIfAbsent(outbox.patchFilter(), filter -> new PatchFrames[] {
+                            ticking.filtered(filter), interpolating == null ? null : interpolating.filtered(filter)
+                        });
+                    }
+                    PatchFrames frames = outbox.interpolatesClock()
+                        ? group == null ? interpolating : group[1]
+                        : group == null ? ticking : group[0];
+                    if (frames != null) {
+                        frames.offer(outbox, now);
+                    }
                 }
             } catch (Exception e) {
                 System.err.println("Error broadcasting patch: " + e.getMessage());
@@ -127,4 +454,126 @@ public class GameWebSocketV2 extends WebSocketServer {
             }
         }
     }
+
+    /**
+     * One patch, serialized at most once per format; every client's outbox shares the same bytes.
+     */
+    private final class PatchFrames {
+        private final StatePatchCodec patchCodec;
+        private final long sequence;
+        private final Map<String, Object> patch;
+        private final boolean anchor;
+        private final boolean runningTimeOnly;
+        private final boolean carriesClock;
+        private final boolean clockOnly; // May be superseded by a newer patch carrying the clock
+        private byte[] json;
+        private String jsonText; // Decoded once for the clients that send text as a String
+        private byte[] binary;
+        private boolean binaryTried;
+
+        /**
+         * @param anchor the patch is for interpolating clients
+         * @param runningTimeOnly the anchor is a drift correction, which every later anchor supersedes
+         */
+        PatchFrames(StatePatchCodec patchCodec, long sequence, Map<String, Object> patch, boolean anchor, boolean runningTimeOnly) {
+            this.patchCodec = patchCodec;
+            this.sequence = sequence;
+            this.patch = patch;
+            this.anchor = anchor;
+            this.runningTimeOnly = runningTimeOnly;
+            this.carriesClock = patch.containsKey(CLOCK_KEY);
+            this.clockOnly = anchor ? runningTimeOnly : carriesClock && patch.size() == 1;
+        }
+
+        /**
+         * @return the frames of the part of this patch {@code filter} takes, or null if it takes none of it
+         */
+        PatchFrames filtered(PatchFilter filter) {
+            Map<String, Object> subscribed = filter.apply(patch);
+            if (subscribed == patch) {
+                return this;
+            }
+            return subscribed.isEmpty() ? null : new PatchFrames(patchCodec, sequence, subscribed, anchor, runningTimeOnly);
+        }
+
+        void offer(ClientOutbox outbox, long now) throws JsonProcessingException {
+            if (outbox.wantsBinaryPatches() && !binaryTried) {
+                binaryTried = true;
+                binary = patchCodec.encode(sequence, patch);
+            }
+            if (outbox.wantsBinaryPatches() && binary != null) {
+                outbox.offer(binary, true, clockOnly, carriesClock, now);
+                return;
+            }
+            if (json == null) {
+                json = encode("STATE_PATCH", patch);
+            }
+            if (jsonText == null && outbox.wantsText()) {
+                jsonText = new String(json, StandardCharsets.UTF_8);
+            }
+            outbox.offer(json, outbox.wantsText() ? jsonText : null, false, clockOnly, carriesClock, now);
+        }
+    }
+
+    /**
+     * A plain tick of a running clock: nothing changed but the clock's and the running penalties' remaining times,
+     * which interpolating clients work out for themselves.
+     */
+    private static boolean isRunningTimeOnly(GameState oldState, GameState newState, Map<String, Object> patch) {
+        if (!oldState.clock().isRunning() || !newState.clock().isRunning()) {
+            return false;
+        }
+        for (String key : patch.keySet()) {
+            if (!key.equals(CLOCK_KEY) && !(key.contains(".penalties[") && key.endsWith("].timeRemainingMillis"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The patch for clients that interpolate the clock: the same patch while the clock is stopped, nothing for a plain
+     * tick until a correction is due, otherwise everything since their last patch plus the clock anchor.
+     * @return null if they get nothing this time
+     */
+    private Map<String, Object> anchoredPatch(Rink rink, GameState oldState, GameState newState, Map<String, Object> patch,
+                                              boolean runningTimeOnly, long now) {
+        if (!oldState.clock().isRunning() && !newState.clock().isRunning()) {
+            rink.anchorBaseline = newState;
+            return patch;
+        }
+        if (runningTimeOnly && now - rink.lastAnchorMillis < clockCorrectionMillis) {
+            return null;
+        }
+        // Skipped ticks moved the remaining times since the baseline; diff from there so they arrive with the anchor
+        Map<String, Object> anchored = rink.anchorBaseline == null || rink.anchorBaseline == oldState
+            ? new HashMap<>(patch)
+            : stateDiffer.diff(rink.anchorBaseline, newState);
+        anchored.put(CLOCK_KEY, newState.clock().timeRemainingMillis());
+        anchored.put(CLOCK_ANCHOR_KEY, newState.clock().startTimeWallClock());
+        rink.anchorBaseline = newState;
+        rink.lastAnchorMillis = now;
+        return anchored;
+    }
+
+    /**
+     * Serializes a message envelope straight to UTF-8 bytes.
+     */
+    byte[] encode(String type, Object data) throws JsonProcessingException {
+        return messageWriter.writeValueAsBytes(new Message(type, data));
+    }
+
+    static TextFrame textFrame(byte[] utf8) {
+        TextFrame frame = new TextFrame();
+        frame.setPayload(ByteBuffer.wrap(utf8));
+        frame.setFin(true);
+        return frame;
+    }
+
+    static BinaryFrame binaryFrame(byte[] bytes) {
+        BinaryFrame frame = new BinaryFrame();
+        frame.setPayload(ByteBuffer.wrap(bytes));
+        frame.setFin(true);
+        return frame;
+    }
 }
@@ -0,0 +1,351 @@
+package canfield.bia.hockey.v2.web;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One client of {@link GameWebSocketV2} that reached it through Jetty. It passes the Jetty session's events on
+ * to the server and presents the session as the {@link WebSocket} the server and {@link ClientOutbox} work with.
+ * <p>
+ * Writes are asynchronous; a write that Jetty has not finished counts as buffered data, so a slow client
+ * backs up in its outbox just as it does on the server's own port.
+ */
+final class JettyWebSocketConnection implements WebSocket, WebSocketListener {
+
+    private static final Logger log = LoggerFactory.getLogger(JettyWebSocketConnection.class);
+
+    private final GameWebSocketV2 server;
+    private final String resourceDescriptor;
+    private final AtomicInteger writesInFlight = new AtomicInteger();
+    private final WriteCallback written = new WriteCallback() {
+        @Override
+        public void writeSuccess() {
+            writesInFlight.decrementAndGet();
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            writesInFlight.decrementAndGet();
+            log.debug("Write to {} failed", getRemoteSocketAddress(), x);
+        }
+    };
+    private volatile Session session;
+    private volatile boolean closedLocally;
+    private volatile boolean closing; // The close handshake has begun and Jetty has not reported it over
+    private Opcode fragmented; // TEXT or BINARY while a fragmented message is being sent, else null
+    private ByteBuffer textTail; // The start of a character split between text fragments
+    private Object attachment;
+
+    /**
+     * @param resourceDescriptor the path and query the client connected to, as {@link #getResourceDescriptor} gives it
+     */
+    JettyWebSocketConnection(GameWebSocketV2 server, String resourceDescriptor) {
+        this.server = server;
+        this.resourceDescriptor = resourceDescriptor;
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        server.onOpen(this, null);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        server.onMessage(this, message);
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int length) {
+        server.onMessage(this, ByteBuffer.wrap(payload, offset, length));
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        closing = false;
+        server.onClose(this, statusCode, reason, !closedLocally);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        server.onError(this, cause instanceof Exception e ? e : new RuntimeException(cause));
+    }
+
+    @Override
+    public void sendFrame(Framedata frame) {
+        switch (frame.getOpcode()) {
+            case TEXT, BINARY, CONTINUOUS -> sendData(frame.getOpcode(), frame.getPayloadData(), frame.isFin());
+            case PING -> {
+                Session s = openSession();
+                writesInFlight.incrementAndGet();
+                s.getRemote().sendPing(frame.getPayloadData(), written);
+            }
+            case PONG -> {
+                Session s = openSession();
+                writesInFlight.incrementAndGet();
+                s.getRemote().sendPong(frame.getPayloadData(), written);
+            }
+            case CLOSING -> {
+                if (frame instanceof CloseFrame close) {
+                    close(close.getCloseCode(), close.getMessage());
+                } else {
+                    close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a data frame: a whole message, or a fragment of one that Jetty sends as a partial message.
+     * @param opcode TEXT or BINARY, or CONTINUOUS for a later fragment of a message sent by frames
+     */
+    private synchronized void sendData(Opcode opcode, ByteBuffer payload, boolean fin) {
+        Session s = openSession();
+        Opcode message = opcode == Opcode.CONTINUOUS ? fragmented : opcode;
+        if (message == null) {
+            throw new IllegalStateException("Continuation frame without a fragmented message to continue");
+        }
+        boolean partial = fragmented != null || !fin;
+        fragmented = fin ? null : message;
+        writesInFlight.incrementAndGet();
+        if (!partial) {
+            if (message == Opcode.TEXT) {
+                s.getRemote().sendString(StandardCharsets.UTF_8.decode(payload.duplicate()).toString(), written);
+            } else {
+                s.getRemote().sendBytes(payload, written);
+            }
+        } else if (message == Opcode.TEXT) {
+            try {
+                s.getRemote().sendPartialString(textFragment(payload, fin), fin, written);
+            } catch (IOException e) {
+                writesInFlight.decrementAndGet();
+                throw new WebsocketNotConnectedException();
+            }
+        } else {
+            s.getRemote().sendPartialBytes(payload, fin, written);
+        }
+    }
+
+    /**
+     * Decodes a text fragment. A character split between fragments is held back until the next one.
+     */
+    private String textFragment(ByteBuffer payload, boolean last) {
+        ByteBuffer in = payload.duplicate();
+        if (textTail != null) {
+            in = ByteBuffer.allocate(textTail.remaining() + in.remaining()).put(textTail).put(in).flip();
+            textTail = null;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.allocate(in.remaining() + 1);
+        decoder.decode(in, out, last);
+        if (last) {
+            decoder.flush(out);
+        } else if (in.hasRemaining()) {
+            textTail = ByteBuffer.allocate(in.remaining()).put(in).flip();
+        }
+        return out.flip().toString();
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        for (Framedata frame : frames) {
+            sendFrame(frame);
+        }
+    }
+
+    @Override
+    public void send(String text) {
+        writesInFlight.incrementAndGet();
+        openSession().getRemote().sendString(text, written);
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        writesInFlight.incrementAndGet();
+        openSession().getRemote().sendBytes(bytes, written);
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        send(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public void sendPing() {
+        openSession().getRemote().sendPing(ByteBuffer.allocate(0), WriteCallback.NOOP);
+    }
+
+    /**
+     * @param op TEXT or BINARY, the same for every fragment of the message
+     */
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean last) {
+        sendData(op, buffer, last);
+    }
+
+    private Session openSession() {
+        Session s = session;
+        if (s == null || !s.isOpen()) {
+            throw new WebsocketNotConnectedException();
+        }
+        return s;
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return writesInFlight.get() > 0;
+    }
+
+    @Override
+    public void close(int code, String message) {
+        Session s = session;
+        if (s != null) {
+            closedLocally = true;
+            closing = true;
+            s.close(code, message);
+        }
+    }
+
+    @Override
+    public void close(int code) {
+        close(code, null);
+    }
+
+    @Override
+    public void close() {
+        close(CloseFrame.NORMAL);
+    }
+
+    /**
+     * Sends the close code, then drops the connection without waiting for the client's reply.
+     */
+    @Override
+    public void closeConnection(int code, String message) {
+        Session s = session;
+        if (s != null) {
+            closedLocally = true;
+            closing = true;
+            s.close(code, message, new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    s.disconnect();
+                }
+
+                @Override
+                public void writeFailed(Throwable x) {
+                    s.disconnect();
+                }
+            });
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        Session s = session;
+        return s == null ? null : inet(s.getRemoteAddress());
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        Session s = session;
+        return s == null ? null : inet(s.getLocalAddress());
+    }
+
+    private static InetSocketAddress inet(SocketAddress address) {
+        return address instanceof InetSocketAddress inet ? inet : null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        Session s = session;
+        return s != null && !closing && s.isOpen();
+    }
+
+    @Override
+    public boolean isClosing() {
+        return closing;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return session != null && !session.isOpen();
+    }
+
+    @Override
+    public Draft getDraft() {
+        return null;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        Session s = session;
+        if (s == null) {
+            return ReadyState.NOT_YET_CONNECTED;
+        }
+        return closing ? ReadyState.CLOSING : s.isOpen() ? ReadyState.OPEN : ReadyState.CLOSED;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return resourceDescriptor;
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("This connection does not use SSL");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        Session s = session;
+        String accepted = s == null ? null : s.getUpgradeResponse().getAcceptedSubProtocol();
+        return new Protocol(accepted == null ? "" : accepted);
+    }
+}
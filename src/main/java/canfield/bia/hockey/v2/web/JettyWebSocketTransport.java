@@ -0,0 +1,48 @@
+package canfield.bia.hockey.v2.web;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Serves {@link GameWebSocketV2} through Jetty, on whatever ports the Jetty server listens on, instead of on the
+ * WebSocket server's own port and threads. Upgrade requests on any path of the context are handed to the game
+ * server, with the same paths, query parameters and subprotocols; other requests go on to the context's servlets.
+ */
+public final class JettyWebSocketTransport {
+
+    /**
+     * Jetty closes a connection idle this long; clients that interpolate the clock send a PING every 30s.
+     */
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(2);
+    private static final long MAX_MESSAGE_BYTES = 64 * 1024;
+
+    private JettyWebSocketTransport() {
+    }
+
+    /**
+     * Hands the WebSocket upgrades of {@code context} to {@code server}; call {@link GameWebSocketV2#startFlushing}
+     * instead of starting it on its own port.
+     */
+    public static void install(ServletContextHandler context, GameWebSocketV2 server) {
+        JettyWebSocketServletContainerInitializer.configure(context, (servletContext, container) -> {
+            container.setIdleTimeout(IDLE_TIMEOUT);
+            container.setMaxTextMessageSize(MAX_MESSAGE_BYTES);
+            container.setMaxBinaryMessageSize(MAX_MESSAGE_BYTES);
+            container.addMapping("/*", (request, response) -> {
+                if (request.hasSubProtocol(GameWebSocketV2.BINARY_PROTOCOL)) {
+                    response.setAcceptedSubProtocol(GameWebSocketV2.BINARY_PROTOCOL);
+                }
+                return new JettyWebSocketConnection(server, resourceDescriptor(request.getRequestURI()));
+            });
+        });
+    }
+
+    /** The path and query, as a client of the server's own port would have sent them. */
+    static String resourceDescriptor(URI uri) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+    }
+}
@@ -0,0 +1,93 @@
+package canfield.bia.hockey.v2.web;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The patch keys a client subscribed to, as field prefixes: {@code clock} takes {@code clock.timeRemainingMillis}
+ * and {@code clock.isRunning}, {@code home.penalties} takes every key of the home penalty list. A prefix matches a
+ * key that is the field itself or lies below it, after a {@code .} or {@code [}, and a key that replaces a whole
+ * list or object the field lies in. No prefixes means every key.
+ * <p>
+ * Prefixes are kept sorted and without duplicates, so clients that ask for the same fields in any order have
+ * equal filters and share one serialized patch.
+ */
+record PatchFilter(List<String> prefixes) {
+
+    static final PatchFilter ALL = new PatchFilter(List.of());
+
+    PatchFilter {
+        prefixes = List.copyOf(prefixes);
+    }
+
+    /**
+     * @param topics comma separated prefixes as given in the connection URL, possibly URL-encoded; null or blank for all
+     */
+    static PatchFilter parse(String topics) {
+        if (topics == null) {
+            return ALL;
+        }
+        TreeSet<String> prefixes = new TreeSet<>();
+        for (String topic : URLDecoder.decode(topics, StandardCharsets.UTF_8).split(",")) {
+            String prefix = topic.trim();
+            if (!prefix.isEmpty()) {
+                prefixes.add(prefix);
+            }
+        }
+        return prefixes.isEmpty() ? ALL : new PatchFilter(List.copyOf(prefixes));
+    }
+
+    boolean isAll() {
+        return prefixes.isEmpty();
+    }
+
+    boolean matches(String key) {
+        if (isAll()) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (within(key, prefix) || within(prefix, key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the subscribed part of {@code patch}: the patch itself if every key is subscribed, otherwise a copy
+     */
+    Map<String, Object> apply(Map<String, Object> patch) {
+        if (isAll()) {
+            return patch;
+        }
+        Map<String, Object> filtered = null;
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            if (matches(entry.getKey())) {
+                if (filtered == null) {
+                    filtered = new HashMap<>();
+                }
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (filtered == null) {
+            return Map.of();
+        }
+        return filtered.size() == patch.size() ? patch : filtered;
+    }
+
+    /** {@code path} is {@code field} or a path below it. */
+    private static boolean within(String path, String field) {
+        if (!path.startsWith(field)) {
+            return false;
+        }
+        if (path.length() == field.length()) {
+            return true;
+        }
+        char next = path.charAt(field.length());
+        return next == '.' || next == '[';
+    }
+}
@@ -0,0 +1,243 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.domain.GoalEvent;
+import canfield.bia.hockey.v2.domain.Penalty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a STATE_PATCH for clients on the {@value GameWebSocketV2#BINARY_PROTOCOL} subprotocol.
+ * <p>
+ * A message is the {@link #STATE_PATCH} type byte, the patch sequence number, then one entry per changed
+ * field until the end of the message: a one-byte field id followed by the value. Integers are zigzag
+ * varints; booleans are one byte; strings are a varint of byte length + 1 (0 for null) followed by UTF-8;
+ * lists are a varint of count + 1 (0 for null) followed by the elements' fields in record order. Enums
+ * are sent by name. A running-clock patch is 7-9 bytes instead of about 70 bytes of JSON.
+ * <p>
+ * Element keys such as {@code home.penalties[id]} and {@code home.penalties[id].timeRemainingMillis} have
+ * their own field ids; the value is the element id as a string followed by, for a whole element, a
+ * presence byte (0 = removed) and the element's fields, or for a remaining time, the zigzag varint.
+ * {@code home.penalties[*].timeRemainingMillis} is a list of zigzag varints, one per penalty in order.
+ * <p>
+ * Field ids are part of the wire format and are mirrored in the UI's state-patch decoder; append new
+ * ids, never renumber. Not thread-safe; the broadcaster reuses one scratch buffer.
+ */
+final class StatePatchCodec {
+
+    /** Message type byte, leaving room for other binary server messages. */
+    static final byte STATE_PATCH = 1;
+
+    static final byte GAME_ID = 1;
+    static final byte STATUS = 2;
+    static final byte PERIOD = 3;
+    static final byte BUZZER_ON = 4;
+    static final byte CLOCK_TIME_REMAINING = 5;
+    static final byte CLOCK_IS_RUNNING = 6;
+    static final byte HOME_GOALS = 7;
+    static final byte HOME_SCORE = 8;
+    static final byte HOME_SHOTS = 9;
+    static final byte HOME_PENALTIES = 10;
+    static final byte AWAY_GOALS = 11;
+    static final byte AWAY_SCORE = 12;
+    static final byte AWAY_SHOTS = 13;
+    static final byte AWAY_PENALTIES = 14;
+    static final byte HOME_GOAL = 15;
+    static final byte AWAY_GOAL = 16;
+    static final byte HOME_PENALTY = 17;
+    static final byte AWAY_PENALTY = 18;
+    static final byte HOME_PENALTY_TIME_REMAINING = 19;
+    static final byte AWAY_PENALTY_TIME_REMAINING = 20;
+    static final byte HOME_PENALTY_TIMES = 21;
+    static final byte AWAY_PENALTY_TIMES = 22;
+    static final byte CLOCK_START_TIME = 23;
+
+    private static final Map<String, Byte> FIELD_IDS = Map.ofEntries(
+        Map.entry("gameId", GAME_ID),
+        Map.entry("status", STATUS),
+        Map.entry("period", PERIOD),
+        Map.entry("buzzerOn", BUZZER_ON),
+        Map.entry("clock.timeRemainingMillis", CLOCK_TIME_REMAINING),
+        Map.entry("clock.isRunning", CLOCK_IS_RUNNING),
+        Map.entry("clock.startTimeWallClock", CLOCK_START_TIME),
+        Map.entry("home.goals", HOME_GOALS),
+        Map.entry("home.score", HOME_SCORE),
+        Map.entry("home.shots", HOME_SHOTS),
+        Map.entry("home.penalties", HOME_PENALTIES),
+        Map.entry("away.goals", AWAY_GOALS),
+        Map.entry("away.score", AWAY_SCORE),
+        Map.entry("away.shots", AWAY_SHOTS),
+        Map.entry("away.penalties", AWAY_PENALTIES),
+        // Element keys, with the id cut out of the brackets
+        Map.entry("home.goals[]", HOME_GOAL),
+        Map.entry("away.goals[]", AWAY_GOAL),
+        Map.entry("home.penalties[]", HOME_PENALTY),
+        Map.entry("away.penalties[]", AWAY_PENALTY),
+        Map.entry("home.penalties[].timeRemainingMillis", HOME_PENALTY_TIME_REMAINING),
+        Map.entry("away.penalties[].timeRemainingMillis", AWAY_PENALTY_TIME_REMAINING),
+        Map.entry("home.penalties[*].timeRemainingMillis", HOME_PENALTY_TIMES),
+        Map.entry("away.penalties[*].timeRemainingMillis", AWAY_PENALTY_TIMES)
+    );
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /**
+     * @return the encoded message, or null if the patch has a field or value this format has no encoding
+     *     for, in which case the caller sends the JSON form instead
+     */
+    byte[] encode(long sequence, Map<String, Object> patch) {
+        length = 0;
+        writeByte(STATE_PATCH);
+        writeVarint(sequence);
+        for (Map.Entry<String, Object> field : patch.entrySet()) {
+            String key = field.getKey();
+            int open = key.indexOf('[');
+            int close = key.indexOf(']', open + 1);
+            String elementId = null;
+            if (open >= 0 && !key.startsWith("[*]", open)) {
+                if (close < 0) {
+                    return null;
+                }
+                elementId = key.substring(open + 1, close);
+                key = key.substring(0, open + 1) + key.substring(close);
+            }
+            Byte id = FIELD_IDS.get(key);
+            if (id == null) {
+                return null;
+            }
+            writeByte(id);
+            if (elementId != null) {
+                writeString(elementId);
+            }
+            if (!writeValue(id, field.getValue())) {
+                return null;
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean writeValue(byte id, Object value) {
+        switch (id) {
+            case GAME_ID -> writeString((String) value);
+            case STATUS -> writeString(value == null ? null : ((Enum<?>) value).name());
+            case BUZZER_ON, CLOCK_IS_RUNNING -> writeByte((byte) (Boolean.TRUE.equals(value) ? 1 : 0));
+            case HOME_GOALS, AWAY_GOALS -> writeGoals((List<GoalEvent>) value);
+            case HOME_PENALTIES, AWAY_PENALTIES -> writePenalties((List<Penalty>) value);
+            case HOME_PENALTY_TIMES, AWAY_PENALTY_TIMES -> {
+                List<Long> times = (List<Long>) value;
+                if (writeCount(times)) {
+                    for (Long time : times) {
+                        writeSigned(time);
+                    }
+                }
+            }
+            case HOME_GOAL, AWAY_GOAL -> {
+                writeByte((byte) (value == null ? 0 : 1));
+                if (value != null) {
+                    writeGoal((GoalEvent) value);
+                }
+            }
+            case HOME_PENALTY, AWAY_PENALTY -> {
+                writeByte((byte) (value == null ? 0 : 1));
+                if (value != null) {
+                    writePenalty((Penalty) value);
+                }
+            }
+            default -> {
+                if (!(value instanceof Number number)) {
+                    return false;
+                }
+                writeSigned(number.longValue());
+            }
+        }
+        return true;
+    }
+
+    private void writeGoals(List<GoalEvent> goals) {
+        if (writeCount(goals)) {
+            for (GoalEvent goal : goals) {
+                writeGoal(goal);
+            }
+        }
+    }
+
+    private void writeGoal(GoalEvent goal) {
+        writeString(goal.goalId());
+        writeString(goal.teamId());
+        writeSigned(goal.period());
+        writeSigned(goal.timeInPeriodMillis());
+        writeSigned(goal.scorerNumber());
+        List<Integer> assists = goal.assistNumbers();
+        if (writeCount(assists)) {
+            for (Integer assist : assists) {
+                writeSigned(assist == null ? 0 : assist);
+            }
+        }
+        writeByte((byte) (goal.isEmptyNet() ? 1 : 0));
+    }
+
+    private void writePenalties(List<Penalty> penalties) {
+        if (writeCount(penalties)) {
+            for (Penalty penalty : penalties) {
+                writePenalty(penalty);
+            }
+        }
+    }
+
+    private void writePenalty(Penalty penalty) {
+        writeString(penalty.penaltyId());
+        writeString(penalty.teamId());
+        writeSigned(penalty.playerNumber());
+        writeSigned(penalty.servingPlayerNumber());
+        writeSigned(penalty.durationMillis());
+        writeSigned(penalty.timeRemainingMillis());
+        writeSigned(penalty.startTimeWallClock());
+        writeSigned(penalty.period());
+    }
+
+    /** Writes count + 1, or 0 for null; true if there are elements to follow. */
+    private boolean writeCount(List<?> list) {
+        writeVarint(list == null ? 0 : list.size() + 1L);
+        return list != null && !list.isEmpty();
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(utf8.length + 1L);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, buffer, length, utf8.length);
+        length += utf8.length;
+    }
+
+    private void writeSigned(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void writeByte(byte value) {
+        ensure(1);
+        buffer[length++] = value;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package canfield.bia.hockey;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel("test-wheel", 1, 8); // Small, so deadlines wrap around the wheel
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void testDeadlinesFireInOrderAndNeverEarly() throws InterruptedException {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] firedAfterMillis = new long[3];
+        int[] delays = {40, 5, 20};
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(() -> {
+                firedAfterMillis[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                fired.add(delays[index]);
+                done.countDown();
+            }, delays[i]);
+        }
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(5, 20, 40), fired);
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue(firedAfterMillis[i] >= delays[i], "Fired " + firedAfterMillis[i] + "ms into a " + delays[i] + "ms delay");
+        }
+    }
+
+    @Test
+    void testCancelledTimeoutDoesNotRun() throws InterruptedException {
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch later = new CountDownLatch(1);
+        TimingWheel.Timeout cancelled = wheel.schedule(() -> fired.add("cancelled"), 200);
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        wheel.schedule(() -> {
+            fired.add("later");
+            later.countDown();
+        }, 300);
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of("later"), fired);
+        assertFalse(cancelled.cancel(), "Cancelling twice has no further effect");
+    }
+
+    @Test
+    void testTaskCanRescheduleAndCancel() throws InterruptedException {
+        CountDownLatch rescheduled = new CountDownLatch(1);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        TimingWheel.Timeout victim = wheel.schedule(() -> fired.add("victim"), 100);
+        wheel.schedule(() -> {
+            victim.cancel();
+            wheel.schedule(rescheduled::countDown, 0);
+        }, 5);
+
+        assertTrue(rescheduled.await(2, TimeUnit.SECONDS));
+        Thread.sleep(150);
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    void testFixedRateTaskRepeatsUntilCancelled() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch threeRuns = new CountDownLatch(3);
+        TimingWheel.Timeout loop = wheel.scheduleAtFixedRate(() -> {
+            runs.incrementAndGet();
+            threeRuns.countDown();
+        }, 0, 5);
+
+        assertTrue(threeRuns.await(2, TimeUnit.SECONDS));
+        assertTrue(loop.cancel());
+        Thread.sleep(20); // A run already under way may finish
+        int stopped = runs.get();
+        Thread.sleep(50);
+        assertEquals(stopped, runs.get(), "No runs after cancel");
+    }
+}
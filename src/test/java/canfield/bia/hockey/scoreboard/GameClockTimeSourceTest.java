@@ -0,0 +1,47 @@
+package canfield.bia.hockey.scoreboard;
+
+import canfield.bia.hockey.MonotonicTimeSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The legacy clock against a simulated PC whose wall clock gets stepped while the game clock runs.
+ */
+class GameClockTimeSourceTest {
+
+    private long wallMillis = 1_700_000_000_000L;
+    private long nanos = 0;
+
+    private GameClock newClock() {
+        return new GameClock(20, 0, new MonotonicTimeSource(() -> wallMillis, () -> nanos));
+    }
+
+    private void advance(long millis) {
+        nanos += millis * 1_000_000L;
+        wallMillis += millis;
+    }
+
+    @Test
+    void testWallClockStepsDoNotMoveARunningClock() {
+        GameClock clock = newClock();
+        clock.start();
+        advance(30_000);
+        wallMillis += 3_600_000; // NTP steps the PC an hour ahead
+        assertEquals(19 * 60_000 + 30_000, clock.getRemainingMillis());
+
+        advance(30_000);
+        wallMillis -= 7_200_000; // and a resync puts it two hours back
+        clock.stop();
+        assertEquals(19 * 60_000, clock.getRemainingMillis());
+    }
+
+    @Test
+    void testStoppedClockIgnoresTime() {
+        GameClock clock = newClock();
+        clock.setRemainingMillis(5_000);
+        advance(10_000);
+        assertEquals(5_000, clock.getRemainingMillis());
+        assertFalse(clock.hasExpired());
+    }
+}
@@ -0,0 +1,209 @@
+package canfield.bia.hockey.scoreboard.io;
+
+import canfield.bia.hockey.Penalty;
+import canfield.bia.hockey.TimingWheel;
+import canfield.bia.hockey.scoreboard.ScoreBoardImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreboardAdapterImplTest {
+
+    private static final byte FF = (byte) 0xFF;
+
+    // 3 - 12, 12:34 left in the 2nd period, horn off
+    private static final byte[] CLOCK_AND_SCORE = {
+            0x2E, 0x78, FF, 0x33, 0x11, 0x22, 0x11, 0x22, 0x33, 0x44, 0x22, 0x00, 0x00
+    };
+    private static final byte[] NO_PENALTIES = {
+            0x2E, 0x7A, FF, FF, FF, FF, FF, FF, FF, FF, FF, FF, FF, FF, FF,
+            0x2E, 0x7E, FF, FF, FF, FF, FF, FF, FF, FF, FF
+    };
+    // Home top #7 with 1:29 left, away bottom #23 served by #15 with 2:00 left
+    private static final byte[] TWO_PENALTIES = {
+            0x2E, 0x7A, 0x11, 0x22, (byte) 0x99, FF, FF, FF, FF, FF, FF, 0x22, 0x00, 0x00, FF,
+            0x2E, 0x7E, FF, 0x77, FF, FF, FF, FF, 0x11, 0x55, FF
+    };
+
+    private final TimingWheel wheel = new TimingWheel("test-wheel", 1, 64);
+    private final RecordingPort port = new RecordingPort();
+    private ScoreBoardImpl board;
+    private ScoreboardAdapterImpl adapter;
+
+    /** Records every frame the writer thread sends. */
+    private static final class RecordingPort implements SerialFrameWriter.Port {
+        final List<byte[]> written = new CopyOnWriteArrayList<>();
+
+        @Override
+        public int write(byte[] frame, int length) {
+            written.add(Arrays.copyOf(frame, length));
+            return length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        board = new ScoreBoardImpl(wheel);
+        board.setHomeScore(3);
+        board.setAwayScore(12);
+        board.setPeriod(2);
+        board.getGameClock().setRemainingMillis(12 * 60_000 + 34_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (adapter != null) {
+            adapter.stop();
+        }
+        wheel.close();
+    }
+
+    private void start(ScoreboardAdapterImpl.OutputMode mode, long keepAliveMillis) {
+        SerialFrameWriter writer = new SerialFrameWriter("COM1", 64, FrameEncoder.PENALTY_LENGTH,
+                name -> port, System::currentTimeMillis);
+        adapter = new ScoreboardAdapterImpl(board, writer, wheel);
+        adapter.setOutputMode(mode);
+        adapter.setKeepAliveMillis(keepAliveMillis);
+        adapter.start();
+    }
+
+    private static Penalty penalty(int playerNumber, int servingPlayerNumber, int time, int elapsed) {
+        Penalty penalty = new Penalty();
+        penalty.setPlayerNumber(playerNumber);
+        penalty.setServingPlayerNumber(servingPlayerNumber);
+        penalty.setTime(time);
+        penalty.setElapsed(elapsed);
+        return penalty;
+    }
+
+    private void addTwoPenalties() {
+        board.setHomePenalty(0, penalty(7, 0, 120_000, 30_500));
+        board.setAwayPenalty(1, penalty(23, 15, 120_000, 0));
+    }
+
+    private void awaitFrames(int count) throws InterruptedException {
+        await(() -> port.written.size() >= count);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(condition.getAsBoolean(), "Timed out");
+    }
+
+    @Test
+    void testStartSendsTheWholeBoard() throws Exception {
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+
+        awaitFrames(2);
+        assertArrayEquals(CLOCK_AND_SCORE, port.written.get(0));
+        assertArrayEquals(NO_PENALTIES, port.written.get(1));
+    }
+
+    @Test
+    void testRefreshSendsOnlyTheFramesThatChanged() throws Exception {
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+        awaitFrames(2);
+
+        // Nothing changed: nothing is sent, so the next frame out is the score below
+        adapter.refresh();
+
+        board.setHomeScore(4);
+        adapter.refresh();
+        awaitFrames(3);
+        byte[] expected = CLOCK_AND_SCORE.clone();
+        expected[3] = 0x44;
+        assertArrayEquals(expected, port.written.get(2), "Only the clock frame carries the score");
+
+        addTwoPenalties();
+        adapter.refresh();
+        awaitFrames(4);
+        assertArrayEquals(TWO_PENALTIES, port.written.get(3));
+
+        assertEquals(4, port.written.size());
+    }
+
+    @Test
+    void testUnderAMinuteTheScoreGoesWithTheFastClock() throws Exception {
+        board.getGameClock().setRemainingMillis(42_000);
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+
+        awaitFrames(3);
+        assertArrayEquals(new byte[]{0x2E, 0x79, 0x44, 0x22, 0x00, FF}, port.written.get(0));
+        assertArrayEquals(new byte[]{0x2E, 0x78, FF, 0x33, 0x11, 0x22}, port.written.get(1));
+        assertArrayEquals(NO_PENALTIES, port.written.get(2));
+    }
+
+    @Test
+    void testKeepAliveResendsEverythingWhenTheLineIsQuiet() throws Exception {
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 100);
+
+        awaitFrames(4);
+        assertArrayEquals(CLOCK_AND_SCORE, port.written.get(2));
+        assertArrayEquals(NO_PENALTIES, port.written.get(3));
+    }
+
+    @Test
+    void testHornFlagIsClearedWhenTheHornStops() throws Exception {
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+        awaitFrames(2);
+
+        board.ringBuzzer(100);
+        adapter.refresh();
+        awaitFrames(3);
+        byte[] horn = CLOCK_AND_SCORE.clone();
+        horn[11] = 0x55;
+        assertArrayEquals(horn, port.written.get(2));
+
+        awaitFrames(4);
+        assertArrayEquals(CLOCK_AND_SCORE, port.written.get(3));
+        assertFalse(adapter.isBuzzerOn());
+    }
+
+    @Test
+    void testChangeDrivenFramesMatchThePollingFrames() throws Exception {
+        addTwoPenalties();
+        start(ScoreboardAdapterImpl.OutputMode.POLLING, 60_000);
+        // The first tick comes a second after the board is created
+        awaitFrames(2);
+        adapter.stop();
+        List<byte[]> polled = new ArrayList<>(port.written.subList(0, 2));
+        assertArrayEquals(CLOCK_AND_SCORE, polled.get(0));
+        assertArrayEquals(TWO_PENALTIES, polled.get(1));
+
+        port.written.clear();
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+        awaitFrames(2);
+        assertArrayEquals(polled.get(0), port.written.get(0));
+        assertArrayEquals(polled.get(1), port.written.get(1));
+    }
+
+    @Test
+    void testSetOutputModeWaitsForTheNextStart() throws Exception {
+        start(ScoreboardAdapterImpl.OutputMode.ON_CHANGE, 60_000);
+        awaitFrames(2);
+
+        adapter.setOutputMode(ScoreboardAdapterImpl.OutputMode.POLLING);
+        AtomicInteger ticks = new AtomicInteger();
+        board.addListener(event -> ticks.incrementAndGet());
+        Thread.sleep(1200); // Longer than the board loop's first delay
+
+        assertEquals(0, ticks.get(), "The board does not tick while output is change-driven");
+        assertEquals(2, port.written.size(), "A tick does not poll");
+    }
+}
@@ -0,0 +1,194 @@
+package canfield.bia.hockey.scoreboard.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerialFrameWriterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final FakePort port = new FakePort();
+    private final AtomicInteger openAttempts = new AtomicInteger();
+    private volatile boolean portPresent = true;
+    private SerialFrameWriter writer;
+
+    /** Records what is written; {@link #failNext} and {@link #blocked} stand in for a broken or hung port. */
+    private static final class FakePort implements SerialFrameWriter.Port {
+        final List<byte[]> written = new CopyOnWriteArrayList<>();
+        volatile boolean failNext;
+        volatile CountDownLatch blocked;
+        volatile boolean writing;
+        volatile boolean closed;
+
+        @Override
+        public int write(byte[] frame, int length) {
+            CountDownLatch latch = blocked;
+            if (latch != null) {
+                writing = true;
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failNext) {
+                failNext = false;
+                return -1;
+            }
+            written.add(Arrays.copyOf(frame, length));
+            return length;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private SerialFrameWriter start(int capacity) {
+        writer = new SerialFrameWriter("COM1", capacity, 4, name -> {
+            openAttempts.incrementAndGet();
+            if (!portPresent) {
+                return null;
+            }
+            port.closed = false;
+            return port;
+        }, now::get);
+        writer.start();
+        return writer;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    private static byte[] frame(int n) {
+        return new byte[]{0x2E, 0x79, (byte) n, 0x00};
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(2);
+        }
+        assertTrue(condition.getAsBoolean(), "Timed out");
+    }
+
+    @Test
+    void testFramesReachThePortInOrder() throws Exception {
+        start(16);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(writer.offer(frame(i), 3), "Only the given length is sent");
+        }
+        await(() -> writer.getFramesWritten() == 10);
+
+        List<byte[]> written = port.written;
+        assertEquals(10, written.size());
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new byte[]{0x2E, 0x79, (byte) i}, written.get(i));
+        }
+        assertEquals(0, writer.getFramesDropped());
+        assertEquals(0, writer.getPendingFrames());
+        assertEquals(1, openAttempts.get(), "The port is opened once, on the first frame");
+        assertTrue(writer.getMaxWriteNanos() >= writer.getLastWriteNanos());
+    }
+
+    @Test
+    void testFullRingDropsFramesAndCountsThem() throws Exception {
+        start(5); // Rounded up to 8 slots
+        CountDownLatch release = new CountDownLatch(1);
+        port.blocked = release;
+        writer.offer(frame(0), 4);
+        await(() -> port.writing);
+
+        // The writer is stuck on the first frame, which still holds its slot
+        int accepted = 0;
+        for (int i = 1; i <= 10; i++) {
+            if (writer.offer(frame(i), 4)) {
+                accepted++;
+            }
+        }
+        assertEquals(7, accepted);
+        assertEquals(3, writer.getFramesDropped());
+
+        port.blocked = null;
+        release.countDown();
+        await(() -> writer.getFramesWritten() == 8);
+        assertEquals(3, writer.getFramesDropped());
+    }
+
+    @Test
+    void testStopDropsWhatIsStillQueued() throws Exception {
+        start(8);
+        CountDownLatch release = new CountDownLatch(1);
+        port.blocked = release;
+        for (int i = 0; i < 4; i++) {
+            writer.offer(frame(i), 4);
+        }
+
+        Thread stopper = new Thread(writer::stop);
+        stopper.start();
+        Thread.sleep(20);
+        release.countDown();
+        stopper.join(5000);
+
+        assertEquals(4, writer.getFramesWritten() + writer.getFramesDropped(), "Every frame is written or dropped");
+        assertTrue(writer.getFramesDropped() >= 3, "Frames behind the hung write are not sent after stop");
+        assertEquals(0, writer.getPendingFrames());
+        assertTrue(port.closed);
+        assertFalse(writer.offer(frame(9), 4), "A stopped writer takes no frames");
+        assertEquals(5, writer.getFramesWritten() + writer.getFramesDropped());
+    }
+
+    @Test
+    void testReopenIsThrottledAfterAFailedWrite() throws Exception {
+        start(8);
+        port.failNext = true;
+        writer.offer(frame(1), 4);
+        await(() -> writer.getFramesDropped() == 1);
+        assertTrue(port.closed, "A failed write closes the port");
+
+        now.addAndGet(1_999);
+        writer.offer(frame(2), 4);
+        await(() -> writer.getFramesDropped() == 2);
+        assertEquals(1, openAttempts.get(), "No reopen within 2s of the failure");
+
+        now.addAndGet(1);
+        writer.offer(frame(3), 4);
+        await(() -> writer.getFramesWritten() == 1);
+        assertEquals(2, openAttempts.get());
+        assertArrayEquals(frame(3), port.written.get(0));
+    }
+
+    @Test
+    void testMissingPortIsRetriedEveryTwoSeconds() throws Exception {
+        portPresent = false;
+        start(8);
+        writer.offer(frame(1), 4);
+        await(() -> writer.getFramesDropped() == 1);
+        now.addAndGet(500);
+        writer.offer(frame(2), 4);
+        await(() -> writer.getFramesDropped() == 2);
+        assertEquals(1, openAttempts.get());
+
+        portPresent = true;
+        now.addAndGet(1_500);
+        writer.offer(frame(3), 4);
+        await(() -> writer.getFramesWritten() == 1);
+        assertEquals(2, openAttempts.get());
+        assertEquals(2, writer.getFramesDropped());
+    }
+}
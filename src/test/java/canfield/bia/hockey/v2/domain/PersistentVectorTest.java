@@ -0,0 +1,82 @@
+package canfield.bia.hockey.v2.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentVectorTest {
+
+    @Test
+    void testAppendLeavesOlderVectorsUnchanged() {
+        PersistentVector<String> empty = PersistentVector.empty();
+        PersistentVector<String> one = empty.append("a");
+        PersistentVector<String> two = one.append("b");
+        PersistentVector<String> branch = one.append("c"); // Slot 1 is taken, so this copies
+
+        assertEquals(List.of(), empty);
+        assertEquals(List.of("a"), one);
+        assertEquals(List.of("a", "b"), two);
+        assertEquals(List.of("a", "c"), branch);
+        assertEquals(List.of("a", "b", "x"), two.append("x"));
+    }
+
+    @Test
+    void testWithoutLastGivesTheSlotBackToNoOne() {
+        PersistentVector<String> two = PersistentVector.<String>empty().append("a").append("b");
+        PersistentVector<String> undone = two.withoutLast();
+
+        assertEquals(List.of("a"), undone);
+        assertEquals(List.of("a", "c"), undone.append("c"));
+        assertEquals(List.of("a", "b"), two, "The longer vector keeps its element");
+    }
+
+    @Test
+    void testUpdatedCopiesOnlyWhenSomethingChanges() {
+        PersistentVector<Integer> numbers = PersistentVector.copyOf(List.of(1, 2, 3, 4));
+
+        assertSame(numbers, numbers.updated(n -> n));
+        assertEquals(List.of(1, 20, 4), numbers.updated(n -> n == 3 ? null : n == 2 ? 20 : n));
+        assertEquals(List.of(1, 2, 3, 4), numbers);
+        assertSame(PersistentVector.empty(), numbers.updated(n -> null));
+    }
+
+    @Test
+    void testWithoutAndWith() {
+        PersistentVector<String> letters = PersistentVector.copyOf(List.of("a", "b", "a", "c"));
+
+        assertSame(letters, letters.without("z"::equals));
+        assertEquals(List.of("b", "c"), letters.without("a"::equals));
+        assertEquals(List.of("a", "B", "a", "c"), letters.with(1, "B"));
+        assertSame(letters, letters.with(1, letters.get(1)));
+    }
+
+    @Test
+    void testIsAnImmutableList() {
+        List<String> source = new ArrayList<>(List.of("a", "b"));
+        PersistentVector<String> vector = PersistentVector.copyOf(source);
+        source.add("c");
+
+        assertEquals(List.of("a", "b"), vector);
+        assertEquals(source.subList(0, 2).hashCode(), vector.hashCode());
+        assertSame(vector, PersistentVector.copyOf(vector));
+        assertThrows(UnsupportedOperationException.class, () -> vector.add("c"));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(2));
+    }
+
+    @Test
+    void testRecordsShareWhatTheyDoNotChange() {
+        GameState state = new GameState();
+        TeamState home = state.home().withGoal(new GoalEvent("g1", "home", 1, 60_000, 9, List.of(), false));
+        GameState scored = state.withHome(home);
+
+        assertSame(state.away(), scored.away());
+        assertSame(state.clock(), scored.clock());
+        assertSame(state.eventHistory(), scored.eventHistory());
+        assertSame(state, state.withBuzzerOn(false));
+        assertSame(home, scored.team("home"));
+        assertInstanceOf(PersistentVector.class, new TeamState(new ArrayList<>(), 0, List.of()).goals());
+    }
+}
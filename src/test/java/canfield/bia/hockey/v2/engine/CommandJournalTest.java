@@ -0,0 +1,249 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.domain.GameStatus;
+import canfield.bia.hockey.v2.spec.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CommandJournalTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("command-journal", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private GameEngine newEngine() {
+        return new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+    }
+
+    private List<CommandJournal.Entry> readAll() throws IOException {
+        List<CommandJournal.Entry> entries = new ArrayList<>();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            journal.replay(entries::add);
+        }
+        return entries;
+    }
+
+    @Test
+    void testCodecRoundTripsEveryCommand() {
+        List<Command> commands = List.of(
+            new CreateGameCommand("USAH_ADULT_20", Map.of("periods", 2, "clockType", "STOP_TIME")),
+            new CreateGameCommand(null, null),
+            new StartClockCommand(),
+            new PauseClockCommand(),
+            new AddPenaltyCommand("away", 17, 9, 2),
+            new TickCommand(),
+            new AddGoalCommand("home", 9, List.of(12, 4), true),
+            new AddGoalCommand("away", 3, null, false),
+            new RemoveGoalCommand("goal-1"),
+            new AddShotCommand("home"),
+            new UndoLastShotCommand("away"),
+            new EndGameCommand(),
+            new ResetGameCommand(),
+            new SetPeriodCommand(3),
+            new TriggerBuzzerCommand(),
+            new SetClockCommand(123_456L),
+            new UndoCommand(),
+            new RedoCommand()
+        );
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for (Command command : commands) {
+            CommandCodec.encode(command, buffer);
+        }
+        buffer.flip();
+        for (Command command : commands) {
+            assertEquals(command, CommandCodec.decode(buffer));
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void testRecoverRebuildsStateWithSameIds() throws IOException {
+        GameEngine engine = newEngine();
+        long now = 10_000L;
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.ALWAYS, 0)) {
+            engine.setJournal(journal);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now);
+            engine.processCommand(new StartClockCommand(), now);
+            engine.processCommands(List.of(
+                new AddGoalCommand("home", 9, List.of(12), false),
+                new AddPenaltyCommand("away", 4, 4, 2),
+                new AddShotCommand("home")
+            ), now + 5_000);
+            engine.processCommand(new TickCommand(), now + 7_000);
+            engine.processCommand(new PauseClockCommand(), now + 8_000);
+        }
+        GameState expected = engine.getCurrentState();
+
+        GameEngine recovered = newEngine();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(expected, recovered.recover(journal));
+            recovered.setJournal(journal);
+            // Goal ids survive the restart, so commands referring to them still work
+            String goalId = expected.home().goals().get(0).goalId();
+            GameState afterRemove = recovered.processCommand(new RemoveGoalCommand(goalId), now + 9_000);
+            assertTrue(afterRemove.home().goals().isEmpty());
+        }
+        List<CommandJournal.Entry> entries = readAll();
+        assertTrue(entries.get(entries.size() - 1).command() instanceof RemoveGoalCommand);
+    }
+
+    @Test
+    void testRecoveredEngineCanStillUndoAndRedo() throws IOException {
+        GameEngine engine = newEngine();
+        long now = 10_000L;
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.ALWAYS, 0)) {
+            engine.setJournal(journal);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now);
+            engine.processCommand(new AddGoalCommand("home", 9, List.of(12), false), now + 1_000);
+            engine.processCommand(new AddShotCommand("away"), now + 2_000);
+            engine.processCommand(new UndoCommand(), now + 3_000);
+        }
+        GameState expected = engine.getCurrentState();
+
+        GameEngine recovered = newEngine();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(expected, recovered.recover(journal));
+            assertEquals(1, recovered.processCommand(new RedoCommand(), now + 4_000).away().shots());
+            assertEquals(0, recovered.processCommand(new UndoCommand(), now + 5_000).away().shots());
+            assertTrue(recovered.processCommand(new UndoCommand(), now + 6_000).home().goals().isEmpty());
+        }
+    }
+
+    @Test
+    void testUnchangedStateIsNotJournaled() throws IOException {
+        GameEngine engine = newEngine();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            engine.setJournal(journal);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), 1_000L);
+            engine.processCommand(new TickCommand(), 2_000L); // clock stopped
+            engine.processCommand(new PauseClockCommand(), 3_000L); // not playing
+        }
+        assertEquals(1, readAll().size());
+    }
+
+    @Test
+    void testCountdownTicksAreNotJournaled() throws IOException {
+        GameEngine engine = newEngine();
+        long now = 10_000L;
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            engine.setJournal(journal);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now);
+            engine.processCommand(new StartClockCommand(), now);
+            for (int second = 1; second <= 30; second++) {
+                engine.processCommand(new TickCommand(), now + second * 1_000L);
+            }
+            // The penalty starts at the last tick, so that tick goes in ahead of it
+            engine.processCommand(new AddPenaltyCommand("away", 4, 4, 2), now + 30_500);
+            for (int second = 31; second <= 60; second++) {
+                engine.processCommand(new TickCommand(), now + second * 1_000L);
+            }
+            engine.processCommand(new PauseClockCommand(), now + 60_500);
+        }
+        GameState expected = engine.getCurrentState();
+
+        List<CommandJournal.Entry> entries = readAll();
+        assertEquals(List.of(CreateGameCommand.class, StartClockCommand.class, TickCommand.class,
+                AddPenaltyCommand.class, TickCommand.class, PauseClockCommand.class),
+            entries.stream().map(entry -> entry.command().getClass()).toList());
+        assertEquals(now + 30_000, entries.get(2).timestampMillis());
+        assertEquals(now + 60_000, entries.get(4).timestampMillis());
+
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            assertEquals(expected, newEngine().recover(journal));
+        }
+    }
+
+    @Test
+    void testNewGameTruncatesJournal() throws IOException {
+        GameEngine engine = newEngine();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            engine.setJournal(journal);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), 1_000L);
+            engine.processCommand(new AddShotCommand("home"), 2_000L);
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), 3_000L);
+        }
+        List<CommandJournal.Entry> entries = readAll();
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0).command() instanceof CreateGameCommand);
+        assertEquals(3, entries.get(0).sequence());
+    }
+
+    @Test
+    void testNewGameReplacesTheJournalOnlyOnceCommitted() throws IOException {
+        Path next = file.resolveSibling(file.getFileName() + ".next");
+        Files.write(next, new byte[]{1, 2, 3}); // Left by a crash mid-rotation
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            assertFalse(Files.exists(next));
+            journal.append(new CreateGameCommand("USAH_ADULT_20", Map.of()), 1_000L, List.of("game-1"));
+            journal.append(new AddShotCommand("home"), 2_000L, List.of());
+            journal.commit();
+
+            journal.append(new CreateGameCommand("USAH_ADULT_20", Map.of()), 3_000L, List.of("game-2"));
+            List<CommandJournal.Entry> before = readAll();
+            assertEquals(2, before.size(), "A crash before the commit still finds the previous game");
+            assertEquals(List.of("game-1"), before.get(0).generatedIds());
+
+            journal.commit();
+            journal.append(new AddShotCommand("away"), 4_000L, List.of());
+            journal.commit();
+        } finally {
+            Files.deleteIfExists(next);
+        }
+        List<CommandJournal.Entry> after = readAll();
+        assertEquals(2, after.size());
+        assertEquals(List.of("game-2"), after.get(0).generatedIds());
+        assertTrue(after.get(1).command() instanceof AddShotCommand);
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".next")));
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            journal.append(new CreateGameCommand("USAH_ADULT_20", Map.of()), 1_000L, List.of("game-1"));
+            journal.append(new AddShotCommand("home"), 2_000L, List.of());
+            journal.commit();
+        }
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // Header of a third record promising more bytes than were written
+            channel.write(ByteBuffer.allocate(11).putInt(40).putInt(0).put(new byte[3]).flip());
+        }
+
+        List<CommandJournal.Entry> entries = readAll();
+        assertEquals(2, entries.size());
+        assertEquals(List.of("game-1"), entries.get(0).generatedIds());
+        assertEquals(intact, Files.size(file));
+
+        GameEngine engine = newEngine();
+        try (CommandJournal journal = CommandJournal.open(file, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            GameState state = engine.recover(journal);
+            assertEquals("game-1", state.gameId());
+            assertEquals(GameStatus.READY_FOR_PERIOD, state.status());
+            assertEquals(1, state.home().shots());
+            assertEquals(3, journal.getNextSequence());
+        }
+    }
+}
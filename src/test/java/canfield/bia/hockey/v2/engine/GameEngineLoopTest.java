@@ -0,0 +1,157 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GameEngineLoopTest {
+
+    private GameEngine gameEngine;
+    private GameEngineLoop loop;
+
+    @BeforeEach
+    void setUp() {
+        gameEngine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+        gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        loop = new GameEngineLoop(gameEngine);
+        loop.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.stop();
+    }
+
+    private void awaitApplied(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loop.getAppliedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, loop.getAppliedCount(), "All submitted commands should be applied");
+    }
+
+    @Test
+    void testConcurrentProducersDoNotLoseUpdates() throws Exception {
+        int producers = 4;
+        int perProducer = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            String team = i % 2 == 0 ? "home" : "away";
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int n = 0; n < perProducer; n++) {
+                    gameEngine.submit(new AddShotCommand(team));
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        awaitApplied(producers * perProducer);
+        GameState state = gameEngine.getCurrentState();
+        assertEquals(producers / 2 * perProducer, state.home().shots());
+        assertEquals(producers / 2 * perProducer, state.away().shots());
+    }
+
+    @Test
+    void testReportsLatencyAndDepth() throws Exception {
+        gameEngine.submit(new AddShotCommand("home"));
+        gameEngine.submit(new AddShotCommand("away"));
+
+        awaitApplied(2);
+        assertTrue(loop.getMaxQueueDepth() >= 1);
+        assertTrue(loop.getMaxLatencyNanos() >= loop.getLastLatencyNanos());
+        assertTrue(loop.getAverageLatencyNanos() > 0);
+        assertEquals(0, loop.getRejectedCount());
+    }
+
+    @Test
+    void testBatchModeFoldsQueuedCommandsIntoOneTransition() throws Exception {
+        loop.stop();
+        List<GameState[]> transitions = new ArrayList<>();
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class),
+            (oldState, newState) -> transitions.add(new GameState[]{oldState, newState}));
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        transitions.clear();
+
+        GameEngineLoop batchLoop = new GameEngineLoop(engine, 64, GameEngineLoop.Mode.BATCH);
+        // Queue before starting so the first drain sees the whole burst
+        engine.attachLoop(batchLoop);
+        for (int i = 0; i < 10; i++) {
+            batchLoop.submit(new AddShotCommand("home"));
+        }
+        batchLoop.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (batchLoop.getAppliedCount() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(10, batchLoop.getAppliedCount());
+            assertEquals(1, batchLoop.getBatchCount());
+            assertEquals(10, batchLoop.getMaxBatchSize());
+            assertEquals(1, transitions.size(), "One state change notification for the whole batch");
+            assertEquals(0, transitions.get(0)[0].home().shots());
+            assertEquals(10, transitions.get(0)[1].home().shots());
+        } finally {
+            batchLoop.stop();
+        }
+    }
+
+    @Test
+    void testBatchAppliesEachCommandAtItsSubmitTime() throws Exception {
+        loop.stop();
+        long[] now = {1_000L};
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class),
+            (oldState, newState) -> {}, () -> now[0]);
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), now[0]);
+        long periodMillis = engine.getCurrentState().clock().timeRemainingMillis();
+
+        GameEngineLoop batchLoop = new GameEngineLoop(engine, 64, GameEngineLoop.Mode.BATCH);
+        engine.attachLoop(batchLoop);
+        batchLoop.submit(new StartClockCommand());
+        now[0] += 5_000;
+        batchLoop.submit(new PauseClockCommand());
+        now[0] += 60_000; // The loop gets to the batch a minute later
+        batchLoop.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (batchLoop.getAppliedCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, batchLoop.getBatchCount());
+            assertEquals(periodMillis - 5_000, engine.getCurrentState().clock().timeRemainingMillis(),
+                "The clock ran from the start to the pause, not to when the batch was applied");
+        } finally {
+            batchLoop.stop();
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsCommands() {
+        loop.stop();
+        GameEngineLoop tiny = new GameEngineLoop(gameEngine, 1, GameEngineLoop.Mode.SINGLE);
+        assertTrue(tiny.submit(new AddShotCommand("home")));
+        assertFalse(tiny.submit(new AddShotCommand("home")));
+        assertEquals(1, tiny.getRejectedCount());
+    }
+}
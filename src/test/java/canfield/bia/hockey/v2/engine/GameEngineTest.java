@@ -1,15 +1,21 @@
 package canfield.bia.hockey.v2.engine;
 
+import canfield.bia.hockey.MonotonicTimeSource;
+import canfield.bia.hockey.TimeSource;
 import canfield.bia.hockey.v2.domain.*;
 import canfield.bia.hockey.v2.spec.*; // Import all new command types
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer; // Import BiConsumer
@@ -55,6 +61,37 @@ class GameEngineTest {
         verify(mockHardwareOutputAdapter, times(1)).update(gameEngine.getCurrentState());
     }
 
+    @Test
+    void testProcessCommandsNotifiesOncePerBatch() {
+        createTestGame(initialTime);
+        reset(mockHardwareOutputAdapter, mockStateChangeConsumer);
+
+        GameState result = gameEngine.processCommands(List.of(
+            new AddGoalCommand("home", 10, List.of(), false),
+            new AddPenaltyCommand("away", 4, 4, 2),
+            new AddShotCommand("home")
+        ), initialTime);
+
+        assertEquals(1, result.home().goals().size());
+        assertEquals(1, result.away().penalties().size());
+        assertEquals(1, result.home().shots());
+        verify(mockHardwareOutputAdapter, times(1)).update(any(GameState.class));
+        verify(mockStateChangeConsumer, times(1)).accept(any(GameState.class), any(GameState.class));
+    }
+
+    @Test
+    void testProcessCommandsSkipsFailingCommand() {
+        createTestGame(initialTime);
+
+        GameState result = gameEngine.processCommands(List.of(
+            new AddShotCommand("home"),
+            new CreateGameCommand("NO_SUCH_TEMPLATE", Map.of()),
+            new AddShotCommand("home")
+        ), initialTime);
+
+        assertEquals(2, result.home().shots());
+    }
+
     @Test
     void testGameTimerStartsOnStartClock() {
         createTestGame(initialTime); // Add this line
@@ -583,6 +620,136 @@ class GameEngineTest {
         assertTrue(stateAfterTick.clock().isRunning());
     }
 
+    @Test
+    void testWallClockStepsDoNotMoveARunningClock() {
+        // The rink PC: nanoTime runs steadily while NTP or a Windows resync steps the wall clock
+        long[] wallMillis = {1_700_000_000_000L};
+        long[] nanos = {42L};
+        TimeSource time = new MonotonicTimeSource(() -> wallMillis[0], () -> nanos[0]);
+        gameEngine = new GameEngine(new JsonTemplateRepository(), mockHardwareOutputAdapter, mockGameTimer, mockStateChangeConsumer, time);
+        gameEngine.submit(new CreateGameCommand("USAH_ADULT_20", Map.of()));
+        gameEngine.submit(new AddPenaltyCommand("home", 12, 12, 2));
+        long periodMillis = gameEngine.getCurrentState().clock().timeRemainingMillis();
+        gameEngine.submit(new StartClockCommand());
+
+        Random jitter = new Random(7);
+        long elapsedNanos = 0;
+        for (int i = 0; i < 600; i++) {
+            long step = 80_000_000L + jitter.nextInt(40_000_000); // Ticks 80-120ms apart
+            nanos[0] += step;
+            elapsedNanos += step;
+            wallMillis[0] += step / 1_000_000;
+            if (i == 200) {
+                wallMillis[0] += 3_600_000; // Stepped an hour ahead
+            } else if (i == 400) {
+                wallMillis[0] -= 90_000; // Resynced 90s back
+            }
+            gameEngine.submit(new TickCommand());
+        }
+        gameEngine.submit(new PauseClockCommand());
+
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        GameState state = gameEngine.getCurrentState();
+        assertEquals(periodMillis - elapsedMillis, state.clock().timeRemainingMillis());
+        assertEquals(120_000 - elapsedMillis, state.home().penalties().get(0).timeRemainingMillis());
+    }
+
+    /** A timer that leaves the ticking to the test, recording the delay the engine last asked for. */
+    private static final class RequestedTickTimer implements GameTimer {
+        long requestedDelay = -1;
+
+        @Override
+        public void start(Runnable tickCallback) {
+        }
+
+        @Override
+        public void stop() {
+            requestedDelay = -1;
+        }
+
+        @Override
+        public void scheduleNextTick(long delayMillis) {
+            requestedDelay = delayMillis;
+        }
+    }
+
+    @Test
+    void testTicksLandOnDisplayedSeconds() {
+        long[] now = {1_000_000L};
+        RequestedTickTimer timer = new RequestedTickTimer();
+        gameEngine = new GameEngine(new JsonTemplateRepository(), mockHardwareOutputAdapter, timer, mockStateChangeConsumer, () -> now[0]);
+        gameEngine.submit(new CreateGameCommand("USAH_ADULT_20", Map.of()));
+        gameEngine.submit(new SetPeriodCommand(1));
+        gameEngine.submit(new AddPenaltyCommand("home", 12, 12, 2));
+        gameEngine.submit(new StartClockCommand());
+        long periodMillis = gameEngine.getCurrentState().clock().timeRemainingMillis();
+
+        // A minute of play takes one tick per displayed second instead of 600 at a fixed 100ms
+        for (int second = 1; second <= 60; second++) {
+            now[0] += timer.requestedDelay;
+            gameEngine.submit(new TickCommand());
+            GameState state = gameEngine.getCurrentState();
+            assertEquals(periodMillis - second * 1000L, state.clock().timeRemainingMillis());
+            assertEquals(120_000 - second * 1000L, state.home().penalties().get(0).timeRemainingMillis());
+        }
+        assertEquals(1000, timer.requestedDelay);
+    }
+
+    @Test
+    void testTicksFollowPenaltiesShiftsAndTenths() {
+        long[] now = {1_000_000L};
+        RequestedTickTimer timer = new RequestedTickTimer();
+        gameEngine = new GameEngine(new JsonTemplateRepository(), mockHardwareOutputAdapter, timer, mockStateChangeConsumer, () -> now[0]);
+        gameEngine.submit(new CreateGameCommand("USAH_ADULT_20", Map.of("shiftLengthSeconds", 5)));
+        gameEngine.submit(new SetPeriodCommand(1));
+        gameEngine.submit(new SetClockCommand(90_500));
+        gameEngine.submit(new AddPenaltyCommand("home", 12, 12, 2));
+        gameEngine.submit(new StartClockCommand());
+        // The penalty's seconds fall half way between the clock's
+        assertEquals(500, timer.requestedDelay);
+
+        while (gameEngine.getCurrentState().clock().timeRemainingMillis() > 85_500) {
+            now[0] += timer.requestedDelay;
+            gameEngine.submit(new TickCommand());
+            GameState state = gameEngine.getCurrentState();
+            assertEquals(0, state.clock().timeRemainingMillis() % 500);
+            assertEquals(0, state.home().penalties().get(0).timeRemainingMillis() % 500);
+            assertEquals(500, timer.requestedDelay);
+        }
+        assertTrue(gameEngine.getCurrentState().buzzerOn(), "Shift buzzer sounds on the tick where the shift ends");
+
+        while (gameEngine.getCurrentState().clock().timeRemainingMillis() > 59_000) {
+            now[0] += timer.requestedDelay;
+            gameEngine.submit(new TickCommand());
+        }
+        assertEquals(59_000, gameEngine.getCurrentState().clock().timeRemainingMillis());
+        assertEquals(100, timer.requestedDelay, "Tenths under a minute");
+
+        gameEngine.submit(new PauseClockCommand());
+        now[0] += 250;
+        gameEngine.submit(new StartClockCommand());
+        assertEquals(0, gameEngine.getCurrentState().clock().timeRemainingMillis() % 100);
+        assertEquals(100, timer.requestedDelay);
+    }
+
+    @Test
+    void testNoOpCommandsReturnTheSameState() {
+        createTestGame(initialTime);
+        GameState ready = gameEngine.processCommand(new SetPeriodCommand(1), initialTime);
+        assertSame(ready, gameEngine.processCommand(new SetPeriodCommand(1), initialTime));
+        assertSame(ready, gameEngine.processCommand(new SetClockCommand(ready.clock().timeRemainingMillis()), initialTime));
+        assertSame(ready, gameEngine.processCommand(new PauseClockCommand(), initialTime));
+
+        GameState running = gameEngine.processCommand(new StartClockCommand(), initialTime);
+        reset(mockHardwareOutputAdapter, mockStateChangeConsumer);
+        assertSame(running, gameEngine.processCommand(new TickCommand(), initialTime), "Nothing to count at the same instant");
+        verify(mockHardwareOutputAdapter, never()).update(any(GameState.class));
+        verify(mockStateChangeConsumer, never()).accept(any(), any());
+
+        GameState over = gameEngine.processCommand(new EndGameCommand(), initialTime + 500);
+        assertSame(over, gameEngine.processCommand(new EndGameCommand(), initialTime + 600));
+    }
+
     @Test
     void testStateChangeConsumerCalledOnTick() {
         createTestGame(initialTime);
@@ -972,4 +1139,215 @@ class GameEngineTest {
         // Buzzer should NOT turn on just from time passing (only from period end)
         assertFalse(state.buzzerOn(), "Buzzer should not sound without shift timer configured");
     }
+
+    @Test
+    void testUndoAndRedoStepThroughEdits() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new AddGoalCommand("home", 9, List.of(12), false), initialTime);
+        GameState scored = gameEngine.processCommand(new AddShotCommand("away"), initialTime);
+        assertEquals(List.of("ADD_GOAL", "ADD_SHOT"), scored.eventHistory());
+
+        GameState undoneShot = gameEngine.processCommand(new UndoCommand(), initialTime + 1_000);
+        assertEquals(0, undoneShot.away().shots());
+        assertEquals(1, undoneShot.home().goals().size());
+        assertEquals(List.of("ADD_GOAL"), undoneShot.eventHistory());
+
+        GameState undoneGoal = gameEngine.processCommand(new UndoCommand(), initialTime + 2_000);
+        assertTrue(undoneGoal.home().goals().isEmpty());
+        assertEquals(List.of(), undoneGoal.eventHistory());
+
+        GameState redone = gameEngine.processCommand(new RedoCommand(), initialTime + 3_000);
+        assertSame(scored.home().goals().get(0), redone.home().goals().get(0), "The same goal comes back, id included");
+        assertEquals(0, redone.away().shots());
+        assertEquals(scored, gameEngine.processCommand(new RedoCommand(), initialTime + 4_000));
+    }
+
+    @Test
+    void testEventHistoryIsCappedAtTheUndoDepth() {
+        createTestGame(initialTime);
+        GameState state = null;
+        for (int i = 0; i < UndoHistory.DEFAULT_DEPTH + 6; i++) {
+            state = gameEngine.processCommand(new AddShotCommand(i < 6 ? "away" : "home"), initialTime);
+        }
+        assertEquals(UndoHistory.DEFAULT_DEPTH, state.eventHistory().size());
+
+        for (int i = 0; i < UndoHistory.DEFAULT_DEPTH; i++) {
+            state = gameEngine.processCommand(new UndoCommand(), initialTime);
+        }
+        assertEquals(0, state.home().shots());
+        assertEquals(6, state.away().shots(), "The oldest edits are past the undo depth");
+        assertEquals(6, state.eventHistory().size(), "They are still in effect");
+        assertSame(state, gameEngine.processCommand(new UndoCommand(), initialTime));
+    }
+
+    @Test
+    void testNothingToUndoOrRedoChangesNothing() {
+        createTestGame(initialTime);
+        reset(mockHardwareOutputAdapter, mockStateChangeConsumer);
+
+        gameEngine.processCommand(new UndoCommand(), initialTime);
+        gameEngine.processCommand(new RedoCommand(), initialTime);
+        // Running the clock is not an edit, so there is still nothing to undo
+        gameEngine.processCommand(new StartClockCommand(), initialTime);
+        reset(mockHardwareOutputAdapter, mockStateChangeConsumer);
+        gameEngine.processCommand(new UndoCommand(), initialTime + 1_000);
+
+        verify(mockHardwareOutputAdapter, never()).update(any(GameState.class));
+        verify(mockStateChangeConsumer, never()).accept(any(GameState.class), any(GameState.class));
+    }
+
+    @Test
+    void testNewEditEndsTheRedoChain() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new AddShotCommand("home"), initialTime);
+        gameEngine.processCommand(new UndoCommand(), initialTime);
+        gameEngine.processCommand(new AddShotCommand("away"), initialTime);
+
+        GameState state = gameEngine.processCommand(new RedoCommand(), initialTime);
+        assertEquals(0, state.home().shots());
+        assertEquals(1, state.away().shots());
+        assertEquals(List.of("ADD_SHOT"), state.eventHistory());
+    }
+
+    @Test
+    void testUndoLeavesTheRunningClockAndPenaltiesAlone() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new SetPeriodCommand(1), initialTime);
+        gameEngine.processCommand(new StartClockCommand(), initialTime);
+        gameEngine.processCommand(new AddPenaltyCommand("away", 4, 4, 2), initialTime + 1_000);
+        gameEngine.processCommand(new AddGoalCommand("home", 9, List.of(), false), initialTime + 5_000);
+        gameEngine.processCommand(new TickCommand(), initialTime + 10_000);
+        reset(mockGameTimer);
+
+        GameState state = gameEngine.processCommand(new UndoCommand(), initialTime + 10_000);
+
+        assertTrue(state.home().goals().isEmpty());
+        assertEquals(GameStatus.PLAYING, state.status());
+        assertTrue(state.clock().isRunning());
+        long periodMillis = state.config().periodLengthMillis();
+        assertEquals(periodMillis - 10_000, state.clock().timeRemainingMillis());
+        assertEquals(120_000 - 10_000, state.away().penalties().get(0).timeRemainingMillis());
+        verify(mockGameTimer, never()).stop();
+    }
+
+    @Test
+    void testUndoAddPenaltyAndRedoWhilePlaying() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new SetPeriodCommand(1), initialTime);
+        gameEngine.processCommand(new StartClockCommand(), initialTime);
+        GameState penalized = gameEngine.processCommand(new AddPenaltyCommand("away", 4, 4, 2), initialTime + 1_000);
+
+        GameState undone = gameEngine.processCommand(new UndoCommand(), initialTime + 2_000);
+        assertTrue(undone.away().penalties().isEmpty());
+
+        // Counts on from where it stood when it was added, not from the moment it was taken back
+        GameState redone = gameEngine.processCommand(new RedoCommand(), initialTime + 30_000);
+        Penalty penalty = redone.away().penalties().get(0);
+        assertEquals(penalized.away().penalties().get(0).penaltyId(), penalty.penaltyId());
+        assertEquals(120_000 - 1_000, penalty.timeRemainingMillis());
+        assertEquals(initialTime + 30_000, penalty.startTimeWallClock());
+    }
+
+    @Test
+    void testUndoSetClockPausesTheRunningGame() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new SetPeriodCommand(1), initialTime);
+        gameEngine.processCommand(new StartClockCommand(), initialTime);
+        gameEngine.processCommand(new TickCommand(), initialTime + 4_000);
+        gameEngine.processCommand(new SetClockCommand(60_000), initialTime + 5_000); // Meant for the next stoppage
+        gameEngine.processCommand(new StartClockCommand(), initialTime + 6_000);
+        reset(mockGameTimer);
+
+        GameState state = gameEngine.processCommand(new UndoCommand(), initialTime + 8_000);
+
+        // Back where the clock stood when it was set, ready to start again
+        assertEquals(GameStatus.PAUSED, state.status());
+        assertFalse(state.clock().isRunning());
+        assertEquals(state.config().periodLengthMillis() - 5_000, state.clock().timeRemainingMillis());
+        verify(mockGameTimer).stop();
+    }
+
+    @Test
+    void testUndoResetGameBringsTheGameBack() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new SetPeriodCommand(2), initialTime);
+        gameEngine.processCommand(new AddGoalCommand("home", 9, List.of(), false), initialTime);
+        gameEngine.processCommand(new AddPenaltyCommand("away", 4, 4, 2), initialTime);
+        GameState beforeReset = gameEngine.processCommand(new AddShotCommand("away"), initialTime);
+        gameEngine.processCommand(new ResetGameCommand(), initialTime + 1_000);
+
+        GameState state = gameEngine.processCommand(new UndoCommand(), initialTime + 2_000);
+
+        assertEquals(beforeReset, state);
+    }
+
+    @Test
+    void testUndoResetGameBringsTheShiftBack() {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("shiftLengthSeconds", 5);
+        gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", overrides), initialTime);
+        gameEngine.processCommand(new SetPeriodCommand(1), initialTime);
+        gameEngine.processCommand(new StartClockCommand(), initialTime);
+        gameEngine.processCommand(new PauseClockCommand(), initialTime + 2_000);
+        gameEngine.processCommand(new ResetGameCommand(), initialTime + 3_000);
+        gameEngine.processCommand(new UndoCommand(), initialTime + 4_000);
+
+        // Two seconds of the shift were played before the reset, so it ends three seconds after the restart
+        gameEngine.processCommand(new StartClockCommand(), initialTime + 5_000);
+        GameState state = gameEngine.processCommand(new TickCommand(), initialTime + 8_500);
+
+        assertTrue(state.buzzerOn(), "The shift started before the reset");
+    }
+
+    @Test
+    void testBatchOfUndosIsOneTransition() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new AddShotCommand("home"), initialTime);
+        gameEngine.processCommand(new AddShotCommand("home"), initialTime);
+        gameEngine.processCommand(new AddShotCommand("home"), initialTime);
+        reset(mockHardwareOutputAdapter, mockStateChangeConsumer);
+
+        GameState state = gameEngine.processCommands(List.of(new UndoCommand(), new UndoCommand(), new AddShotCommand("away")), initialTime);
+
+        assertEquals(1, state.home().shots());
+        assertEquals(1, state.away().shots());
+        verify(mockHardwareOutputAdapter, times(1)).update(any(GameState.class));
+        verify(mockStateChangeConsumer, times(1)).accept(any(GameState.class), any(GameState.class));
+    }
+
+    @Test
+    void testNewGameClearsTheUndoHistory() {
+        createTestGame(initialTime);
+        gameEngine.processCommand(new AddShotCommand("home"), initialTime);
+        GameState newGame = gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), initialTime);
+
+        assertSame(newGame, gameEngine.processCommand(new UndoCommand(), initialTime));
+    }
+
+    @Test
+    void testUndoAfterSnapshotStaysUndoneOnRecovery() throws IOException {
+        Path journalFile = Files.createTempFile("journal", ".bin");
+        try {
+            SnapshotStore.GameSnapshot snapshot;
+            try (CommandJournal journal = CommandJournal.open(journalFile, CommandJournal.FsyncPolicy.NEVER, 0)) {
+                gameEngine.setJournal(journal);
+                createTestGame(initialTime);
+                GameState scored = gameEngine.processCommand(new AddGoalCommand("home", 9, List.of(12), false), initialTime + 1_000);
+                snapshot = new SnapshotStore.GameSnapshot(journal.getNextSequence() - 1, initialTime + 1_000, scored, -1);
+                gameEngine.processCommand(new UndoCommand(), initialTime + 2_000);
+            }
+
+            GameEngine restarted = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+            try (CommandJournal journal = CommandJournal.open(journalFile, CommandJournal.FsyncPolicy.NEVER, 0)) {
+                GameState recovered = restarted.recover(snapshot, journal);
+
+                assertTrue(recovered.home().goals().isEmpty(), "The goal taken back after the snapshot stays taken back");
+                assertEquals(gameEngine.getCurrentState(), recovered);
+                assertEquals(1, restarted.processCommand(new RedoCommand(), initialTime + 3_000).home().goals().size(),
+                    "The undo history is rebuilt too");
+            }
+        } finally {
+            Files.deleteIfExists(journalFile);
+        }
+    }
 }
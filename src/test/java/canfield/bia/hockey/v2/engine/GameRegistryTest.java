@@ -0,0 +1,145 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.spec.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GameRegistryTest {
+
+    private GameRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new GameRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+    }
+
+    private static GameEngine engine() {
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        return engine;
+    }
+
+    private static void awaitApplied(GameRegistry.Rink rink, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rink.loop().getAppliedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, rink.loop().getAppliedCount());
+    }
+
+    @Test
+    void testFirstRinkRegisteredIsTheDefault() {
+        assertNull(registry.getDefault());
+        GameRegistry.Rink first = registry.register("1", engine());
+        GameRegistry.Rink second = registry.register("2", engine());
+
+        assertSame(first, registry.getDefault());
+        assertSame(second, registry.get("2"));
+        assertNull(registry.get("3"));
+        assertEquals(List.of(first, second), registry.rinks());
+    }
+
+    @Test
+    void testRejectsDuplicateAndInvalidIds() {
+        registry.register("1", engine());
+
+        assertThrows(IllegalArgumentException.class, () -> registry.register("1", engine()));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("a/b", engine()));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("", engine()));
+    }
+
+    @Test
+    void testEachRinkAppliesItsOwnCommands() throws Exception {
+        GameRegistry.Rink first = registry.register("1", engine());
+        GameRegistry.Rink second = registry.register("2", engine());
+        registry.start();
+        GameRegistry.Rink late = registry.register("3", engine()); // Started as it is registered
+
+        first.engine().submit(new AddShotCommand("home"));
+        second.engine().submit(new AddShotCommand("away"));
+        second.engine().submit(new AddShotCommand("away"));
+        late.engine().submit(new AddShotCommand("home"));
+        awaitApplied(first, 1);
+        awaitApplied(second, 2);
+        awaitApplied(late, 1);
+
+        assertEquals(1, first.engine().getCurrentState().home().shots());
+        assertEquals(0, first.engine().getCurrentState().away().shots());
+        assertEquals(2, second.engine().getCurrentState().away().shots());
+        assertEquals(1, late.engine().getCurrentState().home().shots());
+    }
+
+    @Test
+    void testTimersWaitForTheLoopDuringSetUp() {
+        GameTimer timer = mock(GameTimer.class);
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), timer, (oldState, newState) -> {});
+        registry.register("1", engine);
+
+        // Set up on this thread, as recovery would leave it: a running clock
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        engine.processCommand(new SetPeriodCommand(1), System.currentTimeMillis());
+        engine.processCommand(new StartClockCommand(), System.currentTimeMillis());
+        verify(timer, never()).start(any(Runnable.class));
+        verify(timer, never()).scheduleNextTick(anyLong());
+
+        registry.start();
+
+        verify(timer, times(1)).start(any(Runnable.class));
+        verify(timer, times(1)).scheduleNextTick(anyLong());
+    }
+
+    @Test
+    void testStopDisarmsTheTimer() {
+        GameTimer timer = mock(GameTimer.class);
+        HardwareOutputAdapter hardware = mock(HardwareOutputAdapter.class);
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), hardware, timer, (oldState, newState) -> {});
+        registry.register("1", engine);
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        engine.processCommand(new SetPeriodCommand(1), System.currentTimeMillis());
+        engine.processCommand(new StartClockCommand(), System.currentTimeMillis());
+        registry.start();
+        ArgumentCaptor<Runnable> tick = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer).start(tick.capture());
+
+        registry.stop();
+        verify(timer, atLeastOnce()).stop();
+
+        // A tick that was already due when the rink stopped
+        reset(hardware);
+        tick.getValue().run();
+        engine.submit(new AddShotCommand("home"));
+        verify(hardware, never()).update(any(GameState.class));
+        assertEquals(0, engine.getCurrentState().home().shots());
+    }
+
+    @Test
+    void testStopClosesResourcesInReverseOrder() throws Exception {
+        GameRegistry.Rink rink = registry.register("1", engine());
+        List<String> closed = new ArrayList<>();
+        rink.closeOnStop(() -> closed.add("port"))
+            .closeOnStop(() -> { throw new IllegalStateException("broken"); })
+            .closeOnStop(() -> closed.add("journal"));
+        registry.start();
+
+        registry.stop();
+
+        assertEquals(List.of("journal", "port"), closed, "A failing resource does not keep the others open");
+        registry.stop();
+        assertEquals(2, closed.size(), "Resources are closed once");
+    }
+}
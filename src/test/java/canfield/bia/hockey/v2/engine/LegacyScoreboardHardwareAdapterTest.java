@@ -0,0 +1,66 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.TimingWheel;
+import canfield.bia.hockey.scoreboard.ScoreBoardImpl;
+import canfield.bia.hockey.v2.domain.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LegacyScoreboardHardwareAdapterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final TimingWheel wheel = new TimingWheel("test-wheel", 1, 64);
+    private ScoreBoardImpl board;
+    private LegacyScoreboardHardwareAdapter adapter;
+
+    @BeforeEach
+    void setUp() {
+        board = new ScoreBoardImpl(wheel);
+        board.setTicking(false);
+        adapter = new LegacyScoreboardHardwareAdapter(board, null, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    private static GameState playing(ClockState clock, Penalty... homePenalties) {
+        return new GameState().withStatus(GameStatus.PLAYING).withClock(clock)
+            .withHome(TeamState.EMPTY.withPenalties(List.of(homePenalties)));
+    }
+
+    @Test
+    void testRunningClockIsCountedToNow() {
+        // The engine last counted 10:00 at its tick 700ms ago; a goal between ticks must not set the board back
+        adapter.update(playing(new ClockState(600_000, true, now.get() - 700)));
+
+        int remaining = board.getGameClock().getRemainingMillis();
+        assertTrue(board.getGameClock().isRunning());
+        assertTrue(remaining <= 599_300 && remaining > 599_000, "Board shows " + remaining);
+    }
+
+    @Test
+    void testPausedClockShowsTheFrozenTime() {
+        adapter.update(playing(new ClockState(600_000, false, 0L)));
+
+        assertFalse(board.getGameClock().isRunning());
+        assertEquals(600_000, board.getGameClock().getRemainingMillis());
+    }
+
+    @Test
+    void testRunningPenaltyIsCountedToNow() {
+        Penalty running = new Penalty("p1", "home", 7, 7, 120_000, 90_000, now.get() - 2_500, 1);
+        Penalty frozen = new Penalty("p2", "home", 9, 9, 120_000, 90_000, 0L, 1);
+        adapter.update(playing(new ClockState(600_000, false, 0L), running, frozen));
+
+        assertEquals(32_500, board.getHomePenalty(0).getElapsed());
+        assertEquals(30_000, board.getHomePenalty(1).getElapsed());
+    }
+}
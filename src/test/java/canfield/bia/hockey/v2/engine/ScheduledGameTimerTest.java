@@ -0,0 +1,66 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.TimingWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduledGameTimerTest {
+
+    private TimingWheel wheel;
+    private ScheduledGameTimer timer;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel("test-wheel", 1, 64);
+        timer = new ScheduledGameTimer(wheel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.stop();
+        wheel.close();
+    }
+
+    @Test
+    void testTicksRunOnTheWheelThread() throws InterruptedException {
+        CountDownLatch ticks = new CountDownLatch(2);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        timer.start(() -> {
+            threads.add(Thread.currentThread().getName());
+            ticks.countDown();
+            timer.scheduleNextTick(5);
+        });
+        timer.scheduleNextTick(5);
+
+        assertTrue(ticks.await(2, TimeUnit.SECONDS));
+        timer.stop();
+        assertEquals("test-wheel", threads.get(0));
+        int after = threads.size();
+        Thread.sleep(30);
+        assertEquals(after, threads.size(), "No ticks once stopped");
+    }
+
+    @Test
+    void testStartAndStopDoNotCreateThreads() throws InterruptedException {
+        AtomicInteger ticks = new AtomicInteger();
+        int threadsBefore = Thread.activeCount();
+        for (int i = 0; i < 1000; i++) {
+            timer.start(ticks::incrementAndGet);
+            timer.scheduleNextTick(50);
+            timer.stop();
+        }
+        assertTrue(Thread.activeCount() <= threadsBefore, "Toggling the clock should only arm and disarm a timeout");
+
+        Thread.sleep(100);
+        assertEquals(0, ticks.get(), "Every tick was disarmed before it was due");
+    }
+}
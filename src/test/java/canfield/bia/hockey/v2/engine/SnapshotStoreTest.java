@@ -0,0 +1,140 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.domain.GameStatus;
+import canfield.bia.hockey.v2.spec.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SnapshotStoreTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshots");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private GameEngine newEngine() {
+        return new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+    }
+
+    private GameState playingState(GameEngine engine, long now) {
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of("shiftLengthSeconds", 90)), now);
+        engine.processCommand(new StartClockCommand(), now);
+        engine.processCommand(new AddGoalCommand("home", 9, List.of(12, 4), false), now + 1_000);
+        engine.processCommand(new AddGoalCommand("away", 3, null, true), now + 2_000);
+        engine.processCommand(new AddPenaltyCommand("away", 17, 17, 2), now + 3_000);
+        engine.processCommand(new AddShotCommand("home"), now + 3_500);
+        return engine.processCommand(new TickCommand(), now + 4_000);
+    }
+
+    @Test
+    void testRoundTripsState() throws IOException {
+        GameState state = playingState(newEngine(), 10_000L);
+        SnapshotStore store = new SnapshotStore(dir);
+        store.write(new SnapshotStore.GameSnapshot(7, 14_000L, state, 1_200_000L));
+
+        SnapshotStore.GameSnapshot loaded = new SnapshotStore(dir).loadLatest();
+        assertNotNull(loaded);
+        assertEquals(7, loaded.sequence());
+        assertEquals(14_000L, loaded.capturedAtMillis());
+        assertEquals(1_200_000L, loaded.shiftStartGameTimeMillis());
+        assertEquals(state, loaded.state());
+    }
+
+    @Test
+    void testFallsBackToOlderSlotWhenNewestIsCorrupt() throws IOException {
+        GameState state = playingState(newEngine(), 10_000L);
+        SnapshotStore store = new SnapshotStore(dir);
+        store.write(new SnapshotStore.GameSnapshot(1, 11_000L, new GameState(), -1));
+        store.write(new SnapshotStore.GameSnapshot(2, 12_000L, state, -1));
+        assertEquals(2, new SnapshotStore(dir).loadLatest().sequence());
+
+        Path newest = dir.resolve("game-snapshot-b.bin");
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length - 1] ^= 0x5A;
+        Files.write(newest, bytes);
+
+        SnapshotStore reopened = new SnapshotStore(dir);
+        assertEquals(1, reopened.loadLatest().sequence());
+        // The next write replaces the corrupt slot, not the good one
+        reopened.write(new SnapshotStore.GameSnapshot(3, 13_000L, state, -1));
+        assertEquals(3, new SnapshotStore(dir).loadLatest().sequence());
+        Files.delete(newest);
+        assertEquals(1, new SnapshotStore(dir).loadLatest().sequence());
+    }
+
+    @Test
+    void testEngineSnapshotsAtBoundariesAndInterval() throws IOException, InterruptedException {
+        SnapshotStore store = new SnapshotStore(dir);
+        GameEngine engine = newEngine();
+        engine.setSnapshotStore(store, 60_000L);
+        playingState(engine, 10_000L);
+        engine.processCommand(new TickCommand(), 20_000L); // within the interval, no boundary
+        engine.processCommand(new PauseClockCommand(), 21_000L); // status change
+        store.close();
+
+        SnapshotStore.GameSnapshot latest = new SnapshotStore(dir).loadLatest();
+        assertEquals(21_000L, latest.capturedAtMillis());
+        assertEquals(engine.getCurrentState(), latest.state());
+    }
+
+    @Test
+    void testRestorePausesRunningClockAtLastKnownTime() throws IOException {
+        GameEngine engine = newEngine();
+        GameState running = playingState(engine, 10_000L);
+        long remainingAtCrash = running.clock().timeRemainingMillis();
+
+        GameEngine restarted = newEngine();
+        GameState restored = restarted.recover(new SnapshotStore.GameSnapshot(0, 14_000L, running, -1), null);
+
+        assertEquals(GameStatus.PAUSED, restored.status());
+        assertFalse(restored.clock().isRunning());
+        assertEquals(remainingAtCrash, restored.clock().timeRemainingMillis());
+        assertEquals(running.away().penalties().get(0).timeRemainingMillis(), restored.away().penalties().get(0).timeRemainingMillis());
+        assertEquals(0L, restored.away().penalties().get(0).startTimeWallClock());
+    }
+
+    @Test
+    void testRestoreReplaysJournalAfterSnapshot() throws IOException {
+        Path journalFile = dir.resolve("journal.bin");
+        GameEngine engine = newEngine();
+        SnapshotStore.GameSnapshot snapshot;
+        try (CommandJournal journal = CommandJournal.open(journalFile, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            engine.setJournal(journal);
+            GameState state = playingState(engine, 10_000L);
+            snapshot = new SnapshotStore.GameSnapshot(journal.getNextSequence() - 1, 14_000L, state, -1);
+            engine.processCommand(new AddShotCommand("away"), 15_000L);
+            engine.processCommand(new PauseClockCommand(), 16_000L);
+        }
+
+        GameEngine restarted = newEngine();
+        try (CommandJournal journal = CommandJournal.open(journalFile, CommandJournal.FsyncPolicy.NEVER, 0)) {
+            GameState restored = restarted.recover(snapshot, journal);
+            assertEquals(engine.getCurrentState(), restored);
+            assertEquals(1, restored.away().shots());
+        }
+    }
+}
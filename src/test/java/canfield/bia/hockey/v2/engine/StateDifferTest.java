@@ -53,6 +53,17 @@ class StateDifferTest {
         assertTrue(patch.isEmpty());
     }
 
+    @Test
+    void testUnchangedPartsAreSkippedByReference() {
+        GameState state = createInitialState();
+        GameState ticked = state.withClock(new ClockState(state.clock().timeRemainingMillis() - 100, true, 5_000L));
+
+        assertTrue(stateDiffer.diff(ticked, ticked).isEmpty());
+        assertSame(state.home(), ticked.home());
+        assertEquals(Map.of("clock.timeRemainingMillis", ticked.clock().timeRemainingMillis(), "clock.isRunning", true),
+            stateDiffer.diff(state, ticked));
+    }
+
     @Test
     void testStatusChange() {
         GameState oldState = createInitialState();
@@ -184,4 +195,85 @@ class StateDifferTest {
         assertEquals(1, patch.size());
         assertEquals(List.of(newPenalty), patch.get("away.penalties"));
     }
+
+    private GameState withTeams(GameState state, TeamState home, TeamState away) {
+        return new GameState(state.gameId(), state.config(), state.status(), state.period(), state.clock(),
+            home, away, state.buzzerOn(), state.eventHistory());
+    }
+
+    private static Penalty running(String id, long remaining, long startedAt) {
+        return new Penalty(id, "away", 20, 20, 120000L, remaining, startedAt, 1);
+    }
+
+    @Test
+    void testTickSendsOnlyRemainingTimesInListOrder() {
+        GameState initial = createInitialState();
+        Penalty stopped = new Penalty("pen-3", "away", 7, 7, 120000L, 120000L, 0L, 1);
+        TeamState before = new TeamState(List.of(), 0, List.of(running("pen-1", 90000L, 1000L), running("pen-2", 30000L, 1000L), stopped));
+        TeamState after = new TeamState(List.of(), 0, List.of(running("pen-1", 89900L, 1100L), running("pen-2", 29900L, 1100L), stopped));
+
+        Map<String, Object> patch = stateDiffer.diff(withTeams(initial, initial.home(), before), withTeams(initial, initial.home(), after));
+
+        assertEquals(Map.of("away.penalties[*].timeRemainingMillis", List.of(89900L, 29900L, 120000L)), patch);
+    }
+
+    @Test
+    void testExpiryOnATickSendsSurvivorTimesById() {
+        GameState initial = createInitialState();
+        TeamState before = new TeamState(List.of(), 0, List.of(running("pen-1", 50L, 1000L), running("pen-2", 30000L, 1000L)));
+        TeamState after = new TeamState(List.of(), 0, List.of(running("pen-2", 29900L, 1100L)));
+
+        Map<String, Object> patch = stateDiffer.diff(withTeams(initial, initial.home(), before), withTeams(initial, initial.home(), after));
+
+        assertEquals(2, patch.size());
+        assertNull(patch.get("away.penalties[pen-1]"));
+        assertTrue(patch.containsKey("away.penalties[pen-1]"));
+        assertEquals(29900L, patch.get("away.penalties[pen-2].timeRemainingMillis"));
+    }
+
+    @Test
+    void testPenaltyAddedExpiredAndStoppedAsElements() {
+        GameState initial = createInitialState();
+        Penalty stopped = new Penalty("pen-2", "away", 20, 20, 120000L, 30000L, 0L, 1);
+        Penalty added = new Penalty("pen-3", "away", 7, 7, 120000L, 120000L, 0L, 1);
+        TeamState before = new TeamState(List.of(), 0, List.of(running("pen-1", 50L, 1000L), running("pen-2", 30100L, 1000L)));
+        TeamState after = new TeamState(List.of(), 0, List.of(stopped, added));
+
+        Map<String, Object> patch = stateDiffer.diff(withTeams(initial, initial.home(), before), withTeams(initial, initial.home(), after));
+
+        assertEquals(3, patch.size());
+        assertTrue(patch.containsKey("away.penalties[pen-1]"));
+        assertNull(patch.get("away.penalties[pen-1]"), "Expired penalty is removed");
+        assertEquals(stopped, patch.get("away.penalties[pen-2]"), "Stopping a penalty sends the whole element");
+        assertEquals(added, patch.get("away.penalties[pen-3]"));
+    }
+
+    @Test
+    void testReorderedPenaltiesSendTheWholeList() {
+        GameState initial = createInitialState();
+        Penalty first = new Penalty("pen-1", "away", 20, 20, 120000L, 120000L, 0L, 1);
+        Penalty second = new Penalty("pen-2", "away", 4, 4, 120000L, 120000L, 0L, 1);
+        TeamState before = new TeamState(List.of(), 0, List.of(first, second));
+        TeamState after = new TeamState(List.of(), 0, List.of(second, first));
+
+        Map<String, Object> patch = stateDiffer.diff(withTeams(initial, initial.home(), before), withTeams(initial, initial.home(), after));
+
+        assertEquals(Map.of("away.penalties", List.of(second, first)), patch);
+    }
+
+    @Test
+    void testGoalRemovedAsElement() {
+        GameState initial = createInitialState();
+        GoalEvent first = new GoalEvent("goal-1", "home", 1, 1190000L, 10, Collections.emptyList(), false);
+        GoalEvent second = new GoalEvent("goal-2", "home", 1, 1000000L, 12, List.of(10), false);
+        TeamState before = new TeamState(List.of(first, second), 0, List.of());
+        TeamState after = new TeamState(List.of(first), 0, List.of());
+
+        Map<String, Object> patch = stateDiffer.diff(withTeams(initial, before, initial.away()), withTeams(initial, after, initial.away()));
+
+        assertEquals(2, patch.size());
+        assertTrue(patch.containsKey("home.goals[goal-2]"));
+        assertNull(patch.get("home.goals[goal-2]"));
+        assertEquals(1, patch.get("home.score"));
+    }
 }
@@ -0,0 +1,73 @@
+package canfield.bia.hockey.v2.engine;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoHistoryTest {
+
+    private static GameState state(int period) {
+        return new GameState().withPeriod(period);
+    }
+
+    @Test
+    void testUndoAndRedoMoveAcrossTheSameEntries() {
+        UndoHistory history = new UndoHistory(4);
+        history.record(state(0), state(1), 100L, -1L, -1L);
+        history.record(state(1), state(2), 200L, -1L, -1L);
+
+        UndoHistory.Entry second = history.undo();
+        assertEquals(2, second.after().period());
+        assertEquals(200L, second.appliedAtMillis());
+        assertEquals(1, history.undo().after().period());
+        assertNull(history.undo());
+
+        assertEquals(1, history.redo().after().period());
+        assertSame(second, history.redo());
+        assertNull(history.redo());
+    }
+
+    @Test
+    void testRecordDropsUndoneEntries() {
+        UndoHistory history = new UndoHistory(4);
+        history.record(state(0), state(1), 100L, -1L, -1L);
+        history.record(state(1), state(2), 200L, -1L, -1L);
+        history.undo();
+
+        history.record(state(1), state(3), 300L, -1L, -1L);
+
+        assertEquals(0, history.redoDepth());
+        assertEquals(2, history.undoDepth());
+        assertEquals(3, history.undo().after().period());
+        assertEquals(1, history.undo().after().period());
+    }
+
+    @Test
+    void testFullRingOverwritesTheOldest() {
+        UndoHistory history = new UndoHistory(3);
+        for (int period = 1; period <= 5; period++) {
+            history.record(state(period - 1), state(period), period, -1L, -1L);
+        }
+
+        assertEquals(3, history.undoDepth());
+        assertEquals(5, history.undo().after().period());
+        assertEquals(4, history.undo().after().period());
+        assertEquals(3, history.undo().after().period());
+        assertNull(history.undo());
+        assertEquals(3, history.redoDepth());
+    }
+
+    @Test
+    void testClearForgetsEverything() {
+        UndoHistory history = new UndoHistory(3);
+        history.record(state(0), state(1), 100L, -1L, -1L);
+        history.record(state(1), state(2), 200L, -1L, -1L);
+        history.undo();
+
+        history.clear();
+
+        assertNull(history.undo());
+        assertNull(history.redo());
+    }
+}
@@ -0,0 +1,102 @@
+package canfield.bia.hockey.v2.web;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ClientOutboxTest {
+
+    private static final byte[] CLOCK = "{\"clock\"}".getBytes();
+    private static final byte[] GOAL = "{\"goal\"}".getBytes();
+    private static final byte[] SNAPSHOT = "{\"snapshot\"}".getBytes();
+
+    private WebSocket conn;
+    private ClientOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        conn = mock(WebSocket.class);
+        when(conn.isOpen()).thenReturn(true);
+        outbox = new ClientOutbox(conn, 4, 1000);
+    }
+
+    @Test
+    void testSendsImmediatelyWhenNotBackedUp() {
+        outbox.offer(GOAL, false, false, 0);
+
+        verify(conn).sendFrame(any(Framedata.class));
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void testNewerClockPatchReplacesQueuedOne() {
+        when(conn.hasBufferedData()).thenReturn(true);
+
+        outbox.offer(CLOCK, true, true, 0);
+        outbox.offer(CLOCK, true, true, 100);
+        outbox.offer(CLOCK, true, true, 200);
+        assertEquals(1, outbox.size(), "Only the latest clock patch should be pending");
+
+        outbox.offer(GOAL, false, false, 300);
+        outbox.offer(GOAL, false, true, 400);
+        assertEquals(2, outbox.size(), "A patch carrying the clock supersedes the queued clock-only patch");
+        assertEquals(3, outbox.getCoalescedCount());
+        verify(conn, never()).sendFrame(any(Framedata.class));
+    }
+
+    @Test
+    void testBacklogOverHighWaterIsReplacedByResync() {
+        when(conn.hasBufferedData()).thenReturn(true);
+        for (int i = 0; i < 5; i++) {
+            outbox.offer(GOAL, false, false, i);
+        }
+        assertTrue(outbox.isResyncDue());
+        assertEquals(0, outbox.size(), "Backlog should be dropped");
+
+        outbox.offer(GOAL, false, false, 10);
+        assertEquals(0, outbox.size(), "Nothing queues while a resync is due");
+
+        when(conn.hasBufferedData()).thenReturn(false);
+        assertTrue(outbox.flush(() -> SNAPSHOT, 20));
+        verify(conn, times(1)).sendFrame(any(Framedata.class));
+        assertFalse(outbox.isResyncDue());
+        assertEquals(1, outbox.getResyncCount());
+    }
+
+    @Test
+    void testStalledClientIsClosed() {
+        when(conn.hasBufferedData()).thenReturn(true);
+        outbox.offer(GOAL, false, false, 0);
+
+        assertTrue(outbox.flush(() -> SNAPSHOT, 500));
+        assertFalse(outbox.flush(() -> SNAPSHOT, 1500));
+        verify(conn).close(CloseFrame.GOING_AWAY, "Too slow");
+    }
+
+    @Test
+    void testBinaryPatchesGoOutAsBinaryFramesAndResyncAsText() {
+        ClientOutbox binary = new ClientOutbox(conn, 1, 1000, true);
+        when(conn.hasBufferedData()).thenReturn(true);
+        binary.offer(GOAL, true, false, false, 0);
+        binary.offer(GOAL, true, false, false, 1);
+        binary.offer(GOAL, true, false, false, 2);
+        assertTrue(binary.isResyncDue());
+
+        when(conn.hasBufferedData()).thenReturn(false);
+        binary.flush(() -> SNAPSHOT, 10);
+        binary.offer(CLOCK, true, true, true, 20);
+
+        ArgumentCaptor<Framedata> frames = ArgumentCaptor.forClass(Framedata.class);
+        verify(conn, times(2)).sendFrame(frames.capture());
+        assertInstanceOf(TextFrame.class, frames.getAllValues().get(0), "INITIAL_STATE stays JSON");
+        assertInstanceOf(BinaryFrame.class, frames.getAllValues().get(1));
+    }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -305,6 +306,72 @@ class CommandDeserializerTest {
         assertInstanceOf(ResetGameCommand.class, command);
     }
 
+    @Test
+    void testDeserializeUndoAndRedoCommands() throws Exception {
+        assertInstanceOf(UndoCommand.class, objectMapper.readValue("""
+            {"type": "COMMAND", "command": "UNDO", "payload": {}}
+            """, Command.class));
+        assertInstanceOf(RedoCommand.class, objectMapper.readValue("""
+            {"type": "COMMAND", "command": "REDO"}
+            """, Command.class));
+    }
+
+    @Test
+    void testDeserializePayloadBeforeCommand() throws Exception {
+        String json = """
+            {
+                "payload": {
+                    "teamId": "away",
+                    "scorerNumber": 9,
+                    "assistNumbers": [4],
+                    "isEmptyNet": true
+                },
+                "type": "COMMAND",
+                "command": "ADD_GOAL"
+            }
+            """;
+
+        Command command = objectMapper.readValue(json, Command.class);
+
+        assertEquals(new AddGoalCommand("away", 9, List.of(4), true), command);
+    }
+
+    @Test
+    void testDeserializeCreateGameWithPayloadBeforeCommand() throws Exception {
+        String json = """
+            {
+                "payload": {
+                    "overrides": { "periods": 2, "clockType": "RUN_TIME", "nested": { "a": [1, 2] } },
+                    "templateId": "USAH_ADULT_20"
+                },
+                "command": "CREATE_GAME"
+            }
+            """;
+
+        CreateGameCommand createGame = (CreateGameCommand) objectMapper.readValue(json, Command.class);
+
+        assertEquals("USAH_ADULT_20", createGame.templateId());
+        assertEquals(2, createGame.overrides().get("periods"));
+        assertEquals("RUN_TIME", createGame.overrides().get("clockType"));
+        assertEquals(Map.of("a", List.of(1, 2)), createGame.overrides().get("nested"));
+    }
+
+    @Test
+    void testUnknownFieldsAndMissingPayloadAreTolerated() throws Exception {
+        String json = """
+            {
+                "type": "COMMAND",
+                "command": "ADD_PENALTY",
+                "requestId": { "client": "tablet", "seq": [1, 2, 3] },
+                "payload": { "teamId": "home", "note": "hooking", "playerNumber": 12, "durationMinutes": 2 }
+            }
+            """;
+
+        assertEquals(new AddPenaltyCommand("home", 12, 0, 2), objectMapper.readValue(json, Command.class));
+        assertInstanceOf(StartClockCommand.class,
+            objectMapper.readValue("{\"type\":\"COMMAND\",\"command\":\"START_CLOCK\"}", Command.class));
+    }
+
     @Test
     void testUnknownCommandTypeThrowsException() {
         String json = """
@@ -0,0 +1,318 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.domain.GameState;
+import canfield.bia.hockey.v2.engine.*;
+import canfield.bia.hockey.v2.spec.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.protocols.IProtocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GameWebSocketV2Test {
+
+    private GameEngine gameEngine;
+    private GameEngineLoop loop;
+    private GameWebSocketV2 server;
+    private WebSocket conn;
+
+    @BeforeEach
+    void setUp() {
+        gameEngine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class), (oldState, newState) -> {});
+        gameEngine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        loop = new GameEngineLoop(gameEngine);
+        loop.start();
+        server = new GameWebSocketV2(0, new StateDiffer());
+        server.setGameEngine(gameEngine);
+        conn = client("");
+        server.onOpen(conn, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.stop();
+    }
+
+    private void awaitApplied(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loop.getAppliedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, loop.getAppliedCount());
+    }
+
+    private static ByteBuffer frame(Command... commands) {
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        for (Command command : commands) {
+            CommandCodec.encode(command, buffer);
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void testBinaryFrameSubmitsEveryCommandInIt() throws Exception {
+        server.onMessage(conn, frame(
+            new AddShotCommand("home"),
+            new AddShotCommand("home"),
+            new AddGoalCommand("away", 19, List.of(7, 4), false)
+        ));
+        awaitApplied(3);
+
+        GameState state = gameEngine.getCurrentState();
+        assertEquals(2, state.home().shots());
+        assertEquals(1, state.away().goals().size());
+        assertEquals(List.of(7, 4), state.away().goals().get(0).assistNumbers());
+    }
+
+    @Test
+    void testBinaryAndJsonCommandsAreEquivalent() throws Exception {
+        server.onMessage(conn, "{\"type\":\"COMMAND\",\"command\":\"ADD_PENALTY\",\"payload\":"
+            + "{\"teamId\":\"home\",\"playerNumber\":12,\"servingPlayerNumber\":12,\"durationMinutes\":2}}");
+        server.onMessage(conn, frame(new AddPenaltyCommand("away", 12, 12, 2)));
+        awaitApplied(2);
+
+        GameState state = gameEngine.getCurrentState();
+        assertEquals(state.home().penalties().get(0).durationMillis(), state.away().penalties().get(0).durationMillis());
+        assertEquals(12, state.away().penalties().get(0).playerNumber());
+    }
+
+    @Test
+    void testMalformedBinaryFrameKeepsCommandsBeforeTheBadOne() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        CommandCodec.encode(new AddShotCommand("home"), buffer);
+        buffer.put((byte) 99);
+        server.onMessage(conn, buffer.flip());
+        awaitApplied(1);
+
+        assertEquals(1, gameEngine.getCurrentState().home().shots());
+    }
+
+    private static WebSocket client(String protocol) {
+        WebSocket socket = mock(WebSocket.class);
+        IProtocol negotiated = mock(IProtocol.class);
+        when(negotiated.getProvidedProtocol()).thenReturn(protocol);
+        when(socket.getProtocol()).thenReturn(negotiated);
+        when(socket.isOpen()).thenReturn(true);
+        return socket;
+    }
+
+    @Test
+    void testPatchFormatFollowsNegotiatedProtocol() {
+        WebSocket jsonClient = client("");
+        WebSocket binaryClient = client(GameWebSocketV2.BINARY_PROTOCOL);
+        server.onOpen(jsonClient, null);
+        server.onOpen(binaryClient, null);
+
+        GameState before = gameEngine.getCurrentState();
+        GameState after = gameEngine.processCommand(new AddShotCommand("home"), System.currentTimeMillis());
+        server.broadcastStateChange(before, after);
+
+        ArgumentCaptor<Framedata> jsonFrames = ArgumentCaptor.forClass(Framedata.class);
+        verify(jsonClient, times(2)).sendFrame(jsonFrames.capture());
+        assertInstanceOf(TextFrame.class, jsonFrames.getAllValues().get(1));
+
+        ArgumentCaptor<Framedata> binaryFrames = ArgumentCaptor.forClass(Framedata.class);
+        verify(binaryClient, times(2)).sendFrame(binaryFrames.capture());
+        assertInstanceOf(TextFrame.class, binaryFrames.getAllValues().get(0), "INITIAL_STATE is JSON for everyone");
+        assertInstanceOf(BinaryFrame.class, binaryFrames.getAllValues().get(1));
+    }
+
+    private static JsonNode lastMessage(WebSocket socket, int frames) throws Exception {
+        ArgumentCaptor<Framedata> sent = ArgumentCaptor.forClass(Framedata.class);
+        verify(socket, times(frames)).sendFrame(sent.capture());
+        ByteBuffer payload = sent.getAllValues().get(frames - 1).getPayloadData();
+        return new ObjectMapper().readTree(new String(payload.array(), StandardCharsets.UTF_8));
+    }
+
+    private GameState broadcast(Command command, long now) {
+        GameState before = gameEngine.getCurrentState();
+        GameState after = gameEngine.processCommand(command, now);
+        server.broadcastStateChange(before, after, now);
+        return after;
+    }
+
+    @Test
+    void testInterpolatingClientGetsAnchorsInsteadOfTicks() throws Exception {
+        WebSocket ticking = client("");
+        WebSocket interpolating = client("");
+        when(interpolating.getResourceDescriptor()).thenReturn("/?clock=interpolate");
+        server.setClockCorrectionMillis(1000);
+        server.onOpen(ticking, null);
+        server.onOpen(interpolating, null);
+
+        long t0 = 1_000_000;
+        broadcast(new AddPenaltyCommand("home", 12, 12, 2), t0);
+        broadcast(new StartClockCommand(), t0);
+        JsonNode start = lastMessage(interpolating, 3).path("data");
+        assertTrue(start.path("clock.isRunning").asBoolean());
+        assertEquals(t0, start.path("clock.startTimeWallClock").asLong());
+        assertTrue(start.has("clock.timeRemainingMillis"));
+
+        for (long t = t0 + 100; t < t0 + 1000; t += 100) {
+            broadcast(new TickCommand(), t);
+        }
+        verify(ticking, times(12)).sendFrame(any(Framedata.class));
+        verify(interpolating, times(3)).sendFrame(any(Framedata.class));
+
+        // Drift correction: the clock and the penalty as of the same instant
+        GameState corrected = broadcast(new TickCommand(), t0 + 1000);
+        JsonNode correction = lastMessage(interpolating, 4).path("data");
+        assertEquals(t0 + 1000, correction.path("clock.startTimeWallClock").asLong());
+        assertEquals(corrected.clock().timeRemainingMillis(), correction.path("clock.timeRemainingMillis").asLong());
+        assertEquals(corrected.home().penalties().get(0).timeRemainingMillis(),
+            correction.path("home.penalties[*].timeRemainingMillis").path(0).asLong());
+
+        broadcast(new TickCommand(), t0 + 1100);
+        GameState paused = broadcast(new PauseClockCommand(), t0 + 1150);
+        verify(interpolating, times(5)).sendFrame(any(Framedata.class));
+        JsonNode stop = lastMessage(interpolating, 5).path("data");
+        assertFalse(stop.path("clock.isRunning").asBoolean());
+        assertEquals(paused.clock().timeRemainingMillis(), stop.path("clock.timeRemainingMillis").asLong());
+    }
+
+    @Test
+    void testPingIsAnsweredWithServerTime() throws Exception {
+        WebSocket socket = client("");
+        server.onOpen(socket, null);
+        long before = gameEngine.getTimeSource().currentTimeMillis(); // The server answers in engine time
+
+        server.onMessage(socket, "{\"type\":\"PING\",\"clientTime\":1234}");
+
+        JsonNode pong = lastMessage(socket, 2);
+        assertEquals("PONG", pong.path("type").asText());
+        assertEquals(1234, pong.path("data").path("clientTime").asLong());
+        assertTrue(pong.path("data").path("serverTime").asLong() >= before);
+        assertEquals(0, loop.getAppliedCount(), "A PING is not a command");
+    }
+
+    private GameEngine rinkEngine(GameWebSocketV2 rinkServer, String rinkId) {
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class),
+            (oldState, newState) -> rinkServer.broadcastStateChange(rinkId, oldState, newState));
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        return engine;
+    }
+
+    @Test
+    void testRinkPathSelectsTheRinkOfCommandsAndPatches() throws Exception {
+        GameWebSocketV2 rinkServer = new GameWebSocketV2(0, new StateDiffer());
+        GameRegistry registry = new GameRegistry();
+        GameEngine rink1 = rinkEngine(rinkServer, GameRegistry.DEFAULT_RINK_ID);
+        GameEngine rink2 = rinkEngine(rinkServer, "2");
+        registry.register(GameRegistry.DEFAULT_RINK_ID, rink1);
+        GameRegistry.Rink second = registry.register("2", rink2);
+        rinkServer.setGameRegistry(registry);
+        registry.start();
+        try {
+            WebSocket rink1Client = client("");
+            WebSocket rink2Client = client("");
+            when(rink2Client.getResourceDescriptor()).thenReturn("/rink/2?binary=0");
+            rinkServer.onOpen(rink1Client, null);
+            rinkServer.onOpen(rink2Client, null);
+
+            rinkServer.onMessage(rink2Client, frame(new AddShotCommand("home")));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (second.loop().getAppliedCount() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertEquals(1, rink2.getCurrentState().home().shots());
+            assertEquals(0, rink1.getCurrentState().home().shots(), "Rink 1 never saw the command");
+            assertEquals(1, lastMessage(rink2Client, 2).path("data").path("home.shots").asInt());
+            verify(rink1Client, times(1)).sendFrame(any(Framedata.class));
+        } finally {
+            registry.stop();
+        }
+    }
+
+    @Test
+    void testUnknownRinkIsRefused() {
+        WebSocket socket = client("");
+        when(socket.getResourceDescriptor()).thenReturn("/rink/9");
+        server.onOpen(socket, null);
+
+        verify(socket).close(CloseFrame.POLICY_VALIDATION, "Unknown rink 9");
+        verify(socket, never()).sendFrame(any(Framedata.class));
+    }
+
+    @Test
+    void testRefusedConnectionCannotCommandAnyRink() throws Exception {
+        WebSocket socket = client(GameWebSocketV2.BINARY_PROTOCOL);
+        when(socket.getResourceDescriptor()).thenReturn("/rink/9");
+        server.onOpen(socket, null);
+
+        // Sent before the close completes
+        server.onMessage(socket, "{\"type\":\"COMMAND\",\"command\":\"ADD_SHOT\",\"payload\":{\"teamId\":\"home\"}}");
+        server.onMessage(socket, frame(new AddShotCommand("away")));
+        server.onMessage(socket, "{\"type\":\"PING\",\"clientTime\":1234}");
+        Thread.sleep(100);
+
+        assertEquals(0, loop.getAppliedCount());
+        assertEquals(0, gameEngine.getCurrentState().home().shots());
+        assertEquals(0, gameEngine.getCurrentState().away().shots());
+        verify(socket, never()).sendFrame(any(Framedata.class));
+        verify(socket, never()).send(any(String.class));
+    }
+
+    @Test
+    void testSubscribersGetTheirFieldsSerializedOncePerGroup() throws Exception {
+        WebSocket everything = client("");
+        WebSocket penaltyBox = client("");
+        WebSocket otherPenaltyBox = client("");
+        when(penaltyBox.getResourceDescriptor()).thenReturn("/?topics=clock,home.penalties");
+        when(otherPenaltyBox.getResourceDescriptor()).thenReturn("/?topics=home.penalties,clock");
+        server.onOpen(everything, null);
+        server.onOpen(penaltyBox, null);
+        server.onOpen(otherPenaltyBox, null);
+
+        long t0 = 1_000_000;
+        broadcast(new AddShotCommand("home"), t0);
+        verify(everything, times(2)).sendFrame(any(Framedata.class));
+        verify(penaltyBox, times(1)).sendFrame(any(Framedata.class));
+
+        broadcast(new AddPenaltyCommand("home", 12, 12, 2), t0);
+        JsonNode penalty = lastMessage(penaltyBox, 2).path("data");
+        assertTrue(penalty.size() > 0);
+        penalty.fieldNames().forEachRemaining(key -> assertTrue(key.startsWith("home.penalties"), key));
+
+        broadcast(new SetPeriodCommand(2), t0);
+        verify(penaltyBox, times(2)).sendFrame(any(Framedata.class));
+
+        ArgumentCaptor<Framedata> first = ArgumentCaptor.forClass(Framedata.class);
+        verify(penaltyBox, times(2)).sendFrame(first.capture());
+        ArgumentCaptor<Framedata> second = ArgumentCaptor.forClass(Framedata.class);
+        verify(otherPenaltyBox, times(2)).sendFrame(second.capture());
+        assertSame(first.getAllValues().get(1).getPayloadData().array(), second.getAllValues().get(1).getPayloadData().array(),
+            "One serialization for the group");
+    }
+
+    @Test
+    void testQueryParameterIsFoundByName() {
+        assertEquals("clock,home", GameWebSocketV2.queryParameter("/rink/2?clock=interpolate&topics=clock,home", "topics"));
+        assertNull(GameWebSocketV2.queryParameter("/?topicsx=clock", "topics"));
+        assertNull(GameWebSocketV2.queryParameter("/", "topics"));
+    }
+
+    @Test
+    void testRinkIdIsTheRinkPathSegment() {
+        assertEquals("2", GameWebSocketV2.rinkId("/rink/2"));
+        assertEquals("north", GameWebSocketV2.rinkId("/rink/north/?binary"));
+        assertNull(GameWebSocketV2.rinkId("/"));
+        assertNull(GameWebSocketV2.rinkId("/ws"));
+        assertNull(GameWebSocketV2.rinkId("/rink/"));
+    }
+}
@@ -0,0 +1,107 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.engine.*;
+import canfield.bia.hockey.v2.spec.CreateGameCommand;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.UpgradeResponse;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.PingFrame;
+import org.java_websocket.framing.PongFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JettyWebSocketConnectionTest {
+
+    private Session session;
+    private RemoteEndpoint remote;
+    private JettyWebSocketConnection connection;
+
+    @BeforeEach
+    void setUp() {
+        GameWebSocketV2 webSocket = new GameWebSocketV2(0, new StateDiffer());
+        GameRegistry registry = new GameRegistry();
+        GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class),
+            (oldState, newState) -> {});
+        engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+        registry.register("1", engine);
+        webSocket.setGameRegistry(registry);
+
+        session = mock(Session.class);
+        remote = mock(RemoteEndpoint.class);
+        when(session.getRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getUpgradeResponse()).thenReturn(mock(UpgradeResponse.class));
+        connection = new JettyWebSocketConnection(webSocket, "/");
+        connection.onWebSocketConnect(session);
+        reset(remote); // The INITIAL_STATE
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void testControlFramesMapOntoTheSession() {
+        connection.sendFrame(new PingFrame());
+        connection.sendFrame(new PongFrame());
+        verify(remote).sendPing(any(ByteBuffer.class), any(WriteCallback.class));
+        verify(remote).sendPong(any(ByteBuffer.class), any(WriteCallback.class));
+
+        CloseFrame close = new CloseFrame();
+        close.setCode(CloseFrame.GOING_AWAY);
+        close.setReason("Bye");
+        connection.sendFrame(close);
+        verify(session).close(eq(CloseFrame.GOING_AWAY), eq("Bye"));
+    }
+
+    @Test
+    void testFragmentsAreSentAsPartialMessages() throws Exception {
+        connection.sendFragmentedFrame(Opcode.BINARY, bytes(1, 2), false);
+        connection.sendFragmentedFrame(Opcode.BINARY, bytes(3), true);
+        verify(remote).sendPartialBytes(any(ByteBuffer.class), eq(false), any(WriteCallback.class));
+        verify(remote).sendPartialBytes(any(ByteBuffer.class), eq(true), any(WriteCallback.class));
+
+        // "café!" with the é split between the fragments
+        connection.sendFragmentedFrame(Opcode.TEXT, bytes('c', 'a', 'f', 0xC3), false);
+        connection.sendFragmentedFrame(Opcode.TEXT, bytes(0xA9, '!'), true);
+        verify(remote).sendPartialString(eq("caf"), eq(false), any(WriteCallback.class));
+        verify(remote).sendPartialString(eq("é!"), eq(true), any(WriteCallback.class));
+    }
+
+    @Test
+    void testClosingLastsUntilJettyReportsTheClose() {
+        assertFalse(connection.isClosing());
+
+        connection.close(CloseFrame.NORMAL, "Done");
+        assertTrue(connection.isClosing());
+        assertFalse(connection.isOpen());
+        assertEquals(ReadyState.CLOSING, connection.getReadyState());
+
+        when(session.isOpen()).thenReturn(false);
+        connection.onWebSocketClose(CloseFrame.NORMAL, "Done");
+        assertFalse(connection.isClosing());
+        assertEquals(ReadyState.CLOSED, connection.getReadyState());
+    }
+
+    @Test
+    void testCloseConnectionSendsTheCode() {
+        connection.closeConnection(CloseFrame.UNEXPECTED_CONDITION, "Broken");
+
+        verify(session).close(eq(CloseFrame.UNEXPECTED_CONDITION), eq("Broken"), any(WriteCallback.class));
+        assertTrue(connection.isClosing());
+    }
+}
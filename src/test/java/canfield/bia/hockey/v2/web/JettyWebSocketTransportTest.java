@@ -0,0 +1,149 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.engine.*;
+import canfield.bia.hockey.v2.spec.*;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JettyWebSocketTransportTest {
+
+    private GameWebSocketV2 webSocket;
+    private GameRegistry registry;
+    private Server jetty;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        webSocket = new GameWebSocketV2(0, new StateDiffer());
+        registry = new GameRegistry();
+        for (String rinkId : List.of("1", "2")) {
+            GameEngine engine = new GameEngine(new JsonTemplateRepository(), mock(HardwareOutputAdapter.class), mock(GameTimer.class),
+                (oldState, newState) -> webSocket.broadcastStateChange(rinkId, oldState, newState));
+            engine.processCommand(new CreateGameCommand("USAH_ADULT_20", Map.of()), System.currentTimeMillis());
+            registry.register(rinkId, engine);
+        }
+        webSocket.setGameRegistry(registry);
+        registry.start();
+
+        jetty = new Server();
+        ServerConnector connector = new ServerConnector(jetty);
+        connector.setPort(0);
+        jetty.addConnector(connector);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath("/");
+        JettyWebSocketTransport.install(context, webSocket);
+        jetty.setHandler(context);
+        jetty.start();
+        webSocket.startFlushing();
+        port = connector.getLocalPort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        webSocket.stop();
+        jetty.stop();
+        registry.stop();
+    }
+
+    /** Records what the server sends: text as is, binary frames by their type byte. */
+    private static final class Client extends WebSocketClient {
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        Client(URI uri, String protocol) {
+            super(uri, new Draft_6455(Collections.emptyList(), List.of(new Protocol(protocol))));
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            received.add(message);
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            received.add("binary:" + bytes.remaining());
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            received.add("closed:" + code);
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+
+        String next() throws InterruptedException {
+            String message = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message, "Nothing received");
+            return message;
+        }
+    }
+
+    private Client connect(String path, String protocol) throws Exception {
+        Client client = new Client(URI.create("ws://localhost:" + port + path), protocol);
+        assertTrue(client.connectBlocking(5, TimeUnit.SECONDS));
+        return client;
+    }
+
+    @Test
+    void testClientsOfTheJettyPortReachTheirRink() throws Exception {
+        Client rink1 = connect("/", "");
+        Client rink2 = connect("/rink/2?topics=home", GameWebSocketV2.BINARY_PROTOCOL);
+        try {
+            assertTrue(rink1.next().contains("\"INITIAL_STATE\""));
+            assertTrue(rink2.next().contains("\"INITIAL_STATE\""));
+            assertEquals(GameWebSocketV2.BINARY_PROTOCOL, rink2.getProtocol().getProvidedProtocol());
+
+            ByteBuffer command = ByteBuffer.allocate(64);
+            CommandCodec.encode(new AddShotCommand("home"), command);
+            rink2.send(command.flip());
+            assertTrue(rink2.next().startsWith("binary:"), "Binary patch for the binary subprotocol");
+            assertEquals(1, registry.get("2").engine().getCurrentState().home().shots());
+
+            rink1.send("{\"type\":\"COMMAND\",\"command\":\"ADD_SHOT\",\"payload\":{\"teamId\":\"away\"}}");
+            assertTrue(rink1.next().contains("\"away.shots\":1"));
+            assertNull(rink2.received.poll(200, TimeUnit.MILLISECONDS), "Rink 2 does not hear rink 1");
+        } finally {
+            rink1.closeBlocking();
+            rink2.closeBlocking();
+        }
+    }
+
+    @Test
+    void testUnknownRinkIsClosed() throws Exception {
+        Client client = new Client(URI.create("ws://localhost:" + port + "/rink/9"), "");
+        client.connectBlocking(5, TimeUnit.SECONDS); // False if the close got there first
+        assertEquals("closed:1008", client.next());
+    }
+
+    @Test
+    void testResourceDescriptorKeepsPathAndQuery() {
+        assertEquals("/rink/2?clock=interpolate&topics=clock%2Chome",
+            JettyWebSocketTransport.resourceDescriptor(URI.create("ws://host:8080/rink/2?clock=interpolate&topics=clock%2Chome")));
+        assertEquals("/", JettyWebSocketTransport.resourceDescriptor(URI.create("ws://host:8080")));
+    }
+}
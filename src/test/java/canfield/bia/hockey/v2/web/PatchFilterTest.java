@@ -0,0 +1,62 @@
+package canfield.bia.hockey.v2.web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatchFilterTest {
+
+    private static Map<String, Object> patch() {
+        Map<String, Object> patch = new HashMap<>();
+        patch.put("clock.timeRemainingMillis", 60_000L);
+        patch.put("clock.isRunning", true);
+        patch.put("home.penalties[*].timeRemainingMillis", List.of(90_000L));
+        patch.put("home.goals", List.of());
+        patch.put("home.score", 0);
+        patch.put("period", 2);
+        return patch;
+    }
+
+    @Test
+    void testPrefixTakesTheFieldAndWhatLiesBelowIt() {
+        PatchFilter filter = PatchFilter.parse("clock,home.penalties");
+
+        Map<String, Object> filtered = filter.apply(patch());
+
+        assertEquals(Map.of(
+            "clock.timeRemainingMillis", 60_000L,
+            "clock.isRunning", true,
+            "home.penalties[*].timeRemainingMillis", List.of(90_000L)), filtered);
+        assertFalse(filter.matches("clockwise"), "A prefix matches whole path segments only");
+        assertFalse(filter.matches("home.score"));
+    }
+
+    @Test
+    void testFieldInsideAReplacedListIsTaken() {
+        PatchFilter filter = PatchFilter.parse("home.penalties[*].timeRemainingMillis");
+
+        assertTrue(filter.matches("home.penalties"), "The whole list carries the subscribed field");
+        assertFalse(filter.matches("home.goals"));
+    }
+
+    @Test
+    void testNoTopicsTakesEverything() {
+        Map<String, Object> patch = patch();
+
+        assertSame(PatchFilter.ALL, PatchFilter.parse(null));
+        assertSame(PatchFilter.ALL, PatchFilter.parse(" , "));
+        assertSame(patch, PatchFilter.ALL.apply(patch));
+        assertSame(patch, PatchFilter.parse("clock,home,period").apply(patch), "A patch the filter keeps whole is not copied");
+        assertTrue(PatchFilter.parse("away").apply(patch).isEmpty());
+    }
+
+    @Test
+    void testSameTopicsInAnyOrderAreEqual() {
+        assertEquals(PatchFilter.parse("home.penalties,clock"), PatchFilter.parse("clock%2Chome.penalties,clock"));
+        assertEquals(List.of("clock", "home.penalties"), PatchFilter.parse(" home.penalties , clock").prefixes());
+    }
+}
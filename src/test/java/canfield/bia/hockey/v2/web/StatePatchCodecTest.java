@@ -0,0 +1,111 @@
+package canfield.bia.hockey.v2.web;
+
+import canfield.bia.hockey.v2.domain.GameStatus;
+import canfield.bia.hockey.v2.domain.GoalEvent;
+import canfield.bia.hockey.v2.domain.Penalty;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatePatchCodecTest {
+
+    private final StatePatchCodec codec = new StatePatchCodec();
+
+    @Test
+    void testClockPatchIsAHandfulOfBytes() {
+        byte[] encoded = codec.encode(5, Map.of("clock.timeRemainingMillis", 1_199_000L));
+
+        // 1_199_000 zigzags to 2_398_000 = 0x249730, four 7-bit groups
+        assertArrayEquals(new byte[] {
+            StatePatchCodec.STATE_PATCH, 5, StatePatchCodec.CLOCK_TIME_REMAINING,
+            (byte) 0xB0, (byte) 0xAE, (byte) 0x92, 0x01
+        }, encoded);
+    }
+
+    @Test
+    void testClockAnchorIsAnEpochMillisVarint() {
+        byte[] encoded = codec.encode(1, Map.of("clock.startTimeWallClock", 1L << 40));
+
+        // Zigzag doubles it to 2^41: five zero-payload groups then the top bit
+        assertArrayEquals(new byte[] {
+            StatePatchCodec.STATE_PATCH, 1, StatePatchCodec.CLOCK_START_TIME,
+            (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x40
+        }, encoded);
+    }
+
+    @Test
+    void testScalarFields() {
+        Map<String, Object> patch = new LinkedHashMap<>();
+        patch.put("status", GameStatus.PLAYING);
+        patch.put("clock.isRunning", true);
+        patch.put("away.shots", 3);
+        patch.put("gameId", null);
+
+        byte[] status = "PLAYING".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = new byte[3 + 2 + status.length + 2 + 2 + 2];
+        int i = 0;
+        expected[i++] = StatePatchCodec.STATE_PATCH;
+        expected[i++] = (byte) 0xAC; // sequence 300 as a two-byte varint
+        expected[i++] = 2;
+        expected[i++] = StatePatchCodec.STATUS;
+        expected[i++] = (byte) (status.length + 1);
+        System.arraycopy(status, 0, expected, i, status.length);
+        i += status.length;
+        expected[i++] = StatePatchCodec.CLOCK_IS_RUNNING;
+        expected[i++] = 1;
+        expected[i++] = StatePatchCodec.AWAY_SHOTS;
+        expected[i++] = 6; // zigzag of 3
+        expected[i++] = StatePatchCodec.GAME_ID;
+        expected[i] = 0; // null string
+
+        assertArrayEquals(expected, codec.encode(300, patch));
+    }
+
+    @Test
+    void testGoalListIsCountPlusOneThenRecordFields() {
+        GoalEvent goal = new GoalEvent("g", "home", 1, 60_000, 9, List.of(12), false);
+        byte[] encoded = codec.encode(1, Map.of("home.goals", List.of(goal)));
+
+        assertEquals(StatePatchCodec.HOME_GOALS, encoded[2]);
+        assertEquals(2, encoded[3], "one element");
+        assertEquals(2, encoded[4], "goalId length + 1");
+        assertEquals('g', encoded[5]);
+        assertEquals(0, encoded[encoded.length - 1], "isEmptyNet");
+    }
+
+    @Test
+    void testPenaltyElementKeysCarryTheIdInTheValue() {
+        Map<String, Object> patch = new LinkedHashMap<>();
+        patch.put("away.penalties[p1].timeRemainingMillis", 1L);
+        patch.put("away.penalties[p2]", null);
+
+        assertArrayEquals(new byte[] {
+            StatePatchCodec.STATE_PATCH, 1,
+            StatePatchCodec.AWAY_PENALTY_TIME_REMAINING, 3, 'p', '1', 2,
+            StatePatchCodec.AWAY_PENALTY, 3, 'p', '2', 0
+        }, codec.encode(1, patch));
+
+        assertArrayEquals(new byte[] {
+            StatePatchCodec.STATE_PATCH, 1,
+            StatePatchCodec.HOME_PENALTY_TIMES, 3, 2, 4
+        }, codec.encode(1, Map.of("home.penalties[*].timeRemainingMillis", List.of(1L, 2L))));
+
+        Penalty penalty = new Penalty("p3", "home", 4, 4, 120_000, 120_000, 0, 1);
+        byte[] added = codec.encode(1, Map.of("home.penalties[p3]", penalty));
+        assertEquals(StatePatchCodec.HOME_PENALTY, added[2]);
+        assertEquals(1, added[6], "present");
+        assertEquals(3, added[7], "penalty fields follow");
+    }
+
+    @Test
+    void testUnknownFieldFallsBackToJson() {
+        assertNull(codec.encode(1, Map.of("config", "anything")));
+        assertNull(codec.encode(1, Map.of("home.shots", "not a number")));
+        assertNull(codec.encode(1, Map.of("home.goals[g1].scorerNumber", 9)));
+    }
+}
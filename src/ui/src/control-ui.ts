@@ -458,6 +458,14 @@ const initEvents = (goalDialog: GoalDialogController) => {
   };
 
   on(document, 'click', '#buzzer', () => websocketClient.sendCommand({ type: 'TRIGGER_BUZZER', payload: {} }));
+  on(document, 'click', '#undo', (e) => {
+    websocketClient.sendCommand({ type: 'UNDO', payload: {} });
+    blurTarget(e);
+  });
+  on(document, 'click', '#redo', (e) => {
+    websocketClient.sendCommand({ type: 'REDO', payload: {} });
+    blurTarget(e);
+  });
   on(document, 'click', '#clock-start', () => websocketClient.sendCommand({ type: 'START_CLOCK', payload: {} }));
   on(document, 'click', '#clock-pause', () => websocketClient.sendCommand({ type: 'PAUSE_CLOCK', payload: {} }));
   on(document, 'click', '.period-up', () => {
@@ -0,0 +1,72 @@
+import { describe, expect, it } from 'vitest';
+
+import { encodeCommand, OPCODES } from './command-codec';
+
+const bytes = (buffer: ArrayBuffer | null) => Array.from(new Uint8Array(buffer!));
+
+describe('command-codec', () => {
+  it('encodes payload-less commands as a single opcode byte', () => {
+    expect(bytes(encodeCommand({ type: 'START_CLOCK' }))).toEqual([OPCODES.START_CLOCK]);
+    expect(bytes(encodeCommand({ type: 'PAUSE_CLOCK', payload: {} }))).toEqual([OPCODES.PAUSE_CLOCK]);
+    expect(bytes(encodeCommand({ type: 'UNDO' }))).toEqual([OPCODES.UNDO]);
+    expect(bytes(encodeCommand({ type: 'REDO', payload: {} }))).toEqual([OPCODES.REDO]);
+  });
+
+  it('encodes strings as a 16-bit length followed by UTF-8', () => {
+    expect(bytes(encodeCommand({ type: 'ADD_SHOT', payload: { teamId: 'home' } }))).toEqual([
+      OPCODES.ADD_SHOT, 0, 4, 0x68, 0x6f, 0x6d, 0x65,
+    ]);
+    expect(bytes(encodeCommand({ type: 'REMOVE_GOAL', payload: {} }))).toEqual([OPCODES.REMOVE_GOAL, 0xff, 0xff]);
+  });
+
+  it('encodes a goal with fixed-width numbers and an assist count', () => {
+    const view = new DataView(encodeCommand({
+      type: 'ADD_GOAL',
+      payload: { teamId: 'away', scorerNumber: 19, assistNumbers: [7, 4], isEmptyNet: true },
+    })!);
+
+    expect(view.getUint8(0)).toBe(OPCODES.ADD_GOAL);
+    expect(view.getInt16(1)).toBe(4);
+    expect(view.getInt32(7)).toBe(19);
+    expect(view.getInt16(11)).toBe(2);
+    expect(view.getInt32(13)).toBe(7);
+    expect(view.getInt32(17)).toBe(4);
+    expect(view.getUint8(21)).toBe(1);
+    expect(view.byteLength).toBe(22);
+  });
+
+  it('encodes a penalty and coerces numeric strings', () => {
+    const view = new DataView(encodeCommand({
+      type: 'ADD_PENALTY',
+      payload: { teamId: 'home', playerNumber: '12', servingPlayerNumber: 12, durationMinutes: 2 },
+    })!);
+
+    expect(view.getInt32(7)).toBe(12);
+    expect(view.getInt32(11)).toBe(12);
+    expect(view.getInt32(15)).toBe(2);
+  });
+
+  it('encodes the clock as a 64-bit value', () => {
+    const view = new DataView(encodeCommand({ type: 'SET_CLOCK', payload: { timeMillis: 1_200_000 } })!);
+
+    expect(view.byteLength).toBe(9);
+    expect(view.getBigInt64(1)).toBe(1_200_000n);
+  });
+
+  it('carries game overrides as a JSON string', () => {
+    const overrides = { periodLengthMinutes: 15, periods: 3 };
+    const buffer = encodeCommand({ type: 'CREATE_GAME', payload: { templateId: 'USAH_ADULT_20', overrides } })!;
+    const view = new DataView(buffer);
+    const templateLength = view.getInt16(1);
+    const overridesAt = 3 + templateLength;
+    const overridesLength = view.getInt16(overridesAt);
+    const json = new TextDecoder().decode(new Uint8Array(buffer, overridesAt + 2, overridesLength));
+
+    expect(JSON.parse(json)).toEqual(overrides);
+  });
+
+  it('returns null for commands the server has no opcode for', () => {
+    expect(encodeCommand({ type: 'CANCEL_PENALTY', payload: { penaltyId: 'p1' } })).toBeNull();
+    expect(encodeCommand({ type: 'START_ADAPTER' })).toBeNull();
+  });
+});
@@ -0,0 +1,153 @@
+// src/ui/src/transport/command-codec.ts
+
+import { Command } from '../api/v2-types';
+
+/**
+ * WebSocket subprotocol for binary commands and binary state patches. Mirrors GameWebSocketV2.BINARY_PROTOCOL.
+ */
+export const BINARY_COMMAND_PROTOCOL = 'scoreboard.v2.binary';
+
+/**
+ * One-byte opcodes, mirroring canfield.bia.hockey.v2.spec.CommandCodec. Keep the two in step.
+ */
+export const OPCODES: Readonly<Record<string, number>> = {
+    CREATE_GAME: 1,
+    START_CLOCK: 2,
+    PAUSE_CLOCK: 3,
+    ADD_PENALTY: 4,
+    TICK: 5,
+    ADD_GOAL: 6,
+    REMOVE_GOAL: 7,
+    ADD_SHOT: 8,
+    UNDO_LAST_SHOT: 9,
+    END_GAME: 10,
+    RESET_GAME: 11,
+    SET_PERIOD: 12,
+    TRIGGER_BUZZER: 13,
+    SET_CLOCK: 14,
+    UNDO: 15,
+    REDO: 16,
+};
+
+const MAX_STRING_BYTES = 0x7fff;
+const textEncoder = new TextEncoder();
+
+/** Appends big-endian fields to a growable byte array. */
+class Writer {
+    private bytes = new Uint8Array(64);
+    private view = new DataView(this.bytes.buffer);
+    private length = 0;
+
+    private ensure(extra: number): void {
+        if (this.length + extra <= this.bytes.length) return;
+        const grown = new Uint8Array(Math.max(this.bytes.length * 2, this.length + extra));
+        grown.set(this.bytes);
+        this.bytes = grown;
+        this.view = new DataView(grown.buffer);
+    }
+
+    u8(value: number): void {
+        this.ensure(1);
+        this.view.setUint8(this.length, value);
+        this.length += 1;
+    }
+
+    i16(value: number): void {
+        this.ensure(2);
+        this.view.setInt16(this.length, value);
+        this.length += 2;
+    }
+
+    i32(value: number): void {
+        this.ensure(4);
+        this.view.setInt32(this.length, value);
+        this.length += 4;
+    }
+
+    i64(value: number): void {
+        this.ensure(8);
+        this.view.setBigInt64(this.length, BigInt(value));
+        this.length += 8;
+    }
+
+    /** Signed 16-bit byte length (-1 for null) followed by UTF-8. False if the string is too long. */
+    string(value: string | null): boolean {
+        if (value === null) {
+            this.i16(-1);
+            return true;
+        }
+        const utf8 = textEncoder.encode(value);
+        if (utf8.length > MAX_STRING_BYTES) return false;
+        this.i16(utf8.length);
+        this.ensure(utf8.length);
+        this.bytes.set(utf8, this.length);
+        this.length += utf8.length;
+        return true;
+    }
+
+    finish(): ArrayBuffer {
+        return this.bytes.buffer.slice(0, this.length);
+    }
+}
+
+// Same leniency as the server's JSON reader: numeric strings are accepted, anything else reads as 0
+const int = (value: unknown): number => {
+    const n = Math.trunc(Number(value));
+    return Number.isFinite(n) ? n : 0;
+};
+
+const str = (value: unknown): string | null =>
+    value === undefined || value === null ? null : String(value);
+
+/**
+ * Encodes a command in the server's binary form, or returns null when the command has no binary
+ * encoding (a type the codec does not know, or a string too long for its length prefix) and should
+ * be sent as JSON instead.
+ */
+export function encodeCommand(command: Command): ArrayBuffer | null {
+    const opcode = OPCODES[command.type];
+    if (opcode === undefined) return null;
+    const payload = command.payload ?? {};
+    const out = new Writer();
+    out.u8(opcode);
+    switch (command.type) {
+        case 'CREATE_GAME': {
+            const overrides = payload.overrides;
+            if (!out.string(str(payload.templateId))) return null;
+            if (!out.string(overrides === undefined || overrides === null ? null : JSON.stringify(overrides))) return null;
+            break;
+        }
+        case 'ADD_PENALTY':
+            if (!out.string(str(payload.teamId))) return null;
+            out.i32(int(payload.playerNumber));
+            out.i32(int(payload.servingPlayerNumber));
+            out.i32(int(payload.durationMinutes));
+            break;
+        case 'ADD_GOAL': {
+            if (!out.string(str(payload.teamId))) return null;
+            out.i32(int(payload.scorerNumber));
+            const assists = Array.isArray(payload.assistNumbers) ? payload.assistNumbers : null;
+            out.i16(assists === null ? -1 : assists.length);
+            assists?.forEach((assist) => out.i32(int(assist)));
+            out.u8((payload.isEmptyNet ?? payload.emptyNet) === true ? 1 : 0);
+            break;
+        }
+        case 'REMOVE_GOAL':
+            if (!out.string(str(payload.goalId))) return null;
+            break;
+        case 'ADD_SHOT':
+        case 'UNDO_LAST_SHOT':
+            if (!out.string(str(payload.teamId))) return null;
+            break;
+        case 'SET_PERIOD':
+            out.i32(int(payload.period));
+            break;
+        case 'SET_CLOCK':
+            out.i64(int(payload.timeMillis));
+            break;
+        default:
+            // Opcode only
+            break;
+    }
+    return out.finish();
+}
@@ -0,0 +1,96 @@
+import { describe, expect, it } from 'vitest';
+
+import { GameState, Penalty } from '../api/v2-types';
+import { ServerClock, interpolateState } from './clock-interpolation';
+
+const penalty = (penaltyId: string, timeRemainingMillis: number, startTimeWallClock: number): Penalty => ({
+  penaltyId,
+  teamId: 'home',
+  playerNumber: 12,
+  servingPlayerNumber: 12,
+  durationMillis: 120000,
+  timeRemainingMillis,
+  startTimeWallClock,
+  period: 1,
+});
+
+const runningState = (anchor: number, penalties: Penalty[] = []): GameState => ({
+  gameId: 'g',
+  config: null,
+  status: 'PLAYING',
+  period: 1,
+  clock: { timeRemainingMillis: 600000, isRunning: true, startTimeWallClock: anchor },
+  home: { goals: [], shots: 0, penalties },
+  away: { goals: [], shots: 0, penalties: [] },
+  buzzerOn: false,
+  eventHistory: [],
+} as unknown as GameState);
+
+describe('ServerClock', () => {
+  it('has no estimate before the first round trip', () => {
+    const clock = new ServerClock();
+    expect(clock.offset()).toBeNull();
+    expect(clock.now(1000)).toBeNull();
+  });
+
+  it('assumes the server answered halfway through the round trip', () => {
+    const clock = new ServerClock();
+    clock.addSample(1000, 6050, 1100);
+    expect(clock.offset()).toBe(5000);
+    expect(clock.now(2000)).toBe(7000);
+  });
+
+  it('trusts the fastest round trip', () => {
+    const clock = new ServerClock();
+    clock.addSample(1000, 5600, 1400); // slow and lopsided: says 4400
+    clock.addSample(2000, 7010, 2020); // fast: says 5000
+    clock.addSample(3000, 8300, 3200);
+    expect(clock.offset()).toBe(5000);
+  });
+
+  it('forgets old samples', () => {
+    const clock = new ServerClock();
+    clock.addSample(0, 5000, 0);
+    for (let i = 1; i <= 8; i++) clock.addSample(i * 1000, i * 1000 + 3010, i * 1000 + 20);
+    expect(clock.offset()).toBe(3000);
+  });
+
+  it('ignores nonsense samples', () => {
+    const clock = new ServerClock();
+    clock.addSample(2000, 5000, 1000);
+    clock.addSample(Number.NaN, 5000, 1000);
+    expect(clock.sampleCount).toBe(0);
+  });
+});
+
+describe('interpolateState', () => {
+  it('runs the clock and running penalties down from the anchor', () => {
+    const state = runningState(10000, [penalty('p1', 90000, 10000), penalty('p2', 120000, 0)]);
+    const view = interpolateState(state, 12500);
+
+    expect(view.clock.timeRemainingMillis).toBe(597500);
+    expect(view.home.penalties[0].timeRemainingMillis).toBe(87500);
+    expect(view.home.penalties[1].timeRemainingMillis).toBe(120000); // waiting to start
+    expect(view.away).toBe(state.away);
+    expect(state.clock.timeRemainingMillis).toBe(600000);
+  });
+
+  it('stops at zero', () => {
+    const state = runningState(10000, [penalty('p1', 1000, 10000)]);
+    const view = interpolateState(state, 10000 + 700000);
+
+    expect(view.clock.timeRemainingMillis).toBe(0);
+    expect(view.home.penalties[0].timeRemainingMillis).toBe(0);
+  });
+
+  it('never runs the clock backwards', () => {
+    const state = runningState(10000);
+    expect(interpolateState(state, 9000)).toBe(state);
+  });
+
+  it('leaves a stopped clock alone', () => {
+    const state = runningState(0);
+    state.clock.isRunning = false;
+    expect(interpolateState(state, 50000)).toBe(state);
+  });
+});
@@ -0,0 +1,81 @@
+// src/ui/src/utils/clock-interpolation.ts
+
+import { GameState, TeamState } from '../api/v2-types';
+
+/** Round trips kept for the offset estimate; the fastest one wins, and old ones age out. */
+const MAX_SAMPLES = 8;
+
+interface OffsetSample {
+    offset: number;
+    roundTrip: number;
+}
+
+/**
+ * Estimates the server's wall clock from PING/PONG round trips. Each sample assumes the server read its clock
+ * halfway through the round trip, so the sample with the shortest round trip has the smallest error.
+ */
+export class ServerClock {
+    private samples: OffsetSample[] = [];
+
+    /**
+     * @param clientSent local time the PING was sent, echoed back by the server
+     * @param serverTime server time when it answered
+     * @param clientReceived local time the PONG arrived
+     */
+    addSample(clientSent: number, serverTime: number, clientReceived: number): void {
+        if (!Number.isFinite(clientSent) || !Number.isFinite(serverTime) || clientReceived < clientSent) return;
+        const roundTrip = clientReceived - clientSent;
+        this.samples.push({ offset: serverTime - (clientSent + roundTrip / 2), roundTrip });
+        if (this.samples.length > MAX_SAMPLES) this.samples.shift();
+    }
+
+    get sampleCount(): number {
+        return this.samples.length;
+    }
+
+    /** Milliseconds to add to the local clock to get the server's, or null before the first PONG. */
+    offset(): number | null {
+        if (this.samples.length === 0) return null;
+        let best = this.samples[0];
+        for (const sample of this.samples) {
+            if (sample.roundTrip < best.roundTrip) best = sample;
+        }
+        return best.offset;
+    }
+
+    /** The server's current time, or null before the first PONG. */
+    now(localNow: number = Date.now()): number | null {
+        const offset = this.offset();
+        return offset === null ? null : localNow + offset;
+    }
+}
+
+/**
+ * Runs a state's clock forward to `serverNow`. While the clock runs, `clock.timeRemainingMillis` was exact at
+ * server time `clock.startTimeWallClock`, and so was the remaining time of every running penalty (one with a
+ * non-zero `startTimeWallClock`), since penalties only count down with the game clock. Times stop at zero; the
+ * server sends the actual stop or expiry.
+ * @returns the same object when there is nothing to run forward
+ */
+export function interpolateState(state: GameState, serverNow: number): GameState {
+    const { clock } = state;
+    if (!clock.isRunning || !clock.startTimeWallClock) return state;
+    const elapsed = Math.max(0, serverNow - clock.startTimeWallClock);
+    if (elapsed === 0) return state;
+    const runDown = (millis: number) => Math.max(0, millis - elapsed);
+    const runPenalties = (team: TeamState): TeamState =>
+        team.penalties.some((p) => p.startTimeWallClock)
+            ? {
+                ...team,
+                penalties: team.penalties.map((p) =>
+                    p.startTimeWallClock ? { ...p, timeRemainingMillis: runDown(p.timeRemainingMillis) } : p
+                ),
+            }
+            : team;
+    return {
+        ...state,
+        clock: { ...clock, timeRemainingMillis: runDown(clock.timeRemainingMillis) },
+        home: runPenalties(state.home),
+        away: runPenalties(state.away),
+    };
+}
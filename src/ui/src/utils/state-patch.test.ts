@@ -1,6 +1,9 @@
 import { describe, expect, it } from 'vitest';
 
-import { applyPatch } from './state-patch';
+import { applyPatch, decodeStatePatch } from './state-patch';
+
+const buffer = (...bytes: number[]) => new Uint8Array(bytes).buffer;
+const utf8 = (text: string) => Array.from(new TextEncoder().encode(text));
 
 describe('state-patch', () => {
   it('applies simple property changes', () => {
@@ -50,3 +53,114 @@ describe('state-patch', () => {
     expect(state).toEqual(original);
   });
 });
+
+describe('state-patch element keys', () => {
+  const penalty = (penaltyId: string, timeRemainingMillis: number) => ({ penaltyId, playerNumber: 4, timeRemainingMillis });
+
+  it('updates one field of an element by id', () => {
+    const state = { away: { penalties: [penalty('p1', 90000), penalty('p2', 30000)] } };
+    const result = applyPatch(state, { 'away.penalties[p2].timeRemainingMillis': 29900 });
+    expect(result.away.penalties).toEqual([penalty('p1', 90000), penalty('p2', 29900)]);
+    expect(state.away.penalties[1].timeRemainingMillis).toBe(30000);
+  });
+
+  it('appends, replaces and removes elements by id', () => {
+    const state = { home: { goals: [{ goalId: 'g1', scorerNumber: 9 }, { goalId: 'g2', scorerNumber: 12 }] } };
+    const result = applyPatch(state, {
+      'home.goals[g1]': null,
+      'home.goals[g2]': { goalId: 'g2', scorerNumber: 17 },
+      'home.goals[g3]': { goalId: 'g3', scorerNumber: 4 },
+    });
+    expect(result.home.goals).toEqual([{ goalId: 'g2', scorerNumber: 17 }, { goalId: 'g3', scorerNumber: 4 }]);
+    expect(state.home.goals).toHaveLength(2);
+  });
+
+  it('sets a field on every element in order with [*]', () => {
+    const state = { away: { penalties: [penalty('p1', 90000), penalty('p2', 30000)] } };
+    const result = applyPatch(state, { 'away.penalties[*].timeRemainingMillis': [89900, 29900] });
+    expect(result.away.penalties.map((p) => p.timeRemainingMillis)).toEqual([89900, 29900]);
+  });
+
+  it('ignores element updates it cannot line up', () => {
+    const state = { away: { penalties: [penalty('p1', 90000)] } };
+    const result = applyPatch(state, {
+      'away.penalties[missing].timeRemainingMillis': 1,
+      'away.penalties[*].timeRemainingMillis': [1, 2],
+    });
+    expect(result.away.penalties).toEqual([penalty('p1', 90000)]);
+  });
+});
+
+describe('decodeStatePatch', () => {
+  it('decodes a clock patch', () => {
+    // Same bytes StatePatchCodecTest expects from the server
+    expect(decodeStatePatch(buffer(1, 5, 5, 0xb0, 0xae, 0x92, 0x01))).toEqual({
+      sequence: 5,
+      patch: { 'clock.timeRemainingMillis': 1199000 },
+    });
+  });
+
+  it('decodes a clock anchor past 32 bits', () => {
+    // Same bytes StatePatchCodecTest expects for 2^40
+    expect(decodeStatePatch(buffer(1, 1, 23, 0x80, 0x80, 0x80, 0x80, 0x80, 0x40))!.patch).toEqual({
+      'clock.startTimeWallClock': 2 ** 40,
+    });
+  });
+
+  it('decodes strings, booleans, zigzag ints and nulls', () => {
+    const decoded = decodeStatePatch(buffer(
+      1, 0xac, 0x02,
+      2, 8, ...utf8('PLAYING'),
+      6, 1,
+      13, 6,
+      3, 3,
+      1, 0,
+    ));
+    expect(decoded).toEqual({
+      sequence: 300,
+      patch: { status: 'PLAYING', 'clock.isRunning': true, 'away.shots': 3, period: -2, gameId: null },
+    });
+  });
+
+  it('decodes goal and penalty lists', () => {
+    const decoded = decodeStatePatch(buffer(
+      1, 1,
+      7, 2, 2, ...utf8('g'), 5, ...utf8('home'), 2, 0xc0, 0xa9, 0x07, 18, 2, 24, 0,
+      14, 1,
+    ))!;
+    expect(decoded.patch['home.goals']).toEqual([{
+      goalId: 'g',
+      teamId: 'home',
+      period: 1,
+      timeInPeriodMillis: 60000,
+      scorerNumber: 9,
+      assistNumbers: [12],
+      isEmptyNet: false,
+    }]);
+    expect(decoded.patch['away.penalties']).toEqual([]);
+  });
+
+  it('ignores messages that are not state patches', () => {
+    expect(decodeStatePatch(buffer(9, 1))).toBeNull();
+    expect(decodeStatePatch(buffer())).toBeNull();
+  });
+
+  it('rejects truncated patches and unknown fields', () => {
+    expect(() => decodeStatePatch(buffer(1, 1, 5, 0xb0))).toThrow(RangeError);
+    expect(() => decodeStatePatch(buffer(1, 1, 99, 0))).toThrow(RangeError);
+  });
+
+  it('decodes element keys', () => {
+    const decoded = decodeStatePatch(buffer(
+      1, 1,
+      20, 3, ...utf8('p1'), 2,
+      18, 3, ...utf8('p2'), 0,
+      21, 3, 2, 4,
+    ));
+    expect(decoded!.patch).toEqual({
+      'away.penalties[p1].timeRemainingMillis': 1,
+      'away.penalties[p2]': null,
+      'home.penalties[*].timeRemainingMillis': [1, 2],
+    });
+  });
+});
@@ -1,38 +1,241 @@
 // src/ui/src/utils/state-patch.ts
 
+/**
+ * Id field of the elements of each id-keyed list, for element keys like `home.penalties[<id>]`.
+ */
+const ID_FIELDS: Readonly<Record<string, string>> = {
+    goals: 'goalId',
+    penalties: 'penaltyId',
+};
+
+const ELEMENT_SEGMENT = /^(.+)\[(.+)\]$/;
+
+const copyOf = (value: unknown): Record<string, unknown> =>
+    value && typeof value === 'object'
+        ? (Array.isArray(value)
+            ? ([...value] as unknown as Record<string, unknown>)
+            : { ...(value as Record<string, unknown>) })
+        : {};
+
 /**
  * Helper function to apply dot-separated patches to a nested object.
- * This is a simplified version and might need to be more robust for production.
+ * A path segment `list[id]` addresses the element of `list` whose id field is `id`: as the last segment a
+ * null value removes the element and any other value replaces it, or appends it if it is new. A segment
+ * `list[*]` with an array value sets the rest of the path on every element, in order.
  * @param state The original state object.
  * @param patch The patch object with dot-separated keys.
  * @returns A new state object with the patch applied.
  */
 export function applyPatch<T extends Record<string, unknown>>(state: T, patch: Record<string, unknown>): T {
-    const newState: Record<string, unknown> = Array.isArray(state)
-        ? ([...(state as unknown as unknown[])] as unknown as Record<string, unknown>)
-        : { ...state };
+    const newState = copyOf(state);
 
     for (const keyPath of Object.keys(patch)) {
         if (!Object.prototype.hasOwnProperty.call(patch, keyPath)) continue;
-        const value = patch[keyPath];
-        const parts = keyPath.split('.');
-        let current: Record<string, unknown> = newState;
-
-        for (let i = 0; i < parts.length; i++) {
-            const part = parts[i];
-            if (i === parts.length - 1) {
-                current[part] = value;
-            } else {
-                const existing = current[part];
-                if (existing && typeof existing === 'object') {
-                    current[part] = Array.isArray(existing) ? [...existing] : { ...(existing as Record<string, unknown>) };
-                } else {
-                    current[part] = {};
-                }
-                current = current[part] as Record<string, unknown>;
-            }
-        }
+        applyPath(newState, keyPath.split('.'), patch[keyPath]);
     }
 
     return newState as T;
 }
+
+/** Sets one path on an object that is already a private copy, copying whatever it descends into. */
+function applyPath(current: Record<string, unknown>, parts: string[], value: unknown): void {
+    const [part, ...rest] = parts;
+    const element = ELEMENT_SEGMENT.exec(part);
+    if (!element) {
+        if (rest.length === 0) {
+            current[part] = value;
+            return;
+        }
+        const child = copyOf(current[part]);
+        current[part] = child;
+        applyPath(child, rest, value);
+        return;
+    }
+
+    const [, listName, id] = element;
+    const existing = current[listName];
+    const list: unknown[] = Array.isArray(existing) ? [...existing] : [];
+    current[listName] = list;
+
+    if (id === '*') {
+        if (rest.length === 0 || !Array.isArray(value) || value.length !== list.length) return;
+        list.forEach((item, i) => {
+            const copy = copyOf(item);
+            applyPath(copy, rest, value[i]);
+            list[i] = copy;
+        });
+        return;
+    }
+
+    const idField = ID_FIELDS[listName] ?? 'id';
+    const index = list.findIndex(
+        (item) => !!item && typeof item === 'object' && (item as Record<string, unknown>)[idField] === id
+    );
+    if (rest.length === 0) {
+        if (value === null || value === undefined) {
+            if (index >= 0) list.splice(index, 1);
+        } else if (index >= 0) {
+            list[index] = value;
+        } else {
+            list.push(value);
+        }
+        return;
+    }
+    // A field of an element this client does not have; the next full list or INITIAL_STATE brings it
+    if (index < 0) return;
+    const copy = copyOf(list[index]);
+    applyPath(copy, rest, value);
+    list[index] = copy;
+}
+
+/**
+ * A STATE_PATCH received as a binary frame, decoded into the same dot-separated form as the JSON one.
+ */
+export interface BinaryStatePatch {
+    sequence: number;
+    patch: Record<string, unknown>;
+}
+
+/** First byte of a binary STATE_PATCH message. */
+export const BINARY_STATE_PATCH = 1;
+
+type FieldKind = 'string' | 'int' | 'bool' | 'goals' | 'penalties' | 'ints' | 'goal' | 'penalty' | 'elementInt';
+
+/**
+ * Field ids of the binary patch format, mirroring StatePatchCodec on the server. Ids are never renumbered.
+ * Keys with `[]` are element keys: the element id is read first and goes between the brackets.
+ */
+const PATCH_FIELDS: Readonly<Record<number, [string, FieldKind]>> = {
+    1: ['gameId', 'string'],
+    2: ['status', 'string'],
+    3: ['period', 'int'],
+    4: ['buzzerOn', 'bool'],
+    5: ['clock.timeRemainingMillis', 'int'],
+    6: ['clock.isRunning', 'bool'],
+    7: ['home.goals', 'goals'],
+    8: ['home.score', 'int'],
+    9: ['home.shots', 'int'],
+    10: ['home.penalties', 'penalties'],
+    11: ['away.goals', 'goals'],
+    12: ['away.score', 'int'],
+    13: ['away.shots', 'int'],
+    14: ['away.penalties', 'penalties'],
+    15: ['home.goals[]', 'goal'],
+    16: ['away.goals[]', 'goal'],
+    17: ['home.penalties[]', 'penalty'],
+    18: ['away.penalties[]', 'penalty'],
+    19: ['home.penalties[].timeRemainingMillis', 'elementInt'],
+    20: ['away.penalties[].timeRemainingMillis', 'elementInt'],
+    21: ['home.penalties[*].timeRemainingMillis', 'ints'],
+    22: ['away.penalties[*].timeRemainingMillis', 'ints'],
+    23: ['clock.startTimeWallClock', 'int'],
+};
+
+const textDecoder = new TextDecoder();
+
+class PatchReader {
+    private offset = 0;
+    private readonly bytes: Uint8Array;
+
+    constructor(buffer: ArrayBuffer) {
+        this.bytes = new Uint8Array(buffer);
+    }
+
+    hasMore(): boolean {
+        return this.offset < this.bytes.length;
+    }
+
+    byte(): number {
+        if (this.offset >= this.bytes.length) throw new RangeError('Truncated state patch');
+        return this.bytes[this.offset++];
+    }
+
+    // Unsigned LEB128; arithmetic rather than bit operators so values past 32 bits survive
+    varint(): number {
+        let result = 0;
+        let scale = 1;
+        for (;;) {
+            const b = this.byte();
+            result += (b & 0x7f) * scale;
+            if ((b & 0x80) === 0) return result;
+            scale *= 128;
+        }
+    }
+
+    int(): number {
+        const n = this.varint();
+        return n % 2 === 0 ? n / 2 : -(n + 1) / 2;
+    }
+
+    bool(): boolean {
+        return this.byte() !== 0;
+    }
+
+    string(): string | null {
+        const length = this.varint() - 1;
+        if (length < 0) return null;
+        if (this.offset + length > this.bytes.length) throw new RangeError('Truncated state patch');
+        const value = textDecoder.decode(this.bytes.subarray(this.offset, this.offset + length));
+        this.offset += length;
+        return value;
+    }
+
+    list<T>(readElement: () => T): T[] | null {
+        const count = this.varint() - 1;
+        if (count < 0) return null;
+        const items: T[] = [];
+        for (let i = 0; i < count; i++) items.push(readElement());
+        return items;
+    }
+}
+
+const readGoal = (r: PatchReader) => ({
+    goalId: r.string(),
+    teamId: r.string(),
+    period: r.int(),
+    timeInPeriodMillis: r.int(),
+    scorerNumber: r.int(),
+    assistNumbers: r.list(() => r.int()),
+    isEmptyNet: r.bool(),
+});
+
+const readPenalty = (r: PatchReader) => ({
+    penaltyId: r.string(),
+    teamId: r.string(),
+    playerNumber: r.int(),
+    servingPlayerNumber: r.int(),
+    durationMillis: r.int(),
+    timeRemainingMillis: r.int(),
+    startTimeWallClock: r.int(),
+    period: r.int(),
+});
+
+/**
+ * Decodes a binary STATE_PATCH: a type byte, a varint sequence number, then field id / value pairs.
+ * @returns null if the message is not a state patch
+ * @throws RangeError if the message is truncated or has a field id this client does not know
+ */
+export function decodeStatePatch(buffer: ArrayBuffer): BinaryStatePatch | null {
+    const r = new PatchReader(buffer);
+    if (!r.hasMore() || r.byte() !== BINARY_STATE_PATCH) return null;
+    const sequence = r.varint();
+    const patch: Record<string, unknown> = {};
+    while (r.hasMore()) {
+        const id = r.byte();
+        const field = PATCH_FIELDS[id];
+        if (!field) throw new RangeError(`Unknown state patch field ${id}`);
+        const [template, kind] = field;
+        const key = template.includes('[]') ? template.replace('[]', `[${r.string()}]`) : template;
+        switch (kind) {
+            case 'string': patch[key] = r.string(); break;
+            case 'int': case 'elementInt': patch[key] = r.int(); break;
+            case 'bool': patch[key] = r.bool(); break;
+            case 'ints': patch[key] = r.list(() => r.int()); break;
+            case 'goals': patch[key] = r.list(() => readGoal(r)); break;
+            case 'penalties': patch[key] = r.list(() => readPenalty(r)); break;
+            case 'goal': patch[key] = r.bool() ? readGoal(r) : null; break;
+            case 'penalty': patch[key] = r.bool() ? readPenalty(r) : null; break;
+        }
+    }
+    return { sequence, patch };
+}
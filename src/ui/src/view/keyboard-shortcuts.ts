@@ -131,6 +131,29 @@ export const initKeyboardShortcuts = ({ openGoalDialog }: KeyboardShortcutOption
       preventDefault: true,
       exposeAs: 'periodDown',
     },
+    // Undo/redo of the last edit (require Ctrl)
+    {
+      code: 'KeyZ',
+      ctrlKey: true,
+      action: () => triggerButton('#undo'),
+      preventDefault: true,
+      exposeAs: 'undo',
+    },
+    {
+      code: 'KeyY',
+      ctrlKey: true,
+      action: () => triggerButton('#redo'),
+      preventDefault: true,
+      exposeAs: 'redo',
+    },
+    {
+      code: 'KeyZ',
+      ctrlKey: true,
+      shiftKey: true,
+      action: () => triggerButton('#redo'),
+      preventDefault: true,
+      exposeAs: 'redo',
+    },
     // Clock controls
     {
       key: 'ArrowUp',
@@ -1,5 +1,7 @@
 import { afterEach, beforeEach, describe, expect, it, vi } from 'vitest';
 
+import { BINARY_COMMAND_PROTOCOL, encodeCommand } from './transport/command-codec';
+
 // Types for testing - these mirror the module's internal types
 interface ScoreboardWindow extends Window {
   __SCOREBOARD_WS_URL__?: string;
@@ -47,7 +49,10 @@ class MockWebSocket implements Partial<WebSocket> {
 
   public readyState = MockWebSocket.CONNECTING;
   public url: string;
+  public protocols: string[];
+  public protocol = '';
   public sent: string[] = [];
+  public sentBinary: ArrayBuffer[] = [];
 
   // Event handler properties (matches native WebSocket)
   public onopen: ((event: Event) => void) | null = null;
@@ -55,16 +60,21 @@ class MockWebSocket implements Partial<WebSocket> {
   public onclose: ((event: CloseEvent) => void) | null = null;
   public onerror: ((event: Event) => void) | null = null;
 
-  constructor(url: string) {
+  constructor(url: string, protocols: string | string[] = []) {
     this.url = url;
+    this.protocols = typeof protocols === 'string' ? [protocols] : protocols;
     MockWebSocket.instances.push(this);
   }
 
-  send(data: string) {
+  send(data: string | ArrayBuffer) {
     if (this.readyState !== MockWebSocket.OPEN) {
       throw new Error('WebSocket is not open');
     }
-    this.sent.push(data);
+    if (typeof data === 'string') {
+      this.sent.push(data);
+    } else {
+      this.sentBinary.push(data);
+    }
   }
 
   close() {
@@ -75,7 +85,8 @@ class MockWebSocket implements Partial<WebSocket> {
   }
 
   // Test helpers
-  simulateOpen() {
+  simulateOpen(protocol = '') {
+    this.protocol = protocol;
     this.readyState = MockWebSocket.OPEN;
     if (this.onopen) {
       this.onopen(new Event('open'));
@@ -88,6 +99,12 @@ class MockWebSocket implements Partial<WebSocket> {
     }
   }
 
+  simulateBinaryMessage(bytes: number[]) {
+    if (this.onmessage) {
+      this.onmessage(new MessageEvent('message', { data: new Uint8Array(bytes).buffer }));
+    }
+  }
+
   simulateError() {
     if (this.onerror) {
       this.onerror(new Event('error'));
@@ -207,6 +224,62 @@ describe('websocket module', () => {
       expect(resolveWebSocketUrl()).toBe('ws://localhost:8082/ws/v2');
     });
 
+    it('connects to the rink named in the page URL', async () => {
+      Object.defineProperty(global, 'window', {
+        value: {
+          location: {
+            protocol: 'http:',
+            hostname: 'localhost',
+            search: '?rink=2',
+          },
+        } as ScoreboardWindow,
+        writable: true,
+        configurable: true,
+      });
+
+      vi.resetModules();
+      const { resolveWebSocketUrl } = await import('./websocket');
+      expect(resolveWebSocketUrl()).toBe('ws://localhost:8082/rink/2');
+    });
+
+    it('ignores a rink that is not a plain path segment', async () => {
+      Object.defineProperty(global, 'window', {
+        value: {
+          location: {
+            protocol: 'http:',
+            hostname: 'localhost',
+            search: '?rink=../admin',
+          },
+        } as ScoreboardWindow,
+        writable: true,
+        configurable: true,
+      });
+
+      vi.resetModules();
+      const { resolveWebSocketUrl } = await import('./websocket');
+      expect(resolveWebSocketUrl()).toBe('ws://localhost:8082/');
+    });
+
+    it('subscribes to the topics named in the page URL', async () => {
+      Object.defineProperty(global, 'window', {
+        value: {
+          location: {
+            protocol: 'http:',
+            hostname: 'localhost',
+            search: '?rink=2&topics=clock,home.penalties',
+          },
+        } as ScoreboardWindow,
+        writable: true,
+        configurable: true,
+      });
+
+      vi.resetModules();
+      const { resolveWebSocketUrl, withClockInterpolation } = await import('./websocket');
+      expect(resolveWebSocketUrl()).toBe('ws://localhost:8082/rink/2?topics=clock%2Chome.penalties');
+      expect(withClockInterpolation(resolveWebSocketUrl())).toBe(
+        'ws://localhost:8082/rink/2?topics=clock%2Chome.penalties&clock=interpolate');
+    });
+
     it('uses wss protocol when page is served over https', async () => {
       Object.defineProperty(global, 'window', {
         value: {
@@ -265,7 +338,14 @@ describe('websocket module', () => {
       await import('./websocket');
 
       expect(MockWebSocket.instances).toHaveLength(1);
-      expect(MockWebSocket.instances[0].url).toBe('ws://localhost:8082/');
+      expect(MockWebSocket.instances[0].url).toBe('ws://localhost:8082/?clock=interpolate');
+    });
+
+    it('adds the clock interpolation opt-in to a URL that already has a query', async () => {
+      vi.resetModules();
+      const { withClockInterpolation } = await import('./websocket');
+
+      expect(withClockInterpolation('ws://host:1/ws?x=1')).toBe('ws://host:1/ws?x=1&clock=interpolate');
     });
 
     describe('connection state', () => {
@@ -398,6 +478,68 @@ describe('websocket module', () => {
         expect(updatedState.home.shots).toBe(5);
       });
 
+      it('applies binary STATE_PATCH messages in sequence order', async () => {
+        vi.resetModules();
+        const { websocketClient } = await import('./websocket');
+
+        const ws = MockWebSocket.getLastInstance()!;
+        ws.simulateOpen(BINARY_COMMAND_PROTOCOL);
+        ws.simulateMessage({ type: 'INITIAL_STATE', data: createMockGameState() });
+
+        const callback = vi.fn();
+        websocketClient.subscribe(callback);
+        callback.mockClear();
+
+        ws.simulateBinaryMessage([1, 2, 9, 10]); // sequence 2: home.shots = 5
+        ws.simulateBinaryMessage([1, 1, 9, 2]); // sequence 1 arrives late and is ignored
+
+        expect(callback).toHaveBeenCalledTimes(1);
+        expect(websocketClient.getGameState()!.home.shots).toBe(5);
+
+        // A fresh INITIAL_STATE (reconnect or resync) restarts the sequence
+        ws.simulateMessage({ type: 'INITIAL_STATE', data: createMockGameState() });
+        ws.simulateBinaryMessage([1, 1, 9, 2]);
+        expect(websocketClient.getGameState()!.home.shots).toBe(1);
+      });
+
+      it('runs a running clock forward from its anchor once a PONG gives the server time', async () => {
+        vi.setSystemTime(100000);
+        vi.stubGlobal('requestAnimationFrame', (cb: FrameRequestCallback) => setTimeout(() => cb(Date.now()), 16));
+        vi.resetModules();
+        const { websocketClient } = await import('./websocket');
+
+        const ws = MockWebSocket.getLastInstance()!;
+        ws.simulateOpen();
+        ws.simulateMessage({
+          type: 'INITIAL_STATE',
+          data: createMockGameState({
+            status: 'PLAYING',
+            clock: { timeRemainingMillis: 900000, isRunning: true, startTimeWallClock: 5000000 },
+          }),
+        });
+
+        const ping = JSON.parse(ws.sent[0]);
+        expect(ping).toEqual({ type: 'PING', clientTime: 100000 });
+
+        const callback = vi.fn();
+        websocketClient.subscribe(callback);
+        callback.mockClear();
+
+        // The server's clock is 4 900 000 ms ahead of this one and the anchor is current
+        ws.simulateMessage({ type: 'PONG', data: { clientTime: 100000, serverTime: 5000000 } });
+        vi.advanceTimersByTime(1000);
+
+        const shown = callback.mock.calls.at(-1)![0].clock.timeRemainingMillis;
+        expect(shown).toBeGreaterThanOrEqual(899000);
+        expect(shown).toBeLessThan(899100);
+        // One notification per tenth of a second, not per frame
+        expect(callback.mock.calls.length).toBeLessThanOrEqual(12);
+        // The received state itself stays as the server sent it
+        expect(websocketClient.getGameState()!.clock.timeRemainingMillis).toBe(900000);
+
+        vi.unstubAllGlobals();
+      });
+
       it('applies nested patches correctly', async () => {
         vi.resetModules();
         const { websocketClient } = await import('./websocket');
@@ -553,6 +695,46 @@ describe('websocket module', () => {
         });
       });
 
+      it('offers the binary command subprotocol', async () => {
+        vi.resetModules();
+        await import('./websocket');
+
+        expect(MockWebSocket.getLastInstance()!.protocols).toEqual([BINARY_COMMAND_PROTOCOL]);
+      });
+
+      it('sends binary commands when the server accepts the subprotocol', async () => {
+        vi.resetModules();
+        const { websocketClient } = await import('./websocket');
+
+        const ws = MockWebSocket.getLastInstance()!;
+        ws.simulateOpen(BINARY_COMMAND_PROTOCOL);
+
+        websocketClient.sendCommand({ type: 'ADD_SHOT', payload: { teamId: 'home' } });
+
+        expect(ws.sent).toHaveLength(0);
+        expect(ws.sentBinary).toHaveLength(1);
+        expect(new Uint8Array(ws.sentBinary[0])).toEqual(
+          new Uint8Array(encodeCommand({ type: 'ADD_SHOT', payload: { teamId: 'home' } })!)
+        );
+      });
+
+      it('falls back to JSON for commands without a binary encoding', async () => {
+        vi.resetModules();
+        const { websocketClient } = await import('./websocket');
+
+        const ws = MockWebSocket.getLastInstance()!;
+        ws.simulateOpen(BINARY_COMMAND_PROTOCOL);
+
+        websocketClient.sendCommand({ type: 'CANCEL_PENALTY', payload: { penaltyId: 'p1' } });
+
+        expect(ws.sentBinary).toHaveLength(0);
+        expect(JSON.parse(ws.sent[0])).toEqual({
+          type: 'COMMAND',
+          command: 'CANCEL_PENALTY',
+          payload: { penaltyId: 'p1' },
+        });
+      });
+
       it('stores last command type in window.__test', async () => {
         vi.resetModules();
         const { websocketClient } = await import('./websocket');
@@ -1,7 +1,9 @@
 // src/ui/src/websocket.ts
 
 import { GameState, Command } from './api/v2-types';
-import { applyPatch } from './utils/state-patch'; // A helper to apply patches
+import { applyPatch, decodeStatePatch } from './utils/state-patch'; // A helper to apply patches
+import { BINARY_COMMAND_PROTOCOL, encodeCommand } from './transport/command-codec';
+import { ServerClock, interpolateState } from './utils/clock-interpolation';
 
 type ScoreboardWindow = Window & {
     __SCOREBOARD_WS_URL__?: string;
@@ -11,6 +13,27 @@ type ScoreboardWindow = Window & {
 };
 
 const DEFAULT_WS_PORT = 8082;
+// Asks the server for clock anchors instead of a patch every tick; the clock is run forward here
+const INTERPOLATE_QUERY = ['clock', 'interpolate'] as const;
+// A few quick round trips for a first offset estimate, then an occasional one to follow drift
+const PING_WARMUP_SAMPLES = 4;
+const PING_WARMUP_INTERVAL_MS = 1000;
+const PING_INTERVAL_MS = 30000;
+
+/** Adds the clock interpolation opt-in to the connection URL. */
+export const withClockInterpolation = (url: string): string => {
+    const [name, value] = INTERPOLATE_QUERY;
+    const separator = url.includes('?') ? '&' : '?';
+    return `${url}${separator}${name}=${value}`;
+};
+
+const scheduleFrame = (callback: () => void): void => {
+    if (typeof requestAnimationFrame === 'function') {
+        requestAnimationFrame(() => callback());
+    } else {
+        setTimeout(callback, 16);
+    }
+};
 
 export const resolveWebSocketUrl = (): string => {
     if (typeof window === 'undefined') {
@@ -35,12 +58,20 @@ export const resolveWebSocketUrl = (): string => {
                 : undefined;
     const port = Number.isFinite(parsedPort) ? parsedPort : DEFAULT_WS_PORT;
 
-    const rawPath = scoreboardWindow.__SCOREBOARD_WS_PATH__ ?? '/';
+    // A page for one rink of a multi-rink server, e.g. ?rink=2, watches that rink's path
+    const pageQuery = new URLSearchParams(window.location.search ?? '');
+    const rink = pageQuery.get('rink');
+    const rinkPath = rink && /^[A-Za-z0-9_-]+$/.test(rink) ? `/rink/${rink}` : '/';
+    const rawPath = scoreboardWindow.__SCOREBOARD_WS_PATH__ ?? rinkPath;
     const normalizedPath = rawPath.startsWith('/') ? rawPath : `/${rawPath}`;
 
     const formattedHost = hostname.includes(':') ? `[${hostname}]` : hostname || 'localhost';
 
-    return `${wsProtocol}://${formattedHost}:${port}${normalizedPath}`;
+    // A display that only renders some fields, e.g. ?topics=clock,home.penalties, only gets patches for those
+    const topics = pageQuery.get('topics');
+    const query = topics && topics.trim().length > 0 ? `?topics=${encodeURIComponent(topics)}` : '';
+
+    return `${wsProtocol}://${formattedHost}:${port}${normalizedPath}${query}`;
 };
 
 // Define the shape of our internal state
@@ -61,6 +92,13 @@ class WebSocketClient {
     private reconnectInterval: ReturnType<typeof setInterval> | null = null;
     private connectionState: ConnectionState = 'connecting';
     private connectionSubscribers: ConnectionUpdateCallback[] = [];
+    // Sequence of the last binary patch applied since the last INITIAL_STATE; older ones are stale
+    private lastPatchSequence = 0;
+    private serverClock = new ServerClock();
+    private pingTimer: ReturnType<typeof setTimeout> | null = null;
+    private frameScheduled = false;
+    // Tenths of a second last shown for a running clock, so frames between them notify nobody
+    private shownTenths: number | null = null;
 
     constructor(private url: string) {
         this.connect();
@@ -73,7 +111,9 @@ class WebSocketClient {
         }
 
         this.setConnectionState('connecting');
-        this.ws = new WebSocket(this.url);
+        // Offer binary commands; a server that does not accept the subprotocol leaves ws.protocol empty
+        this.ws = new WebSocket(withClockInterpolation(this.url), [BINARY_COMMAND_PROTOCOL]);
+        this.ws.binaryType = 'arraybuffer';
 
         this.ws.onopen = () => {
             // Clear any reconnect attempts on successful connection
@@ -86,21 +126,27 @@ class WebSocketClient {
 
         this.ws.onmessage = (event) => {
             try {
+                if (event.data instanceof ArrayBuffer) {
+                    // Binary STATE_PATCH, only sent once the binary subprotocol is negotiated
+                    const decoded = decodeStatePatch(event.data);
+                    if (decoded && decoded.sequence > this.lastPatchSequence) {
+                        this.lastPatchSequence = decoded.sequence;
+                        this.applyStatePatch(decoded.patch);
+                    }
+                    return;
+                }
                 const message = JSON.parse(event.data);
                 if (message.type === "INITIAL_STATE") {
                     this.state.gameState = message.data;
+                    this.lastPatchSequence = 0;
                     this.notifySubscribers();
+                    if (!this.pingTimer) this.ping();
                 } else if (message.type === "STATE_PATCH") {
-                    if (this.state.gameState) {
-                        // Cast through unknown to apply patch to GameState
-                        const patched = applyPatch(
-                            this.state.gameState as unknown as Record<string, unknown>,
-                            message.data as Record<string, unknown>
-                        );
-                        this.state.gameState = patched as unknown as GameState;
-                        this.notifySubscribers();
-                    }
-                    // Silently ignore patches without initial state - will resync on reconnect
+                    this.applyStatePatch(message.data as Record<string, unknown>);
+                } else if (message.type === "PONG") {
+                    const hadOffset = this.serverClock.offset() !== null;
+                    this.serverClock.addSample(Number(message.data?.clientTime), Number(message.data?.serverTime), Date.now());
+                    if (!hadOffset) this.notifySubscribers();
                 }
             } catch (e) {
                 console.error("Error parsing WebSocket message:", e);
@@ -109,6 +155,10 @@ class WebSocketClient {
 
         this.ws.onclose = () => {
             this.setConnectionState('closed');
+            if (this.pingTimer) {
+                clearTimeout(this.pingTimer);
+                this.pingTimer = null;
+            }
             // Attempt to reconnect after some delay
             if (!this.reconnectInterval) {
                 this.reconnectInterval = setInterval(() => this.connect(), 3000);
@@ -122,11 +172,64 @@ class WebSocketClient {
         };
     }
 
+    private applyStatePatch(patch: Record<string, unknown>): void {
+        if (this.state.gameState) {
+            // Cast through unknown to apply patch to GameState
+            const patched = applyPatch(this.state.gameState as unknown as Record<string, unknown>, patch);
+            this.state.gameState = patched as unknown as GameState;
+            this.notifySubscribers();
+        }
+        // Silently ignore patches without initial state - will resync on reconnect
+    }
+
+    /** Sends a clock-sync PING and schedules the next one. */
+    private ping(): void {
+        if (this.ws?.readyState === WebSocket.OPEN) {
+            try {
+                this.ws.send(JSON.stringify({ type: "PING", clientTime: Date.now() }));
+            } catch {
+                // Connection will handle reconnect
+            }
+        }
+        const warmingUp = this.serverClock.sampleCount < PING_WARMUP_SAMPLES;
+        this.pingTimer = setTimeout(() => this.ping(), warmingUp ? PING_WARMUP_INTERVAL_MS : PING_INTERVAL_MS);
+    }
+
+    /**
+     * The state as it should look now: with the clock running, its time and the running penalties' are run
+     * forward from the last anchor. Until the first PONG there is no server time to run them to.
+     */
+    private currentView(): GameState | null {
+        const state = this.state.gameState;
+        if (!state) return null;
+        const serverNow = this.serverClock.now();
+        return serverNow === null ? state : interpolateState(state, serverNow);
+    }
+
+    private onFrame(): void {
+        this.frameScheduled = false;
+        const view = this.currentView();
+        if (!view?.clock.isRunning) return;
+        const tenths = Math.ceil(view.clock.timeRemainingMillis / 100);
+        if (tenths !== this.shownTenths) {
+            this.shownTenths = tenths;
+            this.subscribers.forEach(callback => callback(view));
+        }
+        this.requestFrame();
+    }
+
+    private requestFrame(): void {
+        if (this.frameScheduled) return;
+        this.frameScheduled = true;
+        scheduleFrame(() => this.onFrame());
+    }
+
     public subscribe(callback: StateUpdateCallback): () => void {
         this.subscribers.push(callback);
         // Immediately send current state if available
-        if (this.state.gameState) {
-            callback(this.state.gameState);
+        const view = this.currentView();
+        if (view) {
+            callback(view);
         }
         return () => {
             this.subscribers = this.subscribers.filter(sub => sub !== callback);
@@ -134,8 +237,11 @@ class WebSocketClient {
     }
 
     private notifySubscribers(): void {
-        if (this.state.gameState) {
-            this.subscribers.forEach(callback => callback(this.state.gameState!));
+        const view = this.currentView();
+        if (view) {
+            this.shownTenths = view.clock.isRunning ? Math.ceil(view.clock.timeRemainingMillis / 100) : null;
+            this.subscribers.forEach(callback => callback(view));
+            if (view.clock.isRunning) this.requestFrame();
         }
     }
 
@@ -156,7 +262,12 @@ class WebSocketClient {
     public sendCommand(command: Command): void {
         if (this.ws?.readyState === WebSocket.OPEN) {
             try {
-                this.ws.send(JSON.stringify({ type: "COMMAND", command: command.type, payload: command.payload }));
+                const binary = this.ws.protocol === BINARY_COMMAND_PROTOCOL ? encodeCommand(command) : null;
+                if (binary) {
+                    this.ws.send(binary);
+                } else {
+                    this.ws.send(JSON.stringify({ type: "COMMAND", command: command.type, payload: command.payload }));
+                }
                 const win = window as ScoreboardWindow;
                 const testHooks = win.__test ?? {};
                 win.__test = { ...testHooks, lastCommand: command.type };